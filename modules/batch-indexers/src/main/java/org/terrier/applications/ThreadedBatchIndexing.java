@@ -25,11 +25,13 @@
  */
 package org.terrier.applications;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,11 +41,15 @@ import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.IndexUtil;
 import org.terrier.structures.merging.BlockStructureMerger;
+import org.terrier.structures.merging.MultiStructureMerger;
 import org.terrier.structures.merging.StructureMerger;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.TagSet;
 /** An implementation of BatchIndexing that uses Java 8 parallel streams to
- * increase indexing speed on multi-core machines.
+ * increase indexing speed on multi-core machines. By default, the indices
+ * of all partitions are then combined in a single pass by a {@link MultiStructureMerger};
+ * setting <tt>threaded.indexing.multiway.merge</tt> to false reverts to merging 
+ * pairs of indices.
  * @author Craig Macdonald
  * @since 4.2
  */
@@ -54,6 +60,7 @@ public class ThreadedBatchIndexing extends BatchIndexing {
 	
 	final boolean singlePass;
 	int maxThreads = -1;
+	boolean multiwayMerge = Boolean.parseBoolean(ApplicationSetup.getProperty("threaded.indexing.multiway.merge", "true"));
 	
 	public ThreadedBatchIndexing(String _path, String _prefix, boolean _singlePass) {
 		super(_path, _prefix);
@@ -179,7 +186,9 @@ public class ThreadedBatchIndexing extends BatchIndexing {
 			ForkJoinPool forkPool = this.maxThreads == -1 
 					? ForkJoinPool.commonPool()
 					: new ForkJoinPool(this.maxThreads);
-			String tmpPrefix = forkPool.submit(() -> partitioned.parallelStream().map(indexer).reduce(merger).get()).get();
+			String tmpPrefix = multiwayMerge
+				? mergeAll(forkPool.submit(() -> partitioned.parallelStream().map(indexer).collect(Collectors.toList())).get(), threadCount)
+				: forkPool.submit(() -> partitioned.parallelStream().map(indexer).reduce(merger).get()).get();
 			if (tmpPrefix == null)
 			{
 				logger.warn("No index created -- all partitions were empty");
@@ -194,5 +203,48 @@ public class ThreadedBatchIndexing extends BatchIndexing {
 			logger.error("Problem occurred during parallel indexing", e);
 		}
 	}
+	
+	/** Merges the indices with the specified prefixes, in order, using a single 
+	 * {@link MultiStructureMerger}. Empty indices are deleted. 
+	 * @return the prefix of the merged index, or null if all indices were empty
+	 */
+	protected String mergeAll(List<String> prefixes, int threadCount) throws Exception
+	{
+		Index.setIndexLoadingProfileAsRetrieval(false);
+		final List<IndexOnDisk> srcs = new ArrayList<>();
+		final List<String> srcPrefixes = new ArrayList<>();
+		for(String p : prefixes)
+		{
+			IndexOnDisk src = IndexOnDisk.createIndex(path, p);
+			if (src.getCollectionStatistics().getNumberOfDocuments() == 0)
+			{
+				logger.warn("Unusually, index " + p + " did not contain any documents");
+				src.close();
+				IndexUtil.deleteIndex(path, p);
+				continue;
+			}
+			srcs.add(src);
+			srcPrefixes.add(p);
+		}
+		if (srcs.size() == 0)
+			return null;
+		if (srcs.size() == 1)
+		{
+			srcs.get(0).close();
+			return srcPrefixes.get(0);
+		}
+		final String thisPrefix = prefix + "_merge";
+		logger.info("Merging " + srcs.size() + " indices into " + thisPrefix);
+		IndexOnDisk newIndex = IndexOnDisk.createNewIndex(path, thisPrefix);
+		MultiStructureMerger msm = new MultiStructureMerger(srcs.toArray(new IndexOnDisk[0]), newIndex);
+		msm.setShards(threadCount);
+		msm.mergeStructures();
+		newIndex.close();
+		for(IndexOnDisk src : srcs)
+			src.close();
+		for(String p : srcPrefixes)
+			IndexUtil.deleteIndex(path, p);
+		return thisPrefix;
+	}
 
 }
@@ -0,0 +1,326 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is SkipDirectInvertedOutputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.bit;
+
+import gnu.trove.TIntArrayList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.bit.BitOut;
+import org.terrier.compression.bit.BitOutputStream;
+import org.terrier.compression.bit.MemorySBOS;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.BitFilePosition;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.FilePosition;
+import org.terrier.structures.SimpleBitIndexPointer;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.Posting;
+
+/** Writes posting lists in the skip format described in {@link org.terrier.structures.postings.bit.SkipTable}.
+ * The postings of each list are divided into blocks of a fixed number of postings, each 
+ * encoded by an underlying {@link DirectInvertedOutputStream} (which determines whether fields 
+ * and/or blocks are recorded), and a skip table is written at the start of the list. 
+ * As the number of bits occupied by each block must be known before the list is written, 
+ * each posting list is buffered in memory before being written out.
+ * <p>
+ * Unlike {@link DirectInvertedOutputStream}, each posting list must be written by a 
+ * single call to writePostings(), as the lists of two calls cannot be concatenated.
+ * @since 5.8
+ */
+public class SkipDirectInvertedOutputStream extends AbstractPostingOutputStream implements Closeable {
+	/** The logger used */
+	protected static final Logger logger = LoggerFactory.getLogger(SkipDirectInvertedOutputStream.class);
+	
+	/** what to write to */
+	protected final BitOut output;
+	/** constructor of the underlying posting format */
+	protected final Constructor<? extends DirectInvertedOutputStream> postingFormat;
+	/** the IterablePosting class to read the written postings */
+	protected final Class<? extends IterablePosting> postingIteratorClass;
+	/** number of postings in each block */
+	protected final int blockSize;
+	/** should the maximum frequency in each block be recorded */
+	protected final boolean recordMaxFrequencies;
+	
+	protected int lastDocid;
+	
+	/** Creates a new output stream, writing a BitOutputStream to the specified file.
+	 * @param filename Location of the file to write to
+	 * @param _postingFormat underlying class used to encode each posting
+	 * @param _postingIteratorClass IterablePosting class to read the written postings
+	 * @param _blockSize number of postings in each block
+	 * @param _recordMaxFrequencies whether the maximum frequency in each block is recorded
+	 */
+	public SkipDirectInvertedOutputStream(String filename, 
+			Class<? extends DirectInvertedOutputStream> _postingFormat, 
+			Class<? extends IterablePosting> _postingIteratorClass,
+			int _blockSize, boolean _recordMaxFrequencies) throws IOException
+	{
+		this(new BitOutputStream(filename), _postingFormat, _postingIteratorClass, _blockSize, _recordMaxFrequencies);
+	}
+	
+	/** Creates a new output stream, writing to the specified BitOut implementation.
+	 * @param out BitOut implementation to write the file to 
+	 * @param _postingFormat underlying class used to encode each posting
+	 * @param _postingIteratorClass IterablePosting class to read the written postings
+	 * @param _blockSize number of postings in each block
+	 * @param _recordMaxFrequencies whether the maximum frequency in each block is recorded
+	 */
+	public SkipDirectInvertedOutputStream(BitOut out, 
+			Class<? extends DirectInvertedOutputStream> _postingFormat, 
+			Class<? extends IterablePosting> _postingIteratorClass,
+			int _blockSize, boolean _recordMaxFrequencies)
+	{
+		if (_blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive, was " + _blockSize);
+		this.output = out;
+		try{
+			this.postingFormat = _postingFormat.getConstructor(BitOut.class);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(e);
+		}
+		this.postingIteratorClass = _postingIteratorClass;
+		this.blockSize = _blockSize;
+		this.recordMaxFrequencies = _recordMaxFrequencies;
+	}
+	
+	/** Returns the IterablePosting class to use for reading structure written by this class */
+	@Override
+	public Class<? extends IterablePosting> getPostingIteratorClass()
+	{
+		return postingIteratorClass;
+	}
+	
+	/** Returns false, as the skip table of a posting list is written before its postings */
+	@Override
+	public boolean canAppendPostings()
+	{
+		return false;
+	}
+	
+	/** Write out the specified postings.
+	 * @param iterator an Iterator of Posting objects
+	 */
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator) throws IOException
+	{
+		return writePostings(iterator, -1);
+	}
+	
+	/** Write out the specified postings.
+	 * @param postings IterablePosting postings accessed through an IterablePosting object
+	 */
+	@Override
+	public BitIndexPointer writePostings(IterablePosting postings) throws IOException
+	{
+		return writePostings(postings, -1);
+	}
+	
+	/** Write out the specified postings, but allowing the delta for the first document to be adjusted
+	 * @param postings IterablePosting postings accessed through an IterablePosting object
+	 * @param previousId id of the previous posting in this stream
+	 */
+	@Override
+	public BitIndexPointer writePostings(final IterablePosting postings, int previousId) throws IOException
+	{
+		return writePostings(new Iterator<Posting>() {
+			boolean advanced = false;
+			boolean hasMore;
+			
+			@Override
+			public boolean hasNext() {
+				if (! advanced)
+				{
+					try{
+						hasMore = postings.next() != IterablePosting.EOL;
+					} catch (IOException ioe) {
+						throw new IllegalStateException(ioe);
+					}
+					advanced = true;
+				}
+				return hasMore;
+			}
+
+			@Override
+			public Posting next() {
+				if (! hasNext())
+					throw new NoSuchElementException();
+				advanced = false;
+				return postings;
+			}
+		}, previousId);
+	}
+	
+	/** Write out the specified postings, but allowing the delta for the first document to be adjusted
+	 * @param iterator an Iterator of Posting objects
+	 * @param previousId id of the previous posting in this stream
+	 */
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator, int previousId) throws IOException
+	{
+		BitIndexPointer pointer = new SimpleBitIndexPointer();
+		pointer.setOffset(output.getByteOffset(), output.getBitOffset());
+		
+		//the ids read back are offset from those written by the difference from the default previousId
+		final int idOffset = -1 - previousId;
+		final MemorySBOS buffer = new MemorySBOS();
+		final DirectInvertedOutputStream blockOutput;
+		try{
+			blockOutput = postingFormat.newInstance(buffer);
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+		final TIntArrayList lastIds = new TIntArrayList();
+		final TIntArrayList maxFrequencies = new TIntArrayList();
+		final TIntArrayList blockBits = new TIntArrayList();
+		final BlockIterator block = new BlockIterator(iterator);
+		int numberOfEntries = 0;
+		long previousBits = 0;
+		while(block.nextBlock())
+		{
+			blockOutput.writePostings(block, previousId);
+			previousId = blockOutput.getLastDocidWritten();
+			lastIds.add(previousId + idOffset);
+			maxFrequencies.add(block.maxFrequency);
+			numberOfEntries += block.count;
+			final long bits = buffer.getByteOffset() * 8l + buffer.getBitOffset();
+			blockBits.add((int)(bits - previousBits));
+			previousBits = bits;
+		}
+		pointer.setNumberOfEntries(numberOfEntries);
+		if (numberOfEntries == 0)
+			return pointer;
+		lastDocid = previousId;
+		
+		final int numBlocks = lastIds.size();
+		final boolean writeTable = numBlocks > 1 || recordMaxFrequencies;
+		output.writeBinary(1, writeTable ? 1 : 0);
+		if (writeTable)
+		{
+			output.writeGamma(numBlocks);
+			output.writeGamma(blockSize);
+			output.writeBinary(1, recordMaxFrequencies ? 1 : 0);
+			int lastId = -1;
+			for(int b=0;b<numBlocks;b++)
+			{
+				output.writeGamma(lastIds.get(b) - lastId);
+				lastId = lastIds.get(b);
+				if (recordMaxFrequencies)
+					output.writeGamma(maxFrequencies.get(b));
+				if (b < numBlocks -1)
+					output.writeGamma(blockBits.get(b));
+			}
+		}
+		copyBits(buffer, output);
+		return pointer;
+	}
+	
+	/** Append the bits written to the specified MemorySBOS to the specified BitOut */
+	protected static void copyBits(MemorySBOS buffer, BitOut out) throws IOException
+	{
+		final byte[] bytes = buffer.getMOS().getBuffer();
+		final int fullBytes = (int)buffer.getByteOffset();
+		for(int i=0;i<fullBytes;i++)
+			out.writeBinary(8, bytes[i] & 0xff);
+		final int remainingBits = buffer.getBitOffset();
+		if (remainingBits > 0)
+			out.writeBinary(remainingBits, (buffer.getByteToWrite() & 0xff) >>> (8 - remainingBits));
+	}
+	
+	/** Iterates over at most blockSize postings of the underlying iterator at a time */
+	class BlockIterator implements Iterator<Posting>
+	{
+		final Iterator<Posting> parent;
+		int count;
+		int maxFrequency;
+		
+		BlockIterator(Iterator<Posting> _parent)
+		{
+			this.parent = _parent;
+		}
+		
+		/** Starts the next block, returns false if there are no more postings */
+		boolean nextBlock()
+		{
+			count = 0;
+			maxFrequency = 0;
+			return parent.hasNext();
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return count < blockSize && parent.hasNext();
+		}
+		
+		@Override
+		public Posting next() {
+			if (! hasNext())
+				throw new NoSuchElementException();
+			count++;
+			final Posting p = parent.next();
+			if (p.getFrequency() > maxFrequency)
+				maxFrequency = p.getFrequency();
+			return p;
+		}
+	}
+	
+	/** Not supported, as the postings in the arrays are not delta encoded from the 
+	 * default previous id. Use {@link #writePostings(IterablePosting)} instead. */
+	@Override
+	public BitIndexPointer writePostings(int[][] postings, int startOffset, int length, int firstId) throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	/** close this object. suppresses any exception */
+	@Override
+	public void close()
+	{
+		try{ 
+			output.close();
+		} catch (IOException ioe) {
+			logger.error("Problem closing SkipDirectInvertedOutputStream", ioe);
+		}
+	}
+	
+	/** What is current offset? */
+	@Override
+	public BitFilePosition getOffset()
+	{
+		return new FilePosition(output.getByteOffset(), output.getBitOffset());
+	}
+	
+	@Override
+	public int getLastDocidWritten() {
+		return lastDocid;
+	}
+}
@@ -258,9 +258,7 @@ public abstract class BaseMetaIndexBuilder extends MetaIndexBuilder implements F
 			lastValues[i] = value;
 			i++;
 		}
-		indexOutput.writeLong(currentOffset);
-		currentOffset += writeData(baos.toByteArray());
-		currentIndexOffset += 8;
+		writeRecord(baos.toByteArray());
 		baos.reset();
 		for(i=0;i<reverseKeys.length;i++)
 		{
@@ -280,6 +278,16 @@ public abstract class BaseMetaIndexBuilder extends MetaIndexBuilder implements F
 		}
 	}
 
+	/** Writes the offset of a record to the index file, and the record to the data file. 
+	 * Records must be written in docid order. 
+	 * @since 5.8 */
+	protected void writeRecord(byte[] record) throws IOException
+	{
+		indexOutput.writeLong(currentOffset);
+		currentOffset += writeData(record);
+		currentIndexOffset += 8;
+	}
+	
 	protected abstract int writeData(byte[] data) throws IOException;
 	
 	/** 
@@ -0,0 +1,76 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ColumnarMetaIndexBuilder.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.indexing;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Map;
+
+import org.terrier.structures.ColumnarMetaIndex;
+import org.terrier.structures.IndexOnDisk;
+
+/** Writes a {@link ColumnarMetaIndex}, which stores each key in a separate column file. 
+ * To use, set <tt>indexer.meta.builder=org.terrier.structures.indexing.ColumnarMetaIndexBuilder</tt>.
+ * See {@link ColumnarMetaIndex} for the supported properties.
+ * @since 5.8
+ */
+public class ColumnarMetaIndexBuilder extends MetaIndexBuilder implements Flushable {
+
+	protected final ColumnarMetaIndex.Writer writer;
+
+	public ColumnarMetaIndexBuilder(IndexOnDisk _index, String[] _keyNames, int[] _valueLens, String[] _reverseKeys)
+	{
+		this(_index, "meta", _keyNames, _valueLens, _reverseKeys);
+	}
+
+	public ColumnarMetaIndexBuilder(IndexOnDisk _index, String _structureName, String[] _keyNames, int[] _valueLens, String[] _reverseKeys)
+	{
+		try{
+			writer = new ColumnarMetaIndex.Writer(_index, _structureName, _keyNames, _valueLens, _reverseKeys);
+		} catch (IOException ioe) {
+			throw new IllegalArgumentException(ioe);
+		}
+	}
+
+	@Override
+	public void writeDocumentEntry(Map<String, String> data) throws IOException {
+		writer.write(data);
+	}
+
+	@Override
+	public void writeDocumentEntry(String[] data) throws IOException {
+		writer.write(data);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -41,12 +41,17 @@ import org.terrier.structures.bit.BlockFieldDirectInvertedOutputStream;
 import org.terrier.structures.bit.DirectInvertedDocidOnlyOuptutStream;
 import org.terrier.structures.bit.DirectInvertedOutputStream;
 import org.terrier.structures.bit.FieldDirectInvertedOutputStream;
+import org.terrier.structures.bit.SkipDirectInvertedOutputStream;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.bit.BasicIterablePosting;
 import org.terrier.structures.postings.bit.BasicIterablePostingDocidOnly;
 import org.terrier.structures.postings.bit.BlockFieldIterablePosting;
 import org.terrier.structures.postings.bit.BlockIterablePosting;
 import org.terrier.structures.postings.bit.FieldIterablePosting;
+import org.terrier.structures.postings.bit.SkipBasicIterablePosting;
+import org.terrier.structures.postings.bit.SkipBlockFieldIterablePosting;
+import org.terrier.structures.postings.bit.SkipBlockIterablePosting;
+import org.terrier.structures.postings.bit.SkipFieldIterablePosting;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.ArrayUtils;
 /** Configures the compression to be used when creating an IndexOnDisk.
@@ -207,6 +212,48 @@ public class CompressionFactory {
 		}
 	}
 	
+	/** A bit compression configuration where the postings of each list are written in blocks, 
+	 * preceded by a skip table, such that next(int) can jump over whole blocks of postings.
+	 * The maximum frequency in each block is also recorded, for use by block-max dynamic pruning.
+	 * Properties:
+	 * <ul>
+	 * <li><tt>indexing.STRUCTURENAME.compression.skip.size</tt> - number of postings in each block. Defaults to 128.</li>
+	 * <li><tt>indexing.STRUCTURENAME.compression.skip.maxtf</tt> - whether to record the maximum frequency of each block. Defaults to true.</li>
+	 * </ul>
+	 * Posting lists with no more than one block and without maximum frequencies have no skip table.
+	 * This configuration is not supported by the single-pass indexers.
+	 * @since 5.8
+	 */
+	public static class SkipCompressionConfiguration extends SpecificCompressionConfiguration
+	{
+		final int skipSize;
+		final boolean skipMaxTf;
+		
+		public SkipCompressionConfiguration(String structureName, String[] fieldNames, int hasBlocks, int maxBlocks)
+		{
+			super(
+				structureName, fieldNames, hasBlocks, maxBlocks,
+				fieldNames.length > 0 ? hasBlocks > 0 ? BlockFieldDirectInvertedOutputStream.class : FieldDirectInvertedOutputStream.class : hasBlocks > 0 ? BlockDirectInvertedOutputStream.class : DirectInvertedOutputStream.class,
+				fieldNames.length > 0 ? hasBlocks > 0 ? SkipBlockFieldIterablePosting.class : SkipFieldIterablePosting.class : hasBlocks > 0 ? SkipBlockIterablePosting.class : SkipBasicIterablePosting.class,
+				BitPostingIndex.class, 
+				BitPostingIndexInputStream.class,
+				BitIn.USUAL_EXTENSION
+			);
+			this.skipSize = Integer.parseInt(ApplicationSetup.getProperty("indexing."+structureName+".compression.skip.size", "128"));
+			this.skipMaxTf = Boolean.parseBoolean(ApplicationSetup.getProperty("indexing."+structureName+".compression.skip.maxtf", "true"));
+		}
+		
+		@Override
+		public AbstractPostingOutputStream getPostingOutputStream(String filename) {
+			try{
+				return new SkipDirectInvertedOutputStream(filename, 
+					outputStream.asSubclass(DirectInvertedOutputStream.class), postingIterator, skipSize, skipMaxTf);
+			} catch (Exception e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+	
 	@Deprecated
 	public static CompressionConfiguration getCompressionConfiguration(String structureName, String[] fieldNames, boolean blocks)
 	{
@@ -0,0 +1,131 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is InvertedIndexRecompresser.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.indexing;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.FSOMapFileLexicon;
+import org.terrier.structures.FSOMapFileLexiconOutputStream;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.LexiconOutputStream;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.seralization.FixedSizeWriteableFactory;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.ArrayUtils;
+import org.terrier.utility.Files;
+
+/** Rewrites the inverted index of an existing index using a different 
+ * {@link CompressionConfiguration}, for instance to convert it to the 
+ * skip format of {@link CompressionFactory.SkipCompressionConfiguration}. 
+ * The fields and blocks of the inverted index are retained. As the offsets of the 
+ * posting lists change, the lexicon is rewritten also, while the term ids and the 
+ * lexicon hash remain unchanged. The index must not be in use by another process.
+ * @since 5.8
+ */
+public class InvertedIndexRecompresser {
+	
+	protected static final Logger logger = LoggerFactory.getLogger(InvertedIndexRecompresser.class);
+	
+	/** suffix of the structure names used while the new inverted index is being written */
+	static final String TMP_SUFFIX = "-recompressed";
+	
+	/** Rewrites the inverted index of the specified index using the named compression configuration. 
+	 * @param path path of the index
+	 * @param prefix prefix of the index
+	 * @param compressionConfiguration name of the {@link CompressionConfiguration} class to use
+	 */
+	@SuppressWarnings("unchecked")
+	public static void recompress(String path, String prefix, String compressionConfiguration) throws IOException
+	{
+		final IndexOnDisk index = IndexOnDisk.createIndex(path, prefix);
+		if (index == null)
+			throw new IOException("Index not found at " + path + "," + prefix);
+		final String structureName = "inverted";
+		if (! index.hasIndexStructure(structureName) || ! index.hasIndexStructure("lexicon"))
+			throw new IllegalArgumentException("Index at " + path + "," + prefix + " has no inverted index or lexicon");
+		
+		final String[] fieldNames = ArrayUtils.parseCommaDelimitedString(index.getIndexProperty("index."+structureName+".fields.names", ""));
+		final int hasBlocks = index.getIntIndexProperty("index."+structureName+".blocks", 0);
+		final int maxBlocks = index.getIntIndexProperty("index."+structureName+".blocks.max", ApplicationSetup.MAX_BLOCKS);
+		CompressionConfiguration config;
+		try{
+			config = ApplicationSetup.getClass(compressionConfiguration)
+				.asSubclass(CompressionConfiguration.class)
+				.getConstructor(String.class, String[].class, Integer.TYPE, Integer.TYPE)
+				.newInstance(structureName, fieldNames, hasBlocks, maxBlocks);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+		logger.info("Rewriting "+structureName+" of index " + index + " using " + config.getClass().getName());
+		
+		final String newPostingsFilename = path + "/" + prefix + "." + structureName + TMP_SUFFIX + config.getStructureFileExtension();
+		final AbstractPostingOutputStream postingOutput = config.getPostingOutputStream(newPostingsFilename);
+		final LexiconOutputStream<String> lexiconOutput = new FSOMapFileLexiconOutputStream(
+			path, prefix, "lexicon" + TMP_SUFFIX, (FixedSizeWriteableFactory<Text>) index.getIndexStructure("lexicon-keyfactory"));
+		final PostingIndex<Pointer> postings = (PostingIndex<Pointer>) index.getIndexStructure(structureName);
+		final Iterator<Map.Entry<String,LexiconEntry>> lexiconInput = 
+			(Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		while(lexiconInput.hasNext())
+		{
+			final Map.Entry<String,LexiconEntry> lee = lexiconInput.next();
+			final LexiconEntry le = lee.getValue();
+			if (le.getNumberOfEntries() > 0)
+			{
+				BitIndexPointer pointer = postingOutput.writePostings(postings.getPostings(le));
+				le.setPointer(pointer);
+			}
+			lexiconOutput.writeNextEntry(lee.getKey(), le);
+		}
+		IndexUtil.close(lexiconInput);
+		lexiconOutput.close();
+		postingOutput.close();
+		
+		index.getProperties().remove("index."+structureName+".data-files");
+		config.writeIndexProperties(index, "lexicon-entry-inputstream");
+		index.close();
+		
+		//replace the old posting and lexicon files by the new ones
+		for(String file : Files.list(path))
+		{
+			if (file.startsWith(prefix + "." + structureName + "."))
+				Files.delete(path + "/" + file);
+		}
+		Files.rename(newPostingsFilename, path + "/" + prefix + "." + structureName + config.getStructureFileExtension());
+		final String lexiconFilename = FSOMapFileLexicon.constructFilename("lexicon", path, prefix, FSOMapFileLexicon.MAPFILE_EXT);
+		Files.delete(lexiconFilename);
+		Files.rename(FSOMapFileLexicon.constructFilename("lexicon" + TMP_SUFFIX, path, prefix, FSOMapFileLexicon.MAPFILE_EXT), lexiconFilename);
+	}
+}
@@ -50,6 +50,7 @@ import org.terrier.structures.Lexicon.LexiconFileEntry;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.LexiconOutputStream;
 import org.terrier.structures.PropertiesIndex;
+import org.terrier.structures.TermDictionaryFST;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.MemoryChecker;
@@ -812,7 +813,8 @@ public class LexiconBuilder
 		optimise(index, defaultStructureName);
 	}
 	
-	/** Optimises the lexicon, eg lexid file */
+	/** Optimises the lexicon, eg lexid file. For the main lexicon, a {@link TermDictionaryFST} 
+	 * is also built if the property <tt>lexicon.fst</tt> is set to true. */
 	public static void optimise(final IndexOnDisk index, final String structureName)
 	{
 		try {
@@ -839,6 +841,8 @@ public class LexiconBuilder
 			FSOMapFileLexiconUtilities.optimise(structureName, index, counter);
 			counter.close();
 			index.flush();
+			if (structureName.equals("lexicon") && Boolean.parseBoolean(ApplicationSetup.getProperty("lexicon.fst", "false")))
+				TermDictionaryFST.create(index, structureName, TermDictionaryFST.STRUCTURE_NAME);
 		} catch(IOException ioe) {
 			logger.error("IOException while creating optimising lexicon called " + structureName, ioe);
 		}
@@ -0,0 +1,97 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is RecompressCommand.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.indexing;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.querying.IndexRef;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexFactory;
+import org.terrier.structures.IndexOnDisk;
+
+/** Rewrites the inverted index of an existing index with a different compression
+ * configuration, using {@link InvertedIndexRecompresser}. By default, the inverted index is 
+ * converted to the skip format of {@link CompressionFactory.SkipCompressionConfiguration}, e.g.
+ * <tt>bin/terrier recompress -I /path/to/data.properties</tt>.
+ * @since 5.8
+ */
+public class RecompressCommand extends CLIParsedCLITool {
+
+	@Override
+	protected Options getOptions() {
+		Options options = super.getOptions();
+		options.addOption(Option.builder("c")
+				.argName("configuration")
+				.longOpt("configuration")
+				.hasArg()
+				.desc("name of the compression configuration class to use, defaults to " 
+					+ CompressionFactory.SkipCompressionConfiguration.class.getName())
+				.build());
+		return options;
+	}
+
+	@Override
+	public int run(CommandLine line) throws Exception {
+		IndexRef ref = getIndexRef(line);
+		IndexOnDisk.setIndexLoadingProfileAsRetrieval(false);
+		Index index = IndexFactory.of(ref);
+		if (index == null)
+		{
+			System.err.println("Index not found at " + ref);
+			return 1;
+		}
+		if (! (index instanceof IndexOnDisk))
+		{
+			System.err.println("Only an IndexOnDisk can be rewritten, found " + index.getClass().getName());
+			return 1;
+		}
+		String path = ((IndexOnDisk)index).getPath();
+		String prefix = ((IndexOnDisk)index).getPrefix();
+		index.close();
+		String configuration = line.hasOption("c") 
+			? line.getOptionValue("c") 
+			: CompressionFactory.SkipCompressionConfiguration.class.getName();
+		InvertedIndexRecompresser.recompress(path, prefix, configuration);
+		return 0;
+	}
+
+	@Override
+	public String commandname() {
+		return "recompress";
+	}
+
+	@Override
+	public String helpsummary() {
+		return "rewrites the inverted index with a different compression configuration, e.g. with skips";
+	}
+
+	@Override
+	public String sourcepackage() {
+		return CLITool.PLATFORM_MODULE;
+	}
+}
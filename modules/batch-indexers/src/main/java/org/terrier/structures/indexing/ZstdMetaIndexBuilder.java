@@ -1,15 +1,43 @@
 package org.terrier.structures.indexing;
 import org.terrier.structures.ZstdCompressedMetaIndex;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
 import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictTrainer;
+
 import org.terrier.structures.IndexOnDisk;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 /**
- * Writes all metadata using Zstandard compression.
+ * Writes all metadata using Zstandard compression. As metadata records are typically short,
+ * by default a Zstandard dictionary is trained on the first records written, which are buffered 
+ * until enough have been seen. No dictionary is used for structures with fewer than 100 records. All records are then compressed using the dictionary, which is 
+ * stored in the <tt>.zdict</tt> file of the structure.
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>metaindex.zstd.dictionary</tt> - whether to train a dictionary. Defaults to true.</li>
+ * <li><tt>metaindex.zstd.dictionary.size</tt> - maximum size of the dictionary in bytes. Defaults to 16384. 
+ * The dictionary is trained on up to 100 times as many bytes of records.</li>
+ * </ul>
  * @since 5.5
  */
 public class ZstdMetaIndexBuilder extends BaseMetaIndexBuilder {
 
+    /** minimum number of records for a dictionary to be trained */
+    protected static final int MIN_DICTIONARY_SAMPLES = 100;
+
     ZstdCompressCtx compressor = new ZstdCompressCtx();
+    
+    protected final int dictionarySize = Integer.parseInt(ApplicationSetup.getProperty("metaindex.zstd.dictionary.size", "16384"));
+    /** records buffered for training the dictionary, or null once it has been trained */
+    protected List<byte[]> samples;
+    protected long sampleBytes = 0;
+    /** the trained dictionary, or null if none is in use */
+    protected byte[] dictionary = null;
 
     public ZstdMetaIndexBuilder(IndexOnDisk _index, String[] _keyNames, int[] _valueLens, String[] _reverseKeys)
 	{
@@ -22,6 +50,45 @@ public class ZstdMetaIndexBuilder extends BaseMetaIndexBuilder {
         this.structureClass = ZstdCompressedMetaIndex.class;
         this.structureInputStreamClass = ZstdCompressedMetaIndex.InputStream.class;
         this.compressor.setChecksum(false);
+        if (Boolean.parseBoolean(ApplicationSetup.getProperty("metaindex.zstd.dictionary", "true")))
+            samples = new ArrayList<>();
+    }
+
+    @Override
+    protected void writeRecord(byte[] record) throws IOException {
+        if (samples == null)
+        {
+            super.writeRecord(record);
+            return;
+        }
+        samples.add(record);
+        sampleBytes += record.length;
+        if (sampleBytes >= 100l * dictionarySize)
+            trainDictionary();
+    }
+
+    /** trains the dictionary on the buffered records, then writes them */
+    protected void trainDictionary() throws IOException {
+        final List<byte[]> _samples = samples;
+        samples = null;
+        if (_samples.size() < MIN_DICTIONARY_SAMPLES)
+        {
+            logger.debug("Too few records to train a Zstandard dictionary for " + structureName);
+        }
+        else try{
+            final ZstdDictTrainer trainer = new ZstdDictTrainer((int) sampleBytes, dictionarySize);
+            for(byte[] sample : _samples)
+                trainer.addSample(sample);
+            dictionary = trainer.trainSamples();
+            compressor.loadDict(dictionary);
+            logger.info("Trained Zstandard dictionary of " + dictionary.length + " bytes for " + structureName + " from " + _samples.size() + " records");
+        } catch (RuntimeException e) {
+            //e.g. too few samples
+            logger.warn("Could not train Zstandard dictionary for " + structureName + " from " + _samples.size() + " records, compressing without", e);
+            dictionary = null;
+        }
+        for(byte[] sample : _samples)
+            super.writeRecord(sample);
     }
 
     protected int writeData(byte[] data) throws IOException {
@@ -30,4 +97,19 @@ public class ZstdMetaIndexBuilder extends BaseMetaIndexBuilder {
         return compressed.length;
     }
 
-}
\ No newline at end of file
+    @Override
+    public void close() throws IOException {
+        if (samples != null)
+            trainDictionary();
+        if (dictionary != null)
+        {
+            try(OutputStream os = Files.writeFileStream(index.getPath() + "/" + index.getPrefix() + "." + structureName + ZstdCompressedMetaIndex.DICTIONARY_EXTENSION))
+            {
+                os.write(dictionary);
+            }
+            index.setIndexProperty("index."+structureName+".zstd.dictionary", "true");
+        }
+        super.close();
+    }
+
+}
@@ -327,31 +327,7 @@ public class BasicIndexer extends Indexer
 				logger.warn("skipping null document"); 
 				return null;
 			}
-			/* setup for parsing */
-			createDocumentPostings();
-			String term; //term we're currently processing
-			int numOfTokensInDocument = 0;
-
-			//get each term in the document
-			while (!doc.endOfDocument()) {
-				if ((term = doc.getNextTerm())!=null && !term.equals("")) {
-					termFields = doc.getFields();
-					/* pass term into TermPipeline (stop, stem etc) */
-					pipeline_first.processTerm(term);
-					/* the term pipeline will eventually add the term to this object. */
-				}
-				if (MAX_TOKENS_IN_DOCUMENT > 0 && 
-						numOfTokensInDocument > MAX_TOKENS_IN_DOCUMENT)
-						break;
-			}
-			//if we didn't index all tokens from document,
-			//we need to get to the end of the document.
-			while (!doc.endOfDocument()) 
-				doc.getNextTerm();
-			
-			pipeline_first.reset();
-			/* we now have all terms in the DocumentTree, so we save the document tree */
-			
+			final DocumentPostingList termsInDocument = tokeniseDocument(doc);
 			
 			if (MAX_DOCS_PER_BUILDER>0 && numberOfDocuments >= MAX_DOCS_PER_BUILDER)
 			{
@@ -366,6 +342,58 @@ public class BasicIndexer extends Indexer
 			return new MapEntry<Map<String,String>, DocumentPostingList>(doc.getAllProperties(), termsInDocument);
 		}
 	}
+	
+	/**
+	 * Creates another indexer of the same class and configuration as this one, to be used for
+	 * passing documents through a separate instance of the term pipeline, 
+	 * as per {@link #tokeniseDocument(Document)}. The indexer must have a
+	 * constructor taking the path and prefix of the index.
+	 * @since 5.8
+	 */
+	protected BasicIndexer createTokeniser()
+	{
+		try{
+			return this.getClass().getConstructor(String.class, String.class).newInstance(path, prefix);
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not create another instance of " + this.getClass().getName(), e);
+		}
+	}
+	
+	/** 
+	 * Passes each term of the specified document through the term pipeline, and returns
+	 * the resulting postings of the document. The document is read to its end.
+	 * @param doc the document to process
+	 * @return the postings of the document
+	 * @since 5.8
+	 */
+	protected DocumentPostingList tokeniseDocument(Document doc)
+	{
+		/* setup for parsing */
+		createDocumentPostings();
+		String term; //term we're currently processing
+		int numOfTokensInDocument = 0;
+
+		//get each term in the document
+		while (!doc.endOfDocument()) {
+			if ((term = doc.getNextTerm())!=null && !term.equals("")) {
+				termFields = doc.getFields();
+				/* pass term into TermPipeline (stop, stem etc) */
+				pipeline_first.processTerm(term);
+				/* the term pipeline will eventually add the term to this object. */
+			}
+			if (MAX_TOKENS_IN_DOCUMENT > 0 && 
+					numOfTokensInDocument > MAX_TOKENS_IN_DOCUMENT)
+					break;
+		}
+		//if we didn't index all tokens from document,
+		//we need to get to the end of the document.
+		while (!doc.endOfDocument()) 
+			doc.getNextTerm();
+		
+		pipeline_first.reset();
+		/* we now have all terms in the DocumentTree, so we save the document tree */
+		return termsInDocument;
+	}
 
 		
 	/** 
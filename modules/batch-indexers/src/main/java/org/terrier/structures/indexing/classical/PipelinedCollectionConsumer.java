@@ -0,0 +1,333 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PipelinedCollectionConsumer.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.indexing.classical;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.indexing.Collection;
+import org.terrier.indexing.Document;
+import org.terrier.structures.collections.MapEntry;
+import org.terrier.structures.indexing.DocumentPostingList;
+
+/**
+ * Consumes a collection using a pipeline of threads, such that the documents of a single
+ * collection can be indexed using several cores. The pipeline has three stages:
+ * <ol>
+ * <li>A reader thread obtains each document from the collection, and reads all of its 
+ * terms and fields. As most collections parse documents directly from their underlying
+ * stream, this stage is sequential.</li>
+ * <li>Several worker threads pass the terms of each document through the term pipeline
+ * (e.g. stopwords removal and stemming) and build the {@link DocumentPostingList} 
+ * of each document. Each worker uses its own indexer instance, and hence its own term pipeline.</li>
+ * <li>The thread consuming this iterator adds the postings of each document to the index.</li>
+ * </ol>
+ * Documents are passed between stages in batches, and the number of batches in the
+ * pipeline is bounded. Documents are returned in the order of the collection, hence
+ * docids are the same as when the collection is consumed by a single thread.
+ * @since 5.8
+ */
+public class PipelinedCollectionConsumer implements Iterator<Map.Entry<Map<String,String>, DocumentPostingList>>, Closeable 
+{
+	/** the logger for this class */
+	protected static final Logger logger = LoggerFactory.getLogger(PipelinedCollectionConsumer.class);
+	
+	/** A document whose terms and fields have been read from another document */
+	static class BufferedDocument implements Document
+	{
+		final String[] terms;
+		final Set<String>[] fields;
+		final Map<String,String> properties;
+		int position = -1;
+		
+		@SuppressWarnings("unchecked")
+		BufferedDocument(Document doc)
+		{
+			final List<String> termList = new ArrayList<>();
+			final List<Set<String>> fieldList = new ArrayList<>();
+			Set<String> lastFields = null;
+			String term;
+			while (!doc.endOfDocument()) {
+				if ((term = doc.getNextTerm())!=null && !term.equals("")) {
+					termList.add(term);
+					final Set<String> termFields = doc.getFields();
+					//consecutive terms usually occur in the same fields, so share their copies
+					if (lastFields == null || termFields == null || ! lastFields.equals(termFields))
+						lastFields = termFields == null ? null : new HashSet<>(termFields);
+					fieldList.add(lastFields);
+				}
+			}
+			terms = termList.toArray(new String[termList.size()]);
+			fields = fieldList.toArray(new Set[fieldList.size()]);
+			properties = doc.getAllProperties();
+		}
+
+		@Override
+		public String getNextTerm() {
+			return terms[++position];
+		}
+
+		@Override
+		public Set<String> getFields() {
+			return fields[position];
+		}
+
+		@Override
+		public boolean endOfDocument() {
+			return position + 1 >= terms.length;
+		}
+
+		/** Returns a reader over the buffered terms, separated by spaces, as the text of the 
+		 * original document has already been consumed. */
+		@Override
+		public Reader getReader() {
+			return new StringReader(String.join(" ", terms));
+		}
+
+		@Override
+		public String getProperty(String name) {
+			return properties.get(name);
+		}
+
+		@Override
+		public Map<String, String> getAllProperties() {
+			return properties;
+		}
+	}
+	
+	/** A batch of consecutive documents, processed by a single worker */
+	static class Batch
+	{
+		final List<BufferedDocument> documents;
+		final List<Map.Entry<Map<String,String>, DocumentPostingList>> results;
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile Throwable error;
+		
+		Batch(List<BufferedDocument> _documents)
+		{
+			documents = _documents;
+			results = _documents == null ? null : new ArrayList<>(_documents.size());
+		}
+	}
+	
+	/** marks the end of the collection in the output queue, and stops each worker */
+	final Batch END = new Batch(null);
+	
+	final Collection collection;
+	final int batchSize;
+	final int maxDocuments;
+	final Set<String> boundaryDocuments;
+	final BlockingQueue<Batch> workQueue = new LinkedBlockingQueue<>();
+	final BlockingQueue<Batch> outputQueue;
+	final Thread reader;
+	final Thread[] workers;
+	
+	volatile int numberOfDocuments = 0;
+	Batch current = null;
+	int position = 0;
+	boolean finished = false;
+	
+	/**
+	 * Creates and starts the pipeline.
+	 * @param _collection collection to consume
+	 * @param tokeniserFactory creates the indexer used by each worker to process documents
+	 * @param threads number of worker threads
+	 * @param _batchSize number of documents in each batch
+	 * @param maxBatches maximum number of batches being read, processed or awaiting consumption
+	 * @param _maxDocuments stop after this many documents, or 0 for no limit
+	 * @param _boundaryDocuments stop after any of these docnos
+	 */
+	public PipelinedCollectionConsumer(Collection _collection, Supplier<? extends BasicIndexer> tokeniserFactory, 
+			int threads, int _batchSize, int maxBatches, int _maxDocuments, Set<String> _boundaryDocuments)
+	{
+		this.collection = _collection;
+		this.batchSize = Math.max(1, _batchSize);
+		this.maxDocuments = _maxDocuments;
+		this.boundaryDocuments = _boundaryDocuments;
+		this.outputQueue = new ArrayBlockingQueue<>(Math.max(1, maxBatches));
+		
+		//indexers are created by this thread, as their initialisation is not thread-safe
+		workers = new Thread[Math.max(1, threads)];
+		for(int i=0;i<workers.length;i++)
+		{
+			final BasicIndexer tokeniser = tokeniserFactory.get();
+			workers[i] = new Thread(() -> work(tokeniser), "indexing-pipeline-" + i);
+			workers[i].setDaemon(true);
+		}
+		reader = new Thread(this::read, "indexing-pipeline-reader");
+		reader.setDaemon(true);
+		
+		reader.start();
+		for(Thread t : workers)
+			t.start();
+		logger.info("Indexing pipeline started with " + workers.length + " worker(s) and batches of " + batchSize + " documents");
+	}
+	
+	/** Returns the number of documents read from the collection so far */
+	public int getNumberOfDocuments()
+	{
+		return numberOfDocuments;
+	}
+	
+	void read()
+	{
+		try{
+			List<BufferedDocument> documents = new ArrayList<>(batchSize);
+			boolean breakHere = false;
+			while(! breakHere && collection.nextDocument())
+			{
+				numberOfDocuments++;
+				final Document doc = collection.getDocument();
+				if (doc == null) {
+					logger.warn("skipping null document"); 
+					continue;
+				}
+				final BufferedDocument buffered = new BufferedDocument(doc);
+				documents.add(buffered);
+				if (maxDocuments > 0 && numberOfDocuments >= maxDocuments)
+				{
+					breakHere = true;
+				}
+				if (boundaryDocuments.size() > 0 && boundaryDocuments.contains(buffered.getProperty("docno")))
+				{
+					logger.warn("Document "+buffered.getProperty("docno")+" is a builder boundary document. Boundary forced.");
+					breakHere = true;
+				}
+				if (documents.size() == batchSize)
+				{
+					submit(new Batch(documents));
+					documents = new ArrayList<>(batchSize);
+				}
+			}
+			if (documents.size() > 0)
+				submit(new Batch(documents));
+		} catch (InterruptedException ie) {
+			END.error = ie;
+			Thread.currentThread().interrupt();
+		} catch (Throwable t) {
+			END.error = t;
+		} finally {
+			for(int i=0;i<workers.length;i++)
+				workQueue.add(END);
+			try{
+				outputQueue.put(END);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	void submit(Batch b) throws InterruptedException
+	{
+		//the output queue is bounded, hence blocks the reader when too many batches are awaiting consumption
+		outputQueue.put(b);
+		workQueue.put(b);
+	}
+	
+	void work(BasicIndexer tokeniser)
+	{
+		try{
+			Batch b;
+			while((b = workQueue.take()) != END)
+			{
+				try{
+					for(BufferedDocument doc : b.documents)
+						b.results.add(new MapEntry<Map<String,String>, DocumentPostingList>(doc.getAllProperties(), tokeniser.tokeniseDocument(doc)));
+				} catch (Throwable t) {
+					b.error = t;
+				} finally {
+					b.done.countDown();
+				}
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean hasNext() 
+	{
+		while(current == null || position >= current.results.size())
+		{
+			if (finished)
+				return false;
+			try{
+				current = outputQueue.take();
+				position = 0;
+				if (current == END)
+				{
+					finished = true;
+					current = null;
+					if (END.error != null)
+						throw new IllegalStateException("Problem reading collection", END.error);
+					return false;
+				}
+				current.done.await();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(ie);
+			}
+			if (current.error != null)
+				throw new IllegalStateException("Problem processing document", current.error);
+		}
+		return true;
+	}
+
+	@Override
+	public Map.Entry<Map<String,String>, DocumentPostingList> next() 
+	{
+		if (! hasNext())
+			throw new NoSuchElementException();
+		final Map.Entry<Map<String,String>, DocumentPostingList> rtr = current.results.get(position);
+		//release the batch once consumed
+		if (++position == current.results.size())
+			current = null;
+		return rtr;
+	}
+	
+	/** Stops the pipeline, should the iterator not be consumed fully */
+	@Override
+	public void close() 
+	{
+		reader.interrupt();
+		for(Thread t : workers)
+			t.interrupt();
+	}
+}
@@ -49,6 +49,7 @@ import org.terrier.structures.indexing.CompressionFactory.BitCompressionConfigur
 import org.terrier.structures.indexing.DocumentIndexBuilder;
 import org.terrier.structures.indexing.DocumentPostingList;
 import org.terrier.structures.indexing.classical.BasicIndexer;
+import org.terrier.structures.indexing.classical.PipelinedCollectionConsumer;
 import org.terrier.structures.postings.bit.BasicIterablePosting;
 import org.terrier.structures.postings.bit.FieldIterablePosting;
 import org.terrier.utility.ApplicationSetup;
@@ -80,6 +81,14 @@ import org.terrier.utility.UnitUtils;
  * <li><tt>indexing.singlepass.max.postings.memory</tt> - maximum amount of memory that the postings can consume before a run is committed. Default is 0, which is no limit.</li>
  * <li><tt>indexing.singlepass.max.documents.flush</tt> - maximum number of documents before a run is committed. Default is 0, which is no limit.</li>
  * <li><tt>docs.check</tt> - interval of how many documents indexed should the amount of free memory be checked. Default is 20 - check memory consumption every 20 documents.</li>
+ * <li><tt>indexing.pipeline.threads</tt> - number of threads that pass documents through the term pipeline, 
+ * in parallel with reading the collection and building the postings in memory. See {@link PipelinedCollectionConsumer}.
+ * Default is 0, which reads and indexes each document in turn on a single thread.</li>
+ * <li><tt>indexing.pipeline.batch.size</tt> - number of documents passed between the threads of the indexing pipeline at once. Default is 64.</li>
+ * <li><tt>indexing.singlepass.offheap.postings</tt> - whether the postings of each run are held outside of the Java heap. 
+ * Memory consumption of the postings is then known exactly, and <tt>indexing.singlepass.max.postings.memory</tt> defaults to half 
+ * of the maximum heap size. Default is false.</li>
+ * <li><tt>indexing.singlepass.offheap.slab.size</tt> - size of each block of memory allocated for off-heap postings. Default is 1M.</li>
  * </ul> 
  * @author Roi Blanco
  */
@@ -131,6 +140,12 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 	protected String fieldInvertedIndexPostingIteratorClass = FieldIterablePosting.class.getName();
 	/** what class should be used to read the inverted index as a stream? */
 	protected String invertedIndexInputStreamClass = org.terrier.structures.bit.BitPostingIndexInputStream.class.getName();
+	/** Number of threads applying the term pipeline, or 0 if the indexing pipeline is not used */
+	protected int pipelineThreads = 0;
+	/** Number of documents in each batch of the indexing pipeline */
+	protected int pipelineBatchSize = 64;
+	/** Memory for postings held outside of the heap, or null if postings are held on the heap */
+	OffHeapMemoryPostings.Slabs offHeapSlabs = null;
 	/**
 	 * Constructs an instance of a BasicSinglePassIndexer, using the given path name
 	 * for storing the data structures.
@@ -146,7 +161,7 @@ public class BasicSinglePassIndexer extends BasicIndexer{
         if (! (this.compressionInvertedConfig instanceof BitCompressionConfiguration ))
         {
         	throw new Error("Sorry, only default BitCompressionConfiguration is supported by " + this.getClass().getName() 
-        			+ " - you can recompress the inverted index later using IndexRecompressor");
+        			+ " - you can recompress the inverted index later using bin/terrier recompress");
         }
 	}
 
@@ -258,8 +273,21 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 		
 		long startCollection, endCollection;
 		startCollection = System.currentTimeMillis();
-		CollectionConsumer iterDocs = new CollectionConsumer(collection);
-		indexDocuments(iterDocs);
+		if (pipelineThreads > 0)
+		{
+			PipelinedCollectionConsumer iterDocs = new PipelinedCollectionConsumer(collection, this::createTokeniser, 
+				pipelineThreads, pipelineBatchSize, 4 * pipelineThreads, MAX_DOCS_PER_BUILDER, BUILDER_BOUNDARY_DOCUMENTS);
+			try{
+				indexDocuments(iterDocs);
+			} finally {
+				iterDocs.close();
+			}
+		}
+		else
+		{
+			CollectionConsumer iterDocs = new CollectionConsumer(collection);
+			indexDocuments(iterDocs);
+		}
 		endCollection = System.currentTimeMillis();
 				
 		logger.info("Collection total time "+( (endCollection-startCollection)/1000));
@@ -295,7 +323,8 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 			msg += " (posting memory threshold hit)";
 			doFlush = true;
 		}
-		if (doFlush)
+		//an empty run cannot be merged
+		if (doFlush && mp.getSize() > 0)
 		{
 			logger.info("Flush forced: " + msg);
 			forceFlush();
@@ -310,7 +339,9 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 	protected void forceFlush() throws IOException
 	{	
 		mp.finish(finishMemoryPosting());
-		System.gc();
+		//off-heap postings release their memory directly
+		if (offHeapSlabs == null)
+			System.gc();
 		createMemoryPostings();
 		memoryCheck.reset();
 		numberOfDocsSinceFlush = 0;	
@@ -445,7 +476,9 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 	 * Hook method that creates the right type of MemoryPostings class.
 	 */
 	protected void createMemoryPostings(){
-		if (useFieldInformation)
+		if (offHeapSlabs != null)
+			mp = new OffHeapMemoryPostings(offHeapSlabs, useFieldInformation, false);
+		else if (useFieldInformation)
 			mp = new FieldsMemoryPostings();
 		else
 			mp = new MemoryPostings();
@@ -461,6 +494,19 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 
 		MAX_DOCS_PER_BUILDER = UnitUtils.parseInt(ApplicationSetup.getProperty("indexing.max.docs.per.builder", "0"));
 		maxMemory = UnitUtils.parseLong(ApplicationSetup.getProperty("indexing.singlepass.max.postings.memory", "0"));
+		//threads are shared with any other indexers running in parallel
+		pipelineThreads = Integer.parseInt(ApplicationSetup.getProperty("indexing.pipeline.threads", "0"));
+		if (pipelineThreads > 0)
+			pipelineThreads = Math.max(1, pipelineThreads / externalParalllism);
+		pipelineBatchSize = Integer.parseInt(ApplicationSetup.getProperty("indexing.pipeline.batch.size", "64"));
+		if (Boolean.parseBoolean(ApplicationSetup.getProperty("indexing.singlepass.offheap.postings", "false")))
+		{
+			offHeapSlabs = new OffHeapMemoryPostings.Slabs(
+				UnitUtils.parseInt(ApplicationSetup.getProperty("indexing.singlepass.offheap.slab.size", "1M")));
+			if (maxMemory == 0)
+				maxMemory = runtime.maxMemory() / 2 / externalParalllism;
+			logger.info("Postings held off-heap, in slabs of " + offHeapSlabs.slabSize + " bytes, maximum postings memory " + maxMemory);
+		}
 
 	}
 
@@ -281,7 +281,9 @@ public class BlockSinglePassIndexer extends BasicSinglePassIndexer{
 	}
 	
 	protected void createMemoryPostings(){
-		if (useFieldInformation) 
+		if (offHeapSlabs != null)
+			mp = new OffHeapMemoryPostings(offHeapSlabs, useFieldInformation, true);
+		else if (useFieldInformation) 
 			mp = new BlockFieldMemoryPostings();
 		else 
 			mp = new BlockMemoryPostings();
@@ -0,0 +1,450 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is OffHeapMemoryPostings.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.indexing.singlepass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.terrier.structures.indexing.BlockDocumentPostingList;
+import org.terrier.structures.indexing.BlockFieldDocumentPostingList;
+import org.terrier.structures.indexing.DocumentPostingList;
+import org.terrier.structures.indexing.FieldDocumentPostingList;
+
+/**
+ * Class for handling posting lists in memory while indexing, which keeps the compressed
+ * postings outside of the Java heap. Terms are mapped to term ids using an open-addressing 
+ * hash table, and the statistics of each term are held in primitive arrays indexed by term id.
+ * The postings of each term are encoded exactly as by {@link Posting} (and its block and field 
+ * variants), into a chain of chunks allocated from large direct buffers (slabs). 
+ * As a result, {@link #getMemoryConsumption()} is the exact number of bytes allocated, and the
+ * postings of a run create no garbage for the collector. Slabs are reused by the next run.
+ * @since 5.8
+ */
+class OffHeapMemoryPostings extends MemoryPostings {
+	
+	/** A pool of direct buffers of equal size, shared by consecutive runs */
+	static class Slabs
+	{
+		final int slabSize;
+		final int slabShift;
+		final List<ByteBuffer> free = new ArrayList<>();
+		long allocated = 0;
+		
+		/** @param size the size of each slab, rounded up to a power of two */
+		Slabs(int size)
+		{
+			slabShift = 32 - Integer.numberOfLeadingZeros(Math.max(MAX_CHUNK + HEADER, size) - 1);
+			slabSize = 1 << slabShift;
+		}
+		
+		ByteBuffer acquire()
+		{
+			if (free.size() > 0)
+				return free.remove(free.size() -1);
+			allocated += slabSize;
+			return ByteBuffer.allocateDirect(slabSize);
+		}
+		
+		void release(List<ByteBuffer> slabs)
+		{
+			free.addAll(slabs);
+		}
+		
+		/** Returns the number of bytes of direct buffers allocated by this pool */
+		long getAllocatedBytes()
+		{
+			return allocated;
+		}
+	}
+	
+	/** each chunk starts with the address of the next chunk in the same chain */
+	static final int HEADER = 8;
+	/** payload size of the first chunk of a chain. Later chunks double in size. */
+	static final int MIN_CHUNK = 8;
+	/** maximum payload size of a chunk */
+	static final int MAX_CHUNK = 4096;
+	/** bytes of heap used by each term, not counting the term string */
+	static final int BYTES_PER_TERM = 7 * 4 + 3 * 8 + 2 + 8;
+	
+	final Slabs slabs;
+	final boolean fields;
+	final boolean blocks;
+	final List<ByteBuffer> used = new ArrayList<>();
+	/** offset of the next free byte in the current slab */
+	int slabPos;
+	
+	/** open-addressing hash table of term ids, -1 marks an empty slot */
+	int[] table;
+	int numTerms = 0;
+	String[] terms;
+	int[] hashes;
+	/** statistics of each term */
+	int[] df, tf, maxtf, lastDoc;
+	/** bits of each term not yet written, and their number */
+	int[] pending;
+	byte[] pendingCount;
+	/** number of bytes written for each term */
+	int[] length;
+	/** address of first chunk, last chunk and next byte to write for each term */
+	long[] head, tailChunk, tailPos;
+	/** number of chunks of each term */
+	byte[] chunks;
+	
+	/**
+	 * Creates an empty set of postings.
+	 * @param _slabs the pool from which to allocate memory
+	 * @param _fields whether field frequencies are recorded
+	 * @param _blocks whether block ids are recorded
+	 */
+	OffHeapMemoryPostings(Slabs _slabs, boolean _fields, boolean _blocks)
+	{
+		this.slabs = _slabs;
+		this.fields = _fields;
+		this.blocks = _blocks;
+		this.postings = null;
+		table = new int[1024];
+		Arrays.fill(table, -1);
+		resizeTerms(256);
+		used.add(slabs.acquire());
+		slabPos = 0;
+	}
+	
+	void resizeTerms(int capacity)
+	{
+		terms = terms == null ? new String[capacity] : Arrays.copyOf(terms, capacity);
+		hashes = grow(hashes, capacity);
+		df = grow(df, capacity);
+		tf = grow(tf, capacity);
+		maxtf = grow(maxtf, capacity);
+		lastDoc = grow(lastDoc, capacity);
+		pending = grow(pending, capacity);
+		length = grow(length, capacity);
+		pendingCount = pendingCount == null ? new byte[capacity] : Arrays.copyOf(pendingCount, capacity);
+		chunks = chunks == null ? new byte[capacity] : Arrays.copyOf(chunks, capacity);
+		head = head == null ? new long[capacity] : Arrays.copyOf(head, capacity);
+		tailChunk = tailChunk == null ? new long[capacity] : Arrays.copyOf(tailChunk, capacity);
+		tailPos = tailPos == null ? new long[capacity] : Arrays.copyOf(tailPos, capacity);
+	}
+	
+	static int[] grow(int[] array, int capacity)
+	{
+		return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+	}
+	
+	static int mix(int h)
+	{
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	/** Returns the term id of the specified term, or -1 if it does not occur in this run */
+	int getTermId(String term)
+	{
+		final int hash = term.hashCode();
+		final int mask = table.length - 1;
+		int slot = mix(hash) & mask;
+		int id;
+		while((id = table[slot]) != -1)
+		{
+			if (hashes[id] == hash && terms[id].equals(term))
+				return id;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/** Returns the term id of the specified term, adding it if necessary */
+	int getOrAddTermId(String term)
+	{
+		final int hash = term.hashCode();
+		int mask = table.length - 1;
+		int slot = mix(hash) & mask;
+		int id;
+		while((id = table[slot]) != -1)
+		{
+			if (hashes[id] == hash && terms[id].equals(term))
+				return id;
+			slot = (slot + 1) & mask;
+		}
+		id = numTerms++;
+		if (id == terms.length)
+			resizeTerms(terms.length * 2);
+		terms[id] = term;
+		hashes[id] = hash;
+		keyBytes += (long)(12 + 2*term.length());
+		if (numTerms * 2 > table.length)
+		{
+			rehash(table.length * 2);
+		}
+		else
+		{
+			table[slot] = id;
+		}
+		return id;
+	}
+	
+	void rehash(int capacity)
+	{
+		table = new int[capacity];
+		Arrays.fill(table, -1);
+		final int mask = capacity - 1;
+		for(int id=0;id<numTerms;id++)
+		{
+			int slot = mix(hashes[id]) & mask;
+			while(table[slot] != -1)
+				slot = (slot + 1) & mask;
+			table[slot] = id;
+		}
+	}
+	
+	@Override
+	public void addTerms(DocumentPostingList docPostings, int docid) throws IOException {
+		if (blocks && fields)
+		{
+			final BlockFieldDocumentPostingList dpl = (BlockFieldDocumentPostingList) docPostings;
+			for (String term : dpl.termSet())
+				add(term, docid, dpl.getFrequency(term), dpl.getFieldFrequencies(term), dpl.getBlocks(term));
+		}
+		else if (blocks)
+		{
+			final BlockDocumentPostingList dpl = (BlockDocumentPostingList) docPostings;
+			for (String term : dpl.termSet())
+				add(term, docid, dpl.getFrequency(term), null, dpl.getBlocks(term));
+		}
+		else if (fields)
+		{
+			final FieldDocumentPostingList dpl = (FieldDocumentPostingList) docPostings;
+			for (String term : dpl.termSet())
+				add(term, docid, dpl.getFrequency(term), dpl.getFieldFrequencies(term), null);
+		}
+		else
+		{
+			for (String term : docPostings.termSet())
+				add(term, docid, docPostings.getFrequency(term), null, null);
+		}
+	}
+	
+	@Override
+	public void add(String term, int doc, int frequency) throws IOException {
+		add(term, doc, frequency, null, null);
+	}
+	
+	/**
+	 * Adds an occurrence of a term in a document to the postings in memory.
+	 * @param term String representing the term.
+	 * @param doc int containing the document identifier.
+	 * @param frequency int containing the frequency of the term in the document.
+	 * @param fieldFrequencies frequency of the term in each field, or null if fields are not recorded
+	 * @param blockids block ids of the term in the document, or null if blocks are not recorded
+	 */
+	public void add(String term, int doc, int frequency, int[] fieldFrequencies, int[] blockids) {
+		final int t = getOrAddTermId(term);
+		numPointers++;
+		final boolean first = df[t] == 0;
+		writeGamma(t, first ? doc + 1 : doc - lastDoc[t]);
+		writeGamma(t, frequency);
+		df[t]++;
+		tf[t] += frequency;
+		if (frequency > maxtf[t])
+			maxtf[t] = frequency;
+		lastDoc[t] = doc;
+		//maxSize is recorded as by the corresponding on-heap postings
+		if (! first)
+		{
+			final int size = fields || blocks ? tf[t] : df[t];
+			if (size > maxSize)
+				maxSize = size;
+		}
+		if (fieldFrequencies != null)
+			for(int field_f : fieldFrequencies)
+				writeUnary(t, field_f+1);
+		if (blockids != null)
+		{
+			final int blockCount = blockids.length;
+			writeUnary(t, blockCount+1);
+			if (blockCount > 0)
+			{
+				writeGamma(t, blockids[0]+1);
+				for (int i=1; i<blockCount; i++)
+					writeGamma(t, blockids[i] - blockids[i-1]);
+			}
+		}
+	}
+	
+	/** writes the lowest len bits of the specified value, with len at most 56 */
+	final void writeBits(final int t, final long bits, final int len)
+	{
+		long acc = ((long)pending[t] << len) | (bits & ((1L << len) -1));
+		int total = pendingCount[t] + len;
+		while(total >= 8)
+		{
+			total -= 8;
+			writeByte(t, (byte)(acc >>> total));
+		}
+		pending[t] = (int)(acc & ((1 << total) -1));
+		pendingCount[t] = (byte)total;
+	}
+	
+	/** writes x in unary, as per {@link org.terrier.compression.bit.BitOut#writeUnary(int)} */
+	final void writeUnary(final int t, int x)
+	{
+		while(x > 56)
+		{
+			writeBits(t, 0, 56);
+			x -= 56;
+		}
+		writeBits(t, 1, x);
+	}
+	
+	/** writes x in Elias-Gamma, as per {@link org.terrier.compression.bit.BitOut#writeGamma(int)} */
+	final void writeGamma(final int t, final int x)
+	{
+		final int msb = 31 - Integer.numberOfLeadingZeros(x);
+		writeUnary(t, msb+1);
+		if (msb > 0)
+			writeBits(t, x, msb);
+	}
+	
+	/** writes the remaining bits of the term, padded to a byte */
+	final void pad(final int t)
+	{
+		if (pendingCount[t] > 0)
+		{
+			writeByte(t, (byte)(pending[t] << (8 - pendingCount[t])));
+			pending[t] = 0;
+			pendingCount[t] = 0;
+		}
+	}
+	
+	static int chunkCapacity(int chunk)
+	{
+		return chunk >= 9 ? MAX_CHUNK : Math.min(MIN_CHUNK << chunk, MAX_CHUNK);
+	}
+	
+	final void writeByte(final int t, final byte b)
+	{
+		long pos = tailPos[t];
+		if (length[t] == 0 || pos == tailChunk[t] + HEADER + chunkCapacity(chunks[t] -1))
+			pos = newChunk(t);
+		slab(pos).put(offset(pos), b);
+		tailPos[t] = pos + 1;
+		length[t]++;
+	}
+	
+	/** allocates the next chunk of the chain of the specified term, and returns the address of its payload */
+	long newChunk(final int t)
+	{
+		final int size = HEADER + chunkCapacity(chunks[t]);
+		if (slabPos + size > slabs.slabSize)
+		{
+			used.add(slabs.acquire());
+			slabPos = 0;
+		}
+		final long chunk = ((long)(used.size() -1) << slabs.slabShift) + slabPos;
+		slabPos += size;
+		slab(chunk).putLong(offset(chunk), 0L);
+		if (length[t] == 0)
+			head[t] = chunk;
+		else
+			slab(tailChunk[t]).putLong(offset(tailChunk[t]), chunk);
+		tailChunk[t] = chunk;
+		if (chunks[t] < Byte.MAX_VALUE)
+			chunks[t]++;
+		return chunk + HEADER;
+	}
+	
+	final ByteBuffer slab(long address)
+	{
+		return used.get((int)(address >>> slabs.slabShift));
+	}
+	
+	final int offset(long address)
+	{
+		return (int)(address & (slabs.slabSize -1));
+	}
+	
+	/** copies the postings of the specified term into the buffer, which is returned or reallocated if too small */
+	byte[] read(final int t, byte[] buffer)
+	{
+		final int len = length[t];
+		if (buffer.length < len)
+			buffer = new byte[Math.max(len, buffer.length * 2)];
+		long chunk = head[t];
+		int written = 0;
+		int chunkIndex = 0;
+		while(written < len)
+		{
+			final ByteBuffer slab = slab(chunk);
+			final int off = offset(chunk) + HEADER;
+			final int n = Math.min(chunkCapacity(chunkIndex++), len - written);
+			for(int i=0;i<n;i++)
+				buffer[written++] = slab.get(off + i);
+			chunk = slab.getLong(offset(chunk));
+		}
+		return buffer;
+	}
+	
+	@Override
+	public void finish(RunWriter runWriter) throws IOException {
+		logger.debug("Writing run "+runWriter.toString());
+		if (numTerms > 0)
+		{
+			runWriter.beginWrite(maxSize, numTerms);
+			String[] order = Arrays.copyOf(terms, numTerms);
+			//only sort the postings if required by the RunWriter
+			if (runWriter.writeSorted())
+				Arrays.sort(order);
+			byte[] buffer = new byte[1024];
+			for(String term : order)
+			{
+				final int t = getTermId(term);
+				pad(t);
+				buffer = read(t, buffer);
+				runWriter.writeTerm(term, df[t], maxtf[t], tf[t], buffer, length[t]);
+			}
+		}
+		runWriter.finishWrite();
+		//the slabs can now be reused by the next run
+		slabs.release(used);
+		used.clear();
+		logger.debug(" done");
+	}
+	
+	@Override
+	public int getSize() {
+		return numTerms;
+	}
+	
+	/** Returns the number of bytes of slabs used by this set of postings, 
+	 * and the bytes of heap used to record its terms. */
+	@Override
+	public long getMemoryConsumption() {
+		return ((long)used.size() << slabs.slabShift) 
+			+ 4l * table.length + (long)BYTES_PER_TERM * terms.length + keyBytes;
+	}
+}
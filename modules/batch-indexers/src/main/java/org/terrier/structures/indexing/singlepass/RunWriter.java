@@ -109,6 +109,26 @@ class RunWriter {
 		 * an align call is required here. */
 		bos.append(Docs.getMOS().getBuffer(), Docs.getMOS().getPos());
 	}
+	
+	/**
+	 * Writes the information for a given term, whose postings have already been 
+	 * encoded and padded to a byte boundary.
+	 * @param term the term to write.
+	 * @param df the document frequency of the term.
+	 * @param maxtf the maximum frequency of the term in any document.
+	 * @param TF the frequency of the term.
+	 * @param postings buffer containing the encoded postings of the term.
+	 * @param length number of bytes of the buffer to write.
+	 * @throws IOException if an I/O error occurs.
+	 * @since 5.8
+	 */
+	public void writeTerm(final String term, final int df, final int maxtf, final int TF, final byte[] postings, final int length) throws IOException{
+		stringDos.writeUTF(term);
+		bos.writeGamma(df);
+		bos.writeGamma(maxtf);
+		bos.writeGamma(TF);
+		bos.append(postings, length);
+	}
 		
 	/**
 	 * Closes the output streams.
@@ -0,0 +1,113 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodecCompressionConfiguration.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.integer;
+
+import java.util.Iterator;
+
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.PropertiesIndex;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
+
+/** A compression configuration that uses the integer compression layer: postings are written in 
+ * chunks of postings (128 by default), and each payload of a chunk (id gaps, frequencies, field 
+ * frequencies, positions) is compressed by a byte-aligned {@link org.terrier.compression.integer.IntegerCodec}, 
+ * such as frame-of-reference, PForDelta or variable byte codecs. The configuration is set using 
+ * the following properties:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.compression.integer.chunk.size</tt> - number of postings in each chunk. Defaults to 128.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.ids.codec</tt> - codec for the id gaps.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.tfs.codec</tt> - codec for the frequencies.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.fields.codec</tt> - codec for the field frequencies.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.blocks.codec</tt> - codec for the positions.</li>
+ * </ul>
+ * The same properties are recorded in the index properties of the written index. Codecs default to
+ * {@link IntegerCodingScheme#DEFAULT_CODEC}.
+ * This configuration is not supported by the single-pass indexers.
+ * @since 5.8
+ */
+public class IntegerCodecCompressionConfiguration extends CompressionConfiguration
+{
+	protected final IntegerCodingScheme scheme;
+	
+	public IntegerCodecCompressionConfiguration(String structureName, String[] fieldNames, int hasBlocks, int maxBlocks)
+	{
+		super(structureName, fieldNames, hasBlocks, maxBlocks);
+		final String prefix = "index." + structureName + ".compression.integer.";
+		this.scheme = new IntegerCodingScheme(
+			Integer.parseInt(ApplicationSetup.getProperty(prefix + "chunk.size", String.valueOf(IntegerCodingScheme.DEFAULT_CHUNK_SIZE))),
+			fieldNames.length, 
+			hasBlocks > 0,
+			ApplicationSetup.getProperty(prefix + "ids.codec", IntegerCodingScheme.DEFAULT_CODEC),
+			ApplicationSetup.getProperty(prefix + "tfs.codec", IntegerCodingScheme.DEFAULT_CODEC),
+			ApplicationSetup.getProperty(prefix + "fields.codec", IntegerCodingScheme.DEFAULT_CODEC),
+			ApplicationSetup.getProperty(prefix + "blocks.codec", IntegerCodingScheme.DEFAULT_CODEC));
+	}
+	
+	@Override
+	public AbstractPostingOutputStream getPostingOutputStream(String filename) {
+		try{
+			return new IntegerCodingPostingOutputStream(filename, scheme);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Override
+	public Class<? extends IterablePosting> getPostingIteratorClass() {
+		return scheme.getPostingIteratorClass();
+	}
+
+	@Override
+	public Class<? extends PostingIndex<?>> getStructureClass() {
+		return IntegerCodingPostingIndex.class;
+	}
+
+	@Override
+	public Class<? extends Iterator<IterablePosting>> getStructureInputStreamClass() {
+		return IntegerCodingPostingIndexInputStream.class;
+	}
+
+	@Override
+	public String getStructureFileExtension() {
+		return IntegerCodingPostingIndex.USUAL_EXTENSION;
+	}
+	
+	@Override
+	public void writeIndexProperties(PropertiesIndex index, String pointerSourceStream)
+	{
+		super.writeIndexProperties(index, pointerSourceStream);
+		final String prefix = "index." + structureName + ".compression.integer.";
+		final String[] codecs = scheme.getCodecNames();
+		index.setIndexProperty(prefix + "chunk.size", String.valueOf(scheme.getChunkSize()));
+		index.setIndexProperty(prefix + "ids.codec", codecs[0]);
+		index.setIndexProperty(prefix + "tfs.codec", codecs[1]);
+		index.setIndexProperty(prefix + "fields.codec", codecs[2]);
+		index.setIndexProperty(prefix + "blocks.codec", codecs[3]);
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodingPostingOutputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.integer;
+
+import gnu.trove.TIntArrayList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.integer.ByteOut;
+import org.terrier.compression.integer.ByteOutputStream;
+import org.terrier.compression.integer.IntegerCodec;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.BitFilePosition;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.FilePosition;
+import org.terrier.structures.SimpleBitIndexPointer;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.Posting;
+
+/** Writes posting lists compressed by the integer compression layer, in the format described in 
+ * {@link org.terrier.structures.postings.integer.BasicIntegerCodingIterablePosting}.
+ * The postings of each list are divided into chunks of a fixed number of postings, and 
+ * each payload of a chunk is compressed by the {@link IntegerCodec} given by the {@link IntegerCodingScheme}.
+ * As the compressed length of each chunk is written at the start of the list, each posting 
+ * list is buffered in memory before being written out.
+ * <p>
+ * Each posting list must be written by a single call to writePostings(), as the lists of 
+ * two calls cannot be concatenated.
+ * @since 5.8
+ */
+public class IntegerCodingPostingOutputStream extends AbstractPostingOutputStream implements Closeable {
+	/** The logger used */
+	protected static final Logger logger = LoggerFactory.getLogger(IntegerCodingPostingOutputStream.class);
+	
+	/** a ByteArrayOutputStream that gives access to its buffer */
+	static final class Buffer extends ByteArrayOutputStream
+	{
+		Buffer() { super(64 * 1024); }
+		byte[] getBuffer() { return buf; }
+	}
+	
+	/** what to write to */
+	protected final ByteOut output;
+	protected final IntegerCodingScheme scheme;
+	protected final int chunkSize;
+	protected final int fieldCount;
+	protected final boolean blocks;
+	protected final IntegerCodec idsCodec;
+	protected final IntegerCodec tfsCodec;
+	protected final IntegerCodec fieldsCodec;
+	protected final IntegerCodec blocksCodec;
+	
+	/** compressed chunks of the current posting list */
+	protected final Buffer listBuffer = new Buffer();
+	protected final ByteOutputStream listOutput = new ByteOutputStream(listBuffer);
+	protected final TIntArrayList chunkLastIds = new TIntArrayList();
+	protected final TIntArrayList chunkMaxFrequencies = new TIntArrayList();
+	protected final TIntArrayList chunkBytes = new TIntArrayList();
+	
+	/** uncompressed payloads of the current chunk */
+	protected final int[] ids;
+	protected final int[] tfs;
+	protected final int[][] fieldTfs;
+	protected final int[] positionCounts;
+	protected int[] positions;
+	/** number of positions in the current chunk */
+	protected int positionTotal = 0;
+	
+	protected int lastDocid;
+	
+	/** Creates a new output stream, writing to the specified file.
+	 * @param filename Location of the file to write to
+	 * @param _scheme how to compress the postings
+	 */
+	public IntegerCodingPostingOutputStream(String filename, IntegerCodingScheme _scheme) throws IOException
+	{
+		this(new ByteOutputStream(filename), _scheme);
+	}
+	
+	/** Creates a new output stream, writing to the specified ByteOut implementation.
+	 * @param out ByteOut implementation to write the file to
+	 * @param _scheme how to compress the postings
+	 */
+	public IntegerCodingPostingOutputStream(ByteOut out, IntegerCodingScheme _scheme)
+	{
+		this.output = out;
+		this.scheme = _scheme;
+		this.chunkSize = _scheme.getChunkSize();
+		this.fieldCount = _scheme.getFieldCount();
+		this.blocks = _scheme.hasBlocks();
+		this.idsCodec = _scheme.newIdsCodec();
+		this.tfsCodec = _scheme.newTfsCodec();
+		this.fieldsCodec = fieldCount > 0 ? _scheme.newFieldsCodec() : null;
+		this.blocksCodec = blocks ? _scheme.newBlocksCodec() : null;
+		ids = new int[chunkSize];
+		tfs = new int[chunkSize];
+		fieldTfs = new int[fieldCount][chunkSize];
+		positionCounts = blocks ? new int[chunkSize] : null;
+		positions = blocks ? new int[chunkSize] : null;
+	}
+	
+	/** Returns the IterablePosting class to use for reading structure written by this class */
+	@Override
+	public Class<? extends IterablePosting> getPostingIteratorClass()
+	{
+		return scheme.getPostingIteratorClass();
+	}
+	
+	/** Write out the specified postings.
+	 * @param iterator an Iterator of Posting objects
+	 */
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator) throws IOException
+	{
+		return writePostings(iterator, -1);
+	}
+	
+	/** Write out the specified postings.
+	 * @param postings IterablePosting postings accessed through an IterablePosting object
+	 */
+	@Override
+	public BitIndexPointer writePostings(IterablePosting postings) throws IOException
+	{
+		return writePostings(postings, -1);
+	}
+	
+	/** Write out the specified postings, but allowing the delta for the first document to be adjusted
+	 * @param postings IterablePosting postings accessed through an IterablePosting object
+	 * @param previousId id of the previous posting in this stream
+	 */
+	@Override
+	public BitIndexPointer writePostings(IterablePosting postings, int previousId) throws IOException
+	{
+		final long startOffset = startList();
+		int numberOfEntries = 0;
+		int n = 0;
+		while(postings.next() != IterablePosting.EOL)
+		{
+			addPosting(postings, n++);
+			numberOfEntries++;
+			if (n == chunkSize)
+			{
+				previousId = writeChunk(n, previousId);
+				n = 0;
+			}
+		}
+		if (n > 0)
+			previousId = writeChunk(n, previousId);
+		return endList(startOffset, numberOfEntries);
+	}
+	
+	/** Write out the specified postings, but allowing the delta for the first document to be adjusted
+	 * @param iterator an Iterator of Posting objects
+	 * @param previousId id of the previous posting in this stream
+	 */
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator, int previousId) throws IOException
+	{
+		final long startOffset = startList();
+		int numberOfEntries = 0;
+		int n = 0;
+		while(iterator.hasNext())
+		{
+			addPosting(iterator.next(), n++);
+			numberOfEntries++;
+			if (n == chunkSize)
+			{
+				previousId = writeChunk(n, previousId);
+				n = 0;
+			}
+		}
+		if (n > 0)
+			previousId = writeChunk(n, previousId);
+		return endList(startOffset, numberOfEntries);
+	}
+	
+	protected long startList()
+	{
+		listBuffer.reset();
+		chunkLastIds.clear();
+		chunkMaxFrequencies.clear();
+		chunkBytes.clear();
+		positionTotal = 0;
+		return output.getByteOffset();
+	}
+	
+	/** Records the specified posting as the i-th posting of the current chunk */
+	protected void addPosting(Posting p, int i)
+	{
+		ids[i] = p.getId();
+		tfs[i] = p.getFrequency();
+		if (fieldCount > 0)
+		{
+			final int[] ff = ((FieldPosting)p).getFieldFrequencies();
+			for(int f=0;f<fieldCount;f++)
+				fieldTfs[f][i] = ff[f];
+		}
+		if (blocks)
+		{
+			final int[] pos = ((BlockPosting)p).getPositions();
+			positionCounts[i] = pos.length;
+			final int total = positionTotal;
+			if (positions.length < total + pos.length)
+			{
+				int[] newPositions = new int[Math.max(total + pos.length, 2 * positions.length)];
+				System.arraycopy(positions, 0, newPositions, 0, total);
+				positions = newPositions;
+			}
+			//positions are delta encoded within each posting
+			int last = 0;
+			for(int j=0;j<pos.length;j++)
+			{
+				positions[total+j] = pos[j] - last;
+				last = pos[j];
+			}
+			positionTotal += pos.length;
+		}
+	}
+	
+	/** Compresses the first n postings of the current chunk, returns the last id */
+	protected int writeChunk(int n, int previousId) throws IOException
+	{
+		final long start = listOutput.getByteOffset();
+		final int lastId = ids[n-1];
+		int maxTf = 0;
+		for(int i=0;i<n;i++)
+			if (tfs[i] > maxTf)
+				maxTf = tfs[i];
+		
+		chunkLastIds.add(lastId - previousId);
+		chunkMaxFrequencies.add(maxTf);
+		for(int i=n-1;i>0;i--)
+			ids[i] -= ids[i-1];
+		ids[0] -= previousId;
+		idsCodec.compress(ids, n, listOutput);
+		tfsCodec.compress(tfs, n, listOutput);
+		for(int f=0;f<fieldCount;f++)
+			fieldsCodec.compress(fieldTfs[f], n, listOutput);
+		if (blocks)
+		{
+			blocksCodec.compress(positionCounts, n, listOutput);
+			blocksCodec.compress(positions, positionTotal, listOutput);
+			positionTotal = 0;
+		}
+		chunkBytes.add((int)(listOutput.getByteOffset() - start));
+		return lastDocid = lastId;
+	}
+	
+	/** Returns false, as the chunk headers of a posting list are written before its chunks */
+	@Override
+	public boolean canAppendPostings() {
+		return false;
+	}
+	
+	/** Writes the chunk headers and the compressed chunks of the current list */
+	protected BitIndexPointer endList(long startOffset, int numberOfEntries) throws IOException
+	{
+		BitIndexPointer pointer = new SimpleBitIndexPointer(startOffset, (byte)0, numberOfEntries);
+		final int numChunks = chunkLastIds.size();
+		for(int c=0;c<numChunks;c++)
+		{
+			output.writeVInt(chunkLastIds.get(c));
+			output.writeVInt(chunkMaxFrequencies.get(c));
+			output.writeVInt(chunkBytes.get(c));
+		}
+		output.write(listBuffer.getBuffer(), 0, listBuffer.size());
+		return pointer;
+	}
+	
+	/** Not supported, as the postings in the arrays are not delta encoded from the 
+	 * default previous id. Use {@link #writePostings(IterablePosting)} instead. */
+	@Override
+	public BitIndexPointer writePostings(int[][] postings, int startOffset, int length, int firstId) throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	/** close this object. suppresses any exception */
+	@Override
+	public void close()
+	{
+		try{ 
+			output.close();
+		} catch (IOException ioe) {
+			logger.error("Problem closing IntegerCodingPostingOutputStream", ioe);
+		}
+	}
+	
+	/** What is current offset? */
+	@Override
+	public BitFilePosition getOffset()
+	{
+		return new FilePosition(output.getByteOffset(), (byte)0);
+	}
+	
+	@Override
+	public int getLastDocidWritten() {
+		return lastDocid;
+	}
+}
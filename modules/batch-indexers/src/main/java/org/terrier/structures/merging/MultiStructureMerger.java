@@ -0,0 +1,722 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MultiStructureMerger.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.merging;
+
+import gnu.trove.TIntIntHashMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.BasicDocumentIndexEntry;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.DocumentIndexEntry;
+import org.terrier.structures.FSOMapFileLexicon;
+import org.terrier.structures.FSOMapFileLexiconOutputStream;
+import org.terrier.structures.FieldDocumentIndexEntry;
+import org.terrier.structures.FieldLexiconEntry;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.LexiconOutputStream;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.PostingIndexInputStream;
+import org.terrier.structures.SimpleBitIndexPointer;
+import org.terrier.structures.SimpleDocumentIndexEntry;
+import org.terrier.structures.collections.FSOrderedMapFile;
+import org.terrier.structures.indexing.CompressionFactory;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.indexing.DocumentIndexBuilder;
+import org.terrier.structures.indexing.LexiconBuilder;
+import org.terrier.structures.indexing.MetaIndexBuilder;
+import org.terrier.structures.indexing.ZstdMetaIndexBuilder;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.Posting;
+import org.terrier.structures.postings.PostingIdComparator;
+import org.terrier.structures.seralization.FixedSizeWriteableFactory;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.ArrayUtils;
+import org.terrier.utility.Files;
+
+/**
+ * Merges any number of indices into one, in a single pass over their structures. 
+ * Unlike repeatedly applying {@link StructureMerger} to pairs of indices, each posting
+ * is read and written only once. The lexicons of the source indices are merged using a heap,
+ * and the postings of each term are concatenated in the order of the source indices,
+ * with the docids of each source increased by the number of documents in the preceding 
+ * sources. Positions (blocks) and fields are retained if the source indices have them.
+ * <p>
+ * The terms can be split into several lexicographical ranges (shards), which are merged 
+ * concurrently. Each shard writes its postings to a separate inverted data file, as 
+ * recorded by the <tt>index.inverted.data-files</tt> property. The document and meta 
+ * indices are merged concurrently with the shards. If all source indices have a direct 
+ * index, it is merged once the inverted index is complete, as its termids must be rewritten.
+ * <p>
+ * <b>Properties:</b>
+ * <ul>
+ * <li><tt>merge.direct</tt> - merge the direct indices if all indices have them. Set to <tt>true</tt> by default.</li>
+ * <li><tt>merger.meta.reverse</tt> - build reverse lookups for the meta index, as per the source indices. Set to <tt>true</tt> by default.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class MultiStructureMerger {
+	
+	/** the logger used */
+	protected static final Logger logger = LoggerFactory.getLogger(MultiStructureMerger.class);
+	
+	/** The maximum number of shards, as limited by the bits available for the file number 
+	 * of a {@link BitIndexPointer}. */
+	public static final int MAX_SHARDS = 32;
+	
+	/** source indices */
+	protected final IndexOnDisk[] srcIndices;
+	/** destination index */
+	protected final IndexOnDisk destIndex;
+	/** the docid of the first document of each source index in the destination index */
+	protected final int[] docidOffsets;
+	/** The number of documents in the merged structures. */
+	protected int numberOfDocuments;
+	/** The number of lexicographical ranges of terms that are merged concurrently */
+	protected int shards = 1;
+	
+	protected CompressionConfiguration compressionDirectConfig;
+	protected CompressionConfiguration compressionInvertedConfig;
+	
+	protected boolean MetaReverse = Boolean.parseBoolean(ApplicationSetup.getProperty("merger.meta.reverse", "true"));
+	
+	protected final int fieldCount;
+	
+	/** for each source index, maps its termids to the termids of the destination index.
+	 * Only kept when the direct indices are being merged. */
+	protected TIntIntHashMap[] termcodeHashmaps = null;
+	
+	/**
+	 * constructor
+	 * @param _srcIndices indices to merge, in order of docid
+	 * @param _destIndex index to write to. This index should have no documents
+	 */
+	public MultiStructureMerger(IndexOnDisk[] _srcIndices, IndexOnDisk _destIndex)
+	{
+		if (_srcIndices.length == 0)
+			throw new IllegalArgumentException("No source indices to merge");
+		this.srcIndices = _srcIndices;
+		this.destIndex = _destIndex;
+		this.docidOffsets = new int[srcIndices.length];
+		
+		fieldCount = srcIndices[0].getIntIndexProperty("index.inverted.fields.count", 0);
+		for(IndexOnDisk src : srcIndices)
+		{
+			if (src.getIntIndexProperty("index.inverted.fields.count", 0) != fieldCount)
+			{
+				throw new Error("FieldCounts in source indices must match");
+			}
+		}
+		String[] fieldNames = ArrayUtils.parseCommaDelimitedString(srcIndices[0].getIndexProperty("index.inverted.fields.names", ""));
+		assert fieldCount == fieldNames.length;
+		compressionDirectConfig = CompressionFactory.getCompressionConfiguration("direct", fieldNames, 
+				srcIndices[0].getIntIndexProperty("index.direct.blocks", 0),
+				srcIndices[0].getIntIndexProperty("index.direct.blocks.max", ApplicationSetup.MAX_BLOCKS));
+		compressionInvertedConfig = CompressionFactory.getCompressionConfiguration("inverted", fieldNames, 
+				srcIndices[0].getIntIndexProperty("index.inverted.blocks", 0),
+				srcIndices[0].getIntIndexProperty("index.inverted.blocks.max", ApplicationSetup.MAX_BLOCKS));
+	}
+	
+	/** Sets the number of lexicographical ranges of terms to merge concurrently, 
+	 * between 1 and {@link #MAX_SHARDS}. Defaults to 1. */
+	public void setShards(int _shards)
+	{
+		this.shards = Math.max(1, Math.min(MAX_SHARDS, _shards));
+	}
+	
+	public void setReverseMeta(boolean value)
+	{
+		this.MetaReverse = value;
+	}
+	
+	/** Orders cursors by their current term, and then by source index, such that
+	 * the postings of a term are obtained in docid order. */
+	static final Comparator<LexiconCursor> CURSOR_COMPARATOR = new Comparator<LexiconCursor>() {
+		@Override
+		public int compare(LexiconCursor o1, LexiconCursor o2) {
+			int c = o1.term.compareTo(o2.term);
+			return c != 0 ? c : Integer.compare(o1.source, o2.source);
+		}
+	};
+	
+	/** Reads a range of entries from the lexicon of one source index */
+	static class LexiconCursor implements java.io.Closeable
+	{
+		final int source;
+		final FSOrderedMapFile.EntryIterator<Text,LexiconEntry> iterator;
+		int remaining;
+		String term;
+		LexiconEntry entry;
+		
+		LexiconCursor(int _source, IndexOnDisk index, int start, int end) throws IOException
+		{
+			source = _source;
+			iterator = new FSOrderedMapFile.EntryIterator<Text,LexiconEntry>(
+					FSOMapFileLexicon.constructFilename("lexicon", index.getPath(), index.getPrefix(), FSOMapFileLexicon.MAPFILE_EXT), 
+					getKeyFactory(index), getValueFactory(index));
+			iterator.skip(start);
+			remaining = end - start;
+		}
+		
+		/** moves to the next entry, returns false if there is none */
+		boolean advance()
+		{
+			if (remaining-- <= 0)
+			{
+				term = null;
+				entry = null;
+				return false;
+			}
+			Map.Entry<Text,LexiconEntry> e = iterator.next();
+			term = e.getKey().toString();
+			entry = e.getValue();
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			iterator.close();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	static FixedSizeWriteableFactory<Text> getKeyFactory(IndexOnDisk index)
+	{
+		return (FixedSizeWriteableFactory<Text>) index.getIndexStructure("lexicon-keyfactory");
+	}
+	
+	@SuppressWarnings("unchecked")
+	static FixedSizeWriteableFactory<LexiconEntry> getValueFactory(IndexOnDisk index)
+	{
+		return (FixedSizeWriteableFactory<LexiconEntry>) index.getIndexStructure("lexicon-valuefactory");
+	}
+	
+	/** Returns the position of the first entry of the lexicon that is not less than the specified term */
+	static int findLexiconPosition(Lexicon<String> lexicon, String term)
+	{
+		int low = 0;
+		int high = lexicon.numberOfEntries();
+		while(low < high)
+		{
+			final int mid = (low + high) >>> 1;
+			if (lexicon.getIthLexiconEntry(mid).getKey().compareTo(term) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	
+	/** Returns the first term of each shard after the first, taken at equal intervals from the
+	 * largest lexicon among the source indices. Fewer shards are used if there are few terms. */
+	protected String[] getShardBoundaries(Lexicon<String>[] lexicons)
+	{
+		int largest = 0;
+		for(int i=1;i<lexicons.length;i++)
+			if (lexicons[i].numberOfEntries() > lexicons[largest].numberOfEntries())
+				largest = i;
+		final int numTerms = lexicons[largest].numberOfEntries();
+		List<String> boundaries = new ArrayList<>();
+		for(int s=1;s<shards;s++)
+		{
+			final int position = (int) ((long)s * numTerms / shards);
+			if (position == 0)
+				continue;
+			String term = lexicons[largest].getIthLexiconEntry(position).getKey();
+			if (boundaries.size() == 0 || ! boundaries.get(boundaries.size()-1).equals(term))
+				boundaries.add(term);
+		}
+		return boundaries.toArray(new String[0]);
+	}
+	
+	/** Merges the terms of one shard, writing its postings and lexicon entries. */
+	class ShardMerger implements Callable<Integer>
+	{
+		final int shard;
+		final LexiconCursor[] cursors;
+		final PostingIndex<Pointer>[] invertedIndices;
+		final AbstractPostingOutputStream invOS;
+		final LexiconOutputStream<String> lexOS;
+		final TIntIntHashMap[] termMaps;
+		
+		ShardMerger(int _shard, LexiconCursor[] _cursors, PostingIndex<Pointer>[] _invertedIndices, 
+				AbstractPostingOutputStream _invOS, LexiconOutputStream<String> _lexOS, boolean keepTermCodeMap)
+		{
+			shard = _shard;
+			cursors = _cursors;
+			invertedIndices = _invertedIndices;
+			invOS = _invOS;
+			lexOS = _lexOS;
+			if (keepTermCodeMap)
+			{
+				termMaps = new TIntIntHashMap[cursors.length];
+				for(int i=0;i<cursors.length;i++)
+					termMaps[i] = new TIntIntHashMap();
+			} else {
+				termMaps = null;
+			}
+		}
+		
+		/** returns the number of terms written by this shard */
+		@Override
+		public Integer call() throws Exception
+		{
+			final PriorityQueue<LexiconCursor> heap = new PriorityQueue<>(cursors.length, CURSOR_COMPARATOR);
+			for(LexiconCursor c : cursors)
+				if (c.advance())
+					heap.add(c);
+			final List<LexiconCursor> current = new ArrayList<>(cursors.length);
+			int termId = 0;
+			while(heap.size() > 0)
+			{
+				current.clear();
+				current.add(heap.poll());
+				final String term = current.get(0).term;
+				while(heap.size() > 0 && heap.peek().term.equals(term))
+					current.add(heap.poll());
+				
+				//postings are opened before the statistics of the first entry are updated
+				final IterablePosting[] ips = invOS != null ? new IterablePosting[current.size()] : null;
+				final int[] offsets = new int[current.size()];
+				for(int i=0;invOS != null && i<ips.length;i++)
+				{
+					final LexiconCursor c = current.get(i);
+					ips[i] = invertedIndices[c.source].getPostings(c.entry);
+					offsets[i] = docidOffsets[c.source];
+				}
+				final LexiconEntry le = current.get(0).entry;
+				for(int i=0;i<current.size();i++)
+				{
+					final LexiconCursor c = current.get(i);
+					if (termMaps != null)
+						termMaps[c.source].put(c.entry.getTermId(), termId);
+					if (i > 0)
+						le.add(c.entry);
+				}
+				if (invOS != null)
+				{
+					//postings of each source are concatenated in source order, i.e. in docid order
+					final BitIndexPointer newPointer = writePostings(invOS, ips, offsets);
+					for(IterablePosting ip : ips)
+						ip.close();
+					le.setPointer(newPointer);
+					((BitIndexPointer)le).setFileNumber((byte)shard);
+				}
+				le.setTermId(termId++);
+				lexOS.writeNextEntry(term, le);
+				
+				for(LexiconCursor c : current)
+					if (c.advance())
+						heap.add(c);
+			}
+			return termId;
+		}
+		
+		/** Writes the postings of each source as a single posting list. Where the output format
+		 * allows, the postings of each source are streamed as a continuation of the list; 
+		 * otherwise, they are written through a single iterator. */
+		BitIndexPointer writePostings(final AbstractPostingOutputStream invOS, 
+				final IterablePosting[] ips, final int[] offsets) throws IOException
+		{
+			if (! invOS.canAppendPostings())
+				return invOS.writePostings(StructureMerger.concatenate(ips, offsets));
+			BitIndexPointer newPointer = null;
+			int numberOfEntries = 0;
+			//the last id written, after applying the offset of its source
+			int lastId = -1;
+			for(int i=0;i<ips.length;i++)
+			{
+				final BitIndexPointer p = invOS.writePostings(ips[i], lastId - offsets[i]);
+				if (newPointer == null)
+					newPointer = p;
+				if (p.getNumberOfEntries() > 0)
+					lastId = invOS.getLastDocidWritten() + offsets[i];
+				numberOfEntries += p.getNumberOfEntries();
+			}
+			newPointer.setNumberOfEntries(numberOfEntries);
+			return newPointer;
+		}
+	}
+	
+	/**
+	 * Merges the lexicons and, if present, the inverted indices of the source indices.
+	 * @param inverted whether the inverted indices should be merged, or only the lexicons
+	 * @param keepTermCodeMap whether to record the termid mapping needed to merge the direct indices
+	 * @param pool executor used to merge the shards
+	 * @param concurrentTask a task to run alongside the shards once all structures have been opened, or null
+	 */
+	@SuppressWarnings("unchecked")
+	protected void mergeLexiconsAndInvertedFiles(boolean inverted, boolean keepTermCodeMap, ExecutorService pool, Callable<Void> concurrentTask) throws IOException
+	{
+		final int numSources = srcIndices.length;
+		for(String property : new String[] {"index.inverted.fields.names", "max.term.length", "index.lexicon-keyfactory.class", "index.lexicon-keyfactory.parameter_values",
+				"index.lexicon-keyfactory.parameter_types", "index.lexicon-valuefactory.class", "index.lexicon-valuefactory.parameter_values",
+				"index.lexicon-valuefactory.parameter_types", "termpipelines"} )
+		{
+			//not all properties are recorded by all indices, e.g. those written by a MemoryIndex
+			final String value = srcIndices[0].getIndexProperty(property, null);
+			if (value != null)
+				destIndex.setIndexProperty(property, value);
+		}
+		final FixedSizeWriteableFactory<LexiconEntry> lvf = getValueFactory(srcIndices[0]);
+		final FixedSizeWriteableFactory<Text> keyFactory = getKeyFactory(destIndex);
+		
+		//find the range of each source lexicon covered by each shard
+		final Lexicon<String>[] lexicons = new Lexicon[numSources];
+		for(int j=0;j<numSources;j++)
+			lexicons[j] = srcIndices[j].getLexicon();
+		final String[] boundaries = getShardBoundaries(lexicons);
+		final int numShards = boundaries.length + 1;
+		final int[][] ranges = new int[numSources][numShards+1];
+		for(int j=0;j<numSources;j++)
+		{
+			for(int s=1;s<numShards;s++)
+				ranges[j][s] = findLexiconPosition(lexicons[j], boundaries[s-1]);
+			ranges[j][numShards] = lexicons[j].numberOfEntries();
+		}
+		logger.info("Merging " + numSources + " indices using " + numShards + " shard(s)");
+		
+		//structures used by each shard are opened here, as loading index structures is not thread-safe.
+		//each shard obtains its own instance of each inverted index, so that its reads are not shared.
+		if (inverted)
+			for(int j=0;j<numSources;j++)
+				IndexUtil.forceStructure(srcIndices[j], "document", 
+					new StructureMerger.NullDocumentIndex(srcIndices[j].getCollectionStatistics().getNumberOfDocuments()));
+		final String invertedFilename = destIndex.getPath() + ApplicationSetup.FILE_SEPARATOR 
+				+ destIndex.getPrefix() + ".inverted" + compressionInvertedConfig.getStructureFileExtension();
+		final List<ShardMerger> shardMergers = new ArrayList<>();
+		final List<Future<Integer>> shardResults = new ArrayList<>();
+		for(int s=0;s<numShards;s++)
+		{
+			final LexiconCursor[] cursors = new LexiconCursor[numSources];
+			final PostingIndex<Pointer>[] invertedIndices = new PostingIndex[numSources];
+			for(int j=0;j<numSources;j++)
+			{
+				cursors[j] = new LexiconCursor(j, srcIndices[j], ranges[j][s], ranges[j][s+1]);
+				if (inverted)
+				{
+					IndexUtil.forceReloadStructure(srcIndices[j], "inverted");
+					invertedIndices[j] = (PostingIndex<Pointer>) srcIndices[j].getInvertedIndex();
+				}
+			}
+			final AbstractPostingOutputStream invOS = inverted 
+				? compressionInvertedConfig.getPostingOutputStream(numShards == 1 ? invertedFilename : invertedFilename + String.valueOf(s))
+				: null;
+			final LexiconOutputStream<String> lexOS = numShards == 1
+				? new FSOMapFileLexiconOutputStream(destIndex, "lexicon", (Class<FixedSizeWriteableFactory<LexiconEntry>>) lvf.getClass())
+				: new FSOMapFileLexiconOutputStream(destIndex.getPath(), destIndex.getPrefix(), "lexicon-shard" + s, keyFactory);
+			ShardMerger sm = new ShardMerger(s, cursors, invertedIndices, invOS, lexOS, keepTermCodeMap);
+			shardMergers.add(sm);
+			shardResults.add(pool.submit(sm));
+		}
+		final Future<Void> concurrentResult = concurrentTask != null ? pool.submit(concurrentTask) : null;
+		
+		final int[] shardTermIdOffsets = new int[numShards+1];
+		try{
+			for(int s=0;s<numShards;s++)
+				shardTermIdOffsets[s+1] = shardTermIdOffsets[s] + waitFor(shardResults.get(s));
+			if (concurrentResult != null)
+				waitFor(concurrentResult);
+		} finally {
+			for(ShardMerger sm : shardMergers)
+			{
+				for(LexiconCursor c : sm.cursors)
+					c.close();
+				if (inverted)
+				{
+					for(PostingIndex<Pointer> p : sm.invertedIndices)
+						p.close();
+					sm.invOS.close();
+				}
+				sm.lexOS.close();
+			}
+		}
+		
+		if (numShards > 1)
+		{
+			//concatenate the lexicon of each shard, renumbering the termids
+			final LexiconOutputStream<String> lexOS = new FSOMapFileLexiconOutputStream(destIndex, "lexicon", (Class<FixedSizeWriteableFactory<LexiconEntry>>) lvf.getClass());
+			for(int s=0;s<numShards;s++)
+			{
+				final String shardFilename = FSOMapFileLexicon.constructFilename("lexicon-shard" + s, destIndex.getPath(), destIndex.getPrefix(), FSOMapFileLexicon.MAPFILE_EXT);
+				final FSOrderedMapFile.EntryIterator<Text,LexiconEntry> iter = new FSOrderedMapFile.EntryIterator<Text,LexiconEntry>(shardFilename, keyFactory, lvf);
+				while(iter.hasNext())
+				{
+					Map.Entry<Text,LexiconEntry> e = iter.next();
+					e.getValue().setTermId(e.getValue().getTermId() + shardTermIdOffsets[s]);
+					lexOS.writeNextEntry(e.getKey().toString(), e.getValue());
+				}
+				iter.close();
+				Files.delete(shardFilename);
+			}
+			lexOS.close();
+		}
+		
+		if (keepTermCodeMap)
+		{
+			termcodeHashmaps = new TIntIntHashMap[numSources];
+			for(int j=0;j<numSources;j++)
+			{
+				termcodeHashmaps[j] = new TIntIntHashMap();
+				for(int s=0;s<numShards;s++)
+				{
+					final TIntIntHashMap shardMap = shardMergers.get(s).termMaps[j];
+					final int offset = shardTermIdOffsets[s];
+					for(int oldTermId : shardMap.keys())
+						termcodeHashmaps[j].put(oldTermId, shardMap.get(oldTermId) + offset);
+				}
+			}
+		}
+		
+		if (inverted)
+		{
+			destIndex.addIndexStructure(
+					"inverted",
+					compressionInvertedConfig.getStructureClass().getName(),
+					"org.terrier.structures.IndexOnDisk,java.lang.String,org.terrier.structures.DocumentIndex,java.lang.Class", 
+					"index,structureName,document,"+ 
+					compressionInvertedConfig.getPostingIteratorClass().getName() );
+			destIndex.addIndexStructureInputStream(
+					"inverted",
+					compressionInvertedConfig.getStructureInputStreamClass().getName(),
+					"org.terrier.structures.IndexOnDisk,java.lang.String,java.util.Iterator,java.lang.Class",
+					"index,structureName,lexicon-entry-inputstream,"+
+					compressionInvertedConfig.getPostingIteratorClass().getName());
+			destIndex.setIndexProperty("index.inverted.fields.count", ""+fieldCount);
+			destIndex.setIndexProperty("index.inverted.data-files", ""+numShards);
+			matchBlockProperties("inverted");
+		}
+		if (fieldCount > 0)
+		{
+			destIndex.addIndexStructure("lexicon-valuefactory", FieldLexiconEntry.Factory.class.getName(), "java.lang.String", "${index.inverted.fields.count}");
+		}
+		destIndex.setIndexProperty("num.Documents", ""+numberOfDocuments);
+		destIndex.flush();
+	}
+	
+	/** Copies the blocks configuration of the named structure from the first source index */
+	protected void matchBlockProperties(String structureName)
+	{
+		final String blocks = srcIndices[0].getIndexProperty("index."+structureName+".blocks", "0");
+		final String maxBlocks = srcIndices[0].getIndexProperty("index."+structureName+".blocks.max", String.valueOf(ApplicationSetup.MAX_BLOCKS));
+		for(IndexOnDisk src : srcIndices)
+		{
+			if (! src.getIndexProperty("index."+structureName+".blocks", "0").equals(blocks))
+				logger.warn("Blocks indexing configuration mismatch in merged indices: index."+structureName+".blocks differs in " + src.toString());
+		}
+		destIndex.setIndexProperty("index."+structureName+".blocks", blocks);
+		destIndex.setIndexProperty("index."+structureName+".blocks.max", maxBlocks);
+	}
+	
+	/** Merges the document indices and meta indices of the source indices and, if 
+	 * requested, their direct indices, rewriting the termids of the latter. */
+	@SuppressWarnings("unchecked")
+	protected void mergeDocuments(boolean direct) throws IOException
+	{
+		final DocumentIndexBuilder docidOutput = new DocumentIndexBuilder(destIndex, "document");
+		final String metaKeys = srcIndices[0].getIndexProperty("index.meta.key-names", "docno");
+		final String[] metaTags = ArrayUtils.parseCommaDelimitedString(metaKeys);
+		final int[] metaTagLengths = ArrayUtils.parseCommaDelimitedInts(srcIndices[0].getIndexProperty("index.meta.value-lengths", "20"));
+		final String[] metaReverseTags = MetaReverse
+			? ArrayUtils.parseCommaDelimitedString(srcIndices[0].getIndexProperty("index.meta.reverse-key-names", ""))
+			: new String[0];
+		for(IndexOnDisk src : srcIndices)
+		{
+			if (! src.getIndexProperty("index.meta.key-names", "docno").equals(metaKeys))
+				throw new Error("Meta fields in source indices must match");
+		}
+		final String metaBuilderName = ApplicationSetup.getProperty("indexer.meta.builder", ZstdMetaIndexBuilder.class.getName());
+		final MetaIndexBuilder metaBuilder = MetaIndexBuilder.create(metaBuilderName, destIndex, metaTags, metaTagLengths, metaReverseTags);
+		
+		int docFieldCount = srcIndices[0].getIntIndexProperty(direct ? "index.direct.fields.count" : "index.inverted.fields.count", 0);
+		if (! direct && (srcIndices[0].getIndexProperty("index.document-factory.class", "").equals(SimpleDocumentIndexEntry.Factory.class.getName())
+			|| srcIndices[0].getIndexProperty("index.document-factory.class", "").equals(BasicDocumentIndexEntry.Factory.class.getName())))
+		{
+			//the source document index has no fields, so we shouldn't assume that fields are being used.
+			docFieldCount = 0;
+		}
+		AbstractPostingOutputStream dfOutput = null;
+		if (direct)
+		{
+			for(String property : new String[] {"index.direct.fields.names","index.direct.fields.count" } )
+			{
+				destIndex.setIndexProperty(property, srcIndices[0].getIndexProperty(property, null));
+			}
+			dfOutput = compressionDirectConfig.getPostingOutputStream(destIndex.getPath() + ApplicationSetup.FILE_SEPARATOR +  
+					destIndex.getPrefix() + ".direct" + compressionDirectConfig.getStructureFileExtension());
+		}
+		final BitIndexPointer emptyPointer = new SimpleBitIndexPointer();
+		final PostingIdComparator postingComparator = new PostingIdComparator();
+		for(int j=0;j<srcIndices.length;j++)
+		{
+			final Iterator<DocumentIndexEntry> docidInput = (Iterator<DocumentIndexEntry>)srcIndices[j].getIndexStructureInputStream("document");
+			final Iterator<String[]> metaInput = (Iterator<String[]>)srcIndices[j].getIndexStructureInputStream("meta");
+			final PostingIndexInputStream dfInput = direct 
+				? (PostingIndexInputStream)srcIndices[j].getIndexStructureInputStream("direct")
+				: null;
+			while(docidInput.hasNext())
+			{
+				metaInput.hasNext();
+				DocumentIndexEntry die = docidInput.next();
+				if (direct)
+				{
+					BitIndexPointer pointerDF = emptyPointer;
+					if (die.getDocumentLength() > 0)
+					{
+						final IterablePosting postings = dfInput.next();
+						final List<Posting> postingList = new ArrayList<Posting>();
+						while(postings.next() != IterablePosting.EOL)
+						{
+							final Posting p = postings.asWritablePosting();
+							p.setId(termcodeHashmaps[j].get(postings.getId()));
+							postingList.add(p);
+						}
+						Collections.sort(postingList, postingComparator);
+						pointerDF = dfOutput.writePostings(postingList.iterator());
+					}
+					die.setBitIndexPointer(pointerDF);
+				}
+				else if (docFieldCount == 0)
+				{
+					die = new SimpleDocumentIndexEntry(die);
+				}
+				docidOutput.addEntryToBuffer(die);
+				metaBuilder.writeDocumentEntry(metaInput.next());
+			}
+			IndexUtil.close(docidInput);
+			IndexUtil.close(metaInput);
+			if (dfInput != null)
+				dfInput.close();
+		}
+		metaBuilder.close();
+		docidOutput.finishedCollections();
+		docidOutput.close();
+		if (direct)
+		{
+			dfOutput.close();
+			compressionDirectConfig.writeIndexProperties(destIndex, "document-inputstream");
+			matchBlockProperties("direct");
+			destIndex.addIndexStructure("document-factory", docFieldCount > 0 ? FieldDocumentIndexEntry.Factory.class.getName() : BasicDocumentIndexEntry.Factory.class.getName(),
+				docFieldCount > 0 ? "java.lang.String" : "", docFieldCount > 0 ? "${index.direct.fields.count}" : "");
+		}
+		else
+		{
+			destIndex.addIndexStructure("document-factory", docFieldCount > 0 ? FieldDocumentIndexEntry.Factory.class.getName() : SimpleDocumentIndexEntry.Factory.class.getName(),
+				docFieldCount > 0 ? "java.lang.String" : "", docFieldCount > 0 ? "${index.inverted.fields.count}" : "");
+		}
+		destIndex.flush();
+	}
+	
+	static <T> T waitFor(Future<T> future) throws IOException
+	{
+		try{
+			return future.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ie);
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException)
+				throw (IOException) ee.getCause();
+			if (ee.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ee.getCause();
+			if (ee.getCause() instanceof Error)
+				throw (Error) ee.getCause();
+			throw new IOException(ee.getCause());
+		}
+	}
+	
+	/**
+	 * Merges the structures of the source indices.
+	 */
+	public void mergeStructures() throws IOException
+	{
+		boolean allInverted = true, allDirect = true, allLexicon = true, allDocument = true;
+		numberOfDocuments = 0;
+		for(int j=0;j<srcIndices.length;j++)
+		{
+			allInverted &= srcIndices[j].hasIndexStructure("inverted");
+			allDirect &= srcIndices[j].hasIndexStructure("direct");
+			allLexicon &= srcIndices[j].hasIndexStructure("lexicon");
+			allDocument &= srcIndices[j].hasIndexStructure("document");
+			docidOffsets[j] = numberOfDocuments;
+			numberOfDocuments += srcIndices[j].getCollectionStatistics().getNumberOfDocuments();
+		}
+		if (! allDocument)
+			throw new IllegalArgumentException("No document - no merging of document or meta structures took place");
+		final boolean mergeDirect = allDirect && ! ApplicationSetup.getProperty("merge.direct","true").equals("false");
+		final long t1 = System.currentTimeMillis();
+		
+		final ExecutorService pool = Executors.newFixedThreadPool(shards + 1);
+		try{
+			//the document indices can be merged alongside the inverted indices, unless their direct pointers will change
+			final Callable<Void> documentTask = mergeDirect ? null : () -> { mergeDocuments(false); return null; };
+			if (allLexicon)
+			{
+				mergeLexiconsAndInvertedFiles(allInverted, mergeDirect, pool, documentTask);
+				LexiconBuilder.optimise(destIndex, "lexicon");
+			}
+			else
+			{
+				logger.warn("No inverted or lexicon - no merging of lexicons took place");
+				if (documentTask != null)
+					waitFor(pool.submit(documentTask));
+			}
+			final long t2 = System.currentTimeMillis();
+			logger.info("merged lexicons" + (allInverted ? ", inverted files" : "") + (mergeDirect ? "" : " and document indices") + " in " + ((t2-t1)/1000.0d));
+			if (mergeDirect)
+			{
+				if (termcodeHashmaps == null)
+					throw new IllegalStateException("Cannot merge direct indices without merging lexicons");
+				mergeDocuments(true);
+				termcodeHashmaps = null;
+				logger.info("merged direct files in " + ((System.currentTimeMillis()-t2)/1000.0d));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+}
@@ -35,6 +35,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +70,7 @@ import org.terrier.structures.indexing.CompressionFactory.CompressionConfigurati
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.Posting;
 import org.terrier.structures.postings.PostingIdComparator;
+import org.terrier.structures.postings.WritablePosting;
 import org.terrier.structures.postings.bit.BasicIterablePosting;
 import org.terrier.structures.postings.bit.FieldIterablePosting;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
@@ -196,6 +198,53 @@ public class StructureMerger {
 		//invertedFileOutput = _outputName;
 	}
 	
+	/** Returns an iterator over the postings of the first posting list, followed by the
+	 * postings of the second posting list, with their ids increased by the specified offset.
+	 * @since 5.8 */
+	protected static Iterator<Posting> concatenate(final IterablePosting ip1, final IterablePosting ip2, final int docidOffset)
+	{
+		return concatenate(new IterablePosting[]{ip1, ip2}, new int[]{0, docidOffset});
+	}
+	
+	/** Returns an iterator over the postings of each posting list in turn, with the ids 
+	 * of each list increased by the corresponding offset. Postings of lists with an offset
+	 * of 0 are returned unchanged.
+	 * @since 5.8 */
+	protected static Iterator<Posting> concatenate(final IterablePosting[] ips, final int[] docidOffsets)
+	{
+		return new Iterator<Posting>() {
+			boolean advanced = false;
+			int current = 0;
+			int id;
+			
+			@Override
+			public boolean hasNext() {
+				if (! advanced)
+				{
+					try{
+						while(current < ips.length && (id = ips[current].next()) == IterablePosting.EOL)
+							current++;
+					} catch (IOException ioe) {
+						throw new IllegalStateException(ioe);
+					}
+					advanced = true;
+				}
+				return current < ips.length;
+			}
+
+			@Override
+			public Posting next() {
+				if (! hasNext())
+					throw new NoSuchElementException();
+				advanced = false;
+				if (docidOffsets[current] == 0)
+					return ips[current];
+				WritablePosting p = ips[current].asWritablePosting();
+				p.setId(id + docidOffsets[current]);
+				return p;
+			}
+		};
+	}
 
 	/**
 	 * Merges the two lexicons into one. After this stage, the offsets in the
@@ -239,7 +288,10 @@ public class StructureMerger {
 					"index.lexicon-keyfactory.parameter_types", "index.lexicon-valuefactory.class", "index.lexicon-valuefactory.parameter_values",
 					"index.lexicon-valuefactory.parameter_types", "termpipelines"} )
 			{
-				destIndex.setIndexProperty(property, srcIndex1.getIndexProperty(property, null));
+				//not all properties are recorded by all indices, e.g. those written by a MemoryIndex
+				final String value = srcIndex1.getIndexProperty(property, null);
+				if (value != null)
+					destIndex.setIndexProperty(property, value);
 			}
 			
 			FixedSizeWriteableFactory<LexiconEntry> lvf = 
@@ -321,26 +373,36 @@ public class StructureMerger {
 					if (hasMore2)
 						lee2 = lexInStream2.next();
 				} else {
-					//write to postings for a term that occurs in both indices
-					
-					//1. postings from the first index are unchanged
+					//write to postings for a term that occurs in both indices:
+					//postings from the first index are unchanged, postings
+					//from the 2nd index have their docids transformed. 
 					IterablePosting ip1 = inverted1.getPostings(lee1.getValue());
-					BitIndexPointer newPointer1 = invOS.writePostings(ip1);
-					
-					//2. postings from the 2nd index have their docids transformed
 					IterablePosting ip2 = inverted2.getPostings(lee2.getValue());
-					BitIndexPointer newPointer2 = invOS.writePostings(ip2, invOS.getLastDocidWritten() - numberOfDocs1);
-					
-					numberOfPointers += newPointer1.getNumberOfEntries() + newPointer2.getNumberOfEntries();
+					if (invOS.canAppendPostings())
+					{
+						//the postings of the 2nd index continue the posting list of the 1st
+						BitIndexPointer newPointer1 = invOS.writePostings(ip1);
+						BitIndexPointer newPointer2 = invOS.writePostings(ip2, invOS.getLastDocidWritten() - numberOfDocs1);
+						numberOfPointers += newPointer1.getNumberOfEntries() + newPointer2.getNumberOfEntries();
+						//don't set numberOfEntries, as LexiconEntry.add() will take care of this.
+						lee1.getValue().setPointer(newPointer1);
+						lee1.getValue().add(lee2.getValue());
+					}
+					else
+					{
+						//some posting formats, such as those with skip tables, cannot be 
+						//continued, so both are written as a single posting list
+						BitIndexPointer newPointer = invOS.writePostings(concatenate(ip1, ip2, numberOfDocs1));
+						numberOfPointers += newPointer.getNumberOfEntries();
+						lee1.getValue().add(lee2.getValue());
+						lee1.getValue().setPointer(newPointer);
+					}
 
-					//don't set numberOfEntries, as LexiconEntry.add() will take care of this.
-					lee1.getValue().setPointer(newPointer1);
 					if (keepTermCodeMap)
 						termcodeHashmap.put(lee2.getValue().getTermId(), lee1.getValue().getTermId());
 					else
 						lee1.getValue().setTermId(newCodes++);
 					
-					lee1.getValue().add(lee2.getValue());
 					lexOutStream.writeNextEntry(term1, lee1.getValue());
 					
 					hasMore1 = lexInStream1.hasNext();
@@ -466,7 +528,10 @@ public class StructureMerger {
 			
 			for(String property : new String[] {"index.direct.fields.names","index.direct.fields.count" } )
 			{
-				destIndex.setIndexProperty(property, srcIndex1.getIndexProperty(property, null));
+				//not all properties are recorded by all indices, e.g. those written by a MemoryIndex
+				final String value = srcIndex1.getIndexProperty(property, null);
+				if (value != null)
+					destIndex.setIndexProperty(property, value);
 			}
 			
 			AbstractPostingOutputStream dfOutput = null;
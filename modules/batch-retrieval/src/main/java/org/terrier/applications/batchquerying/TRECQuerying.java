@@ -166,7 +166,8 @@ import com.google.common.collect.Sets;
  * MetaIndex key to use as the docno. Defaults to "docno".
  * 
  * <li><tt>trec.querying.resultscache</tt> - controls cache to use for query caching. 
- * Defaults to {@link NullQueryResultCache}</li> 
+ * Defaults to {@link NullQueryResultCache}. {@link org.terrier.structures.cache.BoundedQueryResultCache} 
+ * is a bounded cache that is safe for use by parallel querying.</li> 
  * 
  * </ul>
  * 
@@ -373,7 +374,7 @@ public class TRECQuerying extends AbstractQuerying {
 					"trec.querying.resultscache", NullQueryResultCache.class
 							.getName());
 			if (!className.contains("."))
-				className = "org.terrier.applications.TRECQuerying$"
+				className = "org.terrier.structures.cache."
 						+ className;
 			rtr = ApplicationSetup.getClass(className).asSubclass(QueryResultCache.class).newInstance();
 		} catch (Exception e) {
@@ -656,8 +657,12 @@ public class TRECQuerying extends AbstractQuerying {
 		preQueryingSearchRequestModification(queryId, srq);
 		ResultSet rs = resultsCache.checkCache(srq);
 		if (rs != null)
-			((Request)rs).setResultSet(rs);
-		
+		{
+			if (logger.isInfoEnabled())
+				logger.info("Cached results for query: " + queryId + ": '" + query + "'");
+			((Request)srq).setResultSet(rs);
+			return srq;
+		}
 		
 		if (logger.isInfoEnabled())
 			logger.info("Processing query: " + queryId + ": '" + query + "'");
@@ -803,6 +808,8 @@ public class TRECQuerying extends AbstractQuerying {
 	 * 
 	 */
 	protected void finishedQueries() {
+		if (! (resultsCache instanceof NullQueryResultCache))
+			logger.info("Results cache: " + resultsCache.toString());
 		if (resultFile != null)
 			resultFile.close();
 		resultFile = null;
@@ -0,0 +1,494 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BoundedQueryResultCache.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.matching.ResultSet;
+import org.terrier.querying.Request;
+import org.terrier.querying.SearchRequest;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.ArrayUtils;
+import org.terrier.utility.UnitUtils;
+
+/** A thread-safe query results cache with a bounded size. Results are keyed by the query,
+ * with whitespace normalised, together with all of the controls of the request (which
+ * include the weighting model, matching model, number of results etc.), except any named in 
+ * property <tt>resultscache.ignored.controls</tt>.
+ * <p>
+ * Two eviction policies are supported. <tt>lru</tt> evicts the least recently used results. 
+ * <tt>tinylfu</tt> (the default) follows the W-TinyLFU design: new results enter a small LRU 
+ * window, and results leaving the window are only admitted to the main LRU region if they are 
+ * more valuable than the result they would evict. The value of results is their approximate 
+ * access frequency, recorded by a count-min sketch which is periodically halved, multiplied 
+ * by the logarithm of the time taken to compute them, and divided by their size, so that 
+ * cheap or large results are evicted first.
+ * <p>
+ * When the index changes, {@link #invalidateAll()} should be called, for instance by registering
+ * it as an update listener of an <tt>IncrementalIndex</tt>. Results computed while the cache is 
+ * invalidated are not cached.
+ * <p>
+ * <b>Properties:</b>
+ * <ul>
+ * <li><tt>resultscache.max.entries</tt> - maximum number of cached results. Default 10000.</li>
+ * <li><tt>resultscache.max.bytes</tt> - maximum estimated size of the cached results, e.g. 100M. Default is 0, which is no limit.</li>
+ * <li><tt>resultscache.ttl</tt> - number of seconds after which cached results expire. Default is 0, which means never.</li>
+ * <li><tt>resultscache.eviction</tt> - eviction policy, <tt>tinylfu</tt> or <tt>lru</tt>. Default is <tt>tinylfu</tt>.</li>
+ * <li><tt>resultscache.ignored.controls</tt> - comma-delimited controls that do not affect the results, and hence are not part of the key. Default is empty.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class BoundedQueryResultCache implements QueryResultCache {
+	
+	protected static final Logger logger = LoggerFactory.getLogger(BoundedQueryResultCache.class);
+	
+	/** context object of a request recording the state of the cache when it missed */
+	static final String CONTEXT_MISS = "resultscache.miss";
+	/** proportion of the capacity given to the window of the tinylfu policy */
+	static final double WINDOW_RATIO = 0.01d;
+	
+	static final class Entry
+	{
+		final String key;
+		final ResultSet results;
+		final long bytes;
+		final long cost;
+		/** when the entry was created, in nanoseconds of the ticker of the cache */
+		final long created;
+		
+		Entry(String _key, ResultSet _results, long _bytes, long _cost, long _created)
+		{
+			this.key = _key;
+			this.results = _results;
+			this.bytes = _bytes;
+			this.cost = _cost;
+			this.created = _created;
+		}
+	}
+	
+	/** the state of the cache when a request missed */
+	static final class Miss
+	{
+		final String key;
+		final long generation;
+		final long started;
+		
+		Miss(String _key, long _generation, long _started)
+		{
+			this.key = _key;
+			this.generation = _generation;
+			this.started = _started;
+		}
+	}
+	
+	/** An approximate frequency counter with 4-bit counters, as used by TinyLFU. Each row has
+	 * at least four counters per cached result, as fewer counters let a scan of one-off queries 
+	 * collide with, and appear as frequent as, the popular queries. All counters are halved once 
+	 * the number of increments reaches ten times the cache size, so that the frequencies favour 
+	 * recent accesses. */
+	static final class FrequencySketch
+	{
+		static final int DEPTH = 4;
+		static final int[] SEEDS = {0x97cb3127, 0x6b43a9b5, 0xc2b2ae35, 0x27d4eb2f};
+		final byte[][] counts;
+		final int mask;
+		final long sampleSize;
+		long additions = 0;
+		
+		FrequencySketch(int maxEntries)
+		{
+			int width = Integer.highestOneBit(Math.max(16, maxEntries -1)) << 3;
+			counts = new byte[DEPTH][width];
+			mask = width -1;
+			sampleSize = 10l * Math.max(16, maxEntries);
+		}
+		
+		int index(int hash, int d)
+		{
+			int h = (hash ^ SEEDS[d]) * 0x9E3779B9;
+			return (h ^ (h >>> 15)) & mask;
+		}
+		
+		void increment(int hash)
+		{
+			boolean added = false;
+			for(int d=0;d<DEPTH;d++)
+			{
+				final int i = index(hash, d);
+				if (counts[d][i] < 15)
+				{
+					counts[d][i]++;
+					added = true;
+				}
+			}
+			if (added && ++additions == sampleSize)
+			{
+				for(byte[] row : counts)
+					for(int i=0;i<row.length;i++)
+						row[i] = (byte)(row[i] >>> 1);
+				additions /= 2;
+			}
+		}
+		
+		int frequency(int hash)
+		{
+			int min = Integer.MAX_VALUE;
+			for(int d=0;d<DEPTH;d++)
+				min = Math.min(min, counts[d][index(hash, d)]);
+			return min;
+		}
+	}
+	
+	protected final int maxEntries;
+	protected final long maxBytes;
+	protected final long ttlNanos;
+	/** source of the current time in nanoseconds, for expiry and the cost of results */
+	protected final LongSupplier ticker;
+	protected final boolean tinyLFU;
+	protected final String[] ignoredControls;
+	
+	/** for tinylfu, the window of new results. For lru, all results */
+	final LinkedHashMap<String,Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+	/** for tinylfu, the results admitted from the window */
+	final LinkedHashMap<String,Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+	final FrequencySketch sketch;
+	final int windowEntries;
+	final long windowBytes;
+	long bytes = 0;
+	long mainBytes = 0;
+	/** incremented whenever the cache is invalidated */
+	long generation = 0;
+	
+	long hits = 0;
+	long misses = 0;
+	long evictions = 0;
+	long rejections = 0;
+	long expirations = 0;
+	
+	/** Creates a cache configured by properties */
+	public BoundedQueryResultCache()
+	{
+		this(
+			UnitUtils.parseInt(ApplicationSetup.getProperty("resultscache.max.entries", "10000")),
+			UnitUtils.parseLong(ApplicationSetup.getProperty("resultscache.max.bytes", "0")),
+			Long.parseLong(ApplicationSetup.getProperty("resultscache.ttl", "0")),
+			TimeUnit.SECONDS,
+			ApplicationSetup.getProperty("resultscache.eviction", "tinylfu"),
+			ArrayUtils.parseCommaDelimitedString(ApplicationSetup.getProperty("resultscache.ignored.controls", "")));
+	}
+	
+	/** Creates a cache with the specified configuration.
+	 * @param _maxEntries maximum number of cached results
+	 * @param _maxBytes maximum estimated size of the cached results, or 0 for no limit
+	 * @param ttl time after which results expire, or 0 for never
+	 * @param ttlUnit unit of ttl
+	 * @param eviction eviction policy, either "tinylfu" or "lru"
+	 * @param _ignoredControls controls that are not part of the key
+	 */
+	public BoundedQueryResultCache(int _maxEntries, long _maxBytes, long ttl, TimeUnit ttlUnit, String eviction, String[] _ignoredControls)
+	{
+		this(_maxEntries, _maxBytes, ttl, ttlUnit, eviction, _ignoredControls, System::nanoTime);
+	}
+	
+	/** Creates a cache with the specified configuration, which obtains the time from the specified ticker.
+	 * @param _maxEntries maximum number of cached results
+	 * @param _maxBytes maximum estimated size of the cached results, or 0 for no limit
+	 * @param ttl time after which results expire, or 0 for never
+	 * @param ttlUnit unit of ttl
+	 * @param eviction eviction policy, either "tinylfu" or "lru"
+	 * @param _ignoredControls controls that are not part of the key
+	 * @param _ticker returns the current time in nanoseconds, e.g. System::nanoTime
+	 */
+	public BoundedQueryResultCache(int _maxEntries, long _maxBytes, long ttl, TimeUnit ttlUnit, String eviction, String[] _ignoredControls, LongSupplier _ticker)
+	{
+		if (_maxEntries < 1)
+			throw new IllegalArgumentException("resultscache.max.entries must be positive");
+		this.maxEntries = _maxEntries;
+		this.maxBytes = _maxBytes;
+		this.ttlNanos = ttlUnit.toNanos(ttl);
+		this.ticker = _ticker;
+		this.ignoredControls = _ignoredControls;
+		switch(eviction.toLowerCase())
+		{
+		case "lru": tinyLFU = false; break;
+		case "tinylfu": tinyLFU = true; break;
+		default: throw new IllegalArgumentException("Unknown resultscache.eviction policy " + eviction);
+		}
+		this.sketch = tinyLFU ? new FrequencySketch(maxEntries) : null;
+		this.windowEntries = tinyLFU ? Math.max(1, (int)(maxEntries * WINDOW_RATIO)) : maxEntries;
+		this.windowBytes = tinyLFU ? (long)(maxBytes * WINDOW_RATIO) : maxBytes;
+	}
+	
+	/** Returns the key of the specified request, or null if it cannot be cached */
+	protected String hashQuery(SearchRequest q)
+	{
+		final String query = q.getOriginalQuery();
+		if (query == null)
+			return null;
+		final StringBuilder key = new StringBuilder(query.trim().replaceAll("\\s+", " "));
+		final Map<String,String> controls = new TreeMap<>(q.getControls());
+		for(String ignored : ignoredControls)
+			controls.remove(ignored);
+		for(Map.Entry<String,String> c : controls.entrySet())
+			key.append('\u0000').append(c.getKey()).append('=').append(c.getValue());
+		return key.toString();
+	}
+	
+	/** Returns an estimate of the heap used by the specified results */
+	protected static long estimateBytes(String key, ResultSet rs)
+	{
+		long size = 96 + 2l * key.length();
+		final int n = rs.getResultSize();
+		size += n * (4l + 8l + 2l);
+		//results that have not been decorated may have no meta keys
+		final String[] metaKeys = rs.getMetaKeys();
+		if (metaKeys == null)
+			return size;
+		for(String metaKey : metaKeys)
+		{
+			final String[] values = rs.getMetaItems(metaKey);
+			if (values == null)
+				continue;
+			for(String v : values)
+				size += v == null ? 4 : 44 + 2l * v.length();
+		}
+		return size;
+	}
+	
+	@Override
+	public ResultSet checkCache(SearchRequest q) {
+		final String key = hashQuery(q);
+		if (key == null)
+			return null;
+		final long now = ticker.getAsLong();
+		synchronized (this) {
+			if (sketch != null)
+				sketch.increment(key.hashCode());
+			Entry e = window.get(key);
+			if (e == null)
+				e = main.get(key);
+			if (e != null && ttlNanos > 0 && now - e.created >= ttlNanos)
+			{
+				remove(key);
+				expirations++;
+				e = null;
+			}
+			if (e != null)
+			{
+				hits++;
+				return e.results;
+			}
+			misses++;
+			q.setContextObject(CONTEXT_MISS, new Miss(key, generation, now));
+		}
+		return null;
+	}
+	
+	@Override
+	public void add(SearchRequest q) {
+		final Object o = q.getContextObject(CONTEXT_MISS);
+		if (! (o instanceof Miss))
+			return;
+		q.setContextObject(CONTEXT_MISS, null);
+		final Miss miss = (Miss)o;
+		final ResultSet rs = ((Request) q).getResultSet();
+		if (rs == null)
+			return;
+		final long now = ticker.getAsLong();
+		final long cost = Math.max(1, TimeUnit.NANOSECONDS.toMicros(now - miss.started));
+		final Entry e = new Entry(miss.key, rs, estimateBytes(miss.key, rs), cost, now);
+		if (maxBytes > 0 && e.bytes > maxBytes)
+			return;
+		synchronized (this) {
+			//the index changed while these results were computed
+			if (miss.generation != generation)
+				return;
+			remove(e.key);
+			window.put(e.key, e);
+			bytes += e.bytes;
+			if (tinyLFU)
+				evictWindow();
+			else
+				evictLRU();
+		}
+	}
+	
+	void remove(String key)
+	{
+		Entry e = window.remove(key);
+		if (e == null)
+		{
+			e = main.remove(key);
+			if (e != null)
+				mainBytes -= e.bytes;
+		}
+		if (e != null)
+			bytes -= e.bytes;
+	}
+	
+	void evictLRU()
+	{
+		final Iterator<Entry> iter = window.values().iterator();
+		while(window.size() > maxEntries || (maxBytes > 0 && bytes > maxBytes))
+		{
+			bytes -= iter.next().bytes;
+			iter.remove();
+			evictions++;
+		}
+	}
+	
+	/** the value of keeping some results in the cache. The cost is damped, such that
+	 * frequency dominates unless computing the results took orders of magnitude longer. */
+	double value(Entry e)
+	{
+		return sketch.frequency(e.key.hashCode()) * Math.log(2 + e.cost) / e.bytes;
+	}
+	
+	void evictWindow()
+	{
+		final Iterator<Entry> iter = window.values().iterator();
+		while(window.size() > windowEntries || (maxBytes > 0 && bytes - mainBytes > windowBytes && window.size() > 1))
+		{
+			final Entry candidate = iter.next();
+			iter.remove();
+			main.put(candidate.key, candidate);
+			mainBytes += candidate.bytes;
+			evictMain(candidate);
+		}
+	}
+	
+	/** evicts results from the main region, after the candidate has been added to it */
+	void evictMain(Entry candidate)
+	{
+		final Iterator<Entry> iter = main.values().iterator();
+		while(main.size() > maxEntries - windowEntries || (maxBytes > 0 && bytes > maxBytes))
+		{
+			Entry victim = iter.next();
+			if (victim == candidate)
+			{
+				if (! iter.hasNext())
+				{
+					//the candidate alone exceeds the space of the main region 
+					iter.remove();
+					mainBytes -= candidate.bytes;
+					bytes -= candidate.bytes;
+					rejections++;
+					return;
+				}
+				victim = iter.next();
+			}
+			if (value(candidate) > value(victim))
+			{
+				iter.remove();
+				mainBytes -= victim.bytes;
+				bytes -= victim.bytes;
+				evictions++;
+			}
+			else
+			{
+				main.remove(candidate.key);
+				mainBytes -= candidate.bytes;
+				bytes -= candidate.bytes;
+				rejections++;
+				return;
+			}
+		}
+	}
+	
+	/** Removes any cached results for the specified request */
+	public synchronized void invalidate(SearchRequest q)
+	{
+		final String key = hashQuery(q);
+		if (key != null)
+			remove(key);
+	}
+	
+	/** Removes all cached results, e.g. when the underlying index has changed. Results 
+	 * being computed at the time of the call will not be cached. */
+	public synchronized void invalidateAll()
+	{
+		window.clear();
+		main.clear();
+		bytes = mainBytes = 0;
+		generation++;
+	}
+	
+	@Override
+	public void reset() {
+		invalidateAll();
+	}
+	
+	/** Returns the number of cached results */
+	public synchronized int size()
+	{
+		return window.size() + main.size();
+	}
+	
+	/** Returns the estimated size of the cached results */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+	
+	/** Returns the number of requests that found their results in the cache */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	/** Returns the number of requests that did not find their results in the cache */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	/** Returns the number of results evicted, or refused admission, to keep within the bounds of the cache */
+	public synchronized long getEvictions()
+	{
+		return evictions + rejections;
+	}
+	
+	/** Returns the number of results that expired */
+	public synchronized long getExpirations()
+	{
+		return expirations;
+	}
+	
+	@Override
+	public synchronized String toString()
+	{
+		final long requests = hits + misses;
+		return this.getClass().getSimpleName() + "(entries=" + size() + " bytes=" + bytes + " hits=" + hits + " misses=" + misses 
+			+ " hitRate=" + (requests == 0 ? 0 : (double)hits/requests) + " evictions=" + evictions + " rejections=" + rejections 
+			+ " expirations=" + expirations + ")";
+	}
+}
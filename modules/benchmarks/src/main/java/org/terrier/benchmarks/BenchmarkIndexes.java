@@ -0,0 +1,249 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BenchmarkIndexes.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.terrier.indexing.Collection;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.indexing.TRECCollection;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.indexing.classical.BasicIndexer;
+import org.terrier.utility.ApplicationSetup;
+
+/** Builds the indices used by the benchmarks in this package. Two kinds of index are
+ * available: a synthetic index, where documents are sampled from a Zipfian term
+ * distribution using a fixed seed, so that the same index is obtained on every run;
+ * and a small real index of the Shakespeare Merchant of Venice test collection, read 
+ * from the terrier-tests jar.
+ * <p>No term pipeline is applied, so that query terms can be matched verbatim.
+ * @since 5.8
+ */
+public class BenchmarkIndexes {
+
+	/** name of the synthetic collection, as used in <tt>@Param</tt> values */
+	public static final String SYNTHETIC = "synthetic";
+	/** name of the Shakespeare collection, as used in <tt>@Param</tt> values */
+	public static final String SHAKESPEARE = "shakespeare";
+	
+	/** exponent of the Zipfian term distribution of the synthetic collection */
+	static final double ZIPF_EXPONENT = 1.0d;
+	static final long SEED = 42;
+	
+	static final String[] SHAKESPEARE_FILES = new String[]{
+		"resource:/tests/shakespeare/shakespeare-merchant.trec.1",
+		"resource:/tests/shakespeare/shakespeare-merchant.trec.2"
+	};
+	
+	static final String[][] SHAKESPEARE_QUERIES = new String[][]{
+		{"dramatis", "personae"},
+		{"portia"},
+		{"tubal"},
+		{"antonio", "salanio"},
+		{"merchant", "venice"},
+		{"shylock", "jessica", "lorenzo"},
+		{"pound", "flesh"},
+		{"bassanio", "gratiano", "nerissa"}
+	};
+	
+	static {
+		configure();
+	}
+	
+	/** Sets the properties needed to build and query the benchmark indices */
+	public static void configure()
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "docno");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "20");
+		ApplicationSetup.setProperty("ignore.low.idf.terms", "false");
+	}
+	
+	/** Returns a new temporary folder in which to write an index */
+	public static File makeTemporaryFolder() throws IOException
+	{
+		return java.nio.file.Files.createTempDirectory("terrier-benchmarks").toFile();
+	}
+	
+	/** Deletes the specified temporary folder and its contents */
+	public static void deleteTemporaryFolder(File folder)
+	{
+		if (folder == null)
+			return;
+		File[] files = folder.listFiles();
+		if (files != null)
+			for(File f : files)
+				if (f.isDirectory())
+					deleteTemporaryFolder(f);
+				else
+					f.delete();
+		folder.delete();
+	}
+	
+	/** Returns the synthetic term of the given rank in the Zipfian distribution. Terms are
+	 * made only of letters, so that they pass through the tokeniser unchanged. */
+	public static String syntheticTerm(int rank)
+	{
+		StringBuilder s = new StringBuilder();
+		rank++;
+		while(rank > 0)
+		{
+			rank--;
+			s.append((char)('a' + rank % 26));
+			rank /= 26;
+		}
+		return s.append('z').toString();
+	}
+	
+	/** Makes the documents of the synthetic collection.
+	 * @return an array of two arrays: docnos and document texts.
+	 */
+	public static String[][] makeSyntheticDocuments(int numDocs, int docLength, int numTerms)
+	{
+		final double[] cdf = new double[numTerms];
+		double sum = 0;
+		for(int i=0;i<numTerms;i++)
+		{
+			sum += 1.0d / Math.pow(i+1, ZIPF_EXPONENT);
+			cdf[i] = sum;
+		}
+		final String[] terms = new String[numTerms];
+		for(int i=0;i<numTerms;i++)
+			terms[i] = syntheticTerm(i);
+		
+		final Random r = new Random(SEED);
+		final String[] docnos = new String[numDocs];
+		final String[] docs = new String[numDocs];
+		final StringBuilder s = new StringBuilder();
+		for(int d=0;d<numDocs;d++)
+		{
+			docnos[d] = "doc" + d;
+			s.setLength(0);
+			//vary the document lengths between half and one and a half times the mean
+			final int len = docLength/2 + r.nextInt(docLength+1);
+			for(int i=0;i<len;i++)
+			{
+				int rank = Arrays.binarySearch(cdf, r.nextDouble() * sum);
+				if (rank < 0)
+					rank = -rank -1;
+				s.append(terms[Math.min(rank, numTerms-1)]).append(' ');
+			}
+			docs[d] = s.toString();
+		}
+		return new String[][]{docnos, docs};
+	}
+	
+	/** Makes queries for the synthetic collection, mixing frequent and infrequent terms */
+	public static String[][] makeSyntheticQueries(int numQueries, int queryLength, int numTerms)
+	{
+		final Random r = new Random(SEED + 1);
+		final String[][] queries = new String[numQueries][queryLength];
+		for(int q=0;q<numQueries;q++)
+			for(int i=0;i<queryLength;i++)
+			{
+				//log-uniform over the ranks, so that both head and tail terms occur
+				int rank = (int) Math.exp(r.nextDouble() * Math.log(numTerms)) -1;
+				queries[q][i] = syntheticTerm(Math.max(0, rank));
+			}
+		return queries;
+	}
+	
+	/** Makes the synthetic index in the specified folder */
+	public static IndexOnDisk makeSyntheticIndex(File folder, int numDocs, int docLength, int numTerms) throws Exception
+	{
+		String[][] collection = makeSyntheticDocuments(numDocs, docLength, numTerms);
+		final String path = folder.toString();
+		final String prefix = "synthetic";
+		IndexTestUtils.makeIndex(collection[0], collection[1], new BasicIndexer(path, prefix), path, prefix).close();
+		return IndexOnDisk.createIndex(path, prefix);
+	}
+	
+	/** Makes the Shakespeare index in the specified folder */
+	public static IndexOnDisk makeShakespeareIndex(File folder) throws Exception
+	{
+		final String path = folder.toString();
+		final String prefix = "shakespeare";
+		Collection c = new TRECCollection(Arrays.asList(SHAKESPEARE_FILES));
+		new BasicIndexer(path, prefix).index(new Collection[]{c});
+		c.close();
+		return IndexOnDisk.createIndex(path, prefix);
+	}
+	
+	/** Makes the named index in the specified folder */
+	public static IndexOnDisk makeIndex(String collection, File folder) throws Exception
+	{
+		switch (collection) {
+			case SYNTHETIC: return makeSyntheticIndex(folder, 10000, 100, 20000);
+			case SHAKESPEARE: return makeShakespeareIndex(folder);
+			default: throw new IllegalArgumentException("Unknown benchmark collection " + collection);
+		}
+	}
+	
+	/** Returns the queries for the named collection */
+	public static String[][] getQueries(String collection)
+	{
+		switch (collection) {
+			case SYNTHETIC: return makeSyntheticQueries(100, 3, 20000);
+			case SHAKESPEARE: return SHAKESPEARE_QUERIES;
+			default: throw new IllegalArgumentException("Unknown benchmark collection " + collection);
+		}
+	}
+	
+	/** Sets the specified index properties, e.g. data-source, and reopens the index 
+	 * so that they take effect. */
+	public static IndexOnDisk reopen(IndexOnDisk index, Map<String,String> properties) throws IOException
+	{
+		for(Map.Entry<String,String> p : properties.entrySet())
+			index.setIndexProperty(p.getKey(), p.getValue());
+		index.flush();
+		return IndexUtil.reOpenIndex(index);
+	}
+	
+	/** Returns the terms of the index with the highest document frequencies, most frequent first */
+	public static String[] getFrequentTerms(Index index, int count)
+	{
+		final List<String> terms = new ArrayList<>();
+		final TObjectIntHashMap<String> dfs = new TObjectIntHashMap<>();
+		for(Map.Entry<String,LexiconEntry> e : index.getLexicon())
+		{
+			terms.add(e.getKey());
+			dfs.put(e.getKey(), e.getValue().getDocumentFrequency());
+		}
+		terms.sort(Comparator.comparingInt(t -> -dfs.get(t)));
+		return terms.subList(0, Math.min(count, terms.size())).toArray(new String[0]);
+	}
+}
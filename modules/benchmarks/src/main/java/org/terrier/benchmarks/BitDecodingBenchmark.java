@@ -0,0 +1,139 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BitDecodingBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.compression.bit.BitFileInMemory;
+import org.terrier.compression.bit.BitIn;
+import org.terrier.compression.bit.BitInputStream;
+import org.terrier.compression.bit.BitOutputStream;
+
+/** Measures the decoding speed of the gamma and unary codes of {@link org.terrier.compression.bit.BitInBase}, 
+ * which are used for docid gaps and frequencies in the bit-compressed posting lists. 
+ * The integers are drawn from geometric distributions with the specified means, using a fixed seed.
+ * Scores are per decoded integer.
+ * @since 5.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitDecodingBenchmark {
+	
+	static final int COUNT = 1 << 20;
+	
+	/** mean of the integers gamma encoded, e.g. docid gaps */
+	@Param({"8", "128"})
+	int gammaMean;
+	
+	/** mean of the integers unary encoded, e.g. term frequencies */
+	@Param({"2"})
+	int unaryMean;
+	
+	/** which BitIn implementation to read from: memory (BitFileInMemory) or stream (BitInputStream) */
+	@Param({"memory", "stream"})
+	String source;
+	
+	byte[] gammaBytes;
+	byte[] unaryBytes;
+	BitFileInMemory gammaFile;
+	BitFileInMemory unaryFile;
+	
+	@Setup
+	public void setup() throws IOException
+	{
+		Random r = new Random(42);
+		gammaBytes = encode(r, gammaMean, true);
+		unaryBytes = encode(r, unaryMean, false);
+		gammaFile = new BitFileInMemory(gammaBytes);
+		unaryFile = new BitFileInMemory(unaryBytes);
+	}
+	
+	static byte[] encode(Random r, int mean, boolean gamma) throws IOException
+	{
+		final double p = 1.0d / mean;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(baos);
+		for(int i=0;i<COUNT;i++)
+		{
+			//geometric with support 1,2,...
+			int x = 1 + (int) Math.floor(Math.log(1.0d - r.nextDouble()) / Math.log(1.0d - p));
+			if (gamma)
+				bos.writeGamma(x);
+			else
+				bos.writeUnary(x);
+		}
+		bos.close();
+		return baos.toByteArray();
+	}
+	
+	BitIn open(BitFileInMemory file, byte[] bytes) throws IOException
+	{
+		if (source.equals("memory"))
+			return file.readReset(0l, (byte)0);
+		return new BitInputStream(new ByteArrayInputStream(bytes));
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public long readGamma() throws IOException
+	{
+		final BitIn in = open(gammaFile, gammaBytes);
+		long sum = 0;
+		for(int i=0;i<COUNT;i++)
+			sum += in.readGamma();
+		return sum;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public long readUnary() throws IOException
+	{
+		final BitIn in = open(unaryFile, unaryBytes);
+		long sum = 0;
+		for(int i=0;i<COUNT;i++)
+			sum += in.readUnary();
+		return sum;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ConcurrentLexiconBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+
+/** Measures the throughput of term lookups in the lexicon of the synthetic index as 
+ * the number of threads increases. With <tt>synchronised=true</tt>, each lookup
+ * synchronises on the lexicon, as the ConcurrentLexicon wrapper does, which 
+ * serialises the threads. Scores are lookups per microsecond, summed over all threads.
+ * @since 5.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentLexiconBenchmark {
+	
+	/** where the lexicon is read from, see index.lexicon.data-source */
+	@Param({"file", "fileinmem", "mmap"})
+	String dataSource;
+	
+	@Param({"false", "true"})
+	boolean synchronised;
+	
+	File folder;
+	IndexOnDisk index;
+	Lexicon<String> lexicon;
+	String[] terms;
+	final AtomicInteger threadCount = new AtomicInteger();
+	
+	/** The position of each thread in the terms to look up */
+	@State(Scope.Thread)
+	public static class Cursor
+	{
+		int next;
+		
+		@Setup
+		public void setup(ConcurrentLexiconBenchmark b)
+		{
+			//each thread starts at a different place
+			next = (b.threadCount.getAndIncrement() * 7919) % b.terms.length;
+		}
+	}
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		folder = BenchmarkIndexes.makeTemporaryFolder();
+		index = BenchmarkIndexes.makeIndex(BenchmarkIndexes.SYNTHETIC, folder);
+		index = BenchmarkIndexes.reopen(index, Collections.singletonMap("index.lexicon.data-source", dataSource));
+		lexicon = index.getLexicon();
+		List<String> termList = new ArrayList<>();
+		for(Map.Entry<String,LexiconEntry> e : lexicon)
+			termList.add(e.getKey());
+		Collections.shuffle(termList, new Random(42));
+		terms = termList.toArray(new String[0]);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		index.close();
+		BenchmarkIndexes.deleteTemporaryFolder(folder);
+	}
+	
+	LexiconEntry lookup(Cursor c)
+	{
+		if (c.next == terms.length)
+			c.next = 0;
+		final String term = terms[c.next++];
+		if (synchronised)
+			synchronized (lexicon) {
+				return lexicon.getLexiconEntry(term);
+			}
+		return lexicon.getLexiconEntry(term);
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public LexiconEntry threads1(Cursor c)
+	{
+		return lookup(c);
+	}
+	
+	@Benchmark
+	@Threads(2)
+	public LexiconEntry threads2(Cursor c)
+	{
+		return lookup(c);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public LexiconEntry threads4(Cursor c)
+	{
+		return lookup(c);
+	}
+	
+	@Benchmark
+	@Threads(8)
+	public LexiconEntry threads8(Cursor c)
+	{
+		return lookup(c);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodecBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.compression.integer.ByteFileInMemory;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOutputStream;
+import org.terrier.compression.integer.IntegerCodec;
+
+/** Measures the decoding speed of the chunk codecs of the integer compression layer. 
+ * Chunks of gaps are drawn from a geometric distribution with the specified mean, 
+ * with an occasional large exception, and decompressed one chunk at a time, as
+ * the posting readers do. Scores are per decoded integer.
+ * @since 5.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegerCodecBenchmark {
+
+	static final int CHUNKS = 8192;
+	/** the default chunk size of the integer compression layer */
+	static final int CHUNK_SIZE = 128;
+	
+	@Param({"VIntCodec", "FORCodec", "PForDeltaCodec", "StreamVByteCodec"})
+	String codecName;
+	
+	@Param({"16"})
+	int mean;
+	
+	IntegerCodec codec;
+	ByteFileInMemory file;
+	int[] buffer;
+	
+	@Setup
+	public void setup() throws IOException
+	{
+		codec = IntegerCodec.getCodec(codecName);
+		buffer = new int[CHUNK_SIZE];
+		final Random r = new Random(42);
+		final double p = 1.0d / mean;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ByteOutputStream out = new ByteOutputStream(baos);
+		for(int c=0;c<CHUNKS;c++)
+		{
+			for(int i=0;i<CHUNK_SIZE;i++)
+			{
+				buffer[i] = (int) Math.floor(Math.log(1.0d - r.nextDouble()) / Math.log(1.0d - p));
+				//one in a hundred is an exception for the patched codecs
+				if (r.nextInt(100) == 0)
+					buffer[i] += 1 << 16;
+			}
+			codec.compress(buffer, CHUNK_SIZE, out);
+		}
+		out.close();
+		file = new ByteFileInMemory(baos.toByteArray());
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(CHUNKS * CHUNK_SIZE)
+	public long decompress() throws IOException
+	{
+		final ByteIn in = file.readReset(0l);
+		final int[] buf = buffer;
+		long sum = 0;
+		for(int c=0;c<CHUNKS;c++)
+		{
+			codec.decompress(in, buf, CHUNK_SIZE);
+			sum += buf[CHUNK_SIZE-1];
+		}
+		return sum;
+	}
+}
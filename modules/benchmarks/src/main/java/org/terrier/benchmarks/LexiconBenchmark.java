@@ -0,0 +1,144 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is LexiconBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.structures.FSOMapFileLexicon;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+
+/** Measures lookups in the {@link FSOMapFileLexicon} of the synthetic index: by term, by
+ * termid, and by position. The terms looked up are a random permutation of the 
+ * vocabulary. Scores are per lookup.
+ * @since 5.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexiconBenchmark {
+	
+	/** where the lexicon is read from, see index.lexicon.data-source */
+	@Param({"file", "fileinmem", "mmap"})
+	String dataSource;
+	
+	/** how term lookups are shortcut, see index.lexicon.bsearchshortcut */
+	@Param({"default", "charmap"})
+	String bsearchShortcut;
+	
+	File folder;
+	IndexOnDisk index;
+	Lexicon<String> lexicon;
+	String[] terms;
+	int[] termids;
+	int numTerms;
+	int next = 0;
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		folder = BenchmarkIndexes.makeTemporaryFolder();
+		index = BenchmarkIndexes.makeIndex(BenchmarkIndexes.SYNTHETIC, folder);
+		Map<String,String> props = new HashMap<>();
+		props.put("index.lexicon.data-source", dataSource);
+		props.put("index.lexicon.bsearchshortcut", bsearchShortcut);
+		index = BenchmarkIndexes.reopen(index, props);
+		lexicon = index.getLexicon();
+		if (! (lexicon instanceof FSOMapFileLexicon))
+			throw new IllegalStateException("Expected " + FSOMapFileLexicon.class.getSimpleName() + " but got " + lexicon.getClass().getName());
+		
+		List<String> termList = new ArrayList<>();
+		for(Map.Entry<String,LexiconEntry> e : lexicon)
+			termList.add(e.getKey());
+		Collections.shuffle(termList, new Random(42));
+		numTerms = termList.size();
+		terms = termList.toArray(new String[0]);
+		termids = new int[numTerms];
+		for(int i=0;i<numTerms;i++)
+			termids[i] = lexicon.getLexiconEntry(terms[i]).getTermId();
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		index.close();
+		BenchmarkIndexes.deleteTemporaryFolder(folder);
+	}
+	
+	int nextIndex()
+	{
+		if (next == numTerms)
+			next = 0;
+		return next++;
+	}
+	
+	@Benchmark
+	public LexiconEntry getByTerm()
+	{
+		return lexicon.getLexiconEntry(terms[nextIndex()]);
+	}
+	
+	@Benchmark
+	public LexiconEntry getMissingTerm()
+	{
+		return lexicon.getLexiconEntry(terms[nextIndex()] + "q");
+	}
+	
+	@Benchmark
+	public Map.Entry<String,LexiconEntry> getByTermId()
+	{
+		return lexicon.getLexiconEntry(termids[nextIndex()]);
+	}
+	
+	@Benchmark
+	public Map.Entry<String,LexiconEntry> getIth()
+	{
+		return lexicon.getIthLexiconEntry(termids[nextIndex()]);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MatchingBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.matching.BaseMatching;
+import org.terrier.matching.Matching;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.matchops.SingleTermOp;
+import org.terrier.matching.models.BM25;
+import org.terrier.querying.parser.Query.QTPBuilder;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.utility.ApplicationSetup;
+
+/** Compares matching strategies, by default document-at-a-time (daat.Full) and 
+ * term-at-a-time (taat.Full), on the synthetic index and on the Shakespeare index. 
+ * The queries of each collection are used in turn; scores are per query. 
+ * Running with <tt>-prof gc</tt> additionally reports the allocation rate of matching.
+ * @since 5.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchingBenchmark {
+	
+	@Param({BenchmarkIndexes.SYNTHETIC, BenchmarkIndexes.SHAKESPEARE})
+	String collection;
+	
+	@Param({"org.terrier.matching.daat.Full", "org.terrier.matching.taat.Full"})
+	String matchingClass;
+	
+	/** number of documents to retrieve */
+	@Param({"1000"})
+	int numResults;
+	
+	File folder;
+	IndexOnDisk index;
+	Matching matching;
+	String[][] queries;
+	int next = 0;
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		folder = BenchmarkIndexes.makeTemporaryFolder();
+		index = BenchmarkIndexes.makeIndex(collection, folder);
+		matching = ApplicationSetup.getClass(matchingClass).asSubclass(Matching.class)
+				.getConstructor(Index.class).newInstance(index);
+		queries = BenchmarkIndexes.getQueries(collection);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		index.close();
+		BenchmarkIndexes.deleteTemporaryFolder(folder);
+	}
+	
+	static MatchingQueryTerms makeQuery(String qid, String[] terms, int numResults)
+	{
+		MatchingQueryTerms mqt = new MatchingQueryTerms(qid);
+		for(String t : terms)
+			mqt.add(QTPBuilder.of(new SingleTermOp(t)).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		mqt.setDefaultTermWeightingModel(new BM25());
+		mqt.setMatchingRequestSize(numResults);
+		return mqt;
+	}
+	
+	@Benchmark
+	public ResultSet match() throws IOException
+	{
+		final int q = next++ % queries.length;
+		final String qid = String.valueOf(q);
+		return matching.match(qid, makeQuery(qid, queries[q], numResults));
+	}
+}
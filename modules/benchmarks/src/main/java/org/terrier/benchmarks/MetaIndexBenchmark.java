@@ -0,0 +1,132 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MetaIndexBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.MetaIndex;
+import org.terrier.utility.ApplicationSetup;
+
+/** Measures docno lookups in the meta index of the synthetic index, for the meta index 
+ * formats written by {@link org.terrier.structures.indexing.CompressingMetaIndexBuilder} 
+ * and {@link org.terrier.structures.indexing.ZstdMetaIndexBuilder}. getItem() looks up 
+ * a single random document; getItems() looks up a sorted batch of documents, as done 
+ * when decorating a page of results.
+ * @since 5.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetaIndexBenchmark {
+
+	static final int NUM_LOOKUPS = 4096;
+	
+	/** the builder to write the meta index with, see indexer.meta.builder */
+	@Param({"org.terrier.structures.indexing.CompressingMetaIndexBuilder", "org.terrier.structures.indexing.ZstdMetaIndexBuilder"})
+	String metaBuilder;
+	
+	/** where the meta index is read from, see index.meta.data-source */
+	@Param({"fileinmem", "file", "mmap"})
+	String dataSource;
+	
+	@Param({"100"})
+	int batchSize;
+	
+	File folder;
+	IndexOnDisk index;
+	MetaIndex meta;
+	int[] docids;
+	int[][] batches;
+	int next = 0;
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		folder = BenchmarkIndexes.makeTemporaryFolder();
+		ApplicationSetup.setProperty("indexer.meta.builder", metaBuilder);
+		index = BenchmarkIndexes.makeIndex(BenchmarkIndexes.SYNTHETIC, folder);
+		index = BenchmarkIndexes.reopen(index, Collections.singletonMap("index.meta.data-source", dataSource));
+		meta = index.getMetaIndex();
+		final int numDocs = index.getCollectionStatistics().getNumberOfDocuments();
+		final Random r = new Random(42);
+		docids = new int[NUM_LOOKUPS];
+		batches = new int[NUM_LOOKUPS][];
+		for(int i=0;i<NUM_LOOKUPS;i++)
+		{
+			docids[i] = r.nextInt(numDocs);
+			batches[i] = new int[batchSize];
+			for(int j=0;j<batchSize;j++)
+				batches[i][j] = r.nextInt(numDocs);
+			Arrays.sort(batches[i]);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		index.close();
+		BenchmarkIndexes.deleteTemporaryFolder(folder);
+	}
+	
+	int nextIndex()
+	{
+		if (next == NUM_LOOKUPS)
+			next = 0;
+		return next++;
+	}
+	
+	@Benchmark
+	public String getItem() throws IOException
+	{
+		return meta.getItem("docno", docids[nextIndex()]);
+	}
+	
+	@Benchmark
+	public String[] getItems() throws IOException
+	{
+		return meta.getItems("docno", batches[nextIndex()]);
+	}
+}
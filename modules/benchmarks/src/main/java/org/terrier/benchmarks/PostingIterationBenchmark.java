@@ -0,0 +1,172 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PostingIterationBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.indexing.CompressionFactory;
+import org.terrier.structures.indexing.InvertedIndexRecompresser;
+import org.terrier.structures.integer.IntegerCodecCompressionConfiguration;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.bit.BasicIterablePosting;
+import org.terrier.structures.postings.bit.SkipBasicIterablePosting;
+import org.terrier.structures.postings.integer.BasicIntegerCodingIterablePosting;
+
+/** Measures iterating the posting lists of the most frequent terms of the synthetic 
+ * index, either one posting at a time using next(), or skipping through the posting 
+ * list using next(target), as done by the DAAT matching strategies. The inverted index
+ * is written in the bit format ({@link BasicIterablePosting}), the bit format with skip 
+ * tables ({@link SkipBasicIterablePosting}), or using the integer codecs 
+ * ({@link BasicIntegerCodingIterablePosting}). Scores are per posting list.
+ * @since 5.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostingIterationBenchmark {
+	
+	static final int NUM_TERMS = 16;
+	
+	/** format of the inverted index: bit, skip or integer */
+	@Param({"bit", "skip", "integer"})
+	String format;
+
+	/** where the inverted index is read from, see index.inverted.data-source */
+	@Param({"file", "fileinmem", "mmap"})
+	String dataSource;
+	
+	/** distance between the targets passed to next(target), in docids */
+	@Param({"64"})
+	int skip;
+	
+	File folder;
+	IndexOnDisk index;
+	PostingIndex<?> inverted;
+	LexiconEntry[] entries;
+	int next = 0;
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		folder = BenchmarkIndexes.makeTemporaryFolder();
+		index = BenchmarkIndexes.makeIndex(BenchmarkIndexes.SYNTHETIC, folder);
+		final Class<? extends IterablePosting> postingClass;
+		switch (format) {
+			case "bit": 
+				postingClass = BasicIterablePosting.class;
+				break;
+			case "skip": 
+				postingClass = SkipBasicIterablePosting.class;
+				index = recompress(index, CompressionFactory.SkipCompressionConfiguration.class.getName());
+				break;
+			case "integer": 
+				postingClass = BasicIntegerCodingIterablePosting.class;
+				index = recompress(index, IntegerCodecCompressionConfiguration.class.getName());
+				break;
+			default: throw new IllegalArgumentException("Unknown posting format " + format);
+		}
+		index = BenchmarkIndexes.reopen(index, Collections.singletonMap("index.inverted.data-source", dataSource));
+		inverted = index.getInvertedIndex();
+		Lexicon<String> lex = index.getLexicon();
+		String[] terms = BenchmarkIndexes.getFrequentTerms(index, NUM_TERMS);
+		entries = new LexiconEntry[terms.length];
+		for(int i=0;i<terms.length;i++)
+			entries[i] = lex.getLexiconEntry(terms[i]);
+		IterablePosting ip = inverted.getPostings(entries[0]);
+		if (! postingClass.isInstance(ip))
+			throw new IllegalStateException("Expected " + postingClass.getSimpleName() + " but got " + ip.getClass().getName());
+		ip.close();
+	}
+	
+	static IndexOnDisk recompress(IndexOnDisk index, String compressionConfiguration) throws IOException
+	{
+		final String path = index.getPath();
+		final String prefix = index.getPrefix();
+		index.close();
+		InvertedIndexRecompresser.recompress(path, prefix, compressionConfiguration);
+		return IndexOnDisk.createIndex(path, prefix);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		index.close();
+		BenchmarkIndexes.deleteTemporaryFolder(folder);
+	}
+	
+	LexiconEntry nextEntry()
+	{
+		return entries[next++ % entries.length];
+	}
+	
+	@Benchmark
+	public long iterate() throws IOException
+	{
+		final IterablePosting ip = inverted.getPostings(nextEntry());
+		long sum = 0;
+		while(ip.next() != IterablePosting.EOL)
+			sum += ip.getFrequency();
+		ip.close();
+		return sum;
+	}
+	
+	@Benchmark
+	public long nextTarget() throws IOException
+	{
+		final IterablePosting ip = inverted.getPostings(nextEntry());
+		long sum = 0;
+		int target = 0;
+		int id;
+		while((id = ip.next(target)) != IterablePosting.EOL)
+		{
+			sum += ip.getFrequency();
+			target = id + skip;
+		}
+		ip.close();
+		return sum;
+	}
+}
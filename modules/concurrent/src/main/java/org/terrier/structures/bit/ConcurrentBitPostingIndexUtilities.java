@@ -37,6 +37,8 @@ public class ConcurrentBitPostingIndexUtilities {
 		BitInSeekable bis = bpi.file[0];
 		if (bis instanceof BitFileChannel)
 			return true;
+		if (bis instanceof BitFileMapped)
+			return true;
 		if (bis instanceof ConcurrentBitFileBuffered)
 			return true;
 		if (bis instanceof BitFileInMemoryLarge)
@@ -74,7 +76,8 @@ public class ConcurrentBitPostingIndexUtilities {
 				}
 			}
 		}
-		bpi.doi = newDoi;
+		if (newDoi != null)
+			bpi.doi = newDoi;
 	}
 	
 }
@@ -30,14 +30,22 @@ import java.io.IOException;
 import org.terrier.structures.ConcurrentReadable;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.DocumentIndexEntry;
+import org.terrier.structures.DocumentLengthArray;
 import org.terrier.structures.FieldDocumentIndex;
 
+/** Wraps a document index that cannot be read concurrently, by synchronising on it.
+ * If the parent holds its document lengths in an array (see {@link DocumentLengthArray}), 
+ * document lengths are read directly from that array, without locking. */
 @ConcurrentReadable
 class ConcurrentDocumentIndex implements DocumentIndex {
 
 	DocumentIndex parent;
+	final int[] docLengths;
 	ConcurrentDocumentIndex(DocumentIndex _parent) {
 		this.parent = _parent;
+		this.docLengths = _parent instanceof DocumentLengthArray
+			? ((DocumentLengthArray)_parent).getDocumentLengths()
+			: null;
 	}
 	
 	public DocumentIndexEntry getDocumentEntry(int docid) throws IOException {
@@ -47,6 +55,8 @@ class ConcurrentDocumentIndex implements DocumentIndex {
 	}
 
 	public int getDocumentLength(int docid) throws IOException {
+		if (docLengths != null)
+			return docLengths[docid];
 		synchronized (parent) {
 			return parent.getDocumentLength(docid);
 		}		
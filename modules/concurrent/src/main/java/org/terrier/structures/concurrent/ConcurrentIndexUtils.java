@@ -36,7 +36,10 @@ import org.terrier.structures.MetaIndex;
 import org.terrier.structures.PostingIndex;
 import org.terrier.structures.bit.BitPostingIndex;
 import org.terrier.structures.bit.ConcurrentBitPostingIndexUtilities;
+import org.terrier.structures.collections.FSArrayFile;
 import org.terrier.structures.concurrent.ConcurrentDocumentIndex.ConcurrentFieldDocumentIndex;
+import org.terrier.structures.integer.ConcurrentIntegerCodingPostingIndexUtilities;
+import org.terrier.structures.integer.IntegerCodingPostingIndex;
 
 public class ConcurrentIndexUtils {
 
@@ -49,7 +52,11 @@ public class ConcurrentIndexUtils {
 		for (String s : structures) {
 			if (! index.hasIndexStructure(s))
 				continue;
-			if (! index.getIndexStructure(s).getClass().isAnnotationPresent(ConcurrentReadable.class) )
+			final Object structure = index.getIndexStructure(s);
+			final boolean concurrent = structure instanceof DocumentIndex
+				? isConcurrentReadable((DocumentIndex)structure)
+				: structure.getClass().isAnnotationPresent(ConcurrentReadable.class);
+			if (! concurrent)
 			{
 				logger.debug("Structure " + s + " is not concurrent readable");
 				return false;
@@ -67,14 +74,33 @@ public class ConcurrentIndexUtils {
 					return false;
 				}	
 			}
+			if ( pi instanceof IntegerCodingPostingIndex) {
+				if (! ConcurrentIntegerCodingPostingIndexUtilities.isConcurrent((IntegerCodingPostingIndex) pi))
+				{
+					logger.debug("Structure " + s + " is not using a concurrent bytein");
+					return false;
+				}	
+			}
 		}
 		return true;
 	}
 
+	/** Returns true if the specified document index can be read by several threads at once.
+	 * As well as classes annotated with {@link ConcurrentReadable}, this includes document 
+	 * indices based on an {@link FSArrayFile} whose data-source supports concurrent positional
+	 * reads.
+	 * @since 5.8
+	 */
+	static boolean isConcurrentReadable(DocumentIndex doi) {
+		if (doi.getClass().isAnnotationPresent(ConcurrentReadable.class))
+			return true;
+		return doi instanceof FSArrayFile && ((FSArrayFile<?>)doi).isConcurrentReadable();
+	}
+
 	public static Index makeConcurrentForRetrieval(Index index) {
 		
 		DocumentIndex newDoi = null;
-		if (index.hasIndexStructure("document") && ! index.getDocumentIndex().getClass().isAnnotationPresent(ConcurrentReadable.class) )
+		if (index.hasIndexStructure("document") && ! isConcurrentReadable(index.getDocumentIndex()) )
 		{
 			DocumentIndex oldDoi = index.getDocumentIndex();
 			logger.debug("Upgrading document index "+oldDoi.getClass().getName()+" to be concurrent");
@@ -96,6 +122,10 @@ public class ConcurrentIndexUtils {
 				//NB: this does not add the @ConcurrentReadable annotation
 				ConcurrentBitPostingIndexUtilities.makeConcurrent((BitPostingIndex)inv, newDoi);
 			}
+			else if (inv instanceof IntegerCodingPostingIndex)
+			{
+				ConcurrentIntegerCodingPostingIndexUtilities.makeConcurrent((IntegerCodingPostingIndex)inv, newDoi);
+			}
 			else
 			{
 				throw new IllegalArgumentException("Cannot make a " + inv + " concurrent compatible");
@@ -111,6 +141,10 @@ public class ConcurrentIndexUtils {
 				//NB: this does not add the @ConcurrentReadable annotation
 				ConcurrentBitPostingIndexUtilities.makeConcurrent((BitPostingIndex)dir, newDoi);
 			}
+			else if (dir instanceof IntegerCodingPostingIndex)
+			{
+				ConcurrentIntegerCodingPostingIndexUtilities.makeConcurrent((IntegerCodingPostingIndex)dir, newDoi);
+			}
 			else
 			{
 				throw new IllegalArgumentException("Cannot make a " + dir + " concurrent compatible");
@@ -0,0 +1,54 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ConcurrentIntegerCodingPostingIndexUtilities.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.integer;
+
+import org.terrier.compression.integer.ByteFileBuffered;
+import org.terrier.compression.integer.ByteFileInMemory;
+import org.terrier.compression.integer.ByteFileMapped;
+import org.terrier.compression.integer.ByteInSeekable;
+import org.terrier.structures.DocumentIndex;
+
+/** Counterpart of ConcurrentBitPostingIndexUtilities for IntegerCodingPostingIndex. 
+ * Each of the ByteInSeekable implementations provided with Terrier can be read 
+ * by many threads, so only the document index needs to be replaced.
+ * @since 5.8
+ */
+public class ConcurrentIntegerCodingPostingIndexUtilities {
+
+	public static boolean isConcurrent(IntegerCodingPostingIndex ipi) {
+		ByteInSeekable bis = ipi.file[0];
+		return bis instanceof ByteFileMapped 
+			|| bis instanceof ByteFileInMemory 
+			|| bis instanceof ByteFileBuffered;
+	}
+	
+	public static void makeConcurrent(IntegerCodingPostingIndex ipi, DocumentIndex newDoi)
+	{
+		if (! isConcurrent(ipi))
+			throw new UnsupportedOperationException("Cannot make " + ipi.file[0].getClass().getName() + " thread-safe");
+		if (newDoi != null)
+			ipi.doi = newDoi;
+	}
+}
@@ -25,6 +25,7 @@
  */
 package org.terrier.structures.concurrent;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
@@ -37,6 +38,9 @@ import org.terrier.structures.concurrent.ConcurrentIndexUtils;
 import org.terrier.structures.ConcurrentReadable;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexFactory;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.postings.IterablePosting;
 import org.terrier.tests.ApplicationSetupBasedTest;
 
 public class TestConcurrentIndexLoader extends ApplicationSetupBasedTest {
@@ -73,4 +77,29 @@ public class TestConcurrentIndexLoader extends ApplicationSetupBasedTest {
 		
 	}
 	
+	@Test public void testMappedIndex() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(new String[]{"doc1", "doc2"}, new String[]{"the quick fox", "and all that quick stuff"});
+		for(String structure : new String[]{"inverted", "direct", "lexicon", "document", "meta"})
+			index.setIndexProperty("index."+structure+".data-source", "mmap");
+		index.flush();
+		String path = index.getPath(), prefix = index.getPrefix();
+		index.close();
+		
+		index = IndexOnDisk.createIndex(path, prefix);
+		ConcurrentIndexUtils.makeConcurrentForRetrieval(index);
+		assertTrue(ConcurrentIndexUtils.isConcurrent(index));
+		LexiconEntry le = index.getLexicon().getLexiconEntry("quick");
+		assertNotNull(le);
+		assertEquals(2, le.getDocumentFrequency());
+		IterablePosting ip = index.getInvertedIndex().getPostings(le);
+		assertEquals(0, ip.next());
+		assertEquals(2, ip.getDocumentLength());
+		assertEquals(1, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next());
+		assertEquals("doc2", index.getMetaIndex().getItem("docno", 1));
+		assertEquals(2, index.getDocumentIndex().getDocumentLength(1));
+		index.close();
+	}
+	
 }
@@ -0,0 +1,151 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BitFileMapped.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.compression.bit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.terrier.utility.io.RandomDataInputMapped;
+
+/** 
+ * Allows access to bit compressed files that are memory mapped. Unlike 
+ * BitFileBuffered, no buffer is allocated or filled when a BitIn is opened, 
+ * and unlike BitFileInMemory, the file is not loaded onto the heap and may 
+ * be larger than 2GB. Each BitIn reads directly from the mapped segments without 
+ * locking, so this class can be used by many threads concurrently. 
+ * Use data-source=mmap in the index properties to select this implementation
+ * for a posting index, e.g. <tt>index.inverted.data-source=mmap</tt>.
+ * @since 5.8
+ */
+public class BitFileMapped implements BitInSeekable {
+	
+	/** the underlying mapped file */
+	protected final RandomDataInputMapped data;
+	/** length of the underlying file */
+	protected final long fileSize;
+	
+	/**
+	 * constructor
+	 * @param _data
+	 */
+	public BitFileMapped(RandomDataInputMapped _data)
+	{
+		this.data = _data;
+		this.fileSize = _data.length();
+	}
+	
+	/**
+	 * memory map the specified file
+	 * @param filename
+	 * @throws IOException
+	 */
+	public BitFileMapped(String filename) throws IOException
+	{
+		this(new RandomDataInputMapped(filename));
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public BitIn readReset(long startByteOffset, byte startBitOffset, long endByteOffset, byte endBitOffset) 
+	{
+		return new MappedBitIn(startByteOffset, startBitOffset);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BitIn readReset(long startByteOffset, byte startBitOffset) 
+	{
+		return new MappedBitIn(startByteOffset, startBitOffset);
+	}
+
+	/** Does nothing, as the mapping is released by garbage collection */
+	@Override
+	public void close() {}
+	
+	/** BitIn implementation that reads from the current mapped segment */
+	final class MappedBitIn extends BitInBase
+	{
+		/** the segment containing offset */
+		ByteBuffer segment;
+		/** file offset of the start of the segment */
+		long segmentStart;
+		/** file offset of the end of the segment (exclusive) */
+		long segmentEnd;
+		
+		MappedBitIn(long startByteOffset, byte startBitOffset)
+		{
+			offset = startByteOffset;
+			bitOffset = startBitOffset;
+			moveTo();
+		}
+		
+		/** finds the segment for offset and reads the byte at offset */
+		private void moveTo()
+		{
+			if (offset >= fileSize)
+			{
+				//reading beyond the end of the file, e.g. after the last bit has been read
+				byteRead = 0;
+				segmentStart = segmentEnd = offset;
+				return;
+			}
+			segment = data.getSegment(offset);
+			segmentStart = data.getSegmentStart(offset);
+			segmentEnd = segmentStart + segment.limit();
+			byteRead = segment.get((int)(offset - segmentStart));
+		}
+
+		@Override
+		protected void incrByte() {
+			if (++offset < segmentEnd)
+				byteRead = segment.get((int)(offset - segmentStart));
+			else
+				moveTo();
+		}
+
+		@Override
+		protected void incrByte(int i) {
+			offset += i;
+			if (offset < segmentEnd)
+				byteRead = segment.get((int)(offset - segmentStart));
+			else
+				moveTo();
+		}
+		
+		@Override
+		public void skipBytes(long len) {
+			offset += len;
+			bitOffset = 0;
+			if (offset >= segmentStart && offset < segmentEnd)
+				byteRead = segment.get((int)(offset - segmentStart));
+			else
+				moveTo();
+		}
+
+		/** Does nothing */
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteFileBuffered.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.terrier.utility.Files;
+import org.terrier.utility.io.RandomDataInput;
+
+/** Implementation of ByteInSeekable that buffers only a small area of the file
+ * for each ByteIn, in the same manner as {@link org.terrier.compression.bit.BitFileBuffered}.
+ * Each ByteIn has its own buffer, and reads into it using 
+ * {@link RandomDataInput#readFullyDirect(byte[], long, int)}, hence several ByteIn may
+ * be used concurrently.
+ * @since 5.8
+ */
+public class ByteFileBuffered implements ByteInSeekable {
+	
+	/** how much of a file to buffer by default */	
+	protected static final int DEFAULT_BUFFER_LENGTH = 8*1024;
+	/** The underlying file */
+	protected final RandomDataInput file;
+	/** how much of this file we will buffer */
+	protected final int bufferSize;
+	/** how big the file is, so we know when to stop reading */
+	protected final long fileSize;
+
+	/** Constructs an instance of the class for a given filename, using the default buffer size */
+	public ByteFileBuffered(String filename) throws IOException {
+		this(filename, DEFAULT_BUFFER_LENGTH);
+	}
+	
+	/** Constructs an instance of the class for a given filename and buffer size */
+	public ByteFileBuffered(String filename, int bufSize) throws IOException {
+		this(Files.openFileRandom(filename), bufSize);
+	}
+	
+	/** Constructs an instance of the class for a given RandomDataInput and buffer size */
+	public ByteFileBuffered(RandomDataInput f, int bufSize) throws IOException {
+		this.file = f;
+		this.bufferSize = bufSize;
+		this.fileSize = f.length();
+	}
+	
+	@Override
+	public ByteIn readReset(long startByteOffset) {
+		return new ByteInBuffered(startByteOffset);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+	
+	/** Reads len bytes at the specified offset of the underlying file */
+	protected void read(byte[] dst, int off, long offset, int len) throws IOException
+	{
+		if (offset + len > fileSize)
+			throw new EOFException("Read past end of file at offset " + offset);
+		if (off == 0) {
+			synchronized (file) {
+				file.readFullyDirect(dst, offset, len);
+			}
+		} else {
+			synchronized (file) {
+				file.seek(offset);
+				file.readFully(dst, off, len);
+			}
+		}
+	}
+	
+	/** a ByteIn which reads into its own buffer */
+	protected class ByteInBuffered implements ByteIn
+	{
+		final byte[] buffer;
+		/** file offset of buffer[0] */
+		long bufferStart;
+		/** position of the next byte to read in the buffer */
+		int pos = 0;
+		/** number of valid bytes in the buffer */
+		int limit = 0;
+		
+		ByteInBuffered(long startByteOffset)
+		{
+			buffer = new byte[(int)Math.max(1, Math.min(bufferSize, fileSize - startByteOffset))];
+			bufferStart = startByteOffset;
+		}
+		
+		/** moves the buffer to start at the current offset */
+		final void fill() throws IOException
+		{
+			bufferStart += pos;
+			pos = 0;
+			limit = (int)Math.min(buffer.length, fileSize - bufferStart);
+			if (limit <= 0)
+			{
+				limit = 0;
+				throw new EOFException("Read past end of file at offset " + bufferStart);
+			}
+			read(buffer, 0, bufferStart, limit);
+		}
+		
+		@Override
+		public int readByte() throws IOException {
+			if (pos == limit)
+				fill();
+			return buffer[pos++] & 0xFF;
+		}
+
+		@Override
+		public int readVInt() throws IOException {
+			int b = readByte();
+			int x = b & 0x7F;
+			for(int shift = 7; (b & 0x80) != 0; shift += 7)
+			{
+				b = readByte();
+				x |= (b & 0x7F) << shift;
+			}
+			return x;
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) throws IOException {
+			final int available = limit - pos;
+			if (len <= available)
+			{
+				System.arraycopy(buffer, pos, b, off, len);
+				pos += len;
+				return;
+			}
+			System.arraycopy(buffer, pos, b, off, available);
+			pos += available;
+			off += available;
+			len -= available;
+			if (len >= buffer.length)
+			{
+				//large read, bypass the buffer
+				read(b, off, bufferStart + pos, len);
+				bufferStart += pos + len;
+				pos = limit = 0;
+				return;
+			}
+			fill();
+			if (len > limit)
+				throw new EOFException("Read past end of file at offset " + bufferStart);
+			System.arraycopy(buffer, 0, b, off, len);
+			pos = len;
+		}
+
+		@Override
+		public void skipBytes(long len) throws IOException {
+			if (pos + len <= limit)
+			{
+				pos += len;
+			}
+			else
+			{
+				//the buffer is refilled at the next read
+				bufferStart += pos + len;
+				pos = limit = 0;
+			}
+		}
+
+		@Override
+		public long getByteOffset() {
+			return bufferStart + pos;
+		}
+		
+		/** Does nothing */
+		@Override
+		public void close() {}
+	}
+}
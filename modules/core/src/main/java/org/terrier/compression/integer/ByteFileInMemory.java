@@ -0,0 +1,125 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteFileInMemory.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.terrier.utility.Files;
+
+/** Implementation of ByteInSeekable that reads the entire file into memory. 
+ * The file must be less than Integer.MAX_VALUE (2GB) in length.
+ * @since 5.8
+ */
+public class ByteFileInMemory implements ByteInSeekable {
+
+	/** the contents of the file */
+	protected final byte[] data;
+	
+	/** Loads the specified file into memory */
+	public ByteFileInMemory(String filename) throws IOException
+	{
+		final long length = Files.length(filename);
+		if (length > Integer.MAX_VALUE - 8)
+			throw new IOException("File " + filename + " is too large to be loaded into memory by " 
+				+ this.getClass().getSimpleName() + ", use data-source=file instead");
+		data = new byte[(int)length];
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(filename)))
+		{
+			dis.readFully(data);
+		}
+	}
+	
+	/** Makes an instance for the specified array */
+	public ByteFileInMemory(byte[] _data)
+	{
+		this.data = _data;
+	}
+	
+	@Override
+	public ByteIn readReset(long startByteOffset) {
+		return new ByteInMemory(data, (int)startByteOffset);
+	}
+
+	/** Does nothing */
+	@Override
+	public void close() {}
+	
+	/** a ByteIn that reads from a byte array */
+	protected static class ByteInMemory implements ByteIn
+	{
+		final byte[] data;
+		int pos;
+		
+		ByteInMemory(byte[] _data, int offset)
+		{
+			this.data = _data;
+			this.pos = offset;
+		}
+		
+		@Override
+		public int readByte() throws IOException {
+			if (pos >= data.length)
+				throw new EOFException();
+			return data[pos++] & 0xFF;
+		}
+
+		@Override
+		public int readVInt() throws IOException {
+			int b = readByte();
+			int x = b & 0x7F;
+			for(int shift = 7; (b & 0x80) != 0; shift += 7)
+			{
+				b = readByte();
+				x |= (b & 0x7F) << shift;
+			}
+			return x;
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) throws IOException {
+			if (pos + len > data.length)
+				throw new EOFException();
+			System.arraycopy(data, pos, b, off, len);
+			pos += len;
+		}
+
+		@Override
+		public void skipBytes(long len) {
+			pos += len;
+		}
+
+		@Override
+		public long getByteOffset() {
+			return pos;
+		}
+
+		/** Does nothing */
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteFileMapped.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.compression.integer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.terrier.utility.io.RandomDataInputMapped;
+
+/** Implementation of ByteInSeekable that memory maps the file. Files larger 
+ * than 2GB are supported, and the ByteIn objects read directly from the mapped 
+ * segments without locking, so this class can be used by many threads concurrently.
+ * @since 5.8
+ */
+public class ByteFileMapped implements ByteInSeekable {
+
+	/** the underlying mapped file */
+	protected final RandomDataInputMapped data;
+	/** length of the underlying file */
+	protected final long fileSize;
+	
+	/** Memory maps the specified file */
+	public ByteFileMapped(String filename) throws IOException
+	{
+		this(new RandomDataInputMapped(filename));
+	}
+	
+	/** Makes an instance for the specified mapped file */
+	public ByteFileMapped(RandomDataInputMapped _data)
+	{
+		this.data = _data;
+		this.fileSize = _data.length();
+	}
+	
+	@Override
+	public ByteIn readReset(long startByteOffset) {
+		return new ByteInMapped(startByteOffset);
+	}
+
+	/** Does nothing, as the mapping is released by garbage collection */
+	@Override
+	public void close() {}
+	
+	/** a ByteIn that reads from the current mapped segment */
+	protected class ByteInMapped implements ByteIn
+	{
+		long pos;
+		ByteBuffer segment;
+		long segmentStart;
+		long segmentEnd;
+		
+		ByteInMapped(long offset)
+		{
+			this.pos = offset;
+			this.segmentStart = this.segmentEnd = offset;
+		}
+		
+		@Override
+		public int readByte() throws IOException {
+			if (pos >= segmentEnd)
+			{
+				if (pos >= fileSize)
+					throw new EOFException();
+				segment = data.getSegment(pos);
+				segmentStart = data.getSegmentStart(pos);
+				segmentEnd = segmentStart + segment.limit();
+			}
+			return segment.get((int)(pos++ - segmentStart)) & 0xFF;
+		}
+
+		@Override
+		public int readVInt() throws IOException {
+			int b = readByte();
+			int x = b & 0x7F;
+			for(int shift = 7; (b & 0x80) != 0; shift += 7)
+			{
+				b = readByte();
+				x |= (b & 0x7F) << shift;
+			}
+			return x;
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return;
+			if (pos >= segmentStart && pos + len <= segmentEnd)
+			{
+				//duplicate to obtain a position that is not shared with other threads
+				ByteBuffer dup = segment.duplicate();
+				dup.position((int)(pos - segmentStart));
+				dup.get(b, off, len);
+			}
+			else
+				data.readFullyDirect(b, off, pos, len);
+			pos += len;
+		}
+
+		@Override
+		public void skipBytes(long len) {
+			pos += len;
+		}
+
+		@Override
+		public long getByteOffset() {
+			return pos;
+		}
+
+		/** Does nothing */
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteIn.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Interface for reading a byte-aligned compressed stream, such as those
+ * written by {@link IntegerCodec} implementations.
+ * Integers written using {@link ByteOut#writeVInt(int)} are read using {@link #readVInt()}.
+ * @since 5.8
+ * @see ByteOut
+ * @see ByteInSeekable
+ */
+public interface ByteIn extends Closeable {
+	
+	/** Reads a single byte, as an int between 0 and 255 */
+	int readByte() throws IOException;
+	
+	/** Reads a variable-byte encoded integer */
+	int readVInt() throws IOException;
+	
+	/** Reads len bytes into the specified array */
+	void readFully(byte[] b, int off, int len) throws IOException;
+	
+	/** Skips over the specified number of bytes */
+	void skipBytes(long len) throws IOException;
+	
+	/** Returns the byte offset of the next byte to be read */
+	long getByteOffset();
+}
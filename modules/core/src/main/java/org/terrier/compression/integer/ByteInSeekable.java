@@ -0,0 +1,47 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteInSeekable.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Interface for reading a byte-aligned compressed file in a random access manner.
+ * Two implementations exist:
+ * <ul>
+ * <li>{@link ByteFileBuffered} - buffers an amount of data starting at the specified offset.</li>
+ * <li>{@link ByteFileInMemory} - reads the entire file into memory. File must be less than Integer.MAX_VALUE (2GB).</li>
+ * </ul>
+ * @since 5.8
+ */
+public interface ByteInSeekable extends Closeable {
+	
+	/**
+	 * Returns a ByteIn that reads from the specified offset of the file.
+	 * @param startByteOffset the starting byte to read from
+	 * @return Returns the ByteIn object to use to read that data
+	 */
+	ByteIn readReset(long startByteOffset) throws IOException;
+}
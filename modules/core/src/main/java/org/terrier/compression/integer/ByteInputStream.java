@@ -0,0 +1,115 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteInputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.terrier.utility.Files;
+
+/** A {@link ByteIn} implementation that reads sequentially from an InputStream.
+ * @since 5.8
+ */
+public class ByteInputStream implements ByteIn {
+
+	/** the underlying stream */
+	protected final DataInputStream in;
+	/** number of bytes read so far */
+	protected long byteOffset = 0;
+	
+	/** Constructs an instance that reads the specified file */
+	public ByteInputStream(String filename) throws IOException
+	{
+		this(new BufferedInputStream(Files.openFileStream(filename), 64 * 1024));
+	}
+	
+	/** Constructs an instance that reads from the specified stream */
+	public ByteInputStream(InputStream is)
+	{
+		this.in = new DataInputStream(is);
+	}
+	
+	@Override
+	public int readByte() throws IOException {
+		final int b = in.read();
+		if (b == -1)
+			throw new EOFException();
+		byteOffset++;
+		return b;
+	}
+
+	@Override
+	public int readVInt() throws IOException {
+		int b = readByte();
+		int x = b & 0x7F;
+		for(int shift = 7; (b & 0x80) != 0; shift += 7)
+		{
+			b = readByte();
+			x |= (b & 0x7F) << shift;
+		}
+		return x;
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		in.readFully(b, off, len);
+		byteOffset += len;
+	}
+
+	@Override
+	public void skipBytes(long len) throws IOException {
+		long remaining = len;
+		while(remaining > 0)
+		{
+			final long skipped = in.skip(remaining);
+			if (skipped <= 0)
+			{
+				//skip() may refuse to move, read a byte to make progress or detect EOF
+				if (in.read() == -1)
+					throw new EOFException();
+				remaining--;
+			}
+			else
+			{
+				remaining -= skipped;
+			}
+		}
+		byteOffset += len;
+	}
+
+	@Override
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
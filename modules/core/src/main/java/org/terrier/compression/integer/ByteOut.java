@@ -0,0 +1,50 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteOut.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Interface for writing a byte-aligned compressed stream.
+ * @since 5.8
+ * @see ByteIn
+ */
+public interface ByteOut extends Closeable {
+	
+	/** Writes the low 8 bits of the specified int */
+	void writeByte(int b) throws IOException;
+	
+	/** Writes an integer using variable-byte encoding, 7 bits per byte, 
+	 * least significant group first. Negative integers take 5 bytes. 
+	 * @return the number of bytes written */
+	int writeVInt(int x) throws IOException;
+	
+	/** Writes len bytes from the specified array */
+	void write(byte[] b, int off, int len) throws IOException;
+	
+	/** Returns the number of bytes written so far */
+	long getByteOffset();
+}
@@ -0,0 +1,103 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteOutputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.terrier.utility.Files;
+
+/** A {@link ByteOut} implementation that writes to an OutputStream.
+ * @since 5.8
+ */
+public class ByteOutputStream implements ByteOut {
+
+	/** the underlying stream */
+	protected final OutputStream out;
+	/** number of bytes written so far */
+	protected long byteOffset = 0;
+	
+	/** Constructs an instance that writes to the specified file */
+	public ByteOutputStream(String filename) throws IOException
+	{
+		this(new BufferedOutputStream(Files.writeFileStream(filename), 64 * 1024));
+	}
+	
+	/** Constructs an instance that writes to the specified stream */
+	public ByteOutputStream(OutputStream os)
+	{
+		this.out = os;
+	}
+	
+	@Override
+	public void writeByte(int b) throws IOException {
+		out.write(b);
+		byteOffset++;
+	}
+
+	@Override
+	public int writeVInt(int x) throws IOException {
+		int bytes = 1;
+		while((x & ~0x7F) != 0)
+		{
+			out.write((x & 0x7F) | 0x80);
+			x >>>= 7;
+			bytes++;
+		}
+		out.write(x);
+		byteOffset += bytes;
+		return bytes;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		byteOffset += len;
+	}
+
+	@Override
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+	
+	/** Returns the number of bytes that {@link #writeVInt(int)} would use for the specified integer */
+	public static int getVIntSize(int x)
+	{
+		int bytes = 1;
+		while((x & ~0x7F) != 0)
+		{
+			x >>>= 7;
+			bytes++;
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.IOException;
+
+import org.terrier.utility.ApplicationSetup;
+
+/** Base class for a codec that compresses arrays of non-negative integers into
+ * a byte-aligned stream. Codecs are used by the integer compression layer 
+ * (see <tt>org.terrier.structures.integer</tt>) to compress each payload of a 
+ * chunk of postings, e.g. the docid gaps or the frequencies of 128 postings.
+ * <p>Codecs may keep buffers between calls, and hence are not thread-safe. 
+ * Implementations must have a public default constructor.
+ * @since 5.8
+ */
+public abstract class IntegerCodec {
+	
+	/** the package in which codecs named without a package are found */
+	public static final String CODEC_PACKAGE = "org.terrier.compression.integer.codec";
+	
+	/** Compresses the first len integers of the specified array 
+	 * @param in integers to compress, which must be non-negative
+	 * @param len number of integers to compress
+	 * @param out where to write the compressed integers
+	 */
+	public abstract void compress(int[] in, int len, ByteOut out) throws IOException;
+	
+	/** Decompresses len integers into the specified array
+	 * @param in where to read the compressed integers from 
+	 * @param out the array to decompress into, must have at least len entries
+	 * @param len number of integers to decompress, as passed to compress()
+	 */
+	public abstract void decompress(ByteIn in, int[] out, int len) throws IOException;
+	
+	/** Returns the codec class with the given name. Names without a package are 
+	 * assumed to be in {@link #CODEC_PACKAGE}.
+	 */
+	public static Class<? extends IntegerCodec> getCodecClass(String name)
+	{
+		if (! name.contains("."))
+			name = CODEC_PACKAGE + "." + name;
+		try{
+			return ApplicationSetup.getClass(name).asSubclass(IntegerCodec.class);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unknown integer codec " + name, e);
+		}
+	}
+	
+	/** Returns a new instance of the codec with the given name. Names without a package are 
+	 * assumed to be in {@link #CODEC_PACKAGE}.
+	 */
+	public static IntegerCodec getCodec(String name)
+	{
+		try{
+			return getCodecClass(name).getConstructor().newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Could not instantiate integer codec " + name, e);
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		return this.getClass().getSimpleName();
+	}
+}
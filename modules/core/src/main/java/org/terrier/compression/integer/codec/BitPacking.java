@@ -0,0 +1,97 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BitPacking.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer.codec;
+
+/** Utility methods for packing integers into a fixed number of bits each, 
+ * least significant bits first. Used by the frame-of-reference codecs.
+ * @since 5.8
+ */
+final class BitPacking {
+	
+	private BitPacking() {}
+	
+	/** number of bits needed to represent the specified value, treated as unsigned */
+	static int bits(int x)
+	{
+		return 32 - Integer.numberOfLeadingZeros(x);
+	}
+	
+	/** number of bytes needed to pack len integers of the specified width */
+	static int packedBytes(int len, int bits)
+	{
+		return (int) (((long)len * bits + 7) >>> 3);
+	}
+	
+	/** packs the low bits of (in[i] - base) for the first len integers into out, starting at offset 0 */
+	static void pack(final int[] in, final int len, final int base, final int bits, final byte[] out)
+	{
+		if (bits == 0)
+			return;
+		final long mask = (1L << bits) - 1;
+		long acc = 0;
+		int accBits = 0;
+		int p = 0;
+		for(int i=0;i<len;i++)
+		{
+			acc |= ((in[i] - base) & mask) << accBits;
+			accBits += bits;
+			while(accBits >= 8)
+			{
+				out[p++] = (byte)acc;
+				acc >>>= 8;
+				accBits -= 8;
+			}
+		}
+		if (accBits > 0)
+			out[p] = (byte)acc;
+	}
+	
+	/** unpacks len integers of the specified width from in, starting at offset 0, adding base to each */
+	static void unpack(final byte[] in, final int len, final int base, final int bits, final int[] out)
+	{
+		if (bits == 0)
+		{
+			for(int i=0;i<len;i++)
+				out[i] = base;
+			return;
+		}
+		final long mask = (1L << bits) - 1;
+		long acc = 0;
+		int accBits = 0;
+		int p = 0;
+		for(int i=0;i<len;i++)
+		{
+			while(accBits < bits)
+			{
+				acc |= (in[p++] & 0xFFL) << accBits;
+				accBits += 8;
+			}
+			out[i] = (int)(acc & mask) + base;
+			acc >>>= bits;
+			accBits -= bits;
+		}
+	}
+}
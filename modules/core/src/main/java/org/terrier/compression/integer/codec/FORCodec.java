@@ -0,0 +1,84 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is FORCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer.codec;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOut;
+import org.terrier.compression.integer.IntegerCodec;
+
+/** Frame-of-reference (FOR) codec [Goldstein et al., ICDE 1998]. The minimum value of the
+ * array is written as a variable byte integer, followed by the number of bits b needed
+ * to represent the largest difference from the minimum, followed by all differences 
+ * packed using b bits each. Decoding is branch-free within a chunk, but a single large 
+ * value causes all values of the chunk to use a large width; see {@link PForDeltaCodec}.
+ * @since 5.8
+ */
+public class FORCodec extends IntegerCodec {
+	
+	protected byte[] buffer = new byte[512];
+	
+	@Override
+	public void compress(int[] in, int len, ByteOut out) throws IOException {
+		if (len == 0)
+			return;
+		int min = in[0];
+		int max = in[0];
+		for(int i=1;i<len;i++)
+		{
+			if (in[i] < min)
+				min = in[i];
+			if (in[i] > max)
+				max = in[i];
+		}
+		final int bits = BitPacking.bits(max - min);
+		final int bytes = BitPacking.packedBytes(len, bits);
+		ensureCapacity(bytes);
+		BitPacking.pack(in, len, min, bits, buffer);
+		out.writeVInt(min);
+		out.writeByte(bits);
+		out.write(buffer, 0, bytes);
+	}
+
+	@Override
+	public void decompress(ByteIn in, int[] out, int len) throws IOException {
+		if (len == 0)
+			return;
+		final int min = in.readVInt();
+		final int bits = in.readByte();
+		final int bytes = BitPacking.packedBytes(len, bits);
+		ensureCapacity(bytes);
+		in.readFully(buffer, 0, bytes);
+		BitPacking.unpack(buffer, len, min, bits, out);
+	}
+	
+	protected final void ensureCapacity(int bytes)
+	{
+		if (buffer.length < bytes)
+			buffer = new byte[Math.max(bytes, 2 * buffer.length)];
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PForDeltaCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOut;
+import org.terrier.compression.integer.IntegerCodec;
+
+/** Patched frame-of-reference (PFor) codec [Zukowski et al., ICDE 2006; Yan et al., WWW 2009].
+ * The low b bits of every integer are packed using b bits each, while the integers 
+ * that do not fit in b bits (exceptions) have their remaining high bits written afterwards 
+ * as variable byte integers, together with their positions. The width b is chosen per 
+ * chunk to minimise the compressed size, as in OptPFD. The layout is:
+ * <tt>b (1 byte), number of exceptions (vint), packed low bits, (position gap (vint), high bits (vint))*</tt>.
+ * When used for docid gaps, the deltas are computed by the caller.
+ * @since 5.8
+ */
+public class PForDeltaCodec extends IntegerCodec {
+	
+	protected byte[] buffer = new byte[512];
+	protected final int[] widthCounts = new int[33];
+	
+	@Override
+	public void compress(int[] in, int len, ByteOut out) throws IOException {
+		if (len == 0)
+			return;
+		final int[] counts = widthCounts;
+		Arrays.fill(counts, 0);
+		for(int i=0;i<len;i++)
+			counts[BitPacking.bits(in[i])]++;
+		
+		//choose the width with the smallest estimated size 
+		int bestBits = 32;
+		long bestCost = Long.MAX_VALUE;
+		for(int b = 32; b >= 0; b--)
+		{
+			long cost = BitPacking.packedBytes(len, b);
+			for(int w = b+1; w <= 32; w++)
+				if (counts[w] > 0)
+					//position gap (usually 1 byte) plus the high bits
+					cost += counts[w] * (1 + (w - b + 6) / 7);
+			if (cost <= bestCost)
+			{
+				bestCost = cost;
+				bestBits = b;
+			}
+		}
+		final int bits = bestBits;
+		int exceptions = 0;
+		for(int w = bits+1; w <= 32; w++)
+			exceptions += counts[w];
+		
+		final int bytes = BitPacking.packedBytes(len, bits);
+		ensureCapacity(bytes);
+		BitPacking.pack(in, len, 0, bits, buffer);
+		out.writeByte(bits);
+		out.writeVInt(exceptions);
+		out.write(buffer, 0, bytes);
+		if (exceptions > 0)
+		{
+			int lastPos = 0;
+			for(int i=0;i<len;i++)
+			{
+				if (BitPacking.bits(in[i]) > bits)
+				{
+					out.writeVInt(i - lastPos);
+					out.writeVInt(in[i] >>> bits);
+					lastPos = i;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void decompress(ByteIn in, int[] out, int len) throws IOException {
+		if (len == 0)
+			return;
+		final int bits = in.readByte();
+		final int exceptions = in.readVInt();
+		final int bytes = BitPacking.packedBytes(len, bits);
+		ensureCapacity(bytes);
+		in.readFully(buffer, 0, bytes);
+		BitPacking.unpack(buffer, len, 0, bits, out);
+		int pos = 0;
+		for(int i=0;i<exceptions;i++)
+		{
+			pos += in.readVInt();
+			out[pos] |= in.readVInt() << bits;
+		}
+	}
+	
+	protected final void ensureCapacity(int bytes)
+	{
+		if (buffer.length < bytes)
+			buffer = new byte[Math.max(bytes, 2 * buffer.length)];
+	}
+}
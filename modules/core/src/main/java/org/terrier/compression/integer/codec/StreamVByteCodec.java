@@ -0,0 +1,129 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is StreamVByteCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOut;
+import org.terrier.compression.integer.IntegerCodec;
+
+/** Stream VByte codec [Lemire et al., Information Processing Letters 2018]. 
+ * The byte length (1-4) of each integer is recorded as a 2-bit code in a stream of control 
+ * bytes (4 integers per control byte), which is followed by the stream of data bytes. 
+ * Separating the lengths from the data removes the per-byte branch of classical 
+ * variable byte decoding ({@link VIntCodec}).
+ * @since 5.8
+ */
+public class StreamVByteCodec extends IntegerCodec {
+	
+	/** number of data bytes described by each possible control byte */
+	static final int[] DATA_LENGTHS = new int[256];
+	static {
+		for(int c=0;c<256;c++)
+			DATA_LENGTHS[c] = 4 + (c & 3) + ((c >>> 2) & 3) + ((c >>> 4) & 3) + ((c >>> 6) & 3);
+	}
+	
+	protected byte[] buffer = new byte[1024];
+	
+	@Override
+	public void compress(int[] in, int len, ByteOut out) throws IOException {
+		if (len == 0)
+			return;
+		final int controlBytes = (len + 3) >>> 2;
+		ensureCapacity(controlBytes + 4 * len);
+		final byte[] buf = buffer;
+		Arrays.fill(buf, 0, controlBytes, (byte)0);
+		int p = controlBytes;
+		for(int i=0;i<len;i++)
+		{
+			final int v = in[i];
+			final int code = v >>> 8 == 0 ? 0 : v >>> 16 == 0 ? 1 : v >>> 24 == 0 ? 2 : 3;
+			buf[i >>> 2] |= code << ((i & 3) << 1);
+			buf[p++] = (byte)v;
+			if (code > 0)
+			{
+				buf[p++] = (byte)(v >>> 8);
+				if (code > 1)
+				{
+					buf[p++] = (byte)(v >>> 16);
+					if (code > 2)
+						buf[p++] = (byte)(v >>> 24);
+				}
+			}
+		}
+		out.write(buf, 0, p);
+	}
+
+	@Override
+	public void decompress(ByteIn in, int[] out, int len) throws IOException {
+		if (len == 0)
+			return;
+		final int controlBytes = (len + 3) >>> 2;
+		ensureCapacity(controlBytes);
+		in.readFully(buffer, 0, controlBytes);
+		//unused codes in the last control byte are 0, i.e. one byte each
+		int dataBytes = (len & 3) == 0 ? 0 : (len & 3) - 4;
+		for(int k=0;k<controlBytes;k++)
+			dataBytes += DATA_LENGTHS[buffer[k] & 0xFF];
+		ensureCapacity(controlBytes + dataBytes);
+		final byte[] buf = buffer;
+		in.readFully(buf, controlBytes, dataBytes);
+		int p = controlBytes;
+		for(int i=0;i<len;i++)
+		{
+			final int code = (buf[i >>> 2] >>> ((i & 3) << 1)) & 3;
+			switch (code) {
+			case 0:
+				out[i] = buf[p] & 0xFF;
+				p += 1;
+				break;
+			case 1:
+				out[i] = (buf[p] & 0xFF) | (buf[p+1] & 0xFF) << 8;
+				p += 2;
+				break;
+			case 2:
+				out[i] = (buf[p] & 0xFF) | (buf[p+1] & 0xFF) << 8 | (buf[p+2] & 0xFF) << 16;
+				p += 3;
+				break;
+			default:
+				out[i] = (buf[p] & 0xFF) | (buf[p+1] & 0xFF) << 8 | (buf[p+2] & 0xFF) << 16 | (buf[p+3] & 0xFF) << 24;
+				p += 4;
+			}
+		}
+	}
+	
+	protected final void ensureCapacity(int bytes)
+	{
+		if (buffer.length < bytes)
+		{
+			byte[] newBuffer = new byte[Math.max(bytes, 2 * buffer.length)];
+			System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
+			buffer = newBuffer;
+		}
+	}
+}
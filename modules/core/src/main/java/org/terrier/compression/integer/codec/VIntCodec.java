@@ -0,0 +1,51 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is VIntCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.compression.integer.codec;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOut;
+import org.terrier.compression.integer.IntegerCodec;
+
+/** Variable byte codec: each integer is written using 7 bits per byte, the high bit
+ * of each byte indicating whether more bytes follow.
+ * @since 5.8
+ */
+public class VIntCodec extends IntegerCodec {
+
+	@Override
+	public void compress(int[] in, int len, ByteOut out) throws IOException {
+		for(int i=0;i<len;i++)
+			out.writeVInt(in[i]);
+	}
+
+	@Override
+	public void decompress(ByteIn in, int[] out, int len) throws IOException {
+		for(int i=0;i<len;i++)
+			out[i] = in.readVInt();
+	}
+}
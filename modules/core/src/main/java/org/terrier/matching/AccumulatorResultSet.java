@@ -114,7 +114,6 @@ public class AccumulatorResultSet implements ResultSet, Serializable
 	public void initialise() 
 	{
 		this.docids = scoresMap.keys();
-		System.out.println(java.util.Arrays.toString(this.docids));
 		this.scores = scoresMap.getValues();
 		this.occurrences = occurrencesMap.getValues();		
 		resultSize = this.docids.length;
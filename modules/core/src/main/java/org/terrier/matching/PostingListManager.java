@@ -41,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.matching.matchops.MatchingEntry;
 import org.terrier.matching.matchops.Operator;
+import org.terrier.matching.matchops.SingleTermOp;
 import org.terrier.matching.models.WeightingModel;
 import org.terrier.querying.Request;
 import org.terrier.structures.CollectionStatistics;
@@ -50,8 +51,10 @@ import org.terrier.structures.Lexicon;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
+import org.terrier.structures.TermScoreUpperBounds;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.Posting;
+import org.terrier.structures.postings.PostingListCache;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.ArrayUtils;
 
@@ -64,6 +67,7 @@ import org.terrier.utility.ArrayUtils;
  * <ul>
  * <li> <tt>ignore.low.idf.terms</tt> - should terms with low IDF (i.e. very frequent) be ignored? Defaults to false, i.e. ignored</li>
  * <li> <tt>matching.postinglist.manager.plugins</tt> - Comma delimited list of PostingListManagerPlugin classes to load.</li>
+ * <li> <tt>postinglist.cache.max.bytes</tt> - size of the {@link PostingListCache} of decoded posting lists for frequently accessed terms. Defaults to 0, i.e. disabled.</li>
  * </ul>
  * <p><b>Example Usage</b></p>
  * Following code shows how term-at-a-time matching may occur using the PostingListManager:
@@ -192,6 +196,16 @@ public class PostingListManager implements Closeable
 			}
 			return score;
 		}
+
+		@Override
+		public double getMaxScore(double maxTF, double minDocLength) {
+			double max = 0;
+			for(WeightingModel w : parents)
+			{
+				max += w.getMaxScore(maxTF, minDocLength);
+			}
+			return max;
+		}
 	}
 	
 	protected static final Logger logger = LoggerFactory.getLogger(PostingListManager.class);
@@ -237,6 +251,10 @@ public class PostingListManager implements Closeable
 	
 	/** String form for each term */
 	protected final List<Set<String>> termTags = new ArrayList<>();
+	/** Operator for each term */
+	protected final List<Operator> termOperators = new ArrayList<>();
+	/** upper bounds on the score of each term, calculated on first use */
+	protected double[] termMaxScores = null;
 	
 	
 	protected final TIntArrayList matchOnTerms = new TIntArrayList();
@@ -261,12 +279,11 @@ public class PostingListManager implements Closeable
 
 	
 	/** Create a posting list manager for the given index and statistics */
-	@SuppressWarnings("unchecked")
 	protected PostingListManager(Index _index, CollectionStatistics cs) throws IOException
 	{
 		index = _index;
 		lexicon = index.getLexicon();
-		invertedIndex = (PostingIndex<Pointer>) index.getInvertedIndex();
+		invertedIndex = PostingListCache.getPostingIndex(index);
 		collectionStatistics = cs;
 	}
 	
@@ -315,6 +332,7 @@ public class PostingListManager implements Closeable
 				termStatistics.add(me.getEntryStats());
 				termModels.add(WeightingModelMultiProxy.getModel(me.getWmodels()));
 				termTags.add(me.getTags());
+				termOperators.add(term);
 				if (me.isRequired())
 				{
 					requiredBitMask |= 1 << termIndex;
@@ -349,11 +367,12 @@ public class PostingListManager implements Closeable
 				LexiconEntry le = _index.getLexicon().getLexiconEntry(entry.getKey().toString());
 				if (le == null)
 					continue;
-				termPostings.add(_index.getInvertedIndex().getPostings(le));
+				termPostings.add(invertedIndex.getPostings(le));
 				termStatistics.add(entry.getValue().stats != null ? entry.getValue().stats : le);	
 				termKeyFreqs.add(entry.getValue().weight);
 				termStrings.add(term.toString());
 				termTags.add(entry.getValue().getTags());
+				termOperators.add(term);
 				termModels.add(WeightingModelMultiProxy.getModel(new WeightingModel[0]));
 				if (scoringTag == null || entry.getValue().getTags().size() == 0 || entry.getValue().getTags().contains(scoringTag))
 				{
@@ -466,6 +485,74 @@ public class PostingListManager implements Closeable
 	}
 	
 	
+	/** Returns an upper bound on the score that can be obtained by the specified term
+	 * for any document, as used by dynamic pruning matching strategies. 
+	 * Double.POSITIVE_INFINITY is returned if no bound is known. 
+	 * @param i Which term
+	 * @return upper bound on the score of the term
+	 * @since 5.8
+	 */
+	public double getMaxScore(int i)
+	{
+		if (termMaxScores == null)
+		{
+			termMaxScores = new double[termPostings.size()];
+			final TermScoreUpperBounds bounds = index.hasIndexStructure(TermScoreUpperBounds.STRUCTURE_NAME)
+				? (TermScoreUpperBounds) index.getIndexStructure(TermScoreUpperBounds.STRUCTURE_NAME)
+				: null;
+			for(int j=0;j<termMaxScores.length;j++)
+				termMaxScores[j] = bounds != null && termStatistics.get(j) instanceof LexiconEntry
+					? getMaxScore(j, bounds, ((LexiconEntry)termStatistics.get(j)).getTermId())
+					: getMaxScore(j, termStatistics.get(j).getMaxFrequencyInDocuments());
+			for(int j=0;j<termMaxScores.length;j++)
+				if (Double.isNaN(termMaxScores[j]))
+					termMaxScores[j] = Double.POSITIVE_INFINITY;
+		}
+		return termMaxScores[i];
+	}
+	
+	/** Returns an upper bound on the score of the specified term, using the upper bounds
+	 * recorded in the index for each term at indexing time. */
+	protected double getMaxScore(int i, TermScoreUpperBounds bounds, int termid)
+	{
+		if (i >= termOperators.size() || ! (termOperators.get(i) instanceof SingleTermOp) || termid >= bounds.size())
+			return getMaxScore(i, termStatistics.get(i).getMaxFrequencyInDocuments());
+		//postings restricted to a field have lower frequencies, which may not have lower scores.
+		//their document length is that of the field, which may be shorter than any document
+		if (((SingleTermOp)termOperators.get(i)).getField() != null)
+			return getMaxScore(i, bounds.getMaxFrequency(termid));
+		final WeightingModel wm = termModels.get(i);
+		if (wm instanceof WeightingModelMultiProxy)
+		{
+			double max = 0;
+			for(WeightingModel w : ((WeightingModelMultiProxy)wm).parents)
+				max += bounds.getMaxScore(w, termid);
+			return max;
+		}
+		return bounds.getMaxScore(wm, termid);
+	}
+	
+	/** Returns an upper bound on the score that can be obtained by the specified term
+	 * for any document where its frequency does not exceed maxTF. This allows
+	 * tighter bounds to be obtained for parts of a posting list, e.g. for block-max
+	 * dynamic pruning.
+	 * @param i Which term
+	 * @param maxTF maximum frequency of the term in the documents of interest
+	 * @return upper bound on the score of the term, or Double.POSITIVE_INFINITY if none is known
+	 * @since 5.8
+	 */
+	public double getMaxScore(int i, int maxTF)
+	{
+		//the maxTF of #syn() and similar operators is not an upper bound of
+		//their frequency in each document, so we only trust those of single terms
+		if (i >= termOperators.size() || ! (termOperators.get(i) instanceof SingleTermOp))
+			return Double.POSITIVE_INFINITY;
+		//maxTF is not recorded by older indices
+		if (maxTF <= 0)
+			maxTF = Integer.MAX_VALUE;
+		return termModels.get(i).getMaxScore(maxTF, 1d);
+	}
+	
 	@Override
 	/** Closes all postings that are open */
 	public void close() throws IOException
@@ -486,7 +573,13 @@ public class PostingListManager implements Closeable
 	public String getTerm(int i) {
 		return termStrings.get(i);
 	}
-	
+
+	/** Returns the query operator of the specified term
+	 * @since 5.8 */
+	public Operator getOperator(int i) {
+		return termOperators.get(i);
+	}
+
 	public Set<String> getTags(int i) {
 		return termTags.get(i);
 	}
@@ -0,0 +1,124 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BlockMaxWAND.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.matching.daat;
+
+import java.io.IOException;
+
+import org.terrier.matching.PostingListManager;
+import org.terrier.structures.Index;
+import org.terrier.structures.postings.BlockMaxIterablePosting;
+import org.terrier.structures.postings.IterablePosting;
+
+/**
+ * A variant of the {@link WAND} dynamic pruning strategy which, in addition to the
+ * upper bound of each query term, uses the maximum frequency of each block of 
+ * postings to obtain tighter upper bounds. Once a pivot document has been identified,
+ * the block upper bounds of the posting lists up to the pivot are summed; if this 
+ * cannot exceed the threshold, all of these posting lists are skipped to the end
+ * of the earliest finishing block, without the pivot document being scored.
+ * <p>
+ * Block upper bounds are only available for posting lists implementing
+ * {@link BlockMaxIterablePosting}; for other posting lists, the upper bound of the 
+ * term is used instead, such that BlockMaxWAND behaves as WAND. BlockMaxWAND 
+ * can be selected using the <tt>matching</tt> control, e.g. <tt>matching=daat.BlockMaxWAND</tt>.
+ * <p>
+ * <b>References:</b>
+ * Faster top-k document retrieval using block-max indexes. S. Ding and T. Suel. 
+ * In Proceedings of SIGIR 2011.
+ * 
+ * @since 5.8
+ */
+public class BlockMaxWAND extends WAND
+{
+	static class BlockMaxWANDMatchingState extends DAATFullMatchingState {
+		/** the posting lists that can provide block upper bounds, indexed by term */
+		BlockMaxIterablePosting[] blockPostings;
+	}
+	
+	/** Create a new Matching instance based on the specified index */
+	public BlockMaxWAND(Index index)
+	{
+		super(index);
+	}
+	
+	@Override
+	protected MatchingState initialiseState()
+	{
+		return new BlockMaxWANDMatchingState();
+	}
+	
+	@Override
+	protected void initialiseBounds(final DAATFullMatchingState state, final double[] maxScores) throws IOException
+	{
+		final PostingListManager plm = state.plm;
+		final BlockMaxIterablePosting[] blockPostings = new BlockMaxIterablePosting[plm.size()];
+		for(int i=0;i<blockPostings.length;i++)
+		{
+			IterablePosting ip = plm.getPosting(i);
+			if (ip instanceof BlockMaxIterablePosting)
+				blockPostings[i] = (BlockMaxIterablePosting) ip;
+		}
+		((BlockMaxWANDMatchingState)state).blockPostings = blockPostings;
+	}
+	
+	@Override
+	protected int nextCandidate(final DAATFullMatchingState state, final int[] cursors, final int numCursors,
+			final int pivot, final int[] currentIds, final double[] maxScores, final double threshold) throws IOException
+	{
+		final int pivotDocId = currentIds[cursors[pivot]];
+		if (threshold == Double.NEGATIVE_INFINITY)
+			return pivotDocId;
+		final BlockMaxIterablePosting[] blockPostings = ((BlockMaxWANDMatchingState)state).blockPostings;
+		
+		double upperBound = 0.0d;
+		// the first docid that is not in the current blocks of the posting lists up to the pivot
+		int nextDocId = pivot+1 < numCursors ? currentIds[cursors[pivot+1]] : IterablePosting.EOL;
+		for(int p=0;p<=pivot;p++)
+		{
+			final int i = cursors[p];
+			if (blockPostings[i] == null)
+			{
+				upperBound += maxScores[i];
+				continue;
+			}
+			final int lastBlockId = blockPostings[i].nextBlock(pivotDocId);
+			if (lastBlockId == IterablePosting.EOL)
+				continue;
+			upperBound += Math.min(maxScores[i], Math.max(0d, 
+				state.plm.getMaxScore(i, blockPostings[i].getBlockMaxFrequency())));
+			if (lastBlockId + 1 < nextDocId)
+				nextDocId = lastBlockId + 1;
+		}
+		if (upperBound >= threshold)
+			return pivotDocId;
+		return nextDocId;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() {
+		return "daat.BlockMaxWAND";
+	}
+}
@@ -53,6 +53,18 @@ public class CandidateResult implements Comparable<CandidateResult>
 		occurrence = 0;
 	}
 	
+	/** Reinitialises this object for the specified docid, such that 
+	 * it can be reused for another document during matching.
+	 * @param _docid of the document
+	 * @since 5.8
+	 */
+	public void reset(int _docid)
+	{
+		this.docid = _docid;
+		score = 0.0;
+		occurrence = 0;
+	}
+	
 	/** {@inheritDoc}. Enforces a sort by <i>ascending</i> score. */
 	@Override
 	public int compareTo(final CandidateResult that) 
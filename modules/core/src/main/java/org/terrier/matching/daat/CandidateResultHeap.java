@@ -0,0 +1,215 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is CandidateResultHeap.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.matching.daat;
+
+import java.util.Arrays;
+
+/** A min-heap of the top-k candidate documents during document-at-a-time matching.
+ * The docid, score and occurrence of each candidate are held in parallel primitive 
+ * arrays, such that CandidateResult objects need not be allocated for each matched 
+ * document. Instead, the object passed to {@link #add(CandidateResult)} is copied, 
+ * and an object that may be reused for the next document is returned. Matching
+ * strategies whose CandidateResult objects carry additional state (e.g. FatFull) 
+ * can ask for the objects to be retained; in that case, objects evicted from the 
+ * heap are returned for reuse, so that at most k+1 objects are allocated per query.
+ * <p>
+ * The minimum of the heap is the candidate with the lowest score, ties being broken 
+ * by the highest docid, as per {@link CandidateResult#compareTo(CandidateResult)}.
+ * @since 5.8
+ */
+public class CandidateResultHeap {
+
+	/** the number of candidates to retain, or 0 for all */
+	protected final int capacity;
+	/** the number of candidates currently in the heap */
+	protected int size = 0;
+	protected int[] docids;
+	protected double[] scores;
+	protected short[] occurrences;
+	/** retained CandidateResult objects, or null if they are not retained */
+	protected CandidateResult[] candidates;
+	
+	/** 
+	 * Make a new heap.
+	 * @param _capacity the number of candidates to retain, or 0 for all.
+	 * @param retainCandidates whether the CandidateResult objects should be retained.
+	 */
+	public CandidateResultHeap(int _capacity, boolean retainCandidates)
+	{
+		this.capacity = _capacity;
+		final int initialSize = capacity > 0 ? capacity : 1024;
+		docids = new int[initialSize];
+		scores = new double[initialSize];
+		occurrences = new short[initialSize];
+		candidates = retainCandidates ? new CandidateResult[initialSize] : null;
+	}
+	
+	/** Returns true if the heap contains the requested number of candidates, 
+	 * such that a candidate must have a score exceeding {@link #minScore()} to be added. */
+	public final boolean isFull()
+	{
+		return capacity > 0 && size == capacity;
+	}
+	
+	/** Returns the number of candidates in the heap */
+	public final int size()
+	{
+		return size;
+	}
+	
+	/** Returns the lowest score in the heap, or 0 if the heap is empty */
+	public final double minScore()
+	{
+		return size == 0 ? 0.0d : scores[0];
+	}
+	
+	/** Adds the specified candidate to the heap, evicting the minimum candidate if the heap is full. 
+	 * @param c candidate to add
+	 * @return a CandidateResult object that is no longer referenced by the heap and may be reused 
+	 * for another document, or null if there is none.
+	 */
+	public CandidateResult add(CandidateResult c)
+	{
+		final double score = c.getScore();
+		final int docid = c.getDocId();
+		if (isFull())
+		{
+			if (! (score > scores[0] || (score == scores[0] && docid < docids[0])))
+				return c;
+			final CandidateResult evicted = candidates != null ? candidates[0] : c;
+			siftDown(0, docid, score, c.getOccurrence(), c);
+			return evicted;
+		}
+		if (size == docids.length)
+			grow();
+		siftUp(size++, docid, score, c.getOccurrence(), c);
+		return candidates != null ? null : c;
+	}
+	
+	/** is the candidate at i less than the specified candidate */
+	private boolean less(int i, int docid, double score)
+	{
+		return scores[i] < score || (scores[i] == score && docids[i] > docid);
+	}
+	
+	private void set(int i, int docid, double score, short occurrence, CandidateResult c)
+	{
+		docids[i] = docid;
+		scores[i] = score;
+		occurrences[i] = occurrence;
+		if (candidates != null)
+			candidates[i] = c;
+	}
+	
+	private void move(int from, int to)
+	{
+		docids[to] = docids[from];
+		scores[to] = scores[from];
+		occurrences[to] = occurrences[from];
+		if (candidates != null)
+			candidates[to] = candidates[from];
+	}
+	
+	private void siftUp(int i, int docid, double score, short occurrence, CandidateResult c)
+	{
+		while(i > 0)
+		{
+			final int parent = (i - 1) >>> 1;
+			if (! isGreater(parent, docid, score))
+				break;
+			move(parent, i);
+			i = parent;
+		}
+		set(i, docid, score, occurrence, c);
+	}
+	
+	/** is the candidate at i greater than the specified candidate */
+	private boolean isGreater(int i, int docid, double score)
+	{
+		return scores[i] > score || (scores[i] == score && docids[i] < docid);
+	}
+	
+	private void siftDown(int i, int docid, double score, short occurrence, CandidateResult c)
+	{
+		final int half = size >>> 1;
+		while(i < half)
+		{
+			int child = 2 * i + 1;
+			final int right = child + 1;
+			if (right < size && less(right, docids[child], scores[child]))
+				child = right;
+			if (! less(child, docid, score))
+				break;
+			move(child, i);
+			i = child;
+		}
+		set(i, docid, score, occurrence, c);
+	}
+	
+	private void grow()
+	{
+		final int newSize = docids.length << 1;
+		docids = Arrays.copyOf(docids, newSize);
+		scores = Arrays.copyOf(scores, newSize);
+		occurrences = Arrays.copyOf(occurrences, newSize);
+		if (candidates != null)
+			candidates = Arrays.copyOf(candidates, newSize);
+	}
+	
+	/** Empties the heap, placing its candidates in descending order of score (ascending 
+	 * docid for tied scores) at the start of its arrays. Candidates with a score of 
+	 * Double.NEGATIVE_INFINITY are discarded. The heap cannot be used after this method.
+	 * @return the number of remaining candidates 
+	 */
+	public int sort()
+	{
+		//heap-sort: repeatedly move the minimum to the end of the heap
+		final int count = size;
+		while(size > 1)
+		{
+			final int last = --size;
+			final int docid = docids[last];
+			final double score = scores[last];
+			final short occurrence = occurrences[last];
+			final CandidateResult c = candidates != null ? candidates[last] : null;
+			move(0, last);
+			siftDown(0, docid, score, occurrence, c);
+		}
+		size = 0;
+		int retained = count;
+		while(retained > 0 && scores[retained-1] == Double.NEGATIVE_INFINITY)
+			retained--;
+		return retained;
+	}
+	
+	/** Returns the docids of the candidates. After {@link #sort()}, these are in result order. */
+	public int[] getDocids() { return docids; }
+	/** Returns the scores of the candidates. After {@link #sort()}, these are in result order. */
+	public double[] getScores() { return scores; }
+	/** Returns the occurrences of the candidates. After {@link #sort()}, these are in result order. */
+	public short[] getOccurrences() { return occurrences; }
+	/** Returns the retained candidates, or null if these were not retained. After {@link #sort()}, these are in result order. */
+	public CandidateResult[] getCandidates() { return candidates; }
+}
@@ -27,6 +27,7 @@
 package org.terrier.matching.daat;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
@@ -105,6 +106,21 @@ public class CandidateResultSet implements ResultSet, Serializable
 		}
 	}
 
+	/** Create a ResultSet from the candidates of the specified heap, which is emptied.
+	 * The candidates are in descending order of score, then ascending docid, as per the other constructors.
+	 * @param heap top-k candidates identified during matching
+	 * @since 5.8
+	 */
+	public CandidateResultSet(CandidateResultHeap heap)
+	{
+		lock = new ReentrantLock();
+		resultSize = heap.sort();
+		exactResultSize = resultSize;
+		docids      = Arrays.copyOf(heap.getDocids(), resultSize);
+		scores      = Arrays.copyOf(heap.getScores(), resultSize);
+		occurrences = Arrays.copyOf(heap.getOccurrences(), resultSize);
+	}
+
 	/** Create a ResultSet from the specified list of results */
 	public CandidateResultSet(List<CandidateResult> _q)
 	{
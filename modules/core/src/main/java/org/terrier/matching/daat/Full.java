@@ -31,8 +31,6 @@ import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
 import it.unimi.dsi.fastutil.longs.LongPriorityQueue;
 
 import java.io.IOException;
-import java.util.PriorityQueue;
-import java.util.Queue;
 
 import org.terrier.matching.BaseMatching;
 import org.terrier.matching.MatchingQueryTerms;
@@ -113,20 +111,20 @@ public class Full extends BaseMatching
 		}
 		logger.debug(" postingHeap.size()= " + postingHeap.size() + " mts = " + java.util.Arrays.toString(plm.getMatchingTerms()));
 		final int[] nonMatchingTerms = plm.getNonMatchingTerms();
-        boolean targetResultSetSizeReached = false;
-        final Queue<CandidateResult> candidateResultList = new PriorityQueue<CandidateResult>();
+        final CandidateResultHeap candidateResultList = makeCandidateResultHeap(state);
         int currentDocId = selectMinimumDocId(postingHeap);
         IterablePosting currentPosting = null;
-        double threshold = 0.0d;
         final long requiredBitPattern = plm.getRequiredBitMask();
         final long negRequiredBitPattern = plm.getNegRequiredBitMask();
-		final int RETRIEVED_SET_SIZE = state.numberOfRequestedDocuments;
 		logger.debug("Requirement patterns: mustmatch="+ requiredBitPattern + " must not match="+negRequiredBitPattern);
         //int scored = 0;
+        //a CandidateResult that can be reused for the next document
+        CandidateResult spareCandidate = null;
         
         while (currentDocId != -1)  {
-            // We create a new candidate for the doc id considered
-            CandidateResult currentCandidate = makeCandidateResult(state, currentDocId);
+            // We obtain a candidate for the doc id considered
+            final CandidateResult currentCandidate = nextCandidateResult(state, spareCandidate, currentDocId);
+            spareCandidate = currentCandidate;
             
             int currentPostingListIndex = (int) (postingHeap.firstLong() & 0xFFFF), nextDocid;
             //System.err.println("currentDocid="+currentDocId+" currentPostingListIndex="+currentPostingListIndex + " postingHeap.size()= " + postingHeap.size());
@@ -147,7 +145,7 @@ public class Full extends BaseMatching
                 nextDocid = (int) (elem >>> 32);
             } while (nextDocid == currentDocId);
             
-            if ((! targetResultSetSizeReached) || currentCandidate.getScore() > threshold) {
+            if ((! candidateResultList.isFull()) || currentCandidate.getScore() > candidateResultList.minScore()) {
             	//System.err.println("id="+currentDocId + " occurrence="+currentCandidate.getOccurrence() + " pattern="+requiredBitPattern + " match=" + (currentCandidate.getOccurrence() & requiredBitPattern));
             	if ( (currentCandidate.getOccurrence() & requiredBitPattern) == requiredBitPattern
             			&&
@@ -160,16 +158,9 @@ public class Full extends BaseMatching
             			if (plm.getPosting(i).next(currentDocId) == currentDocId)
             				assignNotScore(state, i, currentCandidate);
             		}
-	            	//System.err.println("New document " + currentCandidate.getDocId() + " with score " + currentCandidate.getScore() + " passes threshold of " + threshold);
-	        		candidateResultList.add(currentCandidate);
-	        		if (RETRIEVED_SET_SIZE != 0 && candidateResultList.size() == RETRIEVED_SET_SIZE + 1)
-	        		{
-	        			targetResultSetSizeReached = true;
-	        			candidateResultList.poll();
-	        			//System.err.println("Removing document with score " + candidateResultList.poll().getScore());
-	        		}
+	            	//System.err.println("New document " + currentCandidate.getDocId() + " with score " + currentCandidate.getScore() + " passes threshold of " + candidateResultList.minScore());
+	        		spareCandidate = candidateResultList.add(currentCandidate);
 	        		//System.err.println("Now have " + candidateResultList.size() + " retrieved docs");
-	        		threshold = candidateResultList.peek().getScore();
             	} else {
             		//System.err.println("Document " + currentDocId + " was discarded as it didnt match required bit pattern, required " + requiredBitPattern + " was " + currentCandidate.getOccurrence());
             	}
@@ -189,15 +180,31 @@ public class Full extends BaseMatching
 
 	protected CandidateResultSet makeResultSet(
 			final DAATFullMatchingState state,
-			final Queue<CandidateResult> candidateResultList) {
+			final CandidateResultHeap candidateResultList) {
                 return new CandidateResultSet(candidateResultList);
 	}
+	
+	/** Makes the heap that maintains the top-k candidates for this query.
+	 * Subclasses whose CandidateResult objects carry additional information 
+	 * must ask the heap to retain them.
+	 */
+	protected CandidateResultHeap makeCandidateResultHeap(final DAATFullMatchingState state) {
+		return new CandidateResultHeap(state.numberOfRequestedDocuments, false);
+	}
 
 	protected CandidateResult makeCandidateResult(final DAATFullMatchingState state, final int currentDocId) {
 		assert currentDocId != IterablePosting.EOL;
 		return new CandidateResult(currentDocId);
 	}
 	
+	/** Returns a CandidateResult for the specified document, reusing spare if it is not null */
+	protected final CandidateResult nextCandidateResult(final DAATFullMatchingState state, final CandidateResult spare, final int currentDocId) {
+		if (spare == null)
+			return makeCandidateResult(state, currentDocId);
+		spare.reset(currentDocId);
+		return spare;
+	}
+	
 	protected void assignNotScore(final DAATFullMatchingState state, final int i, final CandidateResult cc) throws IOException {
         cc.updateOccurrence((i < 16) ? (short)(1 << i) : 0);
 
@@ -0,0 +1,239 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MaxScore.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.matching.daat;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListManager;
+import org.terrier.matching.ResultSet;
+import org.terrier.structures.Index;
+import org.terrier.structures.postings.IterablePosting;
+
+/**
+ * Performs the matching of documents with a query in a document-at-a-time fashion,
+ * using the MaxScore dynamic pruning strategy. The query terms are ordered by increasing 
+ * upper bound, as obtained from {@link PostingListManager#getMaxScore(int)}. Once the 
+ * top-k candidate documents have been found, the longest prefix of terms whose upper bounds
+ * sum to less than the score of the k-th candidate are <i>non-essential</i>: 
+ * a document containing only those terms cannot enter the top-k. Hence, only 
+ * the posting lists of the essential terms are traversed to find candidate documents,
+ * while the non-essential posting lists are advanced using {@link IterablePosting#next(int)}
+ * only for as long as the candidate document can still enter the top-k. This is particularly 
+ * effective for long queries with many low-idf terms, such as those obtained by query expansion.
+ * <p>
+ * MaxScore is safe, in that it returns exactly the same top-k documents as
+ * {@link Full}, including the handling of required and negatively required terms, 
+ * as long as the upper bounds are correct. Terms without a known upper bound are always 
+ * essential, hence when no upper bounds are known, all documents are exhaustively scored.
+ * MaxScore can be selected using the <tt>matching</tt> control, e.g. <tt>matching=daat.MaxScore</tt>.
+ * <p>
+ * <b>References:</b>
+ * Query Evaluation: Strategies and Optimizations. H. Turtle, J. Flood. 
+ * Information Processing and Management 31(6), 1995.
+ * 
+ * @see WAND
+ * @since 5.8
+ */
+public class MaxScore extends Full
+{
+	/** Create a new Matching instance based on the specified index */
+	public MaxScore(Index index)
+	{
+		super(index);
+	}
+	
+	/** {@inheritDoc} */
+	@SuppressWarnings("resource") //IterablePosting need not be closed
+	@Override
+	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
+	{
+		DAATFullMatchingState state = (DAATFullMatchingState) initialise(queryTerms);
+		final PostingListManager plm = state.plm = new PostingListManager(index, super.collectionStatistics, queryTerms);
+		plm.prepare(true);
+		
+		// Check whether we need to match an empty query. If so, then return the existing result set.
+		if (MATCH_EMPTY_QUERY && plm.size() == 0) {
+			state.resultSet.setExactResultSize(collectionStatistics.getNumberOfDocuments());
+			state.resultSet.setResultSize(collectionStatistics.getNumberOfDocuments());
+			return state.resultSet;
+		}
+		
+		//a hook for subclasses
+		initialisePostings(state);
+		
+		// the current docid and score upper bound of each posting list, indexed by term
+		final int[] currentIds = new int[plm.size()];
+		final double[] maxScores = new double[plm.size()];
+		// the score of each term for the current document, indexed by term
+		final double[] termScores = new double[plm.size()];
+		// the matching posting lists, sorted by increasing upper bound
+		final int[] order = sortByMaxScore(plm, plm.getMatchingTerms(), currentIds, maxScores);
+		final int numTerms = order.length;
+		// cumulativeMaxScores[k] is the sum of the upper bounds of the first k terms in order
+		final double[] cumulativeMaxScores = new double[numTerms+1];
+		for(int k=0;k<numTerms;k++)
+			cumulativeMaxScores[k+1] = cumulativeMaxScores[k] + maxScores[order[k]];
+		// the terms matching the current document
+		final int[] matched = new int[numTerms];
+		// terms order[0..firstEssential-1] are non-essential
+		int firstEssential = 0;
+		
+		final int[] nonMatchingTerms = plm.getNonMatchingTerms();
+		boolean targetResultSetSizeReached = false;
+		final CandidateResultHeap candidateResultList = makeCandidateResultHeap(state);
+		double threshold = 0.0d;
+		final long requiredBitPattern = plm.getRequiredBitMask();
+		final long negRequiredBitPattern = plm.getNegRequiredBitMask();
+		//a CandidateResult that can be reused for the next document
+		CandidateResult spareCandidate = null;
+		
+		while(true)
+		{
+			// the next candidate is the smallest docid in the essential posting lists
+			int currentDocId = IterablePosting.EOL;
+			for(int k=firstEssential;k<numTerms;k++)
+				if (currentIds[order[k]] < currentDocId)
+					currentDocId = currentIds[order[k]];
+			if (currentDocId == IterablePosting.EOL)
+				break;
+			
+			// score the essential terms
+			int numMatched = 0;
+			double score = 0;
+			for(int k=numTerms-1;k>=firstEssential;k--)
+			{
+				final int i = order[k];
+				if (currentIds[i] == currentDocId)
+				{
+					score += termScores[i] = plm.score(i);
+					matched[numMatched++] = i;
+				}
+			}
+			
+			// score the non-essential terms, from the highest upper bound, while the 
+			// document can still enter the top-k
+			boolean pruned = false;
+			for(int k=firstEssential-1;k>=0;k--)
+			{
+				if (score + cumulativeMaxScores[k+1] <= threshold)
+				{
+					pruned = true;
+					break;
+				}
+				final int i = order[k];
+				if (currentIds[i] < currentDocId)
+					currentIds[i] = plm.getPosting(i).next(currentDocId);
+				if (currentIds[i] == currentDocId)
+				{
+					score += termScores[i] = plm.score(i);
+					matched[numMatched++] = i;
+				}
+			}
+			
+			if (! pruned && ((! targetResultSetSizeReached) || score > threshold))
+			{
+				// the term scores are added again in order of term, to obtain exactly the same score as Full, 
+				// without calling the weighting models a second time
+				Arrays.sort(matched, 0, numMatched);
+				final CandidateResult currentCandidate = nextCandidateResult(state, spareCandidate, currentDocId);
+				spareCandidate = currentCandidate;
+				for(int m=0;m<numMatched;m++)
+				{
+					currentCandidate.updateScore(termScores[matched[m]]);
+					assignNotScore(state, matched[m], currentCandidate);
+				}
+				
+				if ((! targetResultSetSizeReached) || currentCandidate.getScore() > threshold) {
+					if ( (currentCandidate.getOccurrence() & requiredBitPattern) == requiredBitPattern
+							&&
+						((negRequiredBitPattern == 0) || (negRequiredBitPattern > 0 && (currentCandidate.getOccurrence() & negRequiredBitPattern) == 0)))
+					{
+						for(int i : nonMatchingTerms) { 
+							//these are postings that we need to keep/score, but which wont change the threshold
+							if (plm.getPosting(i).next(currentDocId) == currentDocId)
+								assignNotScore(state, i, currentCandidate);
+						}
+						spareCandidate = candidateResultList.add(currentCandidate);
+						targetResultSetSizeReached = candidateResultList.isFull();
+						threshold = candidateResultList.minScore();
+						
+						// a higher threshold may make more terms non-essential
+						if (targetResultSetSizeReached)
+							while(firstEssential < numTerms && cumulativeMaxScores[firstEssential+1] < threshold)
+								firstEssential++;
+					}
+				}
+			}
+			
+			// move the essential posting lists past the current document; non-essential 
+			// posting lists are advanced as needed by next(int)
+			for(int k=firstEssential;k<numTerms;k++)
+			{
+				final int i = order[k];
+				if (currentIds[i] == currentDocId)
+					currentIds[i] = plm.getPosting(i).next();
+			}
+		}
+		
+		plm.close();
+		
+		state.resultSet = makeResultSet(state, candidateResultList);
+		state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
+		finalise(state, /*sort=*/false); // we don't need to sort here because state.resultSet is already sorted
+		return state.resultSet;
+	}
+	
+	/** Obtains the current docid and the upper bound of each matching term, and returns
+	 * the matching terms in order of increasing upper bound. Posting lists that are
+	 * already exhausted are omitted. */
+	protected static int[] sortByMaxScore(final PostingListManager plm, final int[] matchingTerms, 
+			final int[] currentIds, final double[] maxScores)
+	{
+		Integer[] terms = new Integer[matchingTerms.length];
+		int numTerms = 0;
+		for(int i : matchingTerms) {
+			currentIds[i] = plm.getPosting(i).getId();
+			//some ephemeral posting lists may not match any documents; skip these.
+			if (currentIds[i] == IterablePosting.EOL)
+				continue;
+			//negative scores cannot be used to prune other terms
+			maxScores[i] = Math.max(0d, plm.getMaxScore(i));
+			terms[numTerms++] = i;
+		}
+		Arrays.sort(terms, 0, numTerms, (a,b) -> Double.compare(maxScores[a], maxScores[b]));
+		final int[] rtr = new int[numTerms];
+		for(int k=0;k<numTerms;k++)
+			rtr[k] = terms[k];
+		return rtr;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() {
+		return "daat.MaxScore";
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is WAND.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.matching.daat;
+
+import java.io.IOException;
+
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListManager;
+import org.terrier.matching.ResultSet;
+import org.terrier.structures.Index;
+import org.terrier.structures.postings.IterablePosting;
+
+/**
+ * Performs the matching of documents with a query in a document-at-a-time fashion,
+ * using the WAND dynamic pruning strategy. Each query term has an upper bound
+ * on the score it can contribute to any document, as obtained from 
+ * {@link PostingListManager#getMaxScore(int)}. Once the top-k candidate documents 
+ * have been found, the posting lists are advanced using {@link IterablePosting#next(int)}
+ * past any document whose sum of upper bounds cannot exceed the score of the k-th 
+ * candidate. These documents are never scored.
+ * <p>
+ * WAND is safe, in that it returns exactly the same top-k documents as
+ * {@link Full}, as long as the upper bounds are correct. Terms without a known
+ * upper bound are treated as being able to contribute an infinite score, such
+ * that documents containing them are always scored. WAND can be selected using
+ * the <tt>matching</tt> control, e.g. <tt>matching=daat.WAND</tt>.
+ * <p>
+ * <b>References:</b>
+ * Efficient Query Evaluation using a Two-Level Retrieval Process. A. Z. Broder,
+ * D. Carmel, M. Herscovici, A. Soffer, J. Zien. In Proceedings of CIKM 2003.
+ * 
+ * @see org.terrier.matching.models.WeightingModel#getMaxScore(double, double)
+ * @since 5.8
+ */
+public class WAND extends Full
+{
+	/** Create a new Matching instance based on the specified index */
+	public WAND(Index index)
+	{
+		super(index);
+	}
+	
+	/** {@inheritDoc} */
+	@SuppressWarnings("resource") //IterablePosting need not be closed
+	@Override
+	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
+	{
+		DAATFullMatchingState state = (DAATFullMatchingState) initialise(queryTerms);
+		final PostingListManager plm = state.plm = new PostingListManager(index, super.collectionStatistics, queryTerms);
+		plm.prepare(true);
+		
+		// Check whether we need to match an empty query. If so, then return the existing result set.
+		if (MATCH_EMPTY_QUERY && plm.size() == 0) {
+			state.resultSet.setExactResultSize(collectionStatistics.getNumberOfDocuments());
+			state.resultSet.setResultSize(collectionStatistics.getNumberOfDocuments());
+			return state.resultSet;
+		}
+		
+		//a hook for subclasses
+		initialisePostings(state);
+		
+		// the current docid and score upper bound of each posting list, indexed by term
+		final int[] currentIds = new int[plm.size()];
+		final double[] maxScores = new double[plm.size()];
+		// the matching posting lists that are not exhausted, sorted by current docid
+		final int[] matchingTerms = plm.getMatchingTerms();
+		final int[] cursors = new int[matchingTerms.length];
+		int numCursors = 0;
+		for(int i : matchingTerms) {
+			currentIds[i] = plm.getPosting(i).getId();
+			//some ephemeral posting lists may not match any documents; skip these.
+			if (currentIds[i] == IterablePosting.EOL)
+				continue;
+			//negative scores cannot be used to prune other terms
+			maxScores[i] = Math.max(0d, plm.getMaxScore(i));
+			cursors[numCursors++] = i;
+		}
+		initialiseBounds(state, maxScores);
+		numCursors = sortCursors(cursors, numCursors, currentIds);
+		
+		final int[] nonMatchingTerms = plm.getNonMatchingTerms();
+		boolean targetResultSetSizeReached = false;
+		final CandidateResultHeap candidateResultList = makeCandidateResultHeap(state);
+		double threshold = 0.0d;
+		final long requiredBitPattern = plm.getRequiredBitMask();
+		final long negRequiredBitPattern = plm.getNegRequiredBitMask();
+		//a CandidateResult that can be reused for the next document
+		CandidateResult spareCandidate = null;
+		
+		while (numCursors > 0)
+		{
+			// until the top-k candidates are found, every document must be scored
+			final double pruningThreshold = targetResultSetSizeReached ? threshold : Double.NEGATIVE_INFINITY;
+			
+			// the pivot is the first posting list at which the sum of upper bounds reaches the threshold
+			int pivot = -1;
+			double upperBound = 0.0d;
+			for(int p=0;p<numCursors;p++)
+			{
+				upperBound += maxScores[cursors[p]];
+				if (upperBound >= pruningThreshold)
+				{
+					pivot = p;
+					break;
+				}
+			}
+			// no remaining document can enter the top-k
+			if (pivot == -1)
+				break;
+			final int pivotDocId = currentIds[cursors[pivot]];
+			// include all other posting lists positioned on the pivot document
+			while(pivot+1 < numCursors && currentIds[cursors[pivot+1]] == pivotDocId)
+				pivot++;
+			
+			final int targetDocId = nextCandidate(state, cursors, numCursors, pivot, currentIds, maxScores, pruningThreshold);
+			if (targetDocId == pivotDocId && currentIds[cursors[0]] == pivotDocId)
+			{
+				// all posting lists up to the pivot are positioned on the pivot document: score it
+				final CandidateResult currentCandidate = nextCandidateResult(state, spareCandidate, pivotDocId);
+				spareCandidate = currentCandidate;
+				for(int p=0;p<=pivot;p++)
+				{
+					final int i = cursors[p];
+					assignScore(state, i, currentCandidate);
+					currentIds[i] = plm.getPosting(i).next();
+				}
+				
+				if ((! targetResultSetSizeReached) || currentCandidate.getScore() > threshold) {
+					if ( (currentCandidate.getOccurrence() & requiredBitPattern) == requiredBitPattern
+							&&
+						((negRequiredBitPattern == 0) || (negRequiredBitPattern > 0 && (currentCandidate.getOccurrence() & negRequiredBitPattern) == 0)))
+					{
+						for(int i : nonMatchingTerms) { 
+							//these are postings that we need to keep/score, but which wont change the threshold
+							if (plm.getPosting(i).next(pivotDocId) == pivotDocId)
+								assignNotScore(state, i, currentCandidate);
+						}
+						spareCandidate = candidateResultList.add(currentCandidate);
+						targetResultSetSizeReached = candidateResultList.isFull();
+						threshold = candidateResultList.minScore();
+					}
+				}
+			}
+			else
+			{
+				// no document before targetDocId can enter the top-k: skip the posting lists to it
+				for(int p=0;p<=pivot;p++)
+				{
+					final int i = cursors[p];
+					if (currentIds[i] < targetDocId)
+						currentIds[i] = plm.getPosting(i).next(targetDocId);
+				}
+			}
+			numCursors = sortCursors(cursors, numCursors, currentIds);
+		}
+		
+		plm.close();
+		
+		state.resultSet = makeResultSet(state, candidateResultList);
+		state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
+		finalise(state, /*sort=*/false); // we don't need to sort here because state.resultSet is already sorted
+		return state.resultSet;
+	}
+	
+	/** A hook for subclasses to prepare any additional score upper bounds, 
+	 * once the posting lists have been opened.
+	 * @param state the matching state for the query
+	 * @param maxScores the upper bound of each query term
+	 * @throws IOException
+	 */
+	protected void initialiseBounds(final DAATFullMatchingState state, final double[] maxScores) throws IOException
+	{}
+	
+	/** Determines the next document that should be considered, given the pivot. 
+	 * WAND always considers the pivot document, but subclasses can use additional
+	 * knowledge to skip further.
+	 * @param state the matching state for the query
+	 * @param cursors the posting lists, sorted by current docid
+	 * @param numCursors the number of posting lists that are not exhausted
+	 * @param pivot the position in cursors of the last posting list positioned on the pivot document
+	 * @param currentIds the current docid of each posting list
+	 * @param maxScores the upper bound of each posting list
+	 * @param threshold the score that a document must exceed to enter the top-k
+	 * @return the docid of the pivot document, or a later docid if the pivot document
+	 * and all documents before the returned docid cannot enter the top-k.
+	 * @throws IOException
+	 */
+	protected int nextCandidate(final DAATFullMatchingState state, final int[] cursors, final int numCursors, 
+			final int pivot, final int[] currentIds, final double[] maxScores, final double threshold) throws IOException
+	{
+		return currentIds[cursors[pivot]];
+	}
+	
+	/** Sorts the posting lists by their current docid, breaking ties by term, and
+	 * removes those posting lists that are exhausted.
+	 * @return the number of remaining posting lists
+	 */
+	protected static int sortCursors(final int[] cursors, int numCursors, final int[] currentIds)
+	{
+		// insertion sort, as the posting lists are usually almost sorted
+		for(int p=1;p<numCursors;p++)
+		{
+			final int i = cursors[p];
+			final int id = currentIds[i];
+			int q = p - 1;
+			while(q >= 0 && (currentIds[cursors[q]] > id || (currentIds[cursors[q]] == id && cursors[q] > i)))
+			{
+				cursors[q+1] = cursors[q];
+				q--;
+			}
+			cursors[q+1] = i;
+		}
+		while(numCursors > 0 && currentIds[cursors[numCursors-1]] == IterablePosting.EOL)
+			numCursors--;
+		return numCursors;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() {
+		return "daat.WAND";
+	}
+}
@@ -34,14 +34,18 @@ import org.slf4j.LoggerFactory;
 import org.terrier.matching.MatchingQueryTerms;
 import org.terrier.matching.PostingListManager;
 import org.terrier.matching.ResultSet;
+import org.terrier.matching.matchops.SingleTermOp;
 import org.terrier.sorting.MultiSort;
 import org.terrier.structures.CollectionStatistics;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.DocumentPositionIndex;
 import org.terrier.structures.EntryStatistics;
 import org.terrier.structures.Index;
 import org.terrier.structures.Lexicon;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.Pointer;
 import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.BlockPostingImpl;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.Posting;
 import org.terrier.utility.ApplicationSetup;
@@ -61,6 +65,9 @@ import org.terrier.utility.Distance;
  * <li><tt>proximity.w_u</tt> - weight of FD in combination, default 1.0d</li>
  * <li><tt>proximity.qtw.fnid</tt> - combination function to combine the qtws of
  * two terms involved in a phrase. See below.</li>
+ * <li><tt>proximity.positions.structure</tt> - name of the {@link DocumentPositionIndex} structure. If the index 
+ * has this structure, the positions of the query terms are obtained only for the retrieved documents, rather than 
+ * by traversing their block posting lists. Defaults to positions.</li>
  * </ul>
  * <p>
  * <b>QTW Combination Functions</b>
@@ -107,8 +114,14 @@ public abstract class DependenceScoreModifier  implements DocumentScoreModifier
 	/** weight of unordered dependence model */
 	protected double w_u = Double.parseDouble(ApplicationSetup.getProperty(
 				"proximity.w_u", "1.0d"));
+	/** name of the document position structure, if any */
+	protected String positionsStructure = ApplicationSetup.getProperty(
+				"proximity.positions.structure", DocumentPositionIndex.STRUCTURE_NAME);
 	/** A list of the strings of the phrase terms. */
 	protected String[] phraseTerms;
+	/** The termids of the phrase terms, or null if their positions cannot be obtained from 
+	 * the document position structure. */
+	protected int[] phraseTermids;
 	protected double avgDocLen = 0.0d;
 	protected double numTokens;
 	/**
@@ -164,6 +177,7 @@ public abstract class DependenceScoreModifier  implements DocumentScoreModifier
 				es[i] = plm.getStatistics(i);
 				ips[i] = plm.getPosting(i);
 			}
+			phraseTermids = getPhraseTermids(index, plm);
 			
 			final int phraseLength = phraseTerms.length;
 			if (phraseLength == 1)
@@ -211,6 +225,29 @@ public abstract class DependenceScoreModifier  implements DocumentScoreModifier
 		return true;
 	}
 	
+	/** Returns the termids of the terms of the posting list manager, if the positions of every term can be 
+	 * obtained from the document position structure of the index, i.e. each is a single term not restricted 
+	 * to a field. Otherwise, returns null. */
+	protected int[] getPhraseTermids(Index index, PostingListManager plm) throws IOException
+	{
+		if (! index.hasIndexStructure(positionsStructure))
+			return null;
+		final int[] termids = new int[plm.getNumTerms()];
+		final Lexicon<String> lexicon = index.getLexicon();
+		for (int i = 0; i < termids.length; i++) {
+			if (! (plm.getOperator(i) instanceof SingleTermOp))
+				return null;
+			final SingleTermOp op = (SingleTermOp) plm.getOperator(i);
+			if (op.getField() != null)
+				return null;
+			final LexiconEntry le = lexicon.getLexiconEntry(op.getTerm());
+			if (le == null)
+				return null;
+			termids[i] = le.getTermId();
+		}
+		return termids;
+	}
+	
 	/** unused hook method */
 	protected void determineGlobalStatistics(String[] terms, EntryStatistics[] es, boolean SD) throws IOException
 	{}
@@ -233,6 +270,11 @@ public abstract class DependenceScoreModifier  implements DocumentScoreModifier
 	{
 				
 		final int numPhraseTerms = phraseTerms.length;
+		if (phraseTermids != null)
+		{
+			doDependency(index, es, (DocumentPositionIndex) index.getIndexStructure(positionsStructure), rs, phraseTermWeights, SD);
+			return;
+		}
 		final boolean[] postingListFinished = new boolean[numPhraseTerms];
 		
 		for(int i=0;i<numPhraseTerms;i++)
@@ -323,6 +365,60 @@ public abstract class DependenceScoreModifier  implements DocumentScoreModifier
 		logger.info(this.getClass().getSimpleName() + " altered scores for " + altered + " documents");
 	
 	}
+	
+	/** Calculates dependence scores for all documents, putting the scores into the ResultSet rs. The positions of the
+	 * phrase terms are obtained from the document position structure, for the retrieved documents only. */
+	protected void doDependency(Index index, final EntryStatistics es[], final DocumentPositionIndex positions, ResultSet rs, final double[] phraseTermWeights, boolean SD) throws IOException 
+	{
+		final int numPhraseTerms = phraseTerms.length;
+		this.setCollectionStatistics(index.getCollectionStatistics(), index);
+		determineGlobalStatistics(phraseTerms, es, SD);
+		
+		final DocumentIndex doi = index.getDocumentIndex();
+		final int[] docids = rs.getDocids();
+		final double[] scores = rs.getScores();
+		final short[] occurrences = rs.getOccurrences();
+		int altered = 0;
+		
+		// Sort by docid, so that the records of the documents are read in file order
+		MultiSort.ascendingHeapSort(docids, scores, occurrences, docids.length);
+		
+		// firstly, apply w_t to all document scores
+		final int docidsLength = docids.length;
+		boolean allZero = true;
+		for (int i = 0; i < docidsLength; i++) {
+			if (scores[i] != 0.0d)
+				allZero = false;
+			scores[i] = w_t * scores[i];
+		}
+		
+		final Posting[] postings = new Posting[numPhraseTerms];
+		final boolean[] okToUse = new boolean[numPhraseTerms];
+		DOC: for (int k = 0; k < docidsLength; k++) {
+			if (! allZero && scores[k] <= 0.0d)
+				continue DOC;
+			final int docid = docids[k];
+			final int[][] termPositions = positions.getPositions(docid, phraseTermids);
+			for (int i = 0; i < numPhraseTerms; i++)
+				okToUse[i] = termPositions[i] != null;
+			if (countTrue(okToUse) < 2)
+			{
+				//this document will not be considered, as it has no pair of query terms present
+				continue DOC;
+			}
+			final int docLength = doi.getDocumentLength(docid);
+			for (int i = 0; i < numPhraseTerms; i++) {
+				if (! okToUse[i])
+					continue;
+				final BlockPostingImpl p = new BlockPostingImpl(docid, termPositions[i].length, termPositions[i]);
+				p.setDocumentLength(docLength);
+				postings[i] = p;
+			}
+			altered++;
+			scores[k] += calculateDependence(postings, okToUse, phraseTermWeights, SD);
+		}
+		logger.info(this.getClass().getSimpleName() + " altered scores for " + altered + " documents, using " + positionsStructure);
+	}
     
     /** calculates the dependence score for one document, using the IterablePostings available.
       * @param ips all of the IterablePostings
@@ -2,6 +2,7 @@ package org.terrier.matching.matchops;
 
 import org.apache.commons.text.similarity.EditDistance;
 import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.terrier.structures.TermDictionaryFST;
 import org.terrier.utility.ArrayUtils;
 
 /** A synonym class that uses leveinsten distance to match terms.
@@ -11,6 +12,8 @@ import org.terrier.utility.ArrayUtils;
  * <li>prefix_length - The number of initial characters which must match to accept a term - See Elastic's <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-fuzzy-query.html">fuzzy documentation</a></li>
  * <li>max_expansions - The maximum number of terms to accept into the synonym group - See Elastic's <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-fuzzy-query.html">fuzzy documentation</a></li>
  * </ul>
+ * If the index has a {@link TermDictionaryFST} structure, only the terms within the maximum
+ * edit distance are enumerated, using a Levenshtein automaton.
  * @author Craig Macdonald
  * @since 5.0
  */
@@ -22,6 +25,8 @@ public class FuzzyTermOp extends PrefixTermOp {
 	
 	final EditDistance<Integer> lev = new LevenshteinDistance();
 	final int prefix_length;
+	/** the maximum edit distance of any matching term */
+	final int maxEdits;
 	
 	public FuzzyTermOp(String searchString)
 	{
@@ -38,11 +43,12 @@ public class FuzzyTermOp extends PrefixTermOp {
 			prefix_length = 0;
 		}
 		if (prefix_length == 0)
-			logger.warn("prefix_length of 0 is expensive to match terms");
+			logger.warn("prefix_length of 0 is expensive to match terms, unless the index has a " + TermDictionaryFST.STRUCTURE_NAME + " structure");
 		if (maxExpansions != null)
 		{
 			maxMatch = maxExpansions;
 		}
+		maxEdits = maxDist != null ? maxDist : 2;
 		if (maxDist != null) {
 			super.predFunction = (t -> lev.apply(searchString, t) <= maxDist);
 		}
@@ -87,6 +93,12 @@ public class FuzzyTermOp extends PrefixTermOp {
 		return termLo + Character.MAX_VALUE;
 	}
 	
+	@Override
+	protected TermDictionaryFST.Automaton<?> getAutomaton(String search)
+	{
+		return TermDictionaryFST.levenshteinAutomaton(search, maxEdits, prefix_length);
+	}
+	
 	@Override
 	public String toString() {
 		return STRING_PREFIX + "("+ArrayUtils.join(terms, ' ')+")";
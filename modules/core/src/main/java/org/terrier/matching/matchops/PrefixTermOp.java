@@ -15,10 +15,13 @@ import org.terrier.structures.EntryStatistics;
 import org.terrier.structures.Index;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.PostingIndex;
+import org.terrier.structures.TermDictionaryFST;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.utility.ArrayUtils;
 
 /** A synonym class that matches terms with a common prefix in the lexicon.
+ * If the index has a {@link TermDictionaryFST} structure, the matching terms are
+ * enumerated from it, rather than by scanning a range of the lexicon.
  * @author Craig Macdonald
  * @since 5.0
  */
@@ -59,15 +62,51 @@ public class PrefixTermOp extends SynonymOp {
 		return termLo + Character.MAX_VALUE;
 	}
 	
+	/** Returns an automaton accepting the terms that can match this operator, 
+	 * for intersection with a {@link TermDictionaryFST}. Matching terms must also
+	 * satisfy the predicate of this operator. */
+	protected TermDictionaryFST.Automaton<?> getAutomaton(String search)
+	{
+		return TermDictionaryFST.prefixAutomaton(search);
+	}
+	
+	/** Returns the term dictionary of the specified index, or null if it has none */
+	static TermDictionaryFST getTermDictionary(Index index)
+	{
+		if (! index.hasIndexStructure(TermDictionaryFST.STRUCTURE_NAME))
+			return null;
+		TermDictionaryFST fst = (TermDictionaryFST) index.getIndexStructure(TermDictionaryFST.STRUCTURE_NAME);
+		if (fst != null && fst.size() != index.getLexicon().numberOfEntries())
+		{
+			logger.warn("Ignoring " + TermDictionaryFST.STRUCTURE_NAME + " structure, which has " + fst.size() 
+				+ " terms while the lexicon has " + index.getLexicon().numberOfEntries());
+			return null;
+		}
+		return fst;
+	}
+	
 	@Override
 	public Pair<EntryStatistics,IterablePosting> getPostingIterator(Index index) throws IOException
 	{
 		List<EntryStatistics> _le = new ArrayList<EntryStatistics>();
 		List<IterablePosting> _joinedPostings = new ArrayList<IterablePosting>();
-		String termLo = getStartString(((SingleTermOp)terms[0]).queryTerm);
+		final String search = ((SingleTermOp)terms[0]).queryTerm;
+		String termLo = getStartString(search);
 		String termHi = getEndString(termLo);
 		PostingIndex<?> inv = index.getInvertedIndex();
-		Iterator<Map.Entry<String,LexiconEntry>> iterLex = index.getLexicon().getLexiconEntryRange(termLo, termHi);
+		final TermDictionaryFST fst = getTermDictionary(index);
+		final String source;
+		Iterator<Map.Entry<String,LexiconEntry>> iterLex;
+		if (fst != null)
+		{
+			source = "candidate terms from " + TermDictionaryFST.STRUCTURE_NAME;
+			iterLex = fst.getLexiconEntries(getAutomaton(search), index.getLexicon());
+		}
+		else
+		{
+			source = "considered terms between " + termLo + " and " + termHi;
+			iterLex = index.getLexicon().getLexiconEntryRange(termLo, termHi);
+		}
 		int considered = 0;
 		while(iterLex.hasNext())
 		{
@@ -92,10 +131,10 @@ public class PrefixTermOp extends SynonymOp {
 		if (_le.size() == 0)
 		{
 			//TODO consider if we should return an empty posting list iterator instead
-			logger.warn("No alternatives matched in " + Arrays.toString(terms) + " out of "+considered+" considered terms between " + termLo + " and " + termHi);
+			logger.warn("No alternatives matched in " + Arrays.toString(terms) + " out of "+considered+" " + source);
 			return null;
 		}
-		logger.info(this.toString() + " matched " + _le.size() + " out of "+considered+" considered terms between " + termLo + " and " + termHi);
+		logger.info(this.toString() + " matched " + _le.size() + " out of "+considered+" " + source);
 		EntryStatistics entryStats = mergeStatistics(_le.toArray(new EntryStatistics[_le.size()]), null);
 		
 		IterablePosting ip = createFinalPostingIterator(_joinedPostings, _le);
@@ -45,6 +45,7 @@ import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
 import org.terrier.structures.postings.FieldOnlyIterablePosting;
 import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.PostingListCache;
 
 
 /** This class implements a single indexing token as a matching op.
@@ -101,7 +102,7 @@ public class SingleTermOp extends Operator {
 	{
 		Lexicon<String> lexicon = index.getLexicon();
 		LexiconEntry t = lexicon.getLexiconEntry(queryTerm);
-		PostingIndex<?> invertedIndex = index.getInvertedIndex();
+		PostingIndex<?> invertedIndex = PostingListCache.getPostingIndex(index);
 		if (t == null) {
 			logger.debug("Term Not Found: " + queryTerm);
 			//previousTerm = false;	
@@ -0,0 +1,90 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is WildcardTermOp.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.matching.matchops;
+
+import java.util.regex.Pattern;
+
+import org.terrier.structures.TermDictionaryFST;
+import org.terrier.utility.ArrayUtils;
+
+/** A synonym class that matches terms in the lexicon using a wildcard pattern, 
+ * where <tt>*</tt> matches any sequence of characters and <tt>?</tt> matches any
+ * single character. Without a {@link TermDictionaryFST} structure, the range of the lexicon 
+ * sharing the characters before the first wildcard is scanned, so patterns starting with a 
+ * wildcard are expensive to match.
+ * @since 5.8
+ */
+public class WildcardTermOp extends PrefixTermOp {
+
+	public static final String STRING_PREFIX = "#wildcard";
+	
+	private static final long serialVersionUID = 1L;
+	
+	public WildcardTermOp(String pattern) {
+		super(pattern);
+		final Pattern regex = toRegex(pattern);
+		super.predFunction = (t -> regex.matcher(t).matches());
+	}
+	
+	static Pattern toRegex(String pattern)
+	{
+		final StringBuilder s = new StringBuilder();
+		int start = 0;
+		for(int i=0;i<pattern.length();i++)
+		{
+			final char c = pattern.charAt(i);
+			if (c == '*' || c == '?')
+			{
+				if (i > start)
+					s.append(Pattern.quote(pattern.substring(start, i)));
+				s.append(c == '*' ? ".*" : ".");
+				start = i+1;
+			}
+		}
+		if (start < pattern.length())
+			s.append(Pattern.quote(pattern.substring(start)));
+		return Pattern.compile(s.toString(), Pattern.DOTALL);
+	}
+	
+	@Override
+	protected String getStartString(String search)
+	{
+		int i = 0;
+		while(i < search.length() && search.charAt(i) != '*' && search.charAt(i) != '?')
+			i++;
+		return search.substring(0, i);
+	}
+	
+	@Override
+	protected TermDictionaryFST.Automaton<?> getAutomaton(String search)
+	{
+		return TermDictionaryFST.wildcardAutomaton(search);
+	}
+	
+	@Override
+	public String toString() {
+		return STRING_PREFIX + "("+ArrayUtils.join(terms, ' ')+")";
+	}
+}
@@ -76,6 +76,15 @@ public class BM25 extends WeightingModel {
 				((k_3+1)*keyFrequency/(k_3+keyFrequency));
 	}
 
+	/** {@inheritDoc}. BM25 increases with tf and decreases with document length;
+	 * moreover no document can be shorter than the frequency of the term within it.
+	 * If the idf is negative, then all scores are negative, and 0 is returned. */
+	@Override
+	public double getMaxScore(double maxTF, double minDocLength) {
+		final double max = score(maxTF, Math.max(maxTF, minDocLength));
+		return max > 0 ? max : 0;
+	}
+
 	@Override 
 	public void prepare() {
 		if (rq != null) {
@@ -79,5 +79,20 @@ public class DPH extends WeightingModel {
  			 );
  	}
 
+	/** {@inheritDoc}. DPH is not monotonic in tf or document length, hence this bound
+	 * is obtained by separately bounding each of its components: (1-f)^2 is at most 1; 
+	 * the tf*log() component decreases with document length; and the 0.5*log() component
+	 * divided by tf+1 is maximal for tf=1. */
+	@Override
+	public double getMaxScore(double maxTF, double minDocLength) {
+		final double minLength = Math.max(minDocLength, 1d);
+		final double max = keyFrequency * (
+			Math.max(0d, WeightingModelLibrary.log((Math.min(maxTF, minLength) / minLength) 
+				* averageDocumentLength * (numberOfDocuments/termFrequency)))
+			+ 0.25d * WeightingModelLibrary.log(2d*Math.PI)
+			);
+		return max > 0 ? max : 0;
+	}
+
 
 }
@@ -67,6 +67,13 @@ public class DirichletLM extends WeightingModel {
 		return WeightingModelLibrary.log(1 + (tf/(mu * (super.termFrequency / numberOfTokens))) ) + WeightingModelLibrary.log(mu/(docLength+mu));
 	}
 
+	/** {@inheritDoc}. DirichletLM increases with tf and decreases with document length;
+	 * moreover no document can be shorter than the frequency of the term within it. */
+	@Override
+	public double getMaxScore(double maxTF, double minDocLength) {
+		return score(maxTF, Math.max(maxTF, minDocLength));
+	}
+
 	@Override
 	public String getInfo() {
 		return "DirichletLMmu"+mu;
@@ -80,5 +80,23 @@ public class PL2 extends DFRNorm2BaseModel {
 				+ TF * (WeightingModelLibrary.log(TF) - WeightingModelLibrary.LOG_2_OF_E));
 	}
 
+	/** {@inheritDoc}. The normalised term frequency TF increases with tf and decreases with document length,
+	 * hence it is at most maxTF * log(1 + c * avgdl / max(maxTF, minDocLength)). PL2 is not monotonic
+	 * in TF, hence the bound is obtained by separately bounding each of its components for all
+	 * normalised term frequencies up to that maximum. In particular, log(2 * pi * TF)/(TF+1) is 
+	 * maximal (1.32815) for TF=1.08624. */
+	@Override
+	public double getMaxScore(double maxTF, double minDocLength) {
+		final double maxTFN = maxTF * WeightingModelLibrary.log(1.0d + (c * averageDocumentLength) / Math.max(maxTF, minDocLength));
+		final double f = (1.0D * termFrequency) / (1.0D * numberOfDocuments);
+		final double max = keyFrequency 
+			* (Math.max(0d, WeightingModelLibrary.log(maxTFN / f) - WeightingModelLibrary.LOG_2_OF_E)
+				+ f * WeightingModelLibrary.LOG_2_OF_E
+				+ 0.5d * (maxTFN < 1.0863d 
+					? WeightingModelLibrary.log(2 * Math.PI * maxTFN) / (maxTFN + 1d)
+					: 1.3282d));
+		return max > 0 ? max : 0;
+	}
+
 	
 }
@@ -164,6 +164,20 @@ public abstract class WeightingModel implements Model, Serializable, Cloneable {
 	 */
 	public abstract double score(double tf, double docLength);
 
+	/**
+	 * Returns an upper bound on the score that this model can assign to the current
+	 * term in any document. This is used by dynamic pruning matching strategies, such
+	 * as {@link org.terrier.matching.daat.WAND}. The default implementation returns
+	 * Double.POSITIVE_INFINITY, i.e. no bound is known for this model.
+	 * @param maxTF the maximum frequency of the term in any document
+	 * @param minDocLength the minimum length of any document containing the term
+	 * @return an upper bound on the score, or Double.POSITIVE_INFINITY
+	 * @since 5.8
+	 */
+	public double getMaxScore(double maxTF, double minDocLength) {
+		return Double.POSITIVE_INFINITY;
+	}
+
 
 	/**
 	 * Sets the c value
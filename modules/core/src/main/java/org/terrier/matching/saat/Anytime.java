@@ -0,0 +1,235 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is Anytime.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.matching.saat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.terrier.matching.AccumulatorResultSet;
+import org.terrier.matching.BaseMatching;
+import org.terrier.matching.CollectionResultSet;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.MatchingQueryTerms.MatchingTerm;
+import org.terrier.matching.MatchingQueryTerms.QueryTermProperties;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.matchops.SingleTermOp;
+import org.terrier.structures.ImpactOrderedIndex;
+import org.terrier.structures.ImpactOrderedIndex.ImpactSegment;
+import org.terrier.structures.Index;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.utility.ApplicationSetup;
+
+/** A score-at-a-time (SAAT) approach for matching documents to a query, allowing anytime ranking.
+ * The impact segments of all query terms, as recorded in an {@link ImpactOrderedIndex}, are processed
+ * in decreasing order of their impact multiplied by the weight of the term in the query. Processing stops 
+ * once all segments have been processed, or once the budget of postings or time has been spent. 
+ * The score of each document is the sum of the impacts of its processed postings, scaled back to the 
+ * scores of the weighting model that the impact-ordered index was created for - the weighting models of 
+ * the query are not used.
+ * <p>
+ * The returned result set records whether the score of each document is exact in the
+ * <tt>"exact"</tt> metadata item: a score is exact (up to the quantisation of the impacts) if, for each 
+ * query term, the posting of the document was processed, or all segments of that term were processed.
+ * Queries that contain operators other than single terms, or terms that are required or excluded, 
+ * are matched by {@link org.terrier.matching.daat.Full} instead.
+ * <p><b>Properties</b>
+ * <ul>
+ * <li><tt>matching.saat.structure</tt> - name of the impact-ordered index structure. Defaults to impact.</li>
+ * <li><tt>matching.saat.postings.budget</tt> - maximum number of postings to process for a query. Defaults to 0, i.e. unlimited.</li>
+ * <li><tt>matching.saat.time.budget</tt> - maximum time in milliseconds to spend processing postings for a query. Defaults to 0, i.e. unlimited.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class Anytime extends BaseMatching
+{
+	/** name of the metadata item recording whether the score of each document is exact */
+	public static final String EXACT_META_KEY = "exact";
+	/** number of postings processed between checks of the time budget */
+	static final int TIME_CHECK_POSTINGS = 4096;
+	
+	protected final ImpactOrderedIndex impacts;
+	protected final long postingsBudget;
+	protected final long timeBudgetNanos;
+	protected BaseMatching fallback;
+	
+	/** A segment of one query term, with its contribution to the score of each document */
+	static final class QuerySegment
+	{
+		final int term;
+		final double score;
+		final ImpactSegment segment;
+		
+		QuerySegment(int _term, double _score, ImpactSegment _segment)
+		{
+			this.term = _term;
+			this.score = _score;
+			this.segment = _segment;
+		}
+	}
+	
+	/** Create a new Matching instance based on the specified index */
+	public Anytime(Index index) 
+	{
+		super(index);
+		final String structureName = ApplicationSetup.getProperty("matching.saat.structure", ImpactOrderedIndex.STRUCTURE_NAME);
+		if (index.hasIndexStructure(structureName))
+		{
+			impacts = (ImpactOrderedIndex) index.getIndexStructure(structureName);
+		}
+		else
+		{
+			logger.warn("Index has no " + structureName + " structure, create it using bin/terrier impactindex. " 
+				+ "Using org.terrier.matching.daat.Full instead");
+			impacts = null;
+		}
+		postingsBudget = Long.parseLong(ApplicationSetup.getProperty("matching.saat.postings.budget", "0"));
+		timeBudgetNanos = Long.parseLong(ApplicationSetup.getProperty("matching.saat.time.budget", "0")) * 1000000l;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() 
+	{
+		return "saat.Anytime";
+	}
+	
+	protected ResultSet fallback(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
+	{
+		if (fallback == null)
+		{
+			fallback = new org.terrier.matching.daat.Full(index);
+			fallback.setCollectionStatistics(collectionStatistics);
+		}
+		return fallback.match(queryNumber, queryTerms);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
+	{
+		if (impacts == null)
+			return fallback(queryNumber, queryTerms);
+		final long starttime = System.nanoTime();
+		MatchingState state = initialise(queryTerms);
+		
+		//obtain the segments of all query terms
+		final double scale = impacts.getScale();
+		final List<QuerySegment> segments = new ArrayList<>();
+		final List<Integer> termSegmentCounts = new ArrayList<>();
+		for(MatchingTerm mt : queryTerms)
+		{
+			final QueryTermProperties qtp = mt.getValue();
+			if (! (mt.getKey() instanceof SingleTermOp) || ((SingleTermOp) mt.getKey()).getField() != null || qtp.getRequired() != null)
+			{
+				logger.debug("Query " + queryNumber + " term " + mt.getKey() + " cannot be matched using impacts, using daat.Full instead");
+				return fallback(queryNumber, queryTerms);
+			}
+			if (! qtp.getTags().contains(BASE_MATCHING_TAG))
+				continue;
+			final LexiconEntry le = lexicon.getLexiconEntry(((SingleTermOp) mt.getKey()).getTerm());
+			if (le == null)
+				continue;
+			final int term = termSegmentCounts.size();
+			final ImpactSegment[] termSegments = impacts.getSegments(le.getTermId());
+			for(ImpactSegment s : termSegments)
+				segments.add(new QuerySegment(term, s.getImpact() * scale * qtp.getWeight(), s));
+			termSegmentCounts.add(termSegments.length);
+		}
+		if (MATCH_EMPTY_QUERY && termSegmentCounts.size() == 0)
+		{
+			ResultSet resultSet = new CollectionResultSet(collectionStatistics.getNumberOfDocuments());
+			resultSet.setExactResultSize(collectionStatistics.getNumberOfDocuments());
+			resultSet.setResultSize(collectionStatistics.getNumberOfDocuments());
+			return resultSet;
+		}
+		//score-at-a-time: the highest contributions first
+		segments.sort((a, b) -> Double.compare(b.score, a.score));
+		
+		AccumulatorResultSet resultSet = new AccumulatorResultSet(collectionStatistics.getNumberOfDocuments());
+		state.resultSet = resultSet;
+		final int[] remainingSegments = new int[termSegmentCounts.size()];
+		for(int t=0;t<remainingSegments.length;t++)
+			remainingSegments[t] = termSegmentCounts.get(t);
+		long postings = 0;
+		boolean exhausted = false;
+		for(QuerySegment qs : segments)
+		{
+			final short mask = qs.term < 16 ? (short)(1 << qs.term) : 0;
+			final int[] docids = qs.segment.getDocids();
+			int i = 0;
+			for(;i<docids.length;i++)
+			{
+				if (postingsBudget > 0 && postings == postingsBudget)
+				{
+					exhausted = true;
+					break;
+				}
+				if (timeBudgetNanos > 0 && postings % TIME_CHECK_POSTINGS == 0 && System.nanoTime() - starttime > timeBudgetNanos)
+				{
+					exhausted = true;
+					break;
+				}
+				final int docid = docids[i];
+				if (! resultSet.scoresMap.contains(docid))
+					state.numberOfRetrievedDocuments++;
+				resultSet.scoresMap.adjustOrPutValue(docid, qs.score, qs.score);
+				resultSet.occurrencesMap.put(docid, (short)(resultSet.occurrencesMap.get(docid) | mask));
+				postings++;
+			}
+			if (exhausted)
+				break;
+			remainingSegments[qs.term]--;
+		}
+		
+		resultSet.initialise();
+		finalise(state);
+		
+		//a document's score is exact if it has been seen for each term with unprocessed segments
+		long incompleteMask = 0;
+		boolean incompleteUntracked = false;
+		for(int t=0;t<remainingSegments.length;t++)
+		{
+			if (remainingSegments[t] == 0)
+				continue;
+			if (t < 16)
+				incompleteMask |= 1 << t;
+			else
+				incompleteUntracked = true;
+		}
+		final ResultSet rtr = resultSet.getResultSet(0, resultSet.getResultSize());
+		final short[] occurrences = rtr.getOccurrences();
+		final String[] exact = new String[occurrences.length];
+		for(int i=0;i<exact.length;i++)
+			exact[i] = String.valueOf(! incompleteUntracked && (occurrences[i] & incompleteMask) == incompleteMask);
+		rtr.addMetaItems(EXACT_META_KEY, exact);
+		if (logger.isDebugEnabled())
+			logger.debug("Query " + queryNumber + " processed " + postings + " postings" + (exhausted ? " before exhausting its budget" : "") 
+				+ " in " + ((System.nanoTime() - starttime) / 1000000l) + "ms, " 
+				+ "segments remaining per term: " + Arrays.toString(remainingSegments));
+		return rtr;
+	}
+}
@@ -876,31 +876,40 @@ public class LocalManager implements Manager
 		List<String> processesDone = new ArrayList<String>();
 		int ran = 0;
 		rq.setControl("runname", "");
-		while(iter.hasNext())
-		{
+		//the index should present the same structures to all processes of this search
+		final Index searchIndex = rq.getIndex();
+		if (searchIndex != null)
+			searchIndex.beginSearch();
+		try{
+			while(iter.hasNext())
+			{
 			
-			Process p = iter.next();
-			assert(p != null);
-			if (hasAnnotation(p.getClass(), ManagerRequisite.MQT) && ! mqtObtained)
-				throw new IllegalStateException("Process " + p.getInfo() + " required matchingqueryterms, but mqt not yet set for query qid " + rq.getQueryID()  + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
-			if (hasAnnotation(p.getClass(), ManagerRequisite.RAWQUERY) && ! hasRawQuery)
-				throw new IllegalStateException("Process " + p.getInfo() + " required rawquery, but no raw query found for qid " + rq.getQueryID() + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
-			if (hasAnnotation(p.getClass(), ManagerRequisite.TERRIERQL) && ! hasTerrierQLquery)
-				throw new IllegalStateException("Process " + p.getInfo() + " required TerrierQL query, but no TerrierQL query found for qid " + rq.getQueryID() + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
-			if (hasAnnotation(p.getClass(), ManagerRequisite.RESULTSET) && ! hasResultSet)
-				throw new IllegalStateException("Process " + p.getInfo() + " required resultset, but none found for qid " + rq.getQueryID() + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
+				Process p = iter.next();
+				assert(p != null);
+				if (hasAnnotation(p.getClass(), ManagerRequisite.MQT) && ! mqtObtained)
+					throw new IllegalStateException("Process " + p.getInfo() + " required matchingqueryterms, but mqt not yet set for query qid " + rq.getQueryID()  + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
+				if (hasAnnotation(p.getClass(), ManagerRequisite.RAWQUERY) && ! hasRawQuery)
+					throw new IllegalStateException("Process " + p.getInfo() + " required rawquery, but no raw query found for qid " + rq.getQueryID() + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
+				if (hasAnnotation(p.getClass(), ManagerRequisite.TERRIERQL) && ! hasTerrierQLquery)
+					throw new IllegalStateException("Process " + p.getInfo() + " required TerrierQL query, but no TerrierQL query found for qid " + rq.getQueryID() + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
+				if (hasAnnotation(p.getClass(), ManagerRequisite.RESULTSET) && ! hasResultSet)
+					throw new IllegalStateException("Process " + p.getInfo() + " required resultset, but none found for qid " + rq.getQueryID() + " previousProcess=" + processesDone.toString() + " controls=" + rq.getControls().toString());
 			
 			
-			logger.info("running process " + p.getInfo());
-			p.process(this, rq);
-			hasTerrierQLquery = rq.getQuery() != null;
-			mqtObtained = rq.getMatchingQueryTerms() != null;
-			hasRawQuery = rq.getOriginalQuery() != null;
-			hasResultSet = rq.getResultSet() != null;
-			rq.setControl("previousprocess", p.getClass().getName());
-			rq.setControl("runname", rq.getControl("runname")+ "_" + p.getInfo());
-			processesDone.add(p.getInfo());
-			ran++;
+				logger.info("running process " + p.getInfo());
+				p.process(this, rq);
+				hasTerrierQLquery = rq.getQuery() != null;
+				mqtObtained = rq.getMatchingQueryTerms() != null;
+				hasRawQuery = rq.getOriginalQuery() != null;
+				hasResultSet = rq.getResultSet() != null;
+				rq.setControl("previousprocess", p.getClass().getName());
+				rq.setControl("runname", rq.getControl("runname")+ "_" + p.getInfo());
+				processesDone.add(p.getInfo());
+				ran++;
+			}
+		} finally {
+			if (searchIndex != null)
+				searchIndex.endSearch();
 		}
 		
 		if (! mqtObtained)
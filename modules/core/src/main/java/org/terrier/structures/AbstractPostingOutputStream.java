@@ -65,5 +65,14 @@ public abstract class AbstractPostingOutputStream {
 	public abstract BitIndexPointer writePostings(Iterator<Posting> iterator) throws IOException;
 
 	public abstract Class<? extends IterablePosting> getPostingIteratorClass();
+	
+	/** Returns true if a posting list written by this stream can be continued by a subsequent
+	 * call to {@link #writePostings(IterablePosting, int)}, such that both calls form a single
+	 * posting list in the output. Formats that record information about the entire posting 
+	 * list before its postings, such as skip tables, cannot be continued.
+	 * @since 5.8 */
+	public boolean canAppendPostings() {
+		return true;
+	}
 
 }
\ No newline at end of file
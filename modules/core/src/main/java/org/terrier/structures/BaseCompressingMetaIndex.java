@@ -39,10 +39,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.io.IntWritable;
@@ -60,6 +62,7 @@ import org.terrier.utility.ArrayUtils;
 import org.terrier.utility.Files;
 import org.terrier.utility.TerrierTimer;
 import org.terrier.utility.io.RandomDataInput;
+import org.terrier.utility.io.RandomDataInputMapped;
 import org.terrier.utility.io.RandomDataInputMemory;
 
 import com.jakewharton.byteunits.BinaryByteUnit;
@@ -68,6 +71,17 @@ import com.jakewharton.byteunits.BinaryByteUnit;
  * Values have maximum lengths, but overall value blobs are 
  * compressed. Various sub-classes vary in the particular compression
  * algorithm used. From version 3.0 zlib deflate was default.
+ * <p>
+ * Decoded records can be kept in a {@link RecordCache}, such that popular documents are not decompressed 
+ * each time they are retrieved. Lookups of many documents using <tt>getItems(String[], int[])</tt>
+ * coalesce the reads of records that are close together in the data file into single reads.
+ * <p><b>Index properties</b>:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.cache.bytes</tt> - maximum size of the cache of decoded records. Defaults to 0, i.e. disabled.</li>
+ * <li><tt>index.STRUCTURENAME.batch-read</tt> - whether to coalesce reads of records when looking up many documents. Defaults to true.</li>
+ * <li><tt>index.STRUCTURENAME.batch-read.max-gap</tt> - maximum number of unwanted bytes between records read together. Defaults to 1024.</li>
+ * <li><tt>index.STRUCTURENAME.batch-read.max-bytes</tt> - maximum number of bytes read at once. Defaults to 65536.</li>
+ * </ul>
  * @author Craig Macdonald &amp; Vassilis Plachouras
  * @since 3.0
  */
@@ -165,6 +179,133 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 		}		
 	}
 
+	/** A concurrent cache of decoded records, keyed by docid and bounded by their (estimated) size
+	 * in bytes. The cache is split into segments, each an access-ordered map guarded by its own lock, 
+	 * such that lookups of different documents rarely contend. Least recently used records of each
+	 * segment are evicted first.
+	 * @since 5.8 
+	 */
+	public static final class RecordCache
+	{
+		/** estimated overhead of each cached record */
+		static final int ENTRY_OVERHEAD = 64;
+		static final int SEGMENTS = 16;
+		
+		@SuppressWarnings("serial")
+		static final class Segment extends LinkedHashMap<Integer,byte[]>
+		{
+			final long maxBytes;
+			long bytes = 0;
+			
+			Segment(long _maxBytes) {
+				super(16, 0.75f, true);
+				maxBytes = _maxBytes;
+			}
+		}
+		
+		final Segment[] segments = new Segment[SEGMENTS];
+		final long maxBytes;
+		final AtomicLong hits = new AtomicLong();
+		final AtomicLong misses = new AtomicLong();
+		final AtomicLong evictions = new AtomicLong();
+		
+		RecordCache(long _maxBytes)
+		{
+			maxBytes = _maxBytes;
+			for(int i=0;i<SEGMENTS;i++)
+				segments[i] = new Segment(maxBytes / SEGMENTS);
+		}
+		
+		final Segment segment(int docid)
+		{
+			return segments[(docid * 0x9E3779B9) >>> 28];
+		}
+		
+		/** returns the cached record for the document, or null */
+		byte[] get(int docid)
+		{
+			final Segment s = segment(docid);
+			final byte[] record;
+			synchronized (s) {
+				record = s.get(docid);
+			}
+			(record != null ? hits : misses).incrementAndGet();
+			return record;
+		}
+		
+		void put(int docid, byte[] record)
+		{
+			final Segment s = segment(docid);
+			final long size = record.length + ENTRY_OVERHEAD;
+			if (size > s.maxBytes)
+				return;
+			synchronized (s) {
+				final byte[] old = s.put(docid, record);
+				if (old != null)
+					s.bytes -= old.length + ENTRY_OVERHEAD;
+				s.bytes += size;
+				final Iterator<byte[]> iter = s.values().iterator();
+				while(s.bytes > s.maxBytes)
+				{
+					s.bytes -= iter.next().length + ENTRY_OVERHEAD;
+					iter.remove();
+					evictions.incrementAndGet();
+				}
+			}
+		}
+		
+		/** removes all cached records */
+		public void clear()
+		{
+			for(Segment s : segments)
+				synchronized (s) {
+					s.clear();
+					s.bytes = 0;
+				}
+		}
+		
+		/** number of lookups of records that were cached */
+		public long getHits() {
+			return hits.get();
+		}
+		
+		/** number of lookups of records that were not cached */
+		public long getMisses() {
+			return misses.get();
+		}
+		
+		/** number of records evicted from the cache */
+		public long getEvictions() {
+			return evictions.get();
+		}
+		
+		/** number of cached records */
+		public int size() {
+			int size = 0;
+			for(Segment s : segments)
+				synchronized (s) {
+					size += s.size();
+				}
+			return size;
+		}
+		
+		/** estimated size of the cached records in bytes */
+		public long getBytes() {
+			long bytes = 0;
+			for(Segment s : segments)
+				synchronized (s) {
+					bytes += s.bytes;
+				}
+			return bytes;
+		}
+		
+		@Override
+		public String toString() {
+			return "RecordCache: " + size() + " records in " + getBytes() + "/" + maxBytes + " bytes, "
+				+ getHits() + " hits, " + getMisses() + " misses, " + getEvictions() + " evictions";
+		}
+	}
+
 	static class OffsetPointer {
 		long offset;
 		int length;
@@ -670,6 +811,13 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 	protected Map<Text,IntWritable>[] reverseMetaMaps;
 	protected FixedSizeWriteableFactory<Text>[] keyFactories;
 	
+	/** cache of decoded records, or null if disabled */
+	protected final RecordCache recordCache;
+	/** should reads of records be coalesced when looking up many documents */
+	protected final boolean batchRead;
+	protected final int batchReadMaxGap;
+	protected final int batchReadMaxBytes;
+	
 	/**
 	 * Construct an instance of the class with
 	 * @param index
@@ -729,11 +877,36 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 				? new ChannelByteAccessor((RandomAccessFile)rfi)
 				: new RandomDataInputAccessor(rfi);
 		}
+		else if (fileSource.equals("mmap"))
+		{
+			logger.info("Structure "+ structureName + " memory mapping data file");
+			dataSource = new RandomDataInputAccessor(new RandomDataInputMapped(dataFilename));
+		}
 		else
 		{
 			throw new IOException(
 				"Bad property value for index."+structureName + ".source="+fileSource); 
 		}
+		
+		final long cacheBytes = Long.parseLong(index.getIndexProperty("index."+structureName+".cache.bytes", "0"));
+		if (cacheBytes > 0)
+		{
+			logger.info("Structure "+ structureName + " caching decoded records in " + BinaryByteUnit.format(cacheBytes) + " of memory");
+			recordCache = new RecordCache(cacheBytes);
+		}
+		else
+		{
+			recordCache = null;
+		}
+		batchRead = Boolean.parseBoolean(index.getIndexProperty("index."+structureName+".batch-read", "true"));
+		batchReadMaxGap = index.getIntIndexProperty("index."+structureName+".batch-read.max-gap", 1024);
+		batchReadMaxBytes = index.getIntIndexProperty("index."+structureName+".batch-read.max-bytes", 65536);
+	}
+	
+	/** Returns the cache of decoded records, or null if this is not enabled 
+	 * @since 5.8 */
+	public RecordCache getRecordCache() {
+		return recordCache;
 	}
 
 	public int size() {
@@ -750,6 +923,8 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 	
 	/** Closes the underlying structures.*/
 	public void close() throws IOException {
+		if (recordCache != null)
+			recordCache.clear();
 		dataSource.close();
 		offsetLookup.close();
 		for (Map<Text,IntWritable> m : reverseMetaMaps)
@@ -841,9 +1016,12 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 			order[i] = i;
 		HeapSortInt.ascendingHeapSort(docids, order);
 		
+		final byte[][] records = getRecords(docids);
+		final int keyOffset = key2byteoffset.get(Key);
+		final int keyLength = key2bytelength.get(Key);
 		for(int i=0;i<numDocs;i++)
 		{
-			values[order[i]] = getItem(Key, docids[i]);
+			values[order[i]] = Text.decode(records[i], keyOffset, keyLength).trim();
 		}
 		return values;
 	}
@@ -863,47 +1041,125 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 			order[i] = i;
 		HeapSortInt.ascendingHeapSort(docids, order);
 		
+		final byte[][] records = getRecords(docids);
 		for(int i=0;i<numDocs;i++)
 		{
-			saOut[order[i]] = getItems(Keys, docids[i]);
+			saOut[order[i]] = getItems(Keys, records[i]);
 		}
 		return saOut;
 	}
 
 	protected abstract byte[] decode(byte[] input) throws IOException;
+	
+	/** Returns the decoded record of the specified document, using the record cache if enabled.
+	 * @since 5.8 */
+	protected byte[] getRecord(int docid) throws IOException
+	{
+		byte[] record;
+		if (recordCache != null && (record = recordCache.get(docid)) != null)
+			return record;
+		final OffsetPointer pointer = pointerCache.get();
+		offsetLookup.readPointer(docid, pointer);
+		record = decode(dataSource.read(pointer.offset, pointer.length));
+		if (recordCache != null)
+			recordCache.put(docid, record);
+		return record;
+	}
+	
+	/** Returns the decoded records of the specified documents, which must be in ascending order.
+	 * Records that are not cached are read using as few reads as possible, by coalescing the
+	 * reads of records that are close together in the data file.
+	 * @since 5.8 */
+	protected byte[][] getRecords(int[] docids) throws IOException
+	{
+		final int n = docids.length;
+		final byte[][] records = new byte[n][];
+		if (! batchRead)
+		{
+			for(int i=0;i<n;i++)
+				records[i] = getRecord(docids[i]);
+			return records;
+		}
+		final long[] offsets = new long[n];
+		final int[] lengths = new int[n];
+		final OffsetPointer pointer = pointerCache.get();
+		for(int i=0;i<n;i++)
+		{
+			if (recordCache != null && (records[i] = recordCache.get(docids[i])) != null)
+				continue;
+			offsetLookup.readPointer(docids[i], pointer);
+			offsets[i] = pointer.offset;
+			lengths[i] = pointer.length;
+		}
+		int i = 0;
+		while(i < n)
+		{
+			if (records[i] != null)
+			{
+				i++;
+				continue;
+			}
+			//extend the read to the following records, while they are close enough
+			final long start = offsets[i];
+			long end = start + lengths[i];
+			int j = i+1;
+			for(;j<n;j++)
+			{
+				if (records[j] != null)
+					continue;
+				final long recordEnd = offsets[j] + lengths[j];
+				if (offsets[j] - end > batchReadMaxGap || Math.max(end, recordEnd) - start > batchReadMaxBytes)
+					break;
+				end = Math.max(end, recordEnd);
+			}
+			final byte[] block = dataSource.read(start, (int)(end - start));
+			for(int k=i;k<j;k++)
+			{
+				if (records[k] != null)
+					continue;
+				final int from = (int)(offsets[k] - start);
+				records[k] = decode(from == 0 && lengths[k] == block.length 
+					? block 
+					: Arrays.copyOfRange(block, from, from + lengths[k]));
+				if (recordCache != null)
+					recordCache.put(docids[k], records[k]);
+			}
+			i = j;
+		}
+		return records;
+	}
+	
+	/** decodes the values of the specified keys from a decoded record */
+	protected String[] getItems(String[] Keys, byte[] bOut) throws IOException
+	{
+		final int kCount = Keys.length;
+		String[] sOut = new String[kCount];
+		for(int i=0;i<kCount;i++)
+		{
+			sOut[i] = Text.decode(
+				bOut,
+				key2byteoffset.get(Keys[i]),
+				key2bytelength.get(Keys[i])).trim();
+		}
+		return sOut;
+	}
 
 	/** {@inheritDoc} */	
 	public String getItem(String Key, int docid)
         throws IOException
     {
-		OffsetPointer pointer = pointerCache.get();
-		offsetLookup.readPointer(docid, pointer);
-		byte[] bOut = decode(dataSource.read(pointer.offset, pointer.length));
+		byte[] bOut = getRecord(docid);
 		return Text.decode(bOut, key2byteoffset.get(Key), key2bytelength.get(Key)).trim();
     }
 	
 	/** {@inheritDoc} */
 	public String[] getItems(String[] Keys, int docid) throws IOException {
-		OffsetPointer pointer = pointerCache.get();
-		offsetLookup.readPointer(docid, pointer);
-		byte[] bOut = decode(dataSource.read(pointer.offset, pointer.length));
-        final int kCount = Keys.length;
-        String[] sOut = new String[kCount];
-        for(int i=0;i<kCount;i++)
-        {
-            sOut[i] = Text.decode(
-                bOut,
-                key2byteoffset.get(Keys[i]),
-                key2bytelength.get(Keys[i])).trim();
-        }
-        return sOut;
+		return getItems(Keys, getRecord(docid));
     }
 	
 	/** {@inheritDoc} */
 	public String[] getAllItems(int docid) throws IOException {
-		OffsetPointer pointer = pointerCache.get();
-		offsetLookup.readPointer(docid, pointer);
-		byte[] bOut = decode(dataSource.read(pointer.offset, pointer.length));
+		byte[] bOut = getRecord(docid);
         final int kCount = this.keyCount;
         String[] sOut = new String[kCount];
         for(int i=0;i<kCount;i++)
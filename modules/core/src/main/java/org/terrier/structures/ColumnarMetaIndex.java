@@ -0,0 +1,880 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ColumnarMetaIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.sorting.HeapSortInt;
+import org.terrier.structures.BaseCompressingMetaIndex.ByteAccessor;
+import org.terrier.structures.BaseCompressingMetaIndex.ChannelByteAccessor;
+import org.terrier.structures.BaseCompressingMetaIndex.RandomDataInputAccessor;
+import org.terrier.structures.collections.FSOrderedMapFile;
+import org.terrier.structures.collections.FSOrderedMapFile.MapFileWriter;
+import org.terrier.structures.collections.FSOrderedMapFile.MultiFSOMapWriter;
+import org.terrier.structures.seralization.FixedSizeIntWritableFactory;
+import org.terrier.structures.seralization.FixedSizeTextFactory;
+import org.terrier.structures.seralization.FixedSizeWriteableFactory;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.ArrayUtils;
+import org.terrier.utility.Files;
+import org.terrier.utility.MemoryChecker;
+import org.terrier.utility.RuntimeMemoryChecker;
+import org.terrier.utility.io.RandomDataInput;
+import org.terrier.utility.io.RandomDataInputMapped;
+import org.terrier.utility.io.RandomDataInputMemory;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+
+/** A {@link MetaIndex} implementation that stores each key in a separate column file, such that
+ * looking up one key for many documents (e.g. the docnos of the retrieved documents) only reads
+ * the bytes of that key, rather than decompressing the whole record of each document as
+ * {@link BaseCompressingMetaIndex} does.
+ * <p>
+ * Keys with a maximum length of at most <tt>metaindex.columnar.fixed.max.length</tt> characters are
+ * stored as fixed-width columns, i.e. flat arrays of padded values, which can be accessed directly. 
+ * The values of each fixed-width column are padded to the longest UTF-8 encoded value actually 
+ * written for that key, rather than to the longest possible encoding of the maximum length.
+ * Longer keys are stored as blocked columns: the values of consecutive documents are grouped into blocks, 
+ * each of which is compressed using Zstandard, and an index of block offsets is kept in memory.
+ * <p>
+ * Reverse lookups are supported in the same manner as {@link BaseCompressingMetaIndex}, i.e. by
+ * using an {@link FSOrderedMapFile} for each reverse key, or by a binary search if the values of a key are sorted.
+ * An existing meta index can be converted using {@link IndexUtil#convertToColumnarMetaIndex(IndexOnDisk, String)},
+ * or <tt>bin/terrier indexutil --convertmeta</tt>.
+ * <p><b>Properties</b>:
+ * <ul>
+ * <li><tt>metaindex.columnar.fixed.max.length</tt> - maximum length (in characters) of keys stored as fixed-width columns. Defaults to 32.</li>
+ * <li><tt>metaindex.columnar.block.size</tt> - number of values in each block of a blocked column. Defaults to 64.</li>
+ * </ul>
+ * The <tt>metaindex.compressed.*</tt> properties of the meta index builders are also respected.
+ * <p><b>Index properties</b>:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.data-source</tt> - one of fileinmem, file or mmap. Defaults to fileinmem.</li>
+ * <li><tt>index.STRUCTURENAME.reverse.KEY.in-mem</tt> - one of hashmap, mapfileinmem or false. Defaults to false.</li>
+ * </ul>
+ * @since 5.8
+ */
+@ConcurrentReadable
+public class ColumnarMetaIndex implements MetaIndex {
+
+	static final Logger logger = LoggerFactory.getLogger(ColumnarMetaIndex.class);
+	
+	/** suffix of the data file of each column, followed by the column number */
+	public static final String COLUMN_EXTENSION = ".col";
+	/** suffix of the block index file of each blocked column */
+	public static final String BLOCKS_EXTENSION = ".blocks";
+	/** suffix of the temporary file of the unpadded values of each fixed-width column */
+	static final String SPOOL_EXTENSION = ".spool";
+	/** column type of a key stored as a flat array of padded values */
+	static final String FIXED_WIDTH = "fixed";
+	/** column type of a key stored as compressed blocks of values */
+	static final String BLOCKED = "blocked";
+	
+	static final ThreadLocal<ZstdDecompressCtx> zstDecompressCache = new ThreadLocal<ZstdDecompressCtx>() {
+		protected final synchronized ZstdDecompressCtx initialValue() {
+			return new ZstdDecompressCtx();
+		}
+	};
+	
+	static String[] getKeyProperty(IndexOnDisk index, String structureName, String property)
+	{
+		final String value = index.getIndexProperty("index."+structureName+"."+property, "");
+		return value.length() == 0 ? new String[0] : value.split("\\s*,\\s*");
+	}
+	
+	/** returns the width in bytes of each fixed-width column. Indices that do not record the 
+	 * widths have values padded to the longest encoding of the maximum length of each key. */
+	static int[] getColumnWidths(IndexOnDisk index, String structureName, String[] valueLengths)
+	{
+		final String[] recorded = getKeyProperty(index, structureName, "column-widths");
+		final int[] widths = new int[valueLengths.length];
+		for(int i=0;i<valueLengths.length;i++)
+			widths[i] = recorded.length == valueLengths.length
+				? Integer.parseInt(recorded[i])
+				: FixedSizeTextFactory.getMaximumTextLength(Integer.parseInt(valueLengths[i]));
+		return widths;
+	}
+	
+	static String getFilename(IndexOnDisk index, String structureName, int column)
+	{
+		return index.getPath() + ApplicationSetup.FILE_SEPARATOR + index.getPrefix() + "." + structureName + COLUMN_EXTENSION + column;
+	}
+	
+	static String getReverseFilename(IndexOnDisk index, String structureName, int reverseKey)
+	{
+		return index.getPath() + ApplicationSetup.FILE_SEPARATOR + index.getPrefix() + "." + structureName + ".reverse-" + reverseKey + FSOrderedMapFile.USUAL_EXTENSION;
+	}
+	
+	/** Reads the block index of a blocked column: the offset of each block in the data file, followed 
+	 * by the length of the data file, and the uncompressed length of each block. */
+	static Object[] readBlockIndex(String filename, long dataLength) throws IOException
+	{
+		final int numBlocks = (int) (Files.length(filename) / (Long.BYTES + Integer.BYTES));
+		final long[] offsets = new long[numBlocks+1];
+		final int[] lengths = new int[numBlocks];
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(filename)))
+		{
+			for(int i=0;i<numBlocks;i++)
+			{
+				offsets[i] = dis.readLong();
+				lengths[i] = dis.readInt();
+			}
+		}
+		offsets[numBlocks] = dataLength;
+		return new Object[]{offsets, lengths};
+	}
+	
+	/** decompresses a block of a blocked column */
+	static byte[] decodeBlock(byte[] compressed, int length)
+	{
+		final byte[] rtr = new byte[length];
+		zstDecompressCache.get().decompress(rtr, compressed);
+		return rtr;
+	}
+	
+	/** Returns the i-th value of a decompressed block. A block consists of the number of values, 
+	 * the offset of each value (and the end of the last value), then the UTF-8 bytes of the values. */
+	static String getValue(byte[] block, int i) throws IOException
+	{
+		final int count = readInt(block, 0);
+		final int start = readInt(block, 4 + 4*i);
+		final int end = readInt(block, 8 + 4*i);
+		return Text.decode(block, 4 * (count + 2) + start, end - start);
+	}
+	
+	static int readInt(byte[] b, int offset)
+	{
+		return ((b[offset] & 0xff) << 24) | ((b[offset+1] & 0xff) << 16) | ((b[offset+2] & 0xff) << 8) | (b[offset+3] & 0xff);
+	}
+	
+	static ByteAccessor openDataSource(String structureName, String filename, String fileSource) throws IOException
+	{
+		if (fileSource.equals("fileinmem"))
+		{
+			try(DataInputStream di = new DataInputStream(Files.openFileStream(filename)))
+			{
+				return new RandomDataInputAccessor(new RandomDataInputMemory(di, Files.length(filename)));
+			} catch (OutOfMemoryError oome) {
+				logger.warn("OutOfMemoryError: Structure "+ structureName + " reading data file " + filename + " directly from disk");
+				fileSource = "file";
+			}
+		}
+		if (fileSource.equals("file"))
+		{
+			RandomDataInput rfi = Files.openFileRandom(filename);
+			return (rfi instanceof RandomAccessFile)
+				? new ChannelByteAccessor((RandomAccessFile)rfi)
+				: new RandomDataInputAccessor(rfi);
+		}
+		if (fileSource.equals("mmap"))
+		{
+			return new RandomDataInputAccessor(new RandomDataInputMapped(filename));
+		}
+		throw new IOException("Bad property value for index."+structureName + ".data-source="+fileSource);
+	}
+	
+	/** a column of the meta index, containing the values of one key */
+	static abstract class Column implements java.io.Closeable
+	{
+		final ByteAccessor data;
+		
+		Column(ByteAccessor _data)
+		{
+			this.data = _data;
+		}
+		
+		/** returns the value of the specified document */
+		abstract String get(int docid) throws IOException;
+		
+		/** returns the values of the specified documents, which must be in ascending order */
+		String[] get(int[] docids) throws IOException
+		{
+			final String[] rtr = new String[docids.length];
+			for(int i=0;i<docids.length;i++)
+				rtr[i] = get(docids[i]);
+			return rtr;
+		}
+		
+		@Override
+		public void close() throws IOException
+		{
+			data.close();
+		}
+	}
+	
+	/** a column stored as a flat array of values padded to the same width */
+	static class FixedWidthColumn extends Column
+	{
+		final int width;
+		
+		FixedWidthColumn(ByteAccessor _data, int _width)
+		{
+			super(_data);
+			this.width = _width;
+		}
+		
+		@Override
+		String get(int docid) throws IOException
+		{
+			return Text.decode(data.read((long)docid * (long)width, width), 0, width).trim();
+		}
+	}
+	
+	/** a column stored as compressed blocks of consecutive values */
+	static class BlockedColumn extends Column
+	{
+		final int blockSize;
+		final long[] blockOffsets;
+		final int[] blockLengths;
+		
+		BlockedColumn(ByteAccessor _data, int _blockSize, long[] _blockOffsets, int[] _blockLengths)
+		{
+			super(_data);
+			this.blockSize = _blockSize;
+			this.blockOffsets = _blockOffsets;
+			this.blockLengths = _blockLengths;
+		}
+		
+		byte[] getBlock(int block) throws IOException
+		{
+			final byte[] compressed = data.read(blockOffsets[block], (int)(blockOffsets[block+1] - blockOffsets[block]));
+			return decodeBlock(compressed, blockLengths[block]);
+		}
+		
+		@Override
+		String get(int docid) throws IOException
+		{
+			return getValue(getBlock(docid / blockSize), docid % blockSize);
+		}
+		
+		/** {@inheritDoc}. Each block is decompressed at most once. */
+		@Override
+		String[] get(int[] docids) throws IOException
+		{
+			final String[] rtr = new String[docids.length];
+			int lastBlockId = -1;
+			byte[] block = null;
+			for(int i=0;i<docids.length;i++)
+			{
+				final int blockId = docids[i] / blockSize;
+				if (blockId != lastBlockId)
+				{
+					block = getBlock(blockId);
+					lastBlockId = blockId;
+				}
+				rtr[i] = getValue(block, docids[i] % blockSize);
+			}
+			return rtr;
+		}
+	}
+	
+	/** Iterates through the entries of a ColumnarMetaIndex, reading each column sequentially. */
+	public static class InputStream implements Iterator<String[]>, java.io.Closeable
+	{
+		final DataInputStream[] columns;
+		final int[] widths;
+		final Object[][] blockIndices;
+		final int blockSize;
+		final int numberOfEntries;
+		final byte[][] currentBlocks;
+		int index = -1;
+		
+		public InputStream(IndexOnDisk _index, String structureName) throws IOException
+		{
+			final String[] keyNames = getKeyProperty(_index, structureName, "key-names");
+			final String[] valueLengths = getKeyProperty(_index, structureName, "value-lengths");
+			final String[] columnTypes = getKeyProperty(_index, structureName, "column-types");
+			numberOfEntries = _index.getIntIndexProperty("index."+structureName+".entries", 0);
+			blockSize = _index.getIntIndexProperty("index."+structureName+".block-size", 64);
+			final int keyCount = keyNames.length;
+			columns = new DataInputStream[keyCount];
+			widths = getColumnWidths(_index, structureName, valueLengths);
+			blockIndices = new Object[keyCount][];
+			currentBlocks = new byte[keyCount][];
+			for(int i=0;i<keyCount;i++)
+			{
+				final String filename = getFilename(_index, structureName, i);
+				columns[i] = new DataInputStream(Files.openFileStream(filename));
+				if (! columnTypes[i].equals(FIXED_WIDTH))
+					blockIndices[i] = readBlockIndex(filename + BLOCKS_EXTENSION, Files.length(filename));
+			}
+		}
+
+		/** Return the position that we are at (entry number) */
+		public int getIndex()
+		{
+			return index;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return index < numberOfEntries -1;
+		}
+
+		@Override
+		public String[] next() {
+			if (! hasNext())
+				throw new NoSuchElementException();
+			index++;
+			final String[] rtr = new String[columns.length];
+			try{
+				for(int i=0;i<columns.length;i++)
+				{
+					if (blockIndices[i] == null)
+					{
+						final byte[] b = new byte[widths[i]];
+						columns[i].readFully(b);
+						rtr[i] = Text.decode(b, 0, b.length).trim();
+						continue;
+					}
+					final int blockId = index / blockSize;
+					if (index % blockSize == 0)
+					{
+						final long[] offsets = (long[]) blockIndices[i][0];
+						final int[] lengths = (int[]) blockIndices[i][1];
+						final byte[] compressed = new byte[(int)(offsets[blockId+1] - offsets[blockId])];
+						columns[i].readFully(compressed);
+						currentBlocks[i] = decodeBlock(compressed, lengths[blockId]);
+					}
+					rtr[i] = getValue(currentBlocks[i], index % blockSize);
+				}
+			} catch (IOException ioe) {
+				logger.error("Problem reading MetaIndex as a stream. index="+ index, ioe);
+				return null;
+			}
+			return rtr;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			for(DataInputStream dis : columns)
+				dis.close();
+		}
+	}
+	
+	/** Writes a ColumnarMetaIndex. Values must be written in docid order. */
+	public static class Writer implements java.io.Closeable, Flushable
+	{
+		protected final int MAX_MB_IN_MEM_RETRIEVAL = 
+				Integer.parseInt(ApplicationSetup.getProperty("metaindex.compressed.max.data.in-mem.mb", "400"));
+		protected final boolean REVERSE_ALLOW_DUPS = 
+				Boolean.parseBoolean(ApplicationSetup.getProperty("metaindex.compressed.reverse.allow.duplicates", "false"));
+		protected final boolean CROP_LONG = 
+				Boolean.parseBoolean(ApplicationSetup.getProperty("metaindex.compressed.crop.long", "false"));
+		protected final int FIXED_MAX_LENGTH = 
+				Integer.parseInt(ApplicationSetup.getProperty("metaindex.columnar.fixed.max.length", "32"));
+		protected final int BLOCK_SIZE = 
+				Integer.parseInt(ApplicationSetup.getProperty("metaindex.columnar.block.size", "64"));
+		protected final int REVERSE_KEY_LOOKUP_WRITING_BUFFER_SIZE = 20000;
+		protected final int DOCS_PER_CHECK = ApplicationSetup.DOCS_CHECK_SINGLEPASS;
+		
+		protected final IndexOnDisk index;
+		protected final String structureName;
+		protected final String[] keyNames;
+		protected final int[] valueLensChars;
+		/** the longest encoded value written to each fixed-width column, in bytes */
+		protected final int[] fixedWidths;
+		protected final boolean[] fixedWidth;
+		protected final DataOutputStream[] dataOutputs;
+		protected final DataOutputStream[] blockOutputs;
+		protected final long[] dataOffsets;
+		protected final List<List<byte[]>> pendingValues;
+		protected final ZstdCompressCtx compressor = new ZstdCompressCtx();
+		
+		protected final int[] reverseKeys;
+		protected final String[] reverseKeyNames;
+		protected final MapFileWriter[] reverseWriters;
+		protected final FixedSizeWriteableFactory<Text>[] keyFactories;
+		protected final boolean[] valuesSorted;
+		protected final String[] lastValues;
+		protected final MemoryChecker memCheck = new RuntimeMemoryChecker();
+		protected int entryCount = 0;
+		
+		/**
+		 * Constructs a writer for a new ColumnarMetaIndex.
+		 * @param _index index to write to
+		 * @param _structureName name of the meta index structure
+		 * @param _keyNames names of the keys
+		 * @param _valueLens maximum length of each key, in characters
+		 * @param _reverseKeys keys that should support reverse lookups
+		 */
+		@SuppressWarnings("unchecked")
+		public Writer(IndexOnDisk _index, String _structureName, String[] _keyNames, int[] _valueLens, String[] _reverseKeys) throws IOException
+		{
+			this.index = _index;
+			this.structureName = _structureName;
+			this.keyNames = _keyNames;
+			this.valueLensChars = _valueLens;
+			if (keyNames.length != valueLensChars.length)
+				throw new IllegalArgumentException(this.getClass().getSimpleName() +  " configuration incorrect: number of keys and number of value lengths are unequal: "+ Arrays.toString(keyNames) + " vs " + Arrays.toString(_valueLens));
+			final int keyCount = keyNames.length;
+			fixedWidths = new int[keyCount];
+			fixedWidth = new boolean[keyCount];
+			dataOutputs = new DataOutputStream[keyCount];
+			blockOutputs = new DataOutputStream[keyCount];
+			dataOffsets = new long[keyCount];
+			pendingValues = new ArrayList<>(keyCount);
+			for(int i=0;i<keyCount;i++)
+			{
+				fixedWidth[i] = valueLensChars[i] <= FIXED_MAX_LENGTH;
+				final String filename = getFilename(index, structureName, i);
+				//the width of a fixed-width column is only known once all values are written,
+				//so its values are spooled, and padded when the writer is closed
+				if (fixedWidth[i])
+				{
+					dataOutputs[i] = new DataOutputStream(Files.writeFileStream(filename + SPOOL_EXTENSION));
+				}
+				else
+				{
+					dataOutputs[i] = new DataOutputStream(Files.writeFileStream(filename));
+					blockOutputs[i] = new DataOutputStream(Files.writeFileStream(filename + BLOCKS_EXTENSION));
+				}
+				pendingValues.add(new ArrayList<byte[]>(BLOCK_SIZE));
+			}
+			valuesSorted = new boolean[keyCount];
+			Arrays.fill(valuesSorted, true);
+			lastValues = new String[keyCount];
+			
+			if (_reverseKeys.length == 1 && _reverseKeys[0].length() == 0)
+				_reverseKeys = new String[0];
+			reverseKeyNames = _reverseKeys;
+			reverseKeys = new int[_reverseKeys.length];
+			reverseWriters = new MapFileWriter[_reverseKeys.length];
+			keyFactories = new FixedSizeWriteableFactory[_reverseKeys.length];
+			final List<String> keyList = Arrays.asList(keyNames);
+			for(int i=0;i<_reverseKeys.length;i++)
+			{
+				reverseKeys[i] = keyList.indexOf(_reverseKeys[i]);
+				if (reverseKeys[i] == -1)
+					throw new IllegalArgumentException("Reverse key " + _reverseKeys[i] + " must also be a forward meta index key. Add it to indexer.meta.forward.keys");
+				reverseWriters[i] = new MultiFSOMapWriter(
+					getReverseFilename(index, structureName, i),
+					REVERSE_KEY_LOOKUP_WRITING_BUFFER_SIZE, 
+					keyFactories[i] = new FixedSizeTextFactory(valueLensChars[reverseKeys[i]]), 
+					new FixedSizeIntWritableFactory(), REVERSE_ALLOW_DUPS);
+			}
+		}
+		
+		/** Write out metadata for the current document, extracted from the specified map */
+		public void write(Map<String, String> data) throws IOException
+		{
+			final String[] values = new String[keyNames.length];
+			for(int i=0;i<keyNames.length;i++)
+				values[i] = data.get(keyNames[i]);
+			write(values);
+		}
+		
+		/** Write out metadata for the current document. Values for all keys are specified. */
+		public void write(String[] data) throws IOException
+		{
+			final String[] values = new String[keyNames.length];
+			for(int i=0;i<keyNames.length;i++)
+			{
+				String value = data[i];
+				if (value == null)
+					value = "";
+				else if (value.length() > valueLensChars[i])
+					if (CROP_LONG)
+						value = value.substring(0, valueLensChars[i]);
+					else
+						throw new IllegalArgumentException("CROP_LONG="+CROP_LONG+": Data ("+value+") of string length "+value.length()+" for key "
+							+keyNames[i]+" exceeds max string length of " + valueLensChars[i] 
+							+ ". Crop in the Document, increase indexer.meta.forward.keylens, or set metaindex.compressed.crop.long");
+				final byte[] b = value.getBytes(StandardCharsets.UTF_8);
+				if (fixedWidth[i])
+				{
+					dataOutputs[i].writeInt(b.length);
+					dataOutputs[i].write(b);
+					fixedWidths[i] = Math.max(fixedWidths[i], b.length);
+				}
+				else
+				{
+					final List<byte[]> pending = pendingValues.get(i);
+					pending.add(b);
+					if (pending.size() == BLOCK_SIZE)
+						writeBlock(i);
+				}
+				if (valuesSorted[i] && entryCount > 0 && lastValues[i].compareTo(value) >= 0)
+					valuesSorted[i] = false;
+				lastValues[i] = value;
+				values[i] = value;
+			}
+			for(int i=0;i<reverseKeys.length;i++)
+			{
+				Text key = keyFactories[i].newInstance();
+				key.set(values[reverseKeys[i]]);
+				reverseWriters[i].write(key, new IntWritable(entryCount));
+			}
+			entryCount++;
+			
+			//check for low memory, and flush if necessary
+			if (entryCount % DOCS_PER_CHECK == 0 && memCheck.checkMemory())
+			{
+				flush();
+				memCheck.reset();
+			}
+		}
+		
+		/** compresses and writes out the pending values of the specified blocked column */
+		protected void writeBlock(int column) throws IOException
+		{
+			final List<byte[]> pending = pendingValues.get(column);
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final DataOutputStream dos = new DataOutputStream(baos);
+			dos.writeInt(pending.size());
+			int offset = 0;
+			dos.writeInt(offset);
+			for(byte[] b : pending)
+			{
+				offset += b.length;
+				dos.writeInt(offset);
+			}
+			for(byte[] b : pending)
+				dos.write(b);
+			dos.flush();
+			final byte[] block = baos.toByteArray();
+			final byte[] compressed = compressor.compress(block);
+			blockOutputs[column].writeLong(dataOffsets[column]);
+			blockOutputs[column].writeInt(block.length);
+			dataOutputs[column].write(compressed);
+			dataOffsets[column] += compressed.length;
+			pending.clear();
+		}
+		
+		/** writes the spooled values of the specified fixed-width column, padded to the longest value. 
+		 * Columns have a width of at least one byte. */
+		protected void writeFixedWidth(int column) throws IOException
+		{
+			final String filename = getFilename(index, structureName, column);
+			final int width = fixedWidths[column] = Math.max(1, fixedWidths[column]);
+			final byte[] value = new byte[width];
+			try(DataInputStream spool = new DataInputStream(Files.openFileStream(filename + SPOOL_EXTENSION));
+				DataOutputStream dos = new DataOutputStream(Files.writeFileStream(filename)))
+			{
+				for(int e=0;e<entryCount;e++)
+				{
+					final int length = spool.readInt();
+					spool.readFully(value, 0, length);
+					Arrays.fill(value, length, width, (byte)' ');
+					dos.write(value);
+				}
+			}
+			Files.delete(filename + SPOOL_EXTENSION);
+			dataOffsets[column] = (long)width * (long)entryCount;
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			for(MapFileWriter w : reverseWriters)
+				((Flushable)w).flush();
+		}
+
+		/** Finishes writing the meta index, and records it in the properties of the index */
+		@Override
+		public void close() throws IOException {
+			long totalBytes = 0;
+			final String[] columnTypes = new String[keyNames.length];
+			for(int i=0;i<keyNames.length;i++)
+			{
+				if (fixedWidth[i])
+				{
+					dataOutputs[i].close();
+					writeFixedWidth(i);
+					columnTypes[i] = FIXED_WIDTH;
+				}
+				else
+				{
+					if (pendingValues.get(i).size() > 0)
+						writeBlock(i);
+					blockOutputs[i].close();
+					dataOutputs[i].close();
+					columnTypes[i] = BLOCKED;
+				}
+				totalBytes += dataOffsets[i];
+			}
+			for(MapFileWriter w : reverseWriters)
+				w.close();
+			index.addIndexStructure(structureName, ColumnarMetaIndex.class.getName(), "org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+			index.addIndexStructureInputStream(structureName, ColumnarMetaIndex.InputStream.class.getName(), "org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+			index.setIndexProperty("index."+structureName+".entries", ""+entryCount);
+			index.setIndexProperty("index."+structureName+".key-names", ArrayUtils.join(keyNames, ","));
+			index.setIndexProperty("index."+structureName+".value-lengths", ArrayUtils.join(valueLensChars, ","));
+			index.setIndexProperty("index."+structureName+".column-types", ArrayUtils.join(columnTypes, ","));
+			index.setIndexProperty("index."+structureName+".column-widths", ArrayUtils.join(fixedWidths, ","));
+			index.setIndexProperty("index."+structureName+".block-size", ""+BLOCK_SIZE);
+			index.setIndexProperty("index."+structureName+".value-sorted", ArrayUtils.join(valuesSorted, ","));
+			index.setIndexProperty("index."+structureName+".reverse-key-names", ArrayUtils.join(reverseKeyNames, ","));
+			index.setIndexProperty("index."+structureName+".data-source",
+				totalBytes > MAX_MB_IN_MEM_RETRIEVAL * (long)1024 * (long)1024 
+				? "file"
+				: "fileinmem");
+			index.flush();
+			logger.debug("Finished writing columnar metaindex:" +
+				" keys " + Arrays.toString(keyNames) + 
+				" column types " + Arrays.toString(columnTypes) + 
+				" column widths " + Arrays.toString(fixedWidths) + 
+				" sorted "  + Arrays.toString(valuesSorted) +
+				" data size "  + totalBytes);
+		}
+	}
+	
+	protected final String[] keyNames;
+	protected final TObjectIntHashMap<String> key2column;
+	protected final Column[] columns;
+	protected final boolean[] valuesSorted;
+	protected final int numDocs;
+	
+	protected final TObjectIntHashMap<String> key2reverseOffset = new TObjectIntHashMap<String>(2);
+	protected final Map<Text,IntWritable>[] reverseMetaMaps;
+	protected final FixedSizeWriteableFactory<Text>[] keyFactories;
+	
+	/**
+	 * Construct an instance of the class with
+	 * @param index
+	 * @param structureName
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public ColumnarMetaIndex(IndexOnDisk index, String structureName) throws IOException
+	{
+		numDocs = index.getIntIndexProperty("index."+structureName+".entries", 0);
+		keyNames = getKeyProperty(index, structureName, "key-names");
+		final String[] valueLengths = getKeyProperty(index, structureName, "value-lengths");
+		final String[] columnTypes = getKeyProperty(index, structureName, "column-types");
+		final String[] sorted = index.getIndexProperty("index."+structureName+".value-sorted", "").split("\\s*,\\s*");
+		final int blockSize = index.getIntIndexProperty("index."+structureName+".block-size", 64);
+		final String fileSource = index.getIndexProperty("index."+structureName + ".data-source", "fileinmem");
+		logger.info("Structure "+ structureName + " opening " + keyNames.length + " columns, data-source="+fileSource);
+		
+		final int keyCount = keyNames.length;
+		final int[] valueCharLengths = new int[keyCount];
+		final int[] widths = getColumnWidths(index, structureName, valueLengths);
+		key2column = new TObjectIntHashMap<String>(keyCount);
+		columns = new Column[keyCount];
+		valuesSorted = new boolean[keyCount];
+		for(int i=0;i<keyCount;i++)
+		{
+			key2column.put(keyNames[i], i);
+			valueCharLengths[i] = Integer.parseInt(valueLengths[i]);
+			valuesSorted[i] = i < sorted.length && Boolean.parseBoolean(sorted[i]);
+			final String filename = getFilename(index, structureName, i);
+			final ByteAccessor data = openDataSource(structureName, filename, fileSource);
+			if (columnTypes[i].equals(FIXED_WIDTH))
+			{
+				columns[i] = new FixedWidthColumn(data, widths[i]);
+			}
+			else if (columnTypes[i].equals(BLOCKED))
+			{
+				final Object[] blockIndex = readBlockIndex(filename + BLOCKS_EXTENSION, Files.length(filename));
+				columns[i] = new BlockedColumn(data, blockSize, (long[])blockIndex[0], (int[])blockIndex[1]);
+			}
+			else
+			{
+				throw new IOException("Bad property value for index."+structureName + ".column-types="+columnTypes[i]);
+			}
+		}
+		
+		final String[] reverseKeys = index.getIndexProperty("index."+structureName+".reverse-key-names", "").split("\\s*,\\s*");
+		reverseMetaMaps = (Map<Text,IntWritable>[])new Map[reverseKeys.length];
+		keyFactories = (FixedSizeWriteableFactory<Text>[])new FixedSizeWriteableFactory[reverseKeys.length];
+		final FixedSizeIntWritableFactory valueFactory = new FixedSizeIntWritableFactory();
+		for(int i=0;i<reverseKeys.length;i++)
+		{
+			final String keyName = reverseKeys[i];
+			if (keyName.trim().equals(""))
+				continue;
+			final String filename = getReverseFilename(index, structureName, i);
+			if (! Files.exists(filename)) {
+				logger.warn("File " + filename + " containing reverse meta mapping for key" + keyName +" is missing. Reverse lookups for this key will be disabled");
+				continue;
+			}
+			keyFactories[i] = new FixedSizeTextFactory(valueCharLengths[key2column.get(keyName)]);
+			final String loadFormat = index.getIndexProperty("index."+structureName+".reverse."+keyName+".in-mem", "false");
+			if (loadFormat.equals("hashmap"))
+			{
+				reverseMetaMaps[i] = new FSOrderedMapFile.MapFileInMemory<Text, IntWritable>(filename, keyFactories[i], valueFactory);
+			}
+			else if (loadFormat.equals("mapfileinmem"))
+			{
+				try(DataInputStream dis = new DataInputStream(Files.openFileStream(filename)))
+				{
+					reverseMetaMaps[i] = new FSOrderedMapFile<Text, IntWritable>(
+						new RandomDataInputMemory(dis, Files.length(filename)), filename, keyFactories[i], valueFactory);
+				}
+			}
+			else
+			{
+				reverseMetaMaps[i] = new FSOrderedMapFile<Text, IntWritable>(filename, false, keyFactories[i], valueFactory);
+			}
+			key2reverseOffset.put(keyName, 1+i);
+		}
+	}
+	
+	protected final int getColumn(String key)
+	{
+		if (! key2column.containsKey(key))
+			throw new NoSuchElementException("Unknown key " + key);
+		return key2column.get(key);
+	}
+	
+	@Override
+	public int size() {
+		return numDocs;
+	}
+
+	@Override
+	public String getItem(String Key, int docid) throws IOException {
+		return columns[getColumn(Key)].get(docid);
+	}
+
+	@Override
+	public String[] getAllItems(int docid) throws IOException {
+		final String[] rtr = new String[columns.length];
+		for(int i=0;i<columns.length;i++)
+			rtr[i] = columns[i].get(docid);
+		return rtr;
+	}
+	
+	@Override
+	public String[] getItems(String[] Keys, int docid) throws IOException {
+		final String[] rtr = new String[Keys.length];
+		for(int i=0;i<Keys.length;i++)
+			rtr[i] = columns[getColumn(Keys[i])].get(docid);
+		return rtr;
+	}
+
+	/** {@inheritDoc}.
+	 * In this implementation, only the column of the specified key is read, and _docids are sorted 
+	 * such that each block is decompressed at most once. _docids is however unchanged.
+	 */
+	@Override
+	public String[] getItems(String Key, int[] _docids) throws IOException {
+		return getItems(new String[]{Key}, _docids, true)[0];
+	}
+
+	/** {@inheritDoc}.
+	 * In this implementation, only the columns of the specified keys are read, and _docids are sorted 
+	 * such that each block is decompressed at most once. _docids is however unchanged.
+	 */
+	@Override
+	public String[][] getItems(String[] Keys, int[] _docids) throws IOException {
+		return getItems(Keys, _docids, false);
+	}
+	
+	/** obtains the values of the keys for the documents, indexed by [key][document] if byKey, or [document][key] otherwise */
+	protected String[][] getItems(String[] Keys, int[] _docids, boolean byKey) throws IOException {
+		final int n = _docids.length;
+		final int[] docids = _docids.clone();
+		final int[] order = new int[n];
+		for(int i=0;i<n;i++)
+			order[i] = i;
+		HeapSortInt.ascendingHeapSort(docids, order);
+		
+		final String[][] rtr = byKey ? new String[Keys.length][n] : new String[n][Keys.length];
+		for(int k=0;k<Keys.length;k++)
+		{
+			final String[] values = columns[getColumn(Keys[k])].get(docids);
+			for(int i=0;i<n;i++)
+			{
+				if (byKey)
+					rtr[k][order[i]] = values[i];
+				else
+					rtr[order[i]][k] = values[i];
+			}
+		}
+		return rtr;
+	}
+
+	@Override
+	public int getDocument(String key, String value) throws IOException {
+		final int reverseId = key2reverseOffset.get(key) -1;
+		if (reverseId != -1) {
+			final Text wKey = keyFactories[reverseId].newInstance();
+			wKey.set(value);
+			final IntWritable rtr = reverseMetaMaps[reverseId].get(wKey);
+			if (rtr == null)
+				return -1;
+			return rtr.get();
+		}
+		final int column = getColumn(key);
+		if (! this.valuesSorted[column])
+		{
+			throw new NoSuchElementException("No reverse lookup for key " + key + " is supported, and metadata for that key is not sorted. " + 
+				"You should re-index with indexer.meta.reverse.keys="+key);
+		}
+		int l = 0, r = numDocs - 1; 
+		while (l <= r) { 
+			final int m = l + (r - l) / 2; 
+			final int compare = value.compareTo(columns[column].get(m));
+			if (compare == 0)
+				return m;
+			if (compare > 0) 
+				l = m + 1; 
+			else
+				r = m - 1; 
+		}
+		return -1;
+	}
+
+	@Override
+	public String[] getKeys() {
+		return keyNames;
+	}
+
+	@Override
+	public String[] getReverseKeys() {
+		return key2reverseOffset.keys(new String[key2reverseOffset.size()]);
+	}
+
+	@Override
+	public void close() throws IOException {
+		for(Column c : columns)
+			c.close();
+		for (Map<Text,IntWritable> m : reverseMetaMaps)
+		{
+			if (m != null)
+				IndexUtil.close(m);
+		}
+	}
+}
@@ -0,0 +1,487 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is DocumentPositionIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.integer.ByteFileBuffered;
+import org.terrier.compression.integer.ByteFileInMemory;
+import org.terrier.compression.integer.ByteFileMapped;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteInSeekable;
+import org.terrier.compression.integer.ByteOutputStream;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+/** A forward index of the positions of the terms of each document, which allows the positions
+ * of a few query terms to be obtained for a given document without traversing their block 
+ * posting lists. This is used by proximity scoring, such as 
+ * {@link org.terrier.matching.dsms.DependenceScoreModifier}, which only needs the positions of
+ * the documents that have already been retrieved.
+ * <p>
+ * The record of each document lists its terms in ascending order of termid. Each term has its 
+ * number of positions and the length in bytes of its positions, such that the positions of 
+ * terms that are not of interest can be skipped without being decoded. Termids and positions 
+ * are compressed using variable byte encoding of the gaps between them.
+ * <p>
+ * This structure is created from the block direct index, or else the block inverted index, of an 
+ * existing index by {@link #create(IndexOnDisk, String)}, or using the <tt>positionindex</tt> command, 
+ * and is normally called <tt>"positions"</tt>.
+ * <p><b>Index properties</b>:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.data-source</tt> - one of fileinmem, file or mmap. Defaults to file.</li>
+ * </ul>
+ * <p><b>Properties</b>:
+ * <ul>
+ * <li><tt>positions.build.run.tokens</tt> - approximate number of tokens whose positions are buffered in
+ * memory before being spilled to a sorted run, when {@link #create(IndexOnDisk, String)} reads the inverted 
+ * index. Defaults to 10000000.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class DocumentPositionIndex implements java.io.Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(DocumentPositionIndex.class);
+	
+	/** the usual name of this structure in the index */
+	public static final String STRUCTURE_NAME = "positions";
+	/** the file extension of the records of this structure */
+	public static final String USUAL_EXTENSION = ".positions";
+	/** the file extension of the offset of the record of each document */
+	public static final String OFFSETS_EXTENSION = ".positionoffsets";
+	
+	protected final ByteInSeekable file;
+	protected final long[] offsets;
+	
+	/** Loads the document position structure of the specified index */
+	public DocumentPositionIndex(IndexOnDisk index, String structureName) throws IOException
+	{
+		final String prefix = index.getPath() + "/" + index.getPrefix() + "." + structureName;
+		final int numDocs = index.getIntIndexProperty("index."+structureName+".docs", 0);
+		offsets = new long[numDocs+1];
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(prefix + OFFSETS_EXTENSION)))
+		{
+			for(int i=0;i<=numDocs;i++)
+				offsets[i] = dis.readLong();
+		}
+		final String dataSource = index.getIndexProperty("index."+structureName+".data-source", "file");
+		if (dataSource.equals("fileinmem"))
+			file = new ByteFileInMemory(prefix + USUAL_EXTENSION);
+		else if (dataSource.equals("file"))
+			file = new ByteFileBuffered(prefix + USUAL_EXTENSION);
+		else if (dataSource.equals("mmap"))
+			file = new ByteFileMapped(prefix + USUAL_EXTENSION);
+		else
+			throw new IOException("Bad property value for index."+structureName + ".data-source="+dataSource);
+	}
+	
+	/** Returns the number of documents in this structure */
+	public int size()
+	{
+		return offsets.length -1;
+	}
+	
+	/** Returns the positions of the specified terms in the specified document. Only the positions
+	 * of the requested terms are decoded.
+	 * @param docid the document of interest
+	 * @param termids the terms of interest, in any order
+	 * @return the positions of each term, in ascending order, or null for terms that do not occur in the document
+	 */
+	public int[][] getPositions(int docid, int[] termids) throws IOException
+	{
+		final int[][] rtr = new int[termids.length][];
+		int maxTermid = -1;
+		for(int termid : termids)
+			maxTermid = Math.max(maxTermid, termid);
+		if (offsets[docid+1] == offsets[docid])
+			return rtr;
+		final ByteIn in = file.readReset(offsets[docid]);
+		final int numTerms = in.readVInt();
+		int remaining = termids.length;
+		int termid = -1;
+		for(int t=0;t<numTerms && remaining > 0;t++)
+		{
+			termid += in.readVInt();
+			if (termid > maxTermid)
+				break;
+			final int numPositions = in.readVInt();
+			final int length = in.readVInt();
+			int[] positions = null;
+			for(int i=0;i<termids.length;i++)
+			{
+				if (termids[i] != termid)
+					continue;
+				//the same term may be requested more than once
+				if (positions == null)
+				{
+					positions = new int[numPositions];
+					int pos = -1;
+					for(int p=0;p<numPositions;p++)
+						positions[p] = pos += in.readVInt();
+				}
+				rtr[i] = positions;
+				remaining--;
+			}
+			if (positions == null)
+				in.skipBytes(length);
+		}
+		return rtr;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+	
+	/** Writes the positions of each document, and adds the resulting structure to the index. 
+	 * The structure is written in a single pass: if the index has a direct index with positions,
+	 * this is read document by document; otherwise, the block inverted index is read once, and 
+	 * its postings are spilled in runs sorted by docid, which are then merged.
+	 * @param index the index to build a document position structure for
+	 * @param structureName name of the new structure, usually <tt>"positions"</tt>
+	 * @throws IOException if the index does not have positions, or a problem occurs reading 
+	 * the index or writing the structure
+	 */
+	public static void create(IndexOnDisk index, String structureName) throws IOException
+	{
+		final int numDocs = index.getDocumentIndex().getNumberOfDocuments();
+		final String prefix = index.getPath() + "/" + index.getPrefix() + "." + structureName;
+		final long[] docOffsets = new long[numDocs+1];
+		final String source;
+		try(ByteOutputStream out = new ByteOutputStream(prefix + USUAL_EXTENSION))
+		{
+			if (index.hasIndexStructure("direct") && index.getIntIndexProperty("index.direct.blocks", 0) > 0)
+			{
+				writeFromDirect(index, out, docOffsets);
+				source = "direct index";
+			}
+			else
+			{
+				final int runs = writeFromInverted(index, prefix, out, docOffsets);
+				source = "inverted index, using " + runs + " sorted runs";
+			}
+			docOffsets[numDocs] = out.getByteOffset();
+		}
+		
+		try(DataOutputStream dos = new DataOutputStream(Files.writeFileStream(prefix + OFFSETS_EXTENSION)))
+		{
+			for(long offset : docOffsets)
+				dos.writeLong(offset);
+		}
+		index.setIndexProperty("index."+structureName+".docs", String.valueOf(numDocs));
+		index.addIndexStructure(structureName, DocumentPositionIndex.class.getName(), 
+			"org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+		index.flush();
+		logger.info("Wrote positions of " + numDocs + " documents from the " + source + " in structure " + structureName);
+	}
+	
+	/** writes the record of each document from the block direct index, which has the terms 
+	 * of each document in turn */
+	@SuppressWarnings("unchecked")
+	static void writeFromDirect(IndexOnDisk index, ByteOutputStream out, long[] docOffsets) throws IOException
+	{
+		final DocumentIndex doi = index.getDocumentIndex();
+		final PostingIndex<Pointer> direct = (PostingIndex<Pointer>) index.getDirectIndex();
+		int[] buffer = new int[1024];
+		for(int d=0;d<docOffsets.length-1;d++)
+		{
+			docOffsets[d] = out.getByteOffset();
+			final DocumentIndexEntry die = doi.getDocumentEntry(d);
+			if (die.getNumberOfEntries() == 0)
+				continue;
+			int used = 0;
+			final IterablePosting ip = direct.getPostings(die);
+			while(ip.next() != IterablePosting.EOL)
+			{
+				final int[] positions = ((BlockPosting)ip).getPositions();
+				buffer = append(buffer, used, ip.getId(), positions, positions.length);
+				used += 2 + positions.length;
+			}
+			ip.close();
+			writeDocument(out, buffer, used);
+		}
+	}
+	
+	/** writes the record of each document from the block inverted index, which is read once. 
+	 * Its postings are buffered in memory, and each time the buffer is full, these are sorted 
+	 * by docid and spilled to a temporary run file. The runs are then merged to obtain the
+	 * terms of each document in turn.
+	 * @return the number of sorted runs
+	 */
+	@SuppressWarnings("unchecked")
+	static int writeFromInverted(IndexOnDisk index, String prefix, ByteOutputStream out, long[] docOffsets) throws IOException
+	{
+		final long runTokens = Long.parseLong(ApplicationSetup.getProperty("positions.build.run.tokens", "10000000"));
+		final PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		final List<String> runFiles = new ArrayList<>();
+		final List<PositionsRun> runs = new ArrayList<>();
+		try{
+			//each posting is buffered as its docid, termid, number of positions and positions
+			MemoryRun current = new MemoryRun();
+			final Iterator<Map.Entry<String,LexiconEntry>> lexIn = 
+				(Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+			while(lexIn.hasNext())
+			{
+				final LexiconEntry le = lexIn.next().getValue();
+				final IterablePosting ip = inverted.getPostings(le);
+				if (! (ip instanceof BlockPosting))
+				{
+					ip.close();
+					IndexUtil.close(lexIn);
+					throw new IOException("A document position structure requires an index with blocks (positions), "
+						+ "but its postings are of " + ip.getClass().getName());
+				}
+				while(ip.next() != IterablePosting.EOL)
+				{
+					current.add(ip.getId(), le.getTermId(), ((BlockPosting)ip).getPositions());
+					if (current.tokens >= runTokens)
+					{
+						final String runFile = prefix + ".run" + runFiles.size();
+						runFiles.add(runFile);
+						current.spill(runFile);
+						current = new MemoryRun();
+					}
+				}
+				ip.close();
+			}
+			IndexUtil.close(lexIn);
+			
+			//the last run is merged from memory
+			for(String runFile : runFiles)
+				runs.add(new FileRun(runFile));
+			current.sort();
+			runs.add(current);
+			final PriorityQueue<PositionsRun> heap = new PriorityQueue<>(runs.size(), (a,b) -> Integer.compare(a.docid, b.docid));
+			for(PositionsRun run : runs)
+				if (run.next())
+					heap.add(run);
+			int[] buffer = new int[1024];
+			for(int d=0;d<docOffsets.length-1;d++)
+			{
+				docOffsets[d] = out.getByteOffset();
+				int used = 0;
+				while(heap.size() > 0 && heap.peek().docid == d)
+				{
+					final PositionsRun run = heap.poll();
+					buffer = append(buffer, used, run.termid, run.positions, run.numPositions);
+					used += 2 + run.numPositions;
+					if (run.next())
+						heap.add(run);
+				}
+				writeDocument(out, buffer, used);
+			}
+			return runFiles.size() + 1;
+		} finally {
+			for(PositionsRun run : runs)
+				run.close();
+			for(String runFile : runFiles)
+				Files.delete(runFile);
+		}
+	}
+	
+	/** appends a term and its positions to the buffer of a document, returning the buffer, which may have been enlarged */
+	static int[] append(int[] buffer, int used, int termid, int[] positions, int numPositions)
+	{
+		if (used + 2 + numPositions > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, used + 2 + numPositions));
+		buffer[used] = termid;
+		buffer[used+1] = numPositions;
+		System.arraycopy(positions, 0, buffer, used + 2, numPositions);
+		return buffer;
+	}
+	
+	/** A run of the positions of (docid, termid) pairs, in ascending order of docid */
+	static abstract class PositionsRun implements java.io.Closeable
+	{
+		int docid;
+		int termid;
+		int numPositions;
+		int[] positions = new int[16];
+		
+		/** moves to the next pair, returning false if there are none */
+		abstract boolean next() throws IOException;
+		
+		void setPositions(int n)
+		{
+			numPositions = n;
+			if (n > positions.length)
+				positions = new int[Math.max(n, positions.length * 2)];
+		}
+	}
+	
+	/** A run buffered in memory. Each pair is recorded as its docid, termid, number of 
+	 * positions and positions, and is sorted using a key of its docid and its offset. */
+	static class MemoryRun extends PositionsRun
+	{
+		int[] data = new int[1024];
+		int used = 0;
+		long[] keys = new long[256];
+		int count = 0;
+		long tokens = 0;
+		int current = 0;
+		
+		void add(int _docid, int _termid, int[] _positions)
+		{
+			if (used + 3 + _positions.length > data.length)
+				data = Arrays.copyOf(data, Math.max(data.length * 2, used + 3 + _positions.length));
+			if (count == keys.length)
+				keys = Arrays.copyOf(keys, count * 2);
+			keys[count++] = ((long)_docid << 32) | used;
+			data[used++] = _docid;
+			data[used++] = _termid;
+			data[used++] = _positions.length;
+			System.arraycopy(_positions, 0, data, used, _positions.length);
+			used += _positions.length;
+			tokens += _positions.length;
+		}
+		
+		void sort()
+		{
+			Arrays.sort(keys, 0, count);
+		}
+		
+		/** writes this run, in order of docid, to the specified file */
+		void spill(String filename) throws IOException
+		{
+			sort();
+			try(DataOutputStream dos = new DataOutputStream(Files.writeFileStream(filename)))
+			{
+				dos.writeInt(count);
+				for(int k=0;k<count;k++)
+				{
+					final int o = (int) keys[k];
+					final int n = data[o+2];
+					for(int i=o;i<o+3+n;i++)
+						dos.writeInt(data[i]);
+				}
+			}
+		}
+		
+		@Override
+		boolean next()
+		{
+			if (current == count)
+				return false;
+			final int o = (int) keys[current++];
+			docid = data[o];
+			termid = data[o+1];
+			setPositions(data[o+2]);
+			System.arraycopy(data, o+3, positions, 0, numPositions);
+			return true;
+		}
+		
+		@Override
+		public void close() {}
+	}
+	
+	/** A run that was spilled to a file by {@link MemoryRun#spill(String)} */
+	static class FileRun extends PositionsRun
+	{
+		final DataInputStream dis;
+		int remaining;
+		
+		FileRun(String filename) throws IOException
+		{
+			dis = new DataInputStream(Files.openFileStream(filename));
+			remaining = dis.readInt();
+		}
+		
+		@Override
+		boolean next() throws IOException
+		{
+			if (remaining == 0)
+				return false;
+			remaining--;
+			docid = dis.readInt();
+			termid = dis.readInt();
+			setPositions(dis.readInt());
+			for(int p=0;p<numPositions;p++)
+				positions[p] = dis.readInt();
+			return true;
+		}
+		
+		@Override
+		public void close() throws IOException
+		{
+			dis.close();
+		}
+	}
+	
+	/** writes the record of one document, given its buffered terms in any order */
+	static void writeDocument(ByteOutputStream out, int[] buffer, int used) throws IOException
+	{
+		//documents without terms have an empty record
+		if (used == 0)
+			return;
+		int numTerms = 0;
+		long[] keys = new long[16];
+		for(int i=0;i<used;i+= 2 + buffer[i+1])
+		{
+			if (numTerms == keys.length)
+				keys = Arrays.copyOf(keys, numTerms * 2);
+			//sorting these keys orders the terms by termid
+			keys[numTerms++] = ((long)buffer[i] << 32) | i;
+		}
+		Arrays.sort(keys, 0, numTerms);
+		out.writeVInt(numTerms);
+		int lastTermid = -1;
+		for(int t=0;t<numTerms;t++)
+		{
+			final int i = (int) keys[t];
+			final int termid = buffer[i];
+			final int numPositions = buffer[i+1];
+			int length = 0;
+			int last = -1;
+			for(int p=i+2;p<i+2+numPositions;p++)
+			{
+				length += ByteOutputStream.getVIntSize(buffer[p] - last);
+				last = buffer[p];
+			}
+			out.writeVInt(termid - lastTermid);
+			out.writeVInt(numPositions);
+			out.writeVInt(length);
+			last = -1;
+			for(int p=i+2;p<i+2+numPositions;p++)
+			{
+				out.writeVInt(buffer[p] - last);
+				last = buffer[p];
+			}
+			lastTermid = termid;
+		}
+	}
+}
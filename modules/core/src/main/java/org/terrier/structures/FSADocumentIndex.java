@@ -37,14 +37,32 @@ import org.terrier.utility.TerrierTimer;
 import com.jakewharton.byteunits.BinaryByteUnit;
 
 /** 
- * Document Index saved as a fixed size array
+ * Document Index saved as a fixed size array. Document lengths are held in memory,
+ * and can be read without locking. Entries are read using positional reads, so
+ * when the data-source supports these (see {@link #isConcurrentReadable()}), the
+ * whole document index can be read by several threads at once.
  */
-public class FSADocumentIndex extends FSArrayFile<DocumentIndexEntry> implements DocumentIndex {
+public class FSADocumentIndex extends FSArrayFile<DocumentIndexEntry> implements DocumentLengthArray {
 	
 	protected static final Logger logger = LoggerFactory.getLogger(FSADocumentIndex.class);
 	
-	protected int lastDocid = -1;
-	protected DocumentIndexEntry lastEntry = null;
+	/** The most recently obtained entry together with its docid. These are held in
+	 * a single object, so that concurrent readers never see the entry of one
+	 * document paired with the docid of another. 
+	 * @since 5.8
+	 */
+	static final class LastEntry
+	{
+		final int docid;
+		final DocumentIndexEntry entry;
+		LastEntry(int _docid, DocumentIndexEntry _entry)
+		{
+			docid = _docid;
+			entry = _entry;
+		}
+	}
+	
+	protected volatile LastEntry lastEntry = null;
 	protected int[] docLengths;
 
 	static long freeMem()
@@ -81,7 +99,8 @@ public class FSADocumentIndex extends FSArrayFile<DocumentIndexEntry> implements
 		super(
 				index.getPath() + "/" + index.getPrefix() + "."+ structureName + FSArrayFile.USUAL_EXTENSION,
 				false,
-				(FixedSizeWriteableFactory<DocumentIndexEntry>) index.getIndexStructure(structureName+"-factory")
+				(FixedSizeWriteableFactory<DocumentIndexEntry>) index.getIndexStructure(structureName+"-factory"),
+				index.getIndexProperty("index."+structureName+".data-source", "file")
 				);
 		if (initialise)
 			initialise(index, structureName);
@@ -122,17 +141,28 @@ public class FSADocumentIndex extends FSArrayFile<DocumentIndexEntry> implements
 	 */
 	public final DocumentIndexEntry getDocumentEntry(int docid) throws IOException 
 	{
-		if (docid == lastDocid)
+		final LastEntry last = lastEntry;
+		if (last != null && last.docid == docid)
 		{
-			return lastEntry;
+			return last.entry;
 		}
 		try{
-			lastEntry = null;
-			return lastEntry = get(lastDocid = docid);
+			final DocumentIndexEntry entry = get(docid);
+			lastEntry = new LastEntry(docid, entry);
+			return entry;
 		} catch (NoSuchElementException nsee) {
 			return null;
 		}
 	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	public final int[] getDocumentLengths()
+	{
+		return docLengths;
+	}
+	
 	/** 
 	 * Gets an iterator over the documents in this index
 	 */
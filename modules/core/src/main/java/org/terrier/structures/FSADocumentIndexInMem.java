@@ -32,11 +32,12 @@ import org.terrier.structures.collections.FSArrayFile;
 import org.terrier.structures.collections.FSArrayFileInMem;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
 
-/** A DocumentIndex implementation that loads everything in memory. It is not compatible with fields. */
-public class FSADocumentIndexInMem extends FSArrayFileInMem<DocumentIndexEntry> implements DocumentIndex 
+/** A DocumentIndex implementation that loads everything in memory. It is not compatible with fields.
+ * All lookups are made on in-memory data, so it can be read by several threads at once. */
+@ConcurrentReadable
+public class FSADocumentIndexInMem extends FSArrayFileInMem<DocumentIndexEntry> implements DocumentLengthArray 
 {
-	protected int lastDocid = -1;
-	protected DocumentIndexEntry lastEntry = null;
+	protected volatile FSADocumentIndex.LastEntry lastEntry = null;
 	protected int[] docLengths;
 	@SuppressWarnings("unchecked")
 	public FSADocumentIndexInMem(IndexOnDisk index, String structureName) throws IOException
@@ -58,18 +59,25 @@ public class FSADocumentIndexInMem extends FSArrayFileInMem<DocumentIndexEntry>
 	}
 
 	public DocumentIndexEntry getDocumentEntry(int docid) throws IOException {
-		if (docid == lastDocid)
+		final FSADocumentIndex.LastEntry last = lastEntry;
+		if (last != null && last.docid == docid)
 		{
-			return lastEntry;
+			return last.entry;
 		}
 		try{
-			lastEntry = null;
-			return lastEntry = get(lastDocid = docid);
+			final DocumentIndexEntry entry = get(docid);
+			lastEntry = new FSADocumentIndex.LastEntry(docid, entry);
+			return entry;
 		} catch (NoSuchElementException nsee) {
 			return null;
 		}
 	}
 	
+	public final int[] getDocumentLengths()
+	{
+		return docLengths;
+	}
+	
 	public int getNumberOfDocuments() {
 		return super.size();
 	}
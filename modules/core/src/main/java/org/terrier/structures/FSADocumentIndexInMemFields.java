@@ -27,11 +27,13 @@ package org.terrier.structures;
 import java.io.IOException;
 
 /** A version of FSADocumentIndexInMem for indices with fields. */
+@ConcurrentReadable
 public class FSADocumentIndexInMemFields extends FSADocumentIndexInMem implements FieldDocumentIndex {
 
     int[][] fieldLengths;
     public FSADocumentIndexInMemFields(IndexOnDisk index, String structureName) throws IOException {
         super(index, structureName);
+        fieldLengths = new int[this.size()][];
         for(int i=0;i<this.size();i++) {
             fieldLengths[i] = ((FieldDocumentIndexEntry)this.get(i)).getFieldLengths();
         }
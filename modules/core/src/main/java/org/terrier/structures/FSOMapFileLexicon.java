@@ -46,6 +46,9 @@ import org.terrier.utility.Files;
  * values are {charmap,default}. Charmap means a hashmap object will be read into memory that defines where to look for a given starting character of the lookup string.</li>
  * <li>See also the super-class</li>
  * </ul>
+ * <p>Lookups do not take any lock when the data-source of the lexicon (and of the termid 
+ * lookup, if on disk) supports concurrent positional reads, as do <tt>file</tt>, <tt>fileinmem</tt>
+ * and <tt>mmap</tt> on the local file system. Otherwise, lookups are serialised.
  * @author Craig Macdonald
  * @since 3.0 */
 @ConcurrentReadable
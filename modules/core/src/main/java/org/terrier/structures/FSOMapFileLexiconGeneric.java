@@ -38,6 +38,7 @@ import org.terrier.structures.seralization.FixedSizeWriteableFactory;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.Files;
 import org.terrier.utility.io.RandomDataInput;
+import org.terrier.utility.io.RandomDataInputMapped;
 import org.terrier.utility.io.RandomDataInputMemory;
 import org.terrier.utility.io.WrappedIOException;
 
@@ -59,8 +60,14 @@ public abstract class FSOMapFileLexiconGeneric<K1,K2 extends WritableComparable>
         
         public int getIndex(int termid) throws IOException
         {
-            lexIdFile.seek(SIZE_OF_INT * (long)termid);
-            return lexIdFile.readInt();
+            final byte[] b = new byte[(int)SIZE_OF_INT];
+            lexIdFile.readFullyDirect(b, SIZE_OF_INT * (long)termid, b.length);
+            return ((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff);
+        }
+        
+        boolean isConcurrentReadable()
+        {
+            return lexIdFile.isReadFullyDirectConcurrent();
         }
         
         public void close() throws IOException
@@ -98,6 +105,7 @@ public abstract class FSOMapFileLexiconGeneric<K1,K2 extends WritableComparable>
      * <ol>
      * <li>fileinmem - use a RandomDataInputMemory instance over the file</li>
      * <li>file - use file on disk, as normal.</li>
+     * <li>mmap - use a RandomDataInputMapped instance over the file</li>
      * <li>anything else: assume to be a class name, and instantiate using the
      * expected constructor.</li>
      * </ol>
@@ -125,6 +133,12 @@ public abstract class FSOMapFileLexiconGeneric<K1,K2 extends WritableComparable>
 					false,
 					keyFactory,
 					valueFactory);
+    	if (dataSource.equals("mmap"))
+    		return new FSOrderedMapFile<K,LexiconEntry>(
+					new RandomDataInputMapped(filename),
+					filename,
+					keyFactory,
+                    valueFactory);
     	//else, we've been given a class name to instantiate
     	FSOrderedMapFile<K,LexiconEntry>rtr = null;
     	
@@ -175,7 +189,9 @@ public abstract class FSOMapFileLexiconGeneric<K1,K2 extends WritableComparable>
         {
             throw new IOException("Unrecognised value ("+termIdLookup+") for termIdlookup for structure "+structureName);
         }
-		
+		//lookups need not be serialised if all reads are positional 
+		lockFreeReads = ((FSOrderedMapFile<?,?>)this.map).isConcurrentReadable()
+				&& (! (idlookup instanceof OnDiskLookup) || ((OnDiskLookup)idlookup).isConcurrentReadable());
 	}
 	
 	/** 
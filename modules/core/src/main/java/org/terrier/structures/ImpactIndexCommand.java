@@ -0,0 +1,95 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ImpactIndexCommand.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.querying.IndexRef;
+
+/** Restructures the inverted index of an existing index into an {@link ImpactOrderedIndex},
+ * for use by score-at-a-time matching, e.g. <tt>bin/terrier impactindex -w BM25 -b 8</tt>.
+ * @since 5.8
+ */
+public class ImpactIndexCommand extends CLIParsedCLITool {
+
+	@Override
+	protected Options getOptions() {
+		Options opts = super.getOptions();
+		opts.addOption(Option.builder("w")
+			.argName("wmodel")
+			.longOpt("wmodel")
+			.hasArg()
+			.desc("weighting model to compute the impacts of, defaults to BM25")
+			.build());
+		opts.addOption(Option.builder("b")
+			.argName("bits")
+			.longOpt("bits")
+			.hasArg()
+			.desc("number of bits of each quantised impact, defaults to 8")
+			.build());
+		return opts;
+	}
+
+	@Override
+	public int run(CommandLine line) throws Exception {
+		IndexRef iR = getIndexRef(line);
+		IndexOnDisk.setIndexLoadingProfileAsRetrieval(false);
+		Index i = IndexFactory.of(iR);
+		if (i == null)
+		{
+			System.err.println("Index not found at " + iR);
+			return 1;
+		}
+		if (! (i instanceof IndexOnDisk))
+		{
+			System.err.println("An impact-ordered index can only be built for an IndexOnDisk, found " + i.getClass().getName());
+			return 1;
+		}
+		final String wmodel = line.getOptionValue("w", "BM25");
+		final int bits = Integer.parseInt(line.getOptionValue("b", "8"));
+		System.err.println("Computing " + bits + "-bit impacts for " + wmodel);
+		ImpactOrderedIndex.create((IndexOnDisk)i, ImpactOrderedIndex.STRUCTURE_NAME, wmodel, bits);
+		i.close();
+		return 0;
+	}
+
+	@Override
+	public String commandname() {
+		return "impactindex";
+	}
+
+	@Override
+	public String helpsummary() {
+		return "builds an impact-ordered index for score-at-a-time matching";
+	}
+
+	@Override
+	public String sourcepackage() {
+		return CLITool.PLATFORM_MODULE;
+	}
+}
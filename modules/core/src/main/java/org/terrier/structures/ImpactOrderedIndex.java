@@ -0,0 +1,325 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ImpactOrderedIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.integer.ByteFileBuffered;
+import org.terrier.compression.integer.ByteFileInMemory;
+import org.terrier.compression.integer.ByteFileMapped;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteInSeekable;
+import org.terrier.compression.integer.ByteOutputStream;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.matching.models.WeightingModelFactory;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.Files;
+
+/** An impact-ordered inverted index, as used by score-at-a-time matching strategies such as
+ * {@link org.terrier.matching.saat.Anytime}. For each term, the score of each posting is computed
+ * by a fixed weighting model, and quantised into an integer impact of a configured number of bits, 
+ * uniformly across the whole index. Postings of the same impact are grouped into segments, which 
+ * are stored in decreasing order of impact. The docids of each segment are in ascending order, and
+ * are compressed using variable byte encoding of the gaps between them.
+ * <p>
+ * This structure is created from an existing index by {@link #create(IndexOnDisk, String, String, int)},
+ * or using the <tt>impactindex</tt> command, and is normally called <tt>"impact"</tt>.
+ * <p><b>Index properties</b>:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.data-source</tt> - one of fileinmem, file or mmap. Defaults to fileinmem.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class ImpactOrderedIndex implements java.io.Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(ImpactOrderedIndex.class);
+	
+	/** the usual name of this structure in the index */
+	public static final String STRUCTURE_NAME = "impact";
+	/** the file extension of the segments of this structure */
+	public static final String USUAL_EXTENSION = ".impacts";
+	/** the file extension of the offset and length of the segments of each term */
+	public static final String OFFSETS_EXTENSION = ".impactoffsets";
+	
+	/** A group of postings of one term that have the same impact */
+	public static class ImpactSegment
+	{
+		final int impact;
+		final int count;
+		final byte[] data;
+		
+		ImpactSegment(int _impact, int _count, byte[] _data)
+		{
+			this.impact = _impact;
+			this.count = _count;
+			this.data = _data;
+		}
+		
+		/** Returns the quantised impact of all postings in this segment */
+		public int getImpact() {
+			return impact;
+		}
+		
+		/** Returns the number of postings in this segment */
+		public int getCount() {
+			return count;
+		}
+		
+		/** Decodes the docids of this segment, in ascending order */
+		public int[] getDocids() throws IOException
+		{
+			final int[] docids = new int[count];
+			final ByteIn in = new ByteFileInMemory(data).readReset(0);
+			int docid = -1;
+			for(int i=0;i<count;i++)
+				docids[i] = docid += in.readVInt();
+			return docids;
+		}
+	}
+	
+	protected final ByteInSeekable file;
+	protected final long[] offsets;
+	protected final int[] lengths;
+	protected final String wmodel;
+	protected final int bits;
+	protected final double maxScore;
+	
+	/** Loads the impact-ordered index structure of the specified index */
+	public ImpactOrderedIndex(IndexOnDisk index, String structureName) throws IOException
+	{
+		final String prefix = index.getPath() + "/" + index.getPrefix() + "." + structureName;
+		final int numTerms = index.getIntIndexProperty("index."+structureName+".terms", 0);
+		offsets = new long[numTerms];
+		lengths = new int[numTerms];
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(prefix + OFFSETS_EXTENSION)))
+		{
+			for(int i=0;i<numTerms;i++)
+			{
+				offsets[i] = dis.readLong();
+				lengths[i] = dis.readInt();
+			}
+		}
+		wmodel = index.getIndexProperty("index."+structureName+".wmodel", null);
+		bits = index.getIntIndexProperty("index."+structureName+".bits", 8);
+		maxScore = Double.parseDouble(index.getIndexProperty("index."+structureName+".max-score", "0"));
+		final String dataSource = index.getIndexProperty("index."+structureName+".data-source", "fileinmem");
+		if (dataSource.equals("fileinmem"))
+			file = new ByteFileInMemory(prefix + USUAL_EXTENSION);
+		else if (dataSource.equals("file"))
+			file = new ByteFileBuffered(prefix + USUAL_EXTENSION);
+		else if (dataSource.equals("mmap"))
+			file = new ByteFileMapped(prefix + USUAL_EXTENSION);
+		else
+			throw new IOException("Bad property value for index."+structureName + ".data-source="+dataSource);
+	}
+	
+	/** Returns the number of terms in this structure */
+	public int size()
+	{
+		return offsets.length;
+	}
+	
+	/** Returns the {@link WeightingModel#getInfo()} of the weighting model used to compute the impacts */
+	public String getWeightingModel()
+	{
+		return wmodel;
+	}
+	
+	/** Returns the number of bits of each impact */
+	public int getBits()
+	{
+		return bits;
+	}
+	
+	/** Returns the score of the weighting model that each unit of impact represents */
+	public double getScale()
+	{
+		return maxScore / ((1 << bits) -1);
+	}
+	
+	/** Returns the segments of the specified term, in decreasing order of impact. 
+	 * The docids of each segment are only decoded when {@link ImpactSegment#getDocids()} is called. */
+	public ImpactSegment[] getSegments(int termid) throws IOException
+	{
+		if (lengths[termid] == 0)
+			return new ImpactSegment[0];
+		final ByteIn in = file.readReset(offsets[termid]);
+		final ImpactSegment[] segments = new ImpactSegment[in.readVInt()];
+		for(int s=0;s<segments.length;s++)
+		{
+			final int impact = in.readVInt();
+			final int count = in.readVInt();
+			final byte[] data = new byte[in.readVInt()];
+			in.readFully(data, 0, data.length);
+			segments[s] = new ImpactSegment(impact, count, data);
+		}
+		return segments;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+	
+	/** Walks the inverted index of the specified index twice, to obtain the maximum score 
+	 * of the weighting model, then to write the quantised impacts of the postings of each term. 
+	 * Postings with a score of zero or less are given the lowest impact, 1. The resulting structure 
+	 * is added to the index.
+	 * @param index the index to build an impact-ordered index for
+	 * @param structureName name of the new structure, usually <tt>"impact"</tt>
+	 * @param wmodelName name of the weighting model, as used by {@link WeightingModelFactory}
+	 * @param bits number of bits of each impact, between 1 and 16
+	 * @throws IOException if a problem occurs reading the index or writing the structure
+	 */
+	@SuppressWarnings("unchecked")
+	public static void create(IndexOnDisk index, String structureName, String wmodelName, int bits) throws IOException
+	{
+		if (bits < 1 || bits > 16)
+			throw new IllegalArgumentException("Impacts must have between 1 and 16 bits, not " + bits);
+		final CollectionStatistics cs = index.getCollectionStatistics();
+		final int numTerms = cs.getNumberOfUniqueTerms();
+		final WeightingModel wm = WeightingModelFactory.newInstance(wmodelName, index);
+		wm.setCollectionStatistics(cs);
+		wm.setKeyFrequency(1d);
+		final PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		
+		//pass 1: find the maximum score of any posting
+		double maxScore = 0;
+		Iterator<Map.Entry<String,LexiconEntry>> lexIn = 
+			(Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		while(lexIn.hasNext())
+		{
+			final LexiconEntry le = lexIn.next().getValue();
+			wm.setEntryStatistics(le);
+			wm.prepare();
+			final IterablePosting ip = inverted.getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+				maxScore = Math.max(maxScore, wm.score(ip));
+			ip.close();
+		}
+		IndexUtil.close(lexIn);
+		
+		//pass 2: quantise the scores, and write the segments of each term
+		final int maxImpact = (1 << bits) -1;
+		final long[] termOffsets = new long[numTerms];
+		final int[] termLengths = new int[numTerms];
+		final String prefix = index.getPath() + "/" + index.getPrefix() + "." + structureName;
+		long numPostings = 0;
+		try(ByteOutputStream out = new ByteOutputStream(prefix + USUAL_EXTENSION))
+		{
+			lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+			long[] keys = new long[1024];
+			while(lexIn.hasNext())
+			{
+				final LexiconEntry le = lexIn.next().getValue();
+				wm.setEntryStatistics(le);
+				wm.prepare();
+				final IterablePosting ip = inverted.getPostings(le);
+				int df = 0;
+				while(ip.next() != IterablePosting.EOL)
+				{
+					final double score = wm.score(ip);
+					final int impact = maxScore <= 0 || score <= 0 
+						? 1 
+						: Math.max(1, Math.min(maxImpact, (int) Math.round(score / maxScore * maxImpact)));
+					if (df == keys.length)
+						keys = Arrays.copyOf(keys, df * 2);
+					//sorting these keys orders postings by decreasing impact, then by ascending docid
+					keys[df++] = ((long)(maxImpact - impact) << 32) | ip.getId();
+				}
+				ip.close();
+				Arrays.sort(keys, 0, df);
+				termOffsets[le.getTermId()] = out.getByteOffset();
+				writeSegments(out, keys, df, maxImpact);
+				termLengths[le.getTermId()] = (int)(out.getByteOffset() - termOffsets[le.getTermId()]);
+				numPostings += df;
+			}
+			IndexUtil.close(lexIn);
+		}
+		
+		//the lexicon need not be in termid order, so the offset and length of each term are recorded
+		try(DataOutputStream dos = new DataOutputStream(Files.writeFileStream(prefix + OFFSETS_EXTENSION)))
+		{
+			for(int t=0;t<numTerms;t++)
+			{
+				dos.writeLong(termOffsets[t]);
+				dos.writeInt(termLengths[t]);
+			}
+		}
+		index.setIndexProperty("index."+structureName+".terms", String.valueOf(numTerms));
+		index.setIndexProperty("index."+structureName+".wmodel", wm.getInfo());
+		index.setIndexProperty("index."+structureName+".bits", String.valueOf(bits));
+		index.setIndexProperty("index."+structureName+".max-score", String.valueOf(maxScore));
+		index.addIndexStructure(structureName, ImpactOrderedIndex.class.getName(), 
+			"org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+		index.flush();
+		logger.info("Wrote " + numPostings + " postings of " + numTerms + " terms as " + bits + "-bit impacts of " 
+			+ wm.getInfo() + " in structure " + structureName);
+	}
+	
+	/** writes the segments of one term, given its sorted posting keys */
+	static void writeSegments(ByteOutputStream out, long[] keys, int df, int maxImpact) throws IOException
+	{
+		int numSegments = 0;
+		for(int i=0;i<df;i++)
+			if (i == 0 || (keys[i] >>> 32) != (keys[i-1] >>> 32))
+				numSegments++;
+		out.writeVInt(numSegments);
+		int start = 0;
+		while(start < df)
+		{
+			final long impactKey = keys[start] >>> 32;
+			int end = start;
+			int length = 0;
+			int last = -1;
+			while(end < df && (keys[end] >>> 32) == impactKey)
+			{
+				final int docid = (int) keys[end];
+				length += ByteOutputStream.getVIntSize(docid - last);
+				last = docid;
+				end++;
+			}
+			out.writeVInt(maxImpact - (int) impactKey);
+			out.writeVInt(end - start);
+			out.writeVInt(length);
+			last = -1;
+			for(int i=start;i<end;i++)
+			{
+				final int docid = (int) keys[i];
+				out.writeVInt(docid - last);
+				last = docid;
+			}
+			start = end;
+		}
+	}
+}
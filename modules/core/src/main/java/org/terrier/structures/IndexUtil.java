@@ -44,6 +44,7 @@ import org.apache.hadoop.io.Writable;
 import org.terrier.applications.CLITool;
 import org.terrier.applications.CLITool.CLIParsedCLITool;
 import org.terrier.querying.IndexRef;
+import org.terrier.structures.collections.FSOrderedMapFile;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.ArrayUtils;
@@ -234,6 +235,11 @@ public class IndexUtil {
 					printMetaIndexJson(index, structureName);
 				else
 					printMetaIndex(index, structureName);
+			} else if (line.hasOption("convertmeta")) {
+				String structureName = "meta";
+				if (line.hasOption("s"))
+					structureName = line.getOptionValue("s"); 
+				convertToColumnarMetaIndex((IndexOnDisk) index, structureName);
 			} else {
 				System.err.println(super.help());
 			}
@@ -248,6 +254,10 @@ public class IndexUtil {
 				.longOpt("printmeta")
 				.desc("display contents of a meta index")
 				.build());
+			opts.addOption(Option.builder()
+				.longOpt("convertmeta")
+				.desc("convert a meta index into a columnar meta index")
+				.build());
 				opts.addOption(Option.builder()
 				.longOpt("printdocument")
 				.desc("display contents of a document index")
@@ -305,6 +315,7 @@ public class IndexUtil {
 	 * <li>--printdocument - print the document index</li>
 	 * <li>--printlist - print the named list (e.g. document index)</li>
 	 * <li>--printmeta - print the meta index</li>
+	 * <li>--convertmeta - convert the meta index into a columnar meta index</li>
 	 * </ul>
 	 * See bin/terrier help indexutils for more 
 	 */
@@ -513,6 +524,52 @@ public class IndexUtil {
 		return found;
 	}
 	
+	/** Rewrites the specified meta index structure as a {@link ColumnarMetaIndex}, which stores each key
+	 * in a separate column file. The keys, value lengths and reverse keys of the existing structure are retained,
+	 * and the existing structure is deleted once the conversion has completed.
+	 * @param index index to operate on
+	 * @param structureName name of the meta index structure to convert
+	 * @since 5.8
+	 */
+	@SuppressWarnings("unchecked")
+	public static void convertToColumnarMetaIndex(IndexOnDisk index, String structureName) throws IOException
+	{
+		final String[] keyNames = ColumnarMetaIndex.getKeyProperty(index, structureName, "key-names");
+		final String[] lengths = ColumnarMetaIndex.getKeyProperty(index, structureName, "value-lengths");
+		final String[] reverseKeys = ColumnarMetaIndex.getKeyProperty(index, structureName, "reverse-key-names");
+		if (keyNames.length == 0 || keyNames.length != lengths.length)
+			throw new IllegalArgumentException("Structure " + structureName + " does not record its key names and value lengths, and cannot be converted");
+		final int[] valueLens = new int[lengths.length];
+		for(int i=0;i<lengths.length;i++)
+			valueLens[i] = Integer.parseInt(lengths[i]);
+		
+		final String tmpStructureName = structureName + "-columnar";
+		final ColumnarMetaIndex.Writer writer = new ColumnarMetaIndex.Writer(index, tmpStructureName, keyNames, valueLens, reverseKeys);
+		final Iterator<String[]> inputStream = (Iterator<String[]>)index.getIndexStructureInputStream(structureName);
+		while(inputStream.hasNext())
+		{
+			final String[] values = inputStream.next();
+			if (values == null)
+				throw new IOException("Could not read structure " + structureName + " to convert it");
+			writer.write(values);
+		}
+		IndexUtil.close(inputStream);
+		writer.close();
+		
+		//remove the old structure, including its reverse lookup files, then replace it
+		final Object oldStructure = index.structureCache.remove(structureName);
+		if (oldStructure != null)
+			IndexUtil.close(oldStructure);
+		for(int i=0;i<reverseKeys.length;i++)
+		{
+			final String filename = index.getPath() + "/" + index.getPrefix() + "." + structureName + "-" + i + FSOrderedMapFile.USUAL_EXTENSION;
+			if (Files.exists(filename))
+				Files.delete(filename);
+		}
+		deleteStructure(index, structureName);
+		renameIndexStructure(index, tmpStructureName, structureName);
+	}
+	
 	/** Print the contents of the meta index */
 	@SuppressWarnings("unchecked")
 	public static void printMetaIndex(Index index, String structureName) throws IOException
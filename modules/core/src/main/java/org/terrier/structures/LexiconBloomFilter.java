@@ -0,0 +1,117 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is LexiconBloomFilter.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/** A compact, approximate record of the terms in the lexicon of an index. If 
+ * {@link #mightContain(String)} returns false, the term is definitely not in the lexicon,
+ * and hence the lexicon need not be accessed. A false positive rate, controlled by the 
+ * <tt>lexicon.bloom.fpp</tt> property (default 0.01), applies to terms not in the lexicon.
+ * This allows a {@link Lexicon} spread over many index shards to avoid looking up terms 
+ * in shards that do not contain them.
+ * <p>
+ * This structure is created by {@link #create(IndexOnDisk, String)}, and is normally called 
+ * <tt>"lexicon-bloom"</tt>.
+ * @since 5.8
+ */
+@ConcurrentReadable
+public class LexiconBloomFilter {
+
+	protected static final Logger logger = LoggerFactory.getLogger(LexiconBloomFilter.class);
+	
+	/** the usual name of this structure in the index */
+	public static final String STRUCTURE_NAME = "lexicon-bloom";
+	/** the file extension of this structure */
+	public static final String USUAL_EXTENSION = ".bf";
+	
+	protected final BloomFilter<CharSequence> filter;
+	
+	/** Loads the Bloom filter structure of the specified index */
+	public LexiconBloomFilter(IndexOnDisk index, String structureName) throws IOException
+	{
+		this(index.getPath() + "/" + index.getPrefix() + "." + structureName + USUAL_EXTENSION);
+	}
+	
+	/** Loads the Bloom filter from the specified file */
+	public LexiconBloomFilter(String filename) throws IOException
+	{
+		try(InputStream is = Files.openFileStream(filename))
+		{
+			filter = BloomFilter.readFrom(is, Funnels.stringFunnel(StandardCharsets.UTF_8));
+		}
+	}
+	
+	/** Returns false if the specified term is definitely not in the lexicon, true if it might be */
+	public boolean mightContain(String term)
+	{
+		return filter.mightContain(term);
+	}
+	
+	/** 
+	 * Records the terms of the specified lexicon of an index in a Bloom filter, 
+	 * which is added to the index as a structure named <tt>lexiconName + "-bloom"</tt>.
+	 * @param index the index to record the terms of
+	 * @param lexiconName name of the lexicon structure, usually <tt>"lexicon"</tt>
+	 * @throws IOException if a problem occurs reading the lexicon or writing the structure
+	 */
+	@SuppressWarnings("unchecked")
+	public static void create(IndexOnDisk index, String lexiconName) throws IOException
+	{
+		final String structureName = lexiconName + "-bloom";
+		final double fpp = Double.parseDouble(ApplicationSetup.getProperty("lexicon.bloom.fpp", "0.01"));
+		final int numTerms = index.getCollectionStatistics().getNumberOfUniqueTerms();
+		final BloomFilter<CharSequence> filter = BloomFilter.create(
+			Funnels.stringFunnel(StandardCharsets.UTF_8), Math.max(1, numTerms), fpp);
+		final Iterator<Map.Entry<String,LexiconEntry>> lexIn = 
+			(Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream(lexiconName);
+		while(lexIn.hasNext())
+			filter.put(lexIn.next().getKey());
+		IndexUtil.close(lexIn);
+		
+		final String filename = index.getPath() + "/" + index.getPrefix() + "." + structureName + USUAL_EXTENSION;
+		try(OutputStream os = Files.writeFileStream(filename))
+		{
+			filter.writeTo(os);
+		}
+		index.addIndexStructure(structureName, LexiconBloomFilter.class.getName(), 
+			"org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+		index.flush();
+		logger.info("Recorded " + numTerms + " terms in Bloom filter structure " + structureName);
+	}
+}
@@ -48,6 +48,13 @@ public abstract class MapLexicon<K1,K2 extends WritableComparable> extends Lexic
 	
 	protected Object modificationLock = new Object();
 	
+	/** If true, lookups do not synchronise on modificationLock. Subclasses should only
+	 * set this when the backing map and the termid lookup can be read by several threads 
+	 * at once, including while any modification is taking place.
+	 * @since 5.8 
+	 */
+	protected boolean lockFreeReads = false;
+	
 	/**
 	 * Interface for getting the lexicon term index for a given term id
 	 * @author Richard McCreadie
@@ -107,25 +114,38 @@ public abstract class MapLexicon<K1,K2 extends WritableComparable> extends Lexic
 	 */
     public LexiconEntry getLexiconEntry(K1 term)
     {
+    	if (lockFreeReads)
+    		return _getLexiconEntry(term);
     	synchronized(modificationLock) {
-    	
+    		return _getLexiconEntry(term);
+    	}
+    }
+    
+    protected LexiconEntry _getLexiconEntry(K1 term)
+    {
     	K2 key = keyFactory.newInstance();
     	setK2(term, key);
-    	if (!map.containsKey(key)) return null;
+    	//values are never null, so a single lookup suffices
         return map.get(key);
-    	}
     }
+    
 	/** 
 	 * {@inheritDoc} 
 	 */
     public Map.Entry<K1,LexiconEntry> getIthLexiconEntry(int index) 
     {
+    	if (lockFreeReads)
+    		return _getIthLexiconEntry(index);
     	synchronized(modificationLock) {
-    	
+    		return _getIthLexiconEntry(index);
+    	}
+    }
+    
+    protected Map.Entry<K1,LexiconEntry> _getIthLexiconEntry(int index) 
+    {
         if (! (map instanceof OrderedMap))
             throw new UnsupportedOperationException();
         return toStringEntry(((OrderedMap<K2, LexiconEntry>)map).get(index));
-    	}
     }
     
     /** 
@@ -166,7 +186,15 @@ public abstract class MapLexicon<K1,K2 extends WritableComparable> extends Lexic
 	 */
     public Map.Entry<K1,LexiconEntry> getLexiconEntry(int termid)
     {
+    	if (lockFreeReads)
+    		return _getLexiconEntry(termid);
     	synchronized(modificationLock) {
+    		return _getLexiconEntry(termid);
+    	}
+    }
+    
+    protected Map.Entry<K1,LexiconEntry> _getLexiconEntry(int termid)
+    {
     	int id;
     	try{
     		id = idlookup.getIndex(termid);
@@ -176,8 +204,7 @@ public abstract class MapLexicon<K1,K2 extends WritableComparable> extends Lexic
     	if (id == -1)
     		return null;
 
-        return getIthLexiconEntry(id);
-    	}
+        return _getIthLexiconEntry(id);
     }
 	/** 
 	 * {@inheritDoc} 
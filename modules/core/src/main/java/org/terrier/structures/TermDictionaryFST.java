@@ -0,0 +1,650 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TermDictionaryFST.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.utility.Files;
+
+/** A compact term dictionary for the lexicon of an index, in the form of a minimal acyclic 
+ * finite state transducer (FST) over the code points of the terms. The output of each term is 
+ * its ordinal in the lexicon, i.e. the position of the term in the sorted lexicon, such that the 
+ * {@link LexiconEntry} of a matching term can be obtained using {@link Lexicon#getIthLexiconEntry(int)}. 
+ * <p>
+ * The main purpose of this structure is to allow the terms matching an {@link Automaton} to be
+ * enumerated without scanning the lexicon, by intersecting the automaton with the FST. 
+ * Automata are provided for prefixes, wildcard patterns and terms within a maximum Levenshtein 
+ * distance of a given term. These are used by the {@link org.terrier.matching.matchops.PrefixTermOp},
+ * {@link org.terrier.matching.matchops.FuzzyTermOp} and {@link org.terrier.matching.matchops.WildcardTermOp}
+ * operators when the index has this structure.
+ * <p>
+ * This structure is created by {@link #create(IndexOnDisk, String, String)}, using the <tt>fst</tt> 
+ * command, or at indexing time when the property <tt>lexicon.fst</tt> is set to true. 
+ * It is normally called <tt>"lexicon-fst"</tt>.
+ * @since 5.8
+ */
+public class TermDictionaryFST {
+	
+	protected static final Logger logger = LoggerFactory.getLogger(TermDictionaryFST.class);
+	
+	/** the usual name of this structure in the index */
+	public static final String STRUCTURE_NAME = "lexicon-fst";
+	/** the file extension of this structure */
+	public static final String USUAL_EXTENSION = ".fst";
+	
+	/** A deterministic automaton over the code points of terms, which can be intersected with 
+	 * the term dictionary using {@link TermDictionaryFST#intersect(Automaton, TermVisitor)}.
+	 * @param <S> the type of the states of this automaton
+	 */
+	public interface Automaton<S>
+	{
+		/** Returns the start state of this automaton */
+		S start();
+		/** Returns the state after reading the specified code point, or null if no term with the
+		 * code points read so far can be accepted */
+		S step(S state, int codePoint);
+		/** Returns true if the specified state is accepting */
+		boolean isAccept(S state);
+	}
+	
+	/** Receives the terms of the dictionary that are accepted by an automaton, in lexicon order */
+	@FunctionalInterface
+	public interface TermVisitor
+	{
+		/** Called for each matching term. 
+		 * @param term the matching term
+		 * @param ordinal the position of the term in the lexicon
+		 * @return false if no further terms should be visited
+		 */
+		boolean visit(String term, int ordinal) throws IOException;
+	}
+	
+	protected final int numTerms;
+	protected final int root;
+	/** the arcs of state s are from firstArc[s] (inclusive) to firstArc[s+1] (exclusive) */
+	protected final int[] firstArc;
+	protected final BitSet finals;
+	/** label (code point), target state and output of each arc, sorted by label within a state */
+	protected final int[] labels;
+	protected final int[] targets;
+	protected final int[] outputs;
+	
+	protected TermDictionaryFST(int _numTerms, int _root, int[] _firstArc, BitSet _finals, int[] _labels, int[] _targets, int[] _outputs)
+	{
+		this.numTerms = _numTerms;
+		this.root = _root;
+		this.firstArc = _firstArc;
+		this.finals = _finals;
+		this.labels = _labels;
+		this.targets = _targets;
+		this.outputs = _outputs;
+	}
+	
+	/** Loads the term dictionary of the specified index */
+	public TermDictionaryFST(IndexOnDisk index, String structureName) throws IOException
+	{
+		this(index.getPath() + "/" + index.getPrefix() + "." + structureName + USUAL_EXTENSION);
+	}
+	
+	/** Loads the term dictionary from the specified file */
+	public TermDictionaryFST(String filename) throws IOException
+	{
+		try(DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.openFileStream(filename))))
+		{
+			numTerms = dis.readInt();
+			final int numStates = dis.readInt();
+			final int numArcs = dis.readInt();
+			root = dis.readInt();
+			firstArc = readInts(dis, numStates + 1);
+			final long[] bits = new long[dis.readInt()];
+			for(int i=0;i<bits.length;i++)
+				bits[i] = dis.readLong();
+			finals = BitSet.valueOf(bits);
+			labels = readInts(dis, numArcs);
+			targets = readInts(dis, numArcs);
+			outputs = readInts(dis, numArcs);
+		}
+	}
+	
+	static int[] readInts(DataInputStream dis, int length) throws IOException
+	{
+		final int[] rtr = new int[length];
+		for(int i=0;i<length;i++)
+			rtr[i] = dis.readInt();
+		return rtr;
+	}
+	
+	/** Returns the number of terms in this dictionary */
+	public int size()
+	{
+		return numTerms;
+	}
+	
+	/** Returns the number of states of this transducer */
+	public int getNumberOfStates()
+	{
+		return firstArc.length - 1;
+	}
+	
+	/** Returns the index of the arc of the specified state with the specified label, or -1 */
+	protected int findArc(int state, int codePoint)
+	{
+		final int arc = Arrays.binarySearch(labels, firstArc[state], firstArc[state+1], codePoint);
+		return arc < 0 ? -1 : arc;
+	}
+	
+	/** Returns the position of the specified term in the lexicon, or -1 if the term does not occur */
+	public int getOrdinal(String term)
+	{
+		int state = root;
+		int ordinal = 0;
+		for(int i=0;i<term.length();)
+		{
+			final int cp = term.codePointAt(i);
+			final int arc = findArc(state, cp);
+			if (arc == -1)
+				return -1;
+			ordinal += outputs[arc];
+			state = targets[arc];
+			i += Character.charCount(cp);
+		}
+		return finals.get(state) ? ordinal : -1;
+	}
+	
+	/** Returns the term at the specified position in the lexicon */
+	public String getTerm(int ordinal)
+	{
+		if (ordinal < 0 || ordinal >= numTerms)
+			throw new IndexOutOfBoundsException("ordinal " + ordinal + " not in [0," + numTerms + ")");
+		final StringBuilder term = new StringBuilder();
+		int state = root;
+		while(! (ordinal == 0 && finals.get(state)))
+		{
+			//find the last arc whose output does not exceed the remaining ordinal
+			int lo = firstArc[state], hi = firstArc[state+1] -1;
+			while(lo < hi)
+			{
+				final int mid = (lo + hi + 1) >>> 1;
+				if (outputs[mid] <= ordinal)
+					lo = mid;
+				else
+					hi = mid -1;
+			}
+			ordinal -= outputs[lo];
+			term.appendCodePoint(labels[lo]);
+			state = targets[lo];
+		}
+		return term.toString();
+	}
+	
+	/** Visits the terms of this dictionary that are accepted by the specified automaton, in lexicon order.
+	 * Only the states of the transducer that can lead to an accepted term are explored. 
+	 * @return false if the visitor stopped the enumeration
+	 */
+	public <S> boolean intersect(Automaton<S> automaton, TermVisitor visitor) throws IOException
+	{
+		final S start = automaton.start();
+		if (start == null)
+			return true;
+		return intersect(automaton, start, root, 0, new int[16], 0, visitor);
+	}
+	
+	protected <S> boolean intersect(Automaton<S> automaton, S aState, int state, int ordinal, int[] path, int depth, TermVisitor visitor) throws IOException
+	{
+		if (finals.get(state) && automaton.isAccept(aState))
+			if (! visitor.visit(new String(path, 0, depth), ordinal))
+				return false;
+		final int end = firstArc[state+1];
+		for(int arc=firstArc[state];arc<end;arc++)
+		{
+			final S next = automaton.step(aState, labels[arc]);
+			if (next == null)
+				continue;
+			if (depth == path.length)
+				path = Arrays.copyOf(path, depth * 2);
+			path[depth] = labels[arc];
+			if (! intersect(automaton, next, targets[arc], ordinal + outputs[arc], path, depth+1, visitor))
+				return false;
+		}
+		return true;
+	}
+	
+	/** Returns an iterator over the lexicon entries of the terms accepted by the specified automaton, 
+	 * in lexicon order. The transducer is only explored as far as needed to find the next term, such
+	 * that no further states are visited once the caller stops iterating, e.g. at a maximum number of 
+	 * expansions. */
+	public <S> Iterator<Map.Entry<String,LexiconEntry>> getLexiconEntries(Automaton<S> automaton, Lexicon<String> lexicon) throws IOException
+	{
+		final OrdinalIterator<S> ordinals = new OrdinalIterator<>(automaton);
+		return new Iterator<Map.Entry<String,LexiconEntry>>()
+		{
+			@Override
+			public boolean hasNext() {
+				return ordinals.hasNext();
+			}
+			
+			@Override
+			public Map.Entry<String,LexiconEntry> next() {
+				return lexicon.getIthLexiconEntry(ordinals.nextInt());
+			}
+		};
+	}
+	
+	/** Enumerates the ordinals of the terms accepted by an automaton, in lexicon order, by a 
+	 * depth-first traversal of the transducer which is suspended after each accepted term. */
+	protected class OrdinalIterator<S> implements IntIterator
+	{
+		final Automaton<S> automaton;
+		/** the automaton state, transducer state, ordinal so far and next arc at each depth */
+		Object[] aStates = new Object[16];
+		int[] states = new int[16];
+		int[] ordinals = new int[16];
+		int[] arcs = new int[16];
+		/** depth of the top of the stack, or -1 once the traversal is finished */
+		int depth = -1;
+		/** the ordinal of the next accepted term, or -1 if it is not yet known */
+		int next = -1;
+		
+		OrdinalIterator(Automaton<S> _automaton)
+		{
+			automaton = _automaton;
+			final S start = automaton.start();
+			if (start != null)
+				push(start, root, 0);
+		}
+		
+		/** adds the specified state to the stack, and records its ordinal if it is accepted */
+		void push(S aState, int state, int ordinal)
+		{
+			if (++depth == states.length)
+			{
+				aStates = Arrays.copyOf(aStates, depth * 2);
+				states = Arrays.copyOf(states, depth * 2);
+				ordinals = Arrays.copyOf(ordinals, depth * 2);
+				arcs = Arrays.copyOf(arcs, depth * 2);
+			}
+			aStates[depth] = aState;
+			states[depth] = state;
+			ordinals[depth] = ordinal;
+			arcs[depth] = firstArc[state];
+			if (finals.get(state) && automaton.isAccept(aState))
+				next = ordinal;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean hasNext()
+		{
+			while(next == -1 && depth >= 0)
+			{
+				final int arc = arcs[depth];
+				if (arc == firstArc[states[depth]+1])
+				{
+					aStates[depth--] = null;
+					continue;
+				}
+				arcs[depth]++;
+				final S nextState = automaton.step((S) aStates[depth], labels[arc]);
+				if (nextState != null)
+					push(nextState, targets[arc], ordinals[depth] + outputs[arc]);
+			}
+			return next != -1;
+		}
+		
+		@Override
+		public int nextInt()
+		{
+			if (! hasNext())
+				throw new NoSuchElementException();
+			final int rtr = next;
+			next = -1;
+			return rtr;
+		}
+	}
+	
+	static int[] toCodePoints(String s)
+	{
+		return s.codePoints().toArray();
+	}
+	
+	/** Returns an automaton accepting the terms that start with the specified prefix */
+	public static Automaton<Integer> prefixAutomaton(final String prefix)
+	{
+		final int[] p = toCodePoints(prefix);
+		return new Automaton<Integer>() {
+			@Override
+			public Integer start() {
+				return 0;
+			}
+
+			@Override
+			public Integer step(Integer state, int codePoint) {
+				if (state == p.length)
+					return state;
+				return p[state] == codePoint ? state + 1 : null;
+			}
+
+			@Override
+			public boolean isAccept(Integer state) {
+				return state == p.length;
+			}
+		};
+	}
+	
+	/** Returns an automaton accepting the terms matching the specified wildcard pattern, in which 
+	 * <tt>*</tt> matches any sequence of characters, and <tt>?</tt> matches any single character. */
+	public static Automaton<BitSet> wildcardAutomaton(final String pattern)
+	{
+		final int[] p = toCodePoints(pattern);
+		return new Automaton<BitSet>() {
+			
+			/** adds the positions reachable by skipping <tt>*</tt> */
+			BitSet closure(BitSet positions)
+			{
+				for(int i = positions.nextSetBit(0); i >= 0 && i < p.length; i = positions.nextSetBit(i+1))
+					if (p[i] == '*')
+						positions.set(i+1);
+				return positions;
+			}
+			
+			@Override
+			public BitSet start() {
+				BitSet s = new BitSet(p.length+1);
+				s.set(0);
+				return closure(s);
+			}
+
+			@Override
+			public BitSet step(BitSet state, int codePoint) {
+				final BitSet next = new BitSet(p.length+1);
+				for(int i = state.nextSetBit(0); i >= 0 && i < p.length; i = state.nextSetBit(i+1))
+				{
+					if (p[i] == '*')
+						next.set(i);
+					else if (p[i] == '?' || p[i] == codePoint)
+						next.set(i+1);
+				}
+				return next.isEmpty() ? null : closure(next);
+			}
+
+			@Override
+			public boolean isAccept(BitSet state) {
+				return state.get(p.length);
+			}
+		};
+	}
+	
+	/** Returns an automaton accepting the terms within the specified Levenshtein distance of a 
+	 * term, and which share its first prefixLength characters. Distances are computed over code points.
+	 * States are rows of the edit distance matrix, and no further code points are accepted once every
+	 * entry of the row exceeds the maximum distance. */
+	public static Automaton<int[]> levenshteinAutomaton(final String term, final int maxEdits, final int prefixLength)
+	{
+		final int[] q = toCodePoints(term);
+		final int n = q.length;
+		final int prefix = Math.min(prefixLength, n);
+		//the last entry of each state records the number of code points read
+		return new Automaton<int[]>() {
+			@Override
+			public int[] start() {
+				final int[] row = new int[n+2];
+				for(int i=0;i<=n;i++)
+					row[i] = i;
+				return row;
+			}
+
+			@Override
+			public int[] step(int[] row, int codePoint) {
+				final int depth = row[n+1];
+				if (depth < prefix && q[depth] != codePoint)
+					return null;
+				final int[] next = new int[n+2];
+				next[0] = row[0] + 1;
+				int min = next[0];
+				for(int i=1;i<=n;i++)
+				{
+					final int cost = q[i-1] == codePoint ? 0 : 1;
+					next[i] = Math.min(Math.min(next[i-1] + 1, row[i] + 1), row[i-1] + cost);
+					if (next[i] < min)
+						min = next[i];
+				}
+				next[n+1] = depth + 1;
+				return min > maxEdits ? null : next;
+			}
+
+			@Override
+			public boolean isAccept(int[] row) {
+				return row[n] <= maxEdits && row[n+1] >= prefix;
+			}
+		};
+	}
+	
+	/** Writes this term dictionary to the specified file */
+	public void write(String filename) throws IOException
+	{
+		try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.writeFileStream(filename))))
+		{
+			dos.writeInt(numTerms);
+			dos.writeInt(getNumberOfStates());
+			dos.writeInt(labels.length);
+			dos.writeInt(root);
+			writeInts(dos, firstArc);
+			final long[] bits = finals.toLongArray();
+			dos.writeInt(bits.length);
+			for(long l : bits)
+				dos.writeLong(l);
+			writeInts(dos, labels);
+			writeInts(dos, targets);
+			writeInts(dos, outputs);
+		}
+	}
+	
+	static void writeInts(DataOutputStream dos, int[] values) throws IOException
+	{
+		for(int v : values)
+			dos.writeInt(v);
+	}
+	
+	/** Builds a minimal term dictionary from terms added in lexicon order, using the 
+	 * incremental construction algorithm for sorted input of Daciuk et al. (2000). 
+	 * States are frozen once no further terms can pass through them, and each frozen
+	 * state is replaced by any identical state frozen earlier. */
+	public static class Builder
+	{
+		final IntArrayList firstArc = new IntArrayList();
+		final BitSet finals = new BitSet();
+		final IntArrayList counts = new IntArrayList();
+		final IntArrayList labels = new IntArrayList();
+		final IntArrayList targets = new IntArrayList();
+		final IntArrayList outputs = new IntArrayList();
+		/** frozen states, keyed by their finality, labels and targets */
+		final Map<StateKey,Integer> register = new HashMap<>();
+		
+		/** the states on the path of the last term that are not yet frozen */
+		IntArrayList[] pathLabels = new IntArrayList[0];
+		IntArrayList[] pathTargets = new IntArrayList[0];
+		boolean[] pathFinal = new boolean[0];
+		int[] last = new int[0];
+		int numTerms = 0;
+		
+		public Builder()
+		{
+			ensureDepth(1);
+		}
+		
+		static final class StateKey
+		{
+			final int[] key;
+			final int hash;
+			StateKey(int[] _key)
+			{
+				this.key = _key;
+				this.hash = Arrays.hashCode(_key);
+			}
+			
+			@Override
+			public int hashCode() {
+				return hash;
+			}
+			
+			@Override
+			public boolean equals(Object o) {
+				return o instanceof StateKey && Arrays.equals(key, ((StateKey)o).key);
+			}
+		}
+		
+		void ensureDepth(int depth)
+		{
+			if (depth <= pathLabels.length)
+				return;
+			final int old = pathLabels.length;
+			final int size = Math.max(depth, old * 2);
+			pathLabels = Arrays.copyOf(pathLabels, size);
+			pathTargets = Arrays.copyOf(pathTargets, size);
+			pathFinal = Arrays.copyOf(pathFinal, size);
+			for(int i=old;i<size;i++)
+			{
+				pathLabels[i] = new IntArrayList();
+				pathTargets[i] = new IntArrayList();
+			}
+		}
+		
+		/** Adds a term, which must follow all previously added terms in code point order 
+		 * (the order of terms in the lexicon) */
+		public void add(String term)
+		{
+			final int[] cps = toCodePoints(term);
+			int common = 0;
+			while(common < cps.length && common < last.length && cps[common] == last[common])
+				common++;
+			if (numTerms > 0 && (common == cps.length || (common < last.length && cps[common] < last[common])))
+				throw new IllegalArgumentException("Term " + term + " added out of order, after " + new String(last, 0, last.length));
+			ensureDepth(cps.length + 1);
+			freezeTo(common);
+			for(int d=common+1;d<=cps.length;d++)
+			{
+				pathLabels[d].clear();
+				pathTargets[d].clear();
+				pathFinal[d] = false;
+			}
+			pathFinal[cps.length] = true;
+			last = cps;
+			numTerms++;
+		}
+		
+		/** freezes the states on the path of the last term deeper than the specified depth */
+		void freezeTo(int depth)
+		{
+			for(int d=last.length;d>depth;d--)
+			{
+				final int state = freeze(d);
+				pathLabels[d-1].add(last[d-1]);
+				pathTargets[d-1].add(state);
+			}
+		}
+		
+		int freeze(int d)
+		{
+			final IntArrayList l = pathLabels[d];
+			final IntArrayList t = pathTargets[d];
+			final int[] key = new int[1 + 2 * l.size()];
+			key[0] = pathFinal[d] ? 1 : 0;
+			for(int i=0;i<l.size();i++)
+			{
+				key[1+2*i] = l.getInt(i);
+				key[2+2*i] = t.getInt(i);
+			}
+			final StateKey stateKey = new StateKey(key);
+			final Integer existing = register.get(stateKey);
+			if (existing != null)
+				return existing;
+			final int state = firstArc.size();
+			firstArc.add(labels.size());
+			int count = key[0];
+			if (pathFinal[d])
+				finals.set(state);
+			for(int i=0;i<l.size();i++)
+			{
+				labels.add(l.getInt(i));
+				targets.add(t.getInt(i));
+				outputs.add(count);
+				count += counts.getInt(t.getInt(i));
+			}
+			counts.add(count);
+			register.put(stateKey, state);
+			return state;
+		}
+		
+		/** Returns the term dictionary of all terms added */
+		public TermDictionaryFST build()
+		{
+			freezeTo(0);
+			final int root = freeze(0);
+			firstArc.add(labels.size());
+			register.clear();
+			return new TermDictionaryFST(numTerms, root, firstArc.toIntArray(), finals, 
+				labels.toIntArray(), targets.toIntArray(), outputs.toIntArray());
+		}
+	}
+	
+	/** Creates the term dictionary for the specified lexicon of an index, and adds it to the index.
+	 * @param index the index to create the term dictionary for
+	 * @param lexiconName name of the lexicon structure, usually <tt>"lexicon"</tt>
+	 * @param structureName name of the new structure, usually <tt>"lexicon-fst"</tt>
+	 * @throws IOException if a problem occurs reading the lexicon or writing the structure
+	 */
+	@SuppressWarnings("unchecked")
+	public static void create(IndexOnDisk index, String lexiconName, String structureName) throws IOException
+	{
+		final Builder builder = new Builder();
+		final Iterator<Map.Entry<String,LexiconEntry>> lexIn = 
+			(Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream(lexiconName);
+		while(lexIn.hasNext())
+			builder.add(lexIn.next().getKey());
+		IndexUtil.close(lexIn);
+		final TermDictionaryFST fst = builder.build();
+		fst.write(index.getPath() + "/" + index.getPrefix() + "." + structureName + USUAL_EXTENSION);
+		index.addIndexStructure(structureName, TermDictionaryFST.class.getName(), 
+			"org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+		index.flush();
+		logger.info("Recorded term dictionary of " + fst.size() + " terms with " + fst.getNumberOfStates() 
+			+ " states in structure " + structureName);
+	}
+}
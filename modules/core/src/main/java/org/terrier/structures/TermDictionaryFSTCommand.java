@@ -0,0 +1,72 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TermDictionaryFSTCommand.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import org.apache.commons.cli.CommandLine;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.querying.IndexRef;
+
+/** Builds the {@link TermDictionaryFST} for the lexicon of an existing index, 
+ * e.g. <tt>bin/terrier fst</tt>.
+ * @since 5.8
+ */
+public class TermDictionaryFSTCommand extends CLIParsedCLITool {
+
+	@Override
+	public int run(CommandLine line) throws Exception {
+		IndexRef iR = getIndexRef(line);
+		IndexOnDisk.setIndexLoadingProfileAsRetrieval(false);
+		Index i = IndexFactory.of(iR);
+		if (i == null)
+		{
+			System.err.println("Index not found at " + iR);
+			return 1;
+		}
+		if (! (i instanceof IndexOnDisk))
+		{
+			System.err.println("A term dictionary can only be built for an IndexOnDisk, found " + i.getClass().getName());
+			return 1;
+		}
+		TermDictionaryFST.create((IndexOnDisk)i, "lexicon", TermDictionaryFST.STRUCTURE_NAME);
+		i.close();
+		return 0;
+	}
+
+	@Override
+	public String commandname() {
+		return "fst";
+	}
+
+	@Override
+	public String helpsummary() {
+		return "builds the term dictionary used for fuzzy, prefix and wildcard matching";
+	}
+
+	@Override
+	public String sourcepackage() {
+		return CLITool.PLATFORM_MODULE;
+	}
+}
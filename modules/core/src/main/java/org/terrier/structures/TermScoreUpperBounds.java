@@ -0,0 +1,297 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TermScoreUpperBounds.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.matching.models.WeightingModelFactory;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.Files;
+
+/** Records, for each term in the index, information that allows upper bounds on the score
+ * of the term in any document to be obtained, as needed by dynamic pruning matching strategies
+ * such as {@link org.terrier.matching.daat.WAND}. In particular, for each term, the maximum 
+ * frequency of the term in any document and the minimum length of any document containing
+ * the term are recorded. Moreover, for each of a number of configured weighting models, 
+ * the (tf, document length) pair of the posting with the highest score is recorded, 
+ * such that the exact maximum score of the term can be obtained at querying time, 
+ * whatever the weight of the term in the query. For other weighting models, looser 
+ * bounds are obtained from {@link WeightingModel#getMaxScore(double, double)}.
+ * <p>
+ * Weighting models are identified by {@link #getModelKey(WeightingModel)}, i.e. their class 
+ * and the values of all of their parameters, so that the exact bounds are not used for models 
+ * with different parameter settings. This 
+ * structure is created by {@link #create(IndexOnDisk, String, String[])}, or using the 
+ * <tt>upperbounds</tt> command, and is normally called <tt>"maxscore"</tt>.
+ * @since 5.8
+ */
+public class TermScoreUpperBounds {
+
+	protected static final Logger logger = LoggerFactory.getLogger(TermScoreUpperBounds.class);
+	
+	/** the usual name of this structure in the index */
+	public static final String STRUCTURE_NAME = "maxscore";
+	/** the file extension of this structure */
+	public static final String USUAL_EXTENSION = ".ub";
+	/** the weighting models for which bounds are computed by default */
+	public static final String[] DEFAULT_MODELS = {"BM25", "PL2", "DPH", "DirichletLM"};
+	
+	protected final String[] modelNames;
+	protected final int[] maxTFs;
+	protected final int[] minDocLengths;
+	protected final int[][] modelTFs;
+	protected final int[][] modelDocLengths;
+	
+	/** Loads the upper bounds structure of the specified index */
+	public TermScoreUpperBounds(IndexOnDisk index, String structureName) throws IOException
+	{
+		this(index.getPath() + "/" + index.getPrefix() + "." + structureName + USUAL_EXTENSION);
+	}
+	
+	/** Loads the upper bounds from the specified file */
+	public TermScoreUpperBounds(String filename) throws IOException
+	{
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(filename)))
+		{
+			final int numTerms = dis.readInt();
+			final int numModels = dis.readInt();
+			modelNames = new String[numModels];
+			for(int m=0;m<numModels;m++)
+				modelNames[m] = dis.readUTF();
+			maxTFs = readInts(dis, numTerms);
+			minDocLengths = readInts(dis, numTerms);
+			modelTFs = new int[numModels][];
+			modelDocLengths = new int[numModels][];
+			for(int m=0;m<numModels;m++)
+			{
+				modelTFs[m] = readInts(dis, numTerms);
+				modelDocLengths[m] = readInts(dis, numTerms);
+			}
+		}
+	}
+	
+	static int[] readInts(DataInputStream dis, int length) throws IOException
+	{
+		final int[] rtr = new int[length];
+		for(int i=0;i<length;i++)
+			rtr[i] = dis.readInt();
+		return rtr;
+	}
+	
+	/** Returns the number of terms in this structure */
+	public int size()
+	{
+		return maxTFs.length;
+	}
+	
+	/** Returns the keys of the weighting models that exact bounds are recorded for, 
+	 * as obtained from {@link #getModelKey(WeightingModel)} */
+	public String[] getModelNames()
+	{
+		return modelNames;
+	}
+	
+	/** Returns the maximum frequency of the specified term in any document */
+	public int getMaxFrequency(int termid)
+	{
+		return maxTFs[termid];
+	}
+	
+	/** Returns the minimum length of any document containing the specified term */
+	public int getMinDocumentLength(int termid)
+	{
+		return minDocLengths[termid];
+	}
+	
+	/** Returns true if exact bounds are recorded for the specified weighting model */
+	public boolean hasModel(WeightingModel wm)
+	{
+		return getModelIndex(wm) != -1;
+	}
+	
+	protected int getModelIndex(WeightingModel wm)
+	{
+		final String key = getModelKey(wm);
+		for(int m=0;m<modelNames.length;m++)
+			if (modelNames[m].equals(key))
+				return m;
+		return -1;
+	}
+	
+	/** Returns the key that identifies the specified weighting model and its parameter settings,
+	 * namely the name of its class, followed by the values of the primitive and String instance fields 
+	 * declared by that class and its superclasses other than WeightingModel. {@link WeightingModel#getInfo()}
+	 * cannot be used, as it omits some parameters, such as k_1 of BM25.
+	 * @param wm the weighting model, after it has been prepared
+	 * @return key of the weighting model
+	 */
+	public static String getModelKey(WeightingModel wm)
+	{
+		final StringBuilder key = new StringBuilder(wm.getClass().getName());
+		for(Class<?> c = wm.getClass(); c != null && c != WeightingModel.class; c = c.getSuperclass())
+		{
+			final Field[] fields = c.getDeclaredFields();
+			Arrays.sort(fields, Comparator.comparing(Field::getName));
+			for(Field f : fields)
+			{
+				if (Modifier.isStatic(f.getModifiers()) || ! (f.getType().isPrimitive() || f.getType() == String.class))
+					continue;
+				try{
+					f.setAccessible(true);
+					key.append(',').append(f.getName()).append('=').append(f.get(wm));
+				} catch (IllegalAccessException | RuntimeException e) {
+					throw new IllegalArgumentException("Cannot obtain parameter " + f.getName() + " of weighting model " + wm.getInfo(), e);
+				}
+			}
+		}
+		return key.toString();
+	}
+	
+	/** Returns an upper bound on the score that the specified weighting model can give to
+	 * the specified term in any document. The weighting model should have been prepared with 
+	 * the statistics of that term. If exact bounds were recorded for this weighting model, 
+	 * then the exact maximum score is returned. This assumes that the weight of the term in the 
+	 * query only scales the score of the weighting model, as is the case for all weighting models
+	 * provided by Terrier. Otherwise, the bound obtained from 
+	 * {@link WeightingModel#getMaxScore(double, double)} is returned.
+	 * @param wm prepared weighting model for the term
+	 * @param termid id of the term
+	 * @return upper bound on the score of the term in any document
+	 */
+	public double getMaxScore(WeightingModel wm, int termid)
+	{
+		if (maxTFs[termid] == 0)
+			return 0;
+		final int m = getModelIndex(wm);
+		if (m == -1)
+			return wm.getMaxScore(maxTFs[termid], minDocLengths[termid]);
+		return wm.score(modelTFs[m][termid], modelDocLengths[m][termid]);
+	}
+	
+	/** Walks the inverted index of the specified index, to record the upper bounds for the specified 
+	 * weighting models. The resulting structure is added to the index.
+	 * @param index the index to compute upper bounds for
+	 * @param structureName name of the new structure, usually <tt>"maxscore"</tt>
+	 * @param wmodelNames names of the weighting models, as used by {@link WeightingModelFactory}
+	 * @throws IOException if a problem occurs reading the index or writing the structure
+	 */
+	@SuppressWarnings("unchecked")
+	public static void create(IndexOnDisk index, String structureName, String[] wmodelNames) throws IOException
+	{
+		final CollectionStatistics cs = index.getCollectionStatistics();
+		final int numTerms = cs.getNumberOfUniqueTerms();
+		final int numModels = wmodelNames.length;
+		final WeightingModel[] wmodels = new WeightingModel[numModels];
+		for(int m=0;m<numModels;m++)
+		{
+			wmodels[m] = WeightingModelFactory.newInstance(wmodelNames[m], index);
+			wmodels[m].setCollectionStatistics(cs);
+			wmodels[m].setKeyFrequency(1d);
+		}
+		final int[] maxTFs = new int[numTerms];
+		final int[] minDocLengths = new int[numTerms];
+		final int[][] modelTFs = new int[numModels][numTerms];
+		final int[][] modelDocLengths = new int[numModels][numTerms];
+		final double[] maxScores = new double[numModels];
+		
+		final PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		final Iterator<Map.Entry<String,LexiconEntry>> lexIn = 
+			(Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		while(lexIn.hasNext())
+		{
+			final LexiconEntry le = lexIn.next().getValue();
+			final int termid = le.getTermId();
+			for(int m=0;m<numModels;m++)
+			{
+				wmodels[m].setEntryStatistics(le);
+				wmodels[m].prepare();
+				maxScores[m] = Double.NEGATIVE_INFINITY;
+			}
+			int maxTF = 0;
+			int minDocLength = Integer.MAX_VALUE;
+			final IterablePosting ip = inverted.getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+			{
+				final int tf = ip.getFrequency();
+				final int docLength = ip.getDocumentLength();
+				if (tf > maxTF)
+					maxTF = tf;
+				if (docLength < minDocLength)
+					minDocLength = docLength;
+				for(int m=0;m<numModels;m++)
+				{
+					final double score = wmodels[m].score(tf, docLength);
+					if (score > maxScores[m])
+					{
+						maxScores[m] = score;
+						modelTFs[m][termid] = tf;
+						modelDocLengths[m][termid] = docLength;
+					}
+				}
+			}
+			ip.close();
+			maxTFs[termid] = maxTF;
+			minDocLengths[termid] = maxTF == 0 ? 0 : minDocLength;
+		}
+		IndexUtil.close(lexIn);
+		
+		final String filename = index.getPath() + "/" + index.getPrefix() + "." + structureName + USUAL_EXTENSION;
+		try(DataOutputStream dos = new DataOutputStream(Files.writeFileStream(filename)))
+		{
+			dos.writeInt(numTerms);
+			dos.writeInt(numModels);
+			for(WeightingModel wm : wmodels)
+				dos.writeUTF(getModelKey(wm));
+			writeInts(dos, maxTFs);
+			writeInts(dos, minDocLengths);
+			for(int m=0;m<numModels;m++)
+			{
+				writeInts(dos, modelTFs[m]);
+				writeInts(dos, modelDocLengths[m]);
+			}
+		}
+		index.addIndexStructure(structureName, TermScoreUpperBounds.class.getName(), 
+			"org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+		index.flush();
+		logger.info("Recorded upper bounds of " + numTerms + " terms for " + numModels + " weighting models in structure " + structureName);
+	}
+	
+	static void writeInts(DataOutputStream dos, int[] values) throws IOException
+	{
+		for(int v : values)
+			dos.writeInt(v);
+	}
+}
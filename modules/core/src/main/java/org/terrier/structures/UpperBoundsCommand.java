@@ -0,0 +1,96 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is UpperBoundsCommand.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import java.util.Arrays;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.querying.IndexRef;
+import org.terrier.utility.ArrayUtils;
+
+/** Walks the inverted index once to record the per-term score upper bounds used by
+ * dynamic pruning matching strategies, as a {@link TermScoreUpperBounds} structure.
+ * The weighting models to record exact bounds for are specified using <tt>-w</tt>, 
+ * e.g. <tt>bin/terrier upperbounds -w BM25,DPH</tt>.
+ * @since 5.8
+ */
+public class UpperBoundsCommand extends CLIParsedCLITool {
+
+	@Override
+	protected Options getOptions() {
+		Options opts = super.getOptions();
+		opts.addOption(Option.builder("w")
+			.argName("wmodels")
+			.longOpt("wmodels")
+			.hasArg()
+			.desc("comma-delimited list of weighting models to compute upper bounds for, defaults to " 
+				+ String.join(",", TermScoreUpperBounds.DEFAULT_MODELS))
+			.build());
+		return opts;
+	}
+
+	@Override
+	public int run(CommandLine line) throws Exception {
+		IndexRef iR = getIndexRef(line);
+		IndexOnDisk.setIndexLoadingProfileAsRetrieval(false);
+		Index i = IndexFactory.of(iR);
+		if (i == null)
+		{
+			System.err.println("Index not found at " + iR);
+			return 1;
+		}
+		if (! (i instanceof IndexOnDisk))
+		{
+			System.err.println("Upper bounds can only be recorded for an IndexOnDisk, found " + i.getClass().getName());
+			return 1;
+		}
+		String[] wmodels = TermScoreUpperBounds.DEFAULT_MODELS;
+		if (line.hasOption("w"))
+			wmodels = ArrayUtils.parseCommaDelimitedString(line.getOptionValue("w"));
+		System.err.println("Computing upper bounds for " + Arrays.toString(wmodels));
+		TermScoreUpperBounds.create((IndexOnDisk)i, TermScoreUpperBounds.STRUCTURE_NAME, wmodels);
+		i.close();
+		return 0;
+	}
+
+	@Override
+	public String commandname() {
+		return "upperbounds";
+	}
+
+	@Override
+	public String helpsummary() {
+		return "records the per-term score upper bounds used by dynamic pruning";
+	}
+
+	@Override
+	public String sourcepackage() {
+		return CLITool.PLATFORM_MODULE;
+	}
+}
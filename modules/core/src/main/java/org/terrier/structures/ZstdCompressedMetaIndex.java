@@ -1,23 +1,53 @@
 package org.terrier.structures;
 import java.io.IOException;
+
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
 import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
 
-/** MetaIndex implementation for when records are compressed using Zstandard 
+/** MetaIndex implementation for when records are compressed using Zstandard. If the 
+ * <tt>index.STRUCTURENAME.zstd.dictionary</tt> index property is set, records were compressed
+ * using the dictionary in the <tt>.zdict</tt> file of the structure.
  * @since 5.5
 */
 public class ZstdCompressedMetaIndex extends BaseCompressingMetaIndex {
 
+    /** extension of the file containing the dictionary used to compress records
+     * @since 5.8 */
+    public static final String DICTIONARY_EXTENSION = ".zdict";
+
+    /** Loads the dictionary used to compress the records of the specified structure, or 
+     * returns null if the records were compressed without one.
+     * @since 5.8 */
+    public static ZstdDictDecompress loadDictionary(IndexOnDisk index, String structureName) throws IOException
+    {
+        if (! Boolean.parseBoolean(index.getIndexProperty("index."+structureName+".zstd.dictionary", "false")))
+            return null;
+        try(java.io.InputStream is = Files.openFileStream(index.getPath() + ApplicationSetup.FILE_SEPARATOR + index.getPrefix() + "." + structureName + DICTIONARY_EXTENSION))
+        {
+            return new ZstdDictDecompress(is.readAllBytes());
+        }
+    }
+
     public static class InputStream extends CompressingMetaIndex.InputStream {
         ZstdDecompressCtx z = new ZstdDecompressCtx();
 
         public InputStream(IndexOnDisk _index, String structureName) throws IOException
 		{
             super(_index, structureName);
+            ZstdDictDecompress dictionary = loadDictionary(_index, structureName);
+            if (dictionary != null)
+                z.loadDict(dictionary);
         }
 
         public InputStream(IndexOnDisk _index, String _structureName, int _startingId, int _endId) throws IOException
 		{
             super(_index, _structureName, _startingId, _endId);
+            ZstdDictDecompress dictionary = loadDictionary(_index, _structureName);
+            if (dictionary != null)
+                z.loadDict(dictionary);
         }
 
         protected byte[] decode(byte[] input) throws IOException {
@@ -27,9 +57,15 @@ public class ZstdCompressedMetaIndex extends BaseCompressingMetaIndex {
         }
     }
 
+    /** the digested dictionary, shared by the decompression contexts of all threads, or null */
+    final ZstdDictDecompress dictionary;
+
     final ThreadLocal<ZstdDecompressCtx> zstDecompressCache = new ThreadLocal<ZstdDecompressCtx>() {
         protected final synchronized ZstdDecompressCtx initialValue() {
-			return new ZstdDecompressCtx();
+			ZstdDecompressCtx z = new ZstdDecompressCtx();
+			if (dictionary != null)
+				z.loadDict(dictionary);
+			return z;
 		}
     };
 
@@ -37,6 +73,7 @@ public class ZstdCompressedMetaIndex extends BaseCompressingMetaIndex {
 		throws IOException
 	{
         super(index, structureName);
+        dictionary = loadDictionary(index, structureName);
     }
 
     protected byte[] decode(byte[] input) throws IOException {
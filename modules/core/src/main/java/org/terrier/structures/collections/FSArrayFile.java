@@ -39,9 +39,16 @@ import org.terrier.structures.Skipable;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
 import org.terrier.utility.Files;
 import org.terrier.utility.io.RandomDataInput;
+import org.terrier.utility.io.RandomDataInputMapped;
+import org.terrier.utility.io.RandomDataInputMemory;
+import org.terrier.utility.io.RandomDataInputMemory.SeeakableByteArrayInputStream;
 
 /** A file for accessing Writable classes written on disk. These must be of fixed size.
  * This implementation is read-only, but does implement the List interface.
+ * <b>Index properties</b>:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.data-source</tt> - one of {file,fileinmem,mmap}. Defaults to file.</li>
+ * </ul>
  * @author Craig Macdonald
  * @since 3.0
  * @param <V> Type of Writable
@@ -60,6 +67,23 @@ public class FSArrayFile<V extends Writable> extends AbstractList<V> implements
 	protected RandomDataInput dataFile = null;
 	/** filename of the underlying file */
 	protected String dataFilename;
+	/** buffer of each thread for positional reads, used when these are concurrent */
+	protected final ThreadLocal<EntryBuffer> entryBuffers = ThreadLocal.withInitial(() -> new EntryBuffer(entrySize));
+	
+	/** A reusable buffer for one entry, and a stream that decodes from it */
+	protected static class EntryBuffer
+	{
+		final byte[] buffer;
+		final SeeakableByteArrayInputStream bytes;
+		final DataInputStream in;
+		
+		EntryBuffer(int entrySize)
+		{
+			buffer = new byte[entrySize];
+			bytes = new SeeakableByteArrayInputStream(buffer);
+			in = new DataInputStream(bytes);
+		}
+	}
 	
 	protected FSArrayFile() {}
 	/** constructor
@@ -74,7 +98,8 @@ public class FSArrayFile<V extends Writable> extends AbstractList<V> implements
 		this(
 				index.getPath() + "/" + index.getPrefix() + "." + structureName + FSArrayFile.USUAL_EXTENSION,
 				false,
-				(FixedSizeWriteableFactory<V>)index.getIndexStructure(structureName + "-factory")
+				(FixedSizeWriteableFactory<V>)index.getIndexStructure(structureName + "-factory"),
+				index.getIndexProperty("index."+structureName+".data-source", "file")
 				);
 	}
 	/** default constructor
@@ -98,21 +123,73 @@ public class FSArrayFile<V extends Writable> extends AbstractList<V> implements
         this.numberOfEntries = (int) (dataFile.length() / (long)entrySize);  
     }
 	
+	/** constructor allowing the underlying file to be loaded into memory or memory mapped
+	 * 
+	 * @param filename
+	 * @param updateable
+	 * @param _valueFactory
+	 * @param dataSource one of {file,fileinmem,mmap}
+	 * @throws IOException
+	 */
+	public FSArrayFile(
+            String filename,
+            boolean updateable,
+            FixedSizeWriteableFactory<V> _valueFactory,
+            String dataSource)
+        throws IOException
+    {
+		this.dataFilename = filename;
+		if (updateable || dataSource.equals("file"))
+			this.dataFile = updateable
+				? Files.writeFileRandom(filename)
+				: Files.openFileRandom(filename);
+		else if (dataSource.equals("fileinmem"))
+			this.dataFile = new RandomDataInputMemory(filename);
+		else if (dataSource.equals("mmap"))
+			this.dataFile = new RandomDataInputMapped(filename);
+		else
+			throw new IOException("Unrecognised value ("+dataSource+") for data-source of " + filename);
+        this.valueFactory = _valueFactory;
+        this.entrySize = _valueFactory.getSize();
+        this.numberOfEntries = (int) (dataFile.length() / (long)entrySize);  
+    }
+	
 	@Override
 	public int size()
 	{
 		return numberOfEntries;
 	}
 	
+	/** Returns true if {@link #get(int)} can be called by several threads at once
+	 * without external synchronisation. This is the case when the underlying file
+	 * supports concurrent positional reads.
+	 * @since 5.8
+	 */
+	public boolean isConcurrentReadable()
+	{
+		return dataFile.isReadFullyDirectConcurrent();
+	}
+	
 	@Override
 	public V get(int entryNumber)
 	{
 		try{
 			V value = valueFactory.newInstance();
-			if (entryNumber > numberOfEntries)
-			  throw new NoSuchElementException("Entry too big : " + entryNumber + " > " + numberOfEntries);
-			dataFile.seek((long)entryNumber * entrySize);
-			value.readFields(dataFile);
+			if (entryNumber >= numberOfEntries || entryNumber < 0)
+			  throw new NoSuchElementException("Entry too big : " + entryNumber + " >= " + numberOfEntries);
+			if (dataFile.isReadFullyDirectConcurrent())
+			{
+				//positional read, such that concurrent gets do not share a file pointer
+				final EntryBuffer eb = entryBuffers.get();
+				dataFile.readFullyDirect(eb.buffer, (long)entryNumber * entrySize, entrySize);
+				eb.bytes.seek(0);
+				value.readFields(eb.in);
+				return value;
+			}
+			synchronized (dataFile) {
+				dataFile.seek((long)entryNumber * entrySize);
+				value.readFields(dataFile);
+			}
 			return value;
 		} catch (NoSuchElementException nsee) {
 			throw nsee;
@@ -27,7 +27,6 @@ package org.terrier.structures.collections;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.util.NoSuchElementException;
 
 import org.apache.hadoop.io.Writable;
 import org.terrier.structures.IndexOnDisk;
@@ -37,15 +36,14 @@ import org.terrier.utility.Files;
 import org.terrier.utility.io.RandomDataInputMemory;
 
 /** Version of FSArrayFile that keeps the file contents in memory, and decodes the bytes
- * into object as required.
+ * into object as required. Each {@link #get(int)} decodes into a new object from
+ * a buffer of the calling thread, so instances can be read by several threads at once.
  * @author Craig Macdonald
  * @since 3.0
  * @param <V> Type of Writable
  */
 public class FSArrayFileInMem<V extends Writable> extends FSArrayFile<V>
 {
-	V value;
-	
 	@SuppressWarnings("unchecked")
 	public FSArrayFileInMem(IndexOnDisk index, String structureName) throws IOException
 	{
@@ -79,21 +77,5 @@ public class FSArrayFileInMem<V extends Writable> extends FSArrayFile<V>
 		this.entrySize = factory.getSize();
 		this.numberOfEntries = (int)(len / (long)entrySize);
 		//System.err.println("document index: "+ this.numberOfEntries + " entries of size "+ entrySize);
-		value = factory.newInstance();
-	}
-	/** 
-	 * {@inheritDoc} 
-	 */
-	public V get(int entryNumber)
-	{
-		try{
-			if (entryNumber > numberOfEntries)
-				throw new NoSuchElementException();
-			dataFile.seek((long)entryNumber * entrySize);
-			value.readFields(dataFile);
-			return value;
-		} catch (Exception e) {
-			throw new NoSuchElementException(e.getMessage());
-		}
 	}
-}
\ No newline at end of file
+}
@@ -768,6 +768,8 @@ public class FSOrderedMapFile<
 	protected int entrySize;
 	
 	protected FSOMapFileBSearchShortcut<K> shortcut;
+	/** whether the file was opened for updating */
+	protected boolean updateable = false;
 	
 	protected FixedSizeWriteableFactory<K> keyFactory;
 	protected FixedSizeWriteableFactory<V> valueFactory;
@@ -829,6 +831,7 @@ public class FSOrderedMapFile<
         this.dataFile = updateable
             ? Files.writeFileRandom(this.dataFilename = filename)
             : Files.openFileRandom(this.dataFilename = filename);
+        this.updateable = updateable;
         this.keyFactory = _keyFactory;
         this.valueFactory = _valueFactory;
         this.entrySize = _keyFactory.getSize() + _valueFactory.getSize();
@@ -918,6 +921,17 @@ public class FSOrderedMapFile<
         return new MapFileValueCollection();
     }
     
+    /** Returns true if lookups using {@link #get(Object)} and {@link #get(int)} can 
+     * be made by several threads at once, without external synchronisation. This
+     * is the case when the map is not updateable, and the underlying file
+     * supports concurrent positional reads.
+     * @since 5.8
+     */
+    public boolean isConcurrentReadable()
+    {
+        return ! updateable && dataFile.isReadFullyDirectConcurrent();
+    }
+    
     /** Returns the number of entries in this map */
     public int size()
     {
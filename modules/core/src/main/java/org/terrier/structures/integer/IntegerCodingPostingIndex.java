@@ -0,0 +1,184 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodingPostingIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.integer;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteFileBuffered;
+import org.terrier.compression.integer.ByteFileInMemory;
+import org.terrier.compression.integer.ByteFileMapped;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteInSeekable;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.DocumentIndexEntry;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.io.WrappedIOException;
+
+/** A posting index where postings are compressed by the integer compression layer, i.e. in
+ * chunks of postings, each payload of which is compressed by an {@link org.terrier.compression.integer.IntegerCodec}.
+ * Pointers are BitIndexPointers with a bit offset of 0.
+ * <b>Index properties</b>:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.data-files</tt> - how many files represent this structure.</li>
+ * <li><tt>index.STRUCTURENAME.data-source</tt> - one of {file,fileinmem,mmap} or a class implements ByteInSeekable.</li>
+ * <li><tt>index.STRUCTURENAME.fields.count</tt> - how many fields are in use by this structures.</li>
+ * <li><tt>index.STRUCTURENAME.blocks</tt> - whether postings have positions.</li>
+ * <li>The properties described in {@link IntegerCodingScheme}.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class IntegerCodingPostingIndex implements PostingIndex<BitIndexPointer>
+{
+	/** The usual file extension for files of compressed integers */
+	public static final String USUAL_EXTENSION = ".if";
+	
+	protected final ByteInSeekable[] file;
+	protected final IntegerCodingScheme scheme;
+	protected DocumentIndex doi;
+	
+	/**
+	 * Constructs an instance of the IntegerCodingPostingIndex.
+	 * @param _index index containing the structure
+	 * @param _structureName name of the structure
+	 * @param _postingImplementation ignored, the IterablePosting class is determined by the scheme
+	 * @throws IOException
+	 */
+	public IntegerCodingPostingIndex(
+			IndexOnDisk _index, 
+			String _structureName, 
+			Class<? extends IterablePosting> _postingImplementation)
+		throws IOException
+	{
+		this(_index, _structureName, _index.getDocumentIndex(), _postingImplementation);
+	}
+	
+	/**
+	 * Constructs an instance of the IntegerCodingPostingIndex.
+	 * @param _index index containing the structure
+	 * @param _structureName name of the structure
+	 * @param _documentIndex document index to use
+	 * @param _postingImplementation ignored, the IterablePosting class is determined by the scheme
+	 * @throws IOException
+	 */
+	public IntegerCodingPostingIndex(
+			IndexOnDisk _index, 
+			String _structureName, 
+			DocumentIndex _documentIndex,
+			Class<? extends IterablePosting> _postingImplementation)
+		throws IOException
+	{
+		this(
+			_index.getPath() + "/" + _index.getPrefix() + "." + _structureName + USUAL_EXTENSION, 
+			Byte.parseByte(_index.getIndexProperty("index."+_structureName+".data-files", "1")),
+			_documentIndex,
+			IntegerCodingScheme.fromIndex(_index, _structureName),
+			_index.getIndexProperty("index."+_structureName+".data-source", "file"));
+	}
+	
+	/**
+	 * Constructs an instance of the IntegerCodingPostingIndex.
+	 * @param filename name of the (first) data file
+	 * @param fileCount number of data files
+	 * @param _doi document index to use
+	 * @param _scheme how the postings were compressed
+	 * @param _dataSource one of {file,fileinmem,mmap} or a class implements ByteInSeekable
+	 * @throws IOException
+	 */
+	public IntegerCodingPostingIndex(
+			String filename, byte fileCount,
+			DocumentIndex _doi,
+			IntegerCodingScheme _scheme,
+			String _dataSource)
+		throws IOException
+	{
+		file = new ByteInSeekable[fileCount];
+		for(int i=0;i<fileCount;i++)
+		{
+			String dataFilename = fileCount == 1 ? filename : filename + String.valueOf(i);
+			if (_dataSource.equals("fileinmem"))
+			{
+				this.file[i] = new ByteFileInMemory(dataFilename);
+			}
+			else if (_dataSource.equals("file"))
+			{
+				this.file[i] = new ByteFileBuffered(dataFilename);
+			}
+			else if (_dataSource.equals("mmap"))
+			{
+				this.file[i] = new ByteFileMapped(dataFilename);
+			}
+			else
+			{
+				try{
+					this.file[i] = ApplicationSetup.getClass(_dataSource).asSubclass(ByteInSeekable.class).getConstructor(String.class).newInstance(dataFilename);
+				} catch (Exception e) {
+					throw new WrappedIOException(e);
+				}
+			}
+		}
+		this.scheme = _scheme;
+		this.doi = _doi;
+	}
+	
+	/** Returns the scheme used to compress the postings of this structure */
+	public IntegerCodingScheme getScheme()
+	{
+		return scheme;
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public IterablePosting getPostings(Pointer _pointer) throws IOException
+	{
+		final BitIndexPointer pointer = (BitIndexPointer)_pointer;
+		final ByteIn in = file[pointer.getFileNumber()].readReset(pointer.getOffset());
+		
+		//only a direct index has a pointer type of DocumentIndexEntry
+		DocumentIndex fixedDi = pointer instanceof DocumentIndexEntry
+			? new org.terrier.structures.postings.PostingUtil.DocidSpecificDocumentIndex(doi, (DocumentIndexEntry)pointer)
+			: doi;
+		return scheme.newPostingIterator(in, pointer.getNumberOfEntries(), fixedDi);
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public void close() 
+	{
+		try{
+			for(java.io.Closeable c : file)
+				c.close();
+		} catch (IOException ioe) {}
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodingPostingIndexInputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.integer;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteInputStream;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.DocumentIndexEntry;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndexInputStream;
+import org.terrier.structures.Skipable;
+import org.terrier.structures.postings.IterablePosting;
+
+/** 
+ * Input stream for a posting index compressed by the integer compression layer.
+ * @see IntegerCodingPostingIndex
+ * @since 5.8
+ */
+public class IntegerCodingPostingIndexInputStream implements PostingIndexInputStream, Skipable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(IntegerCodingPostingIndexInputStream.class);
+	
+	/** the lexicon input stream providing the offsets */
+	protected final Iterator<? extends BitIndexPointer> pointerList;
+	/** the file containing the postings */
+	protected ByteIn file;
+	protected final IntegerCodingScheme scheme;
+	protected final DocumentIndex doi;
+	protected final String filename;
+	protected final byte fileCount;
+	protected byte currentFile = 0;
+	protected int currentEntryCount;
+	protected BitIndexPointer currentPointer;
+	protected int entriesSkipped = 0;
+	
+	/** 
+	 * Return filename
+	 * @param _index
+	 * @param structureName
+	 * @param fileCount
+	 * @param fileId
+	 * @return filename
+	 */
+	public static String getFilename(IndexOnDisk _index, String structureName, byte fileCount, byte fileId)
+	{
+		return _index.getPath() + "/" + _index.getPrefix() +"."+ structureName + IntegerCodingPostingIndex.USUAL_EXTENSION + 
+			(fileCount > 1 ? String.valueOf(fileId) : "");
+	}
+	
+	/**
+	 * Constructs an instance of IntegerCodingPostingIndexInputStream.
+	 * @param _index
+	 * @param _structureName
+	 * @param _pointerList
+	 * @param _postingIteratorClass ignored, the IterablePosting class is determined by the scheme
+	 * @throws IOException
+	 */
+	public IntegerCodingPostingIndexInputStream(
+			IndexOnDisk _index, String _structureName, 
+			Iterator<? extends BitIndexPointer> _pointerList,
+			Class<? extends IterablePosting> _postingIteratorClass) throws IOException
+	{
+		this(
+			_index.getPath() + "/" + _index.getPrefix() +"."+ _structureName + IntegerCodingPostingIndex.USUAL_EXTENSION, 
+			Byte.parseByte(_index.getIndexProperty("index."+_structureName+".data-files", "1")),
+			_pointerList,
+			IntegerCodingScheme.fromIndex(_index, _structureName),
+			_index.getDocumentIndex());
+	}
+	
+	/**
+	 * Constructs an instance of IntegerCodingPostingIndexInputStream.
+	 * @param _filename name of the (first) data file
+	 * @param _fileCount number of data files
+	 * @param _pointerList pointers to the posting lists, in order
+	 * @param _scheme how the postings were compressed
+	 * @param _doi document index to use
+	 * @throws IOException
+	 */
+	public IntegerCodingPostingIndexInputStream(String _filename, byte _fileCount, 
+			Iterator<? extends BitIndexPointer> _pointerList, 
+			IntegerCodingScheme _scheme, DocumentIndex _doi) throws IOException
+	{
+		this.filename = _filename;
+		this.fileCount = _fileCount;
+		this.file = new ByteInputStream(getFilename(currentFile));
+		this.pointerList = _pointerList;
+		this.scheme = _scheme;
+		this.doi = _doi;
+	}
+	
+	protected String getFilename(byte fileId)
+	{
+		return filename + (fileCount > 1 ? String.valueOf(fileId) : "");
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public void skip(int numEntries) throws IOException
+	{
+		((Skipable)pointerList).skip(numEntries);
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public int getNumberOfCurrentPostings()
+	{
+		return currentEntryCount;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public IterablePosting getNextPostings() throws IOException {
+		if (! this.hasNext())
+			return null;
+		BitIndexPointer p = _next();
+		if (p == null)//trailing empty document
+			return null;
+		return loadPostingIterator(p);
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public boolean hasNext() {
+		return pointerList.hasNext();
+	}
+
+	protected BitIndexPointer _next()
+	{
+		if (! pointerList.hasNext())
+			return null;
+		entriesSkipped = 0;
+		BitIndexPointer pointer = (BitIndexPointer)pointerList.next();
+		while(pointer.getNumberOfEntries() == 0)
+		{
+			entriesSkipped++;
+			if (pointerList.hasNext())
+			{	
+				pointer = (BitIndexPointer)pointerList.next();
+			}
+			else
+			{
+				return null;
+			}
+		}
+		return pointer;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public IterablePosting next()
+	{
+		BitIndexPointer pointer = _next();
+		if (pointer == null)//trailing empty document
+			return null;
+		try{
+			return loadPostingIterator(pointer);
+		} catch (IOException ioe) {
+			logger.info("Couldn't load posting iterator", ioe);
+			return null;
+		}
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public int getEntriesSkipped()
+	{
+		return entriesSkipped;
+	}
+	
+	protected IterablePosting loadPostingIterator(BitIndexPointer pointer) throws IOException
+	{
+		//check to see if file id has changed
+		if (pointer.getFileNumber() > currentFile)
+		{
+			file.close();
+			file = new ByteInputStream(getFilename(currentFile = pointer.getFileNumber()));
+		}
+		//the previous posting list may not have been fully read
+		if (file.getByteOffset() != pointer.getOffset())
+		{
+			assert (pointer.getOffset() - file.getByteOffset()) > 0;
+			file.skipBytes(pointer.getOffset() - file.getByteOffset());
+		}
+		currentPointer = pointer;
+		currentEntryCount = pointer.getNumberOfEntries();
+		//only a direct index has a pointer type of DocumentIndexEntry
+		DocumentIndex fixedDi = pointer instanceof DocumentIndexEntry
+			? new org.terrier.structures.postings.PostingUtil.DocidSpecificDocumentIndex(doi, (DocumentIndexEntry)pointer)
+			: doi;
+		return scheme.newPostingIterator(file, pointer.getNumberOfEntries(), fixedDi);
+	}
+	
+	/** 
+	 * Print a list of the postings to standard out
+	 */
+	@Override
+	public void print()
+	{	
+		try{
+			int entryIndex = 0;
+			while(this.hasNext())
+			{
+				IterablePosting ip = this.next();
+				entryIndex += this.getEntriesSkipped();
+				System.out.print(entryIndex + " ");
+				while(ip.next() != IterablePosting.EOL)
+				{
+					System.out.print(ip.toString());
+					System.out.print(" ");
+				}
+				System.out.println();
+				entryIndex++;
+			}
+		} catch (Exception e) {
+			logger.error("Error during print()", e);
+		}
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+		IndexUtil.close(pointerList);
+	}
+
+	/** Not supported */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public Pointer getCurrentPointer() {
+		return currentPointer;
+	}
+}
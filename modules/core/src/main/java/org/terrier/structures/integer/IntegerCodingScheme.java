@@ -0,0 +1,182 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodingScheme.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.integer;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.integer.BasicIntegerCodingIterablePosting;
+import org.terrier.structures.postings.integer.BlockFieldIntegerCodingIterablePosting;
+import org.terrier.structures.postings.integer.BlockIntegerCodingIterablePosting;
+import org.terrier.structures.postings.integer.FieldIntegerCodingIterablePosting;
+import org.terrier.utility.io.WrappedIOException;
+
+/** Describes how the postings of a structure are compressed by the integer compression layer:
+ * the number of postings in each chunk, and the {@link IntegerCodec} used for each payload of 
+ * the postings. It is recorded using the following index properties:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.compression.integer.chunk.size</tt> - number of postings in each chunk. Defaults to 128.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.ids.codec</tt> - codec for the id gaps.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.tfs.codec</tt> - codec for the frequencies.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.fields.codec</tt> - codec for the field frequencies, if there are fields.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.blocks.codec</tt> - codec for the positions, if there are blocks.</li>
+ * </ul>
+ * Codecs default to {@link #DEFAULT_CODEC}. Codec names without a package are taken from 
+ * {@link IntegerCodec#CODEC_PACKAGE}.
+ * @since 5.8
+ */
+public class IntegerCodingScheme {
+	
+	public static final int DEFAULT_CHUNK_SIZE = 128;
+	public static final String DEFAULT_CODEC = "PForDeltaCodec";
+	
+	protected final int chunkSize;
+	protected final int fieldCount;
+	protected final boolean blocks;
+	protected final Constructor<? extends IntegerCodec> idsCodec;
+	protected final Constructor<? extends IntegerCodec> tfsCodec;
+	protected final Constructor<? extends IntegerCodec> fieldsCodec;
+	protected final Constructor<? extends IntegerCodec> blocksCodec;
+	
+	/** Makes a new scheme
+	 * @param _chunkSize number of postings in each chunk
+	 * @param _fieldCount number of fields
+	 * @param _blocks whether postings have positions
+	 * @param _idsCodec name of the codec for the id gaps
+	 * @param _tfsCodec name of the codec for the frequencies
+	 * @param _fieldsCodec name of the codec for the field frequencies
+	 * @param _blocksCodec name of the codec for the positions
+	 */
+	public IntegerCodingScheme(int _chunkSize, int _fieldCount, boolean _blocks, 
+			String _idsCodec, String _tfsCodec, String _fieldsCodec, String _blocksCodec)
+	{
+		if (_chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be positive, was " + _chunkSize);
+		this.chunkSize = _chunkSize;
+		this.fieldCount = _fieldCount;
+		this.blocks = _blocks;
+		this.idsCodec = getConstructor(_idsCodec);
+		this.tfsCodec = getConstructor(_tfsCodec);
+		this.fieldsCodec = getConstructor(_fieldsCodec);
+		this.blocksCodec = getConstructor(_blocksCodec);
+	}
+	
+	/** Reads the scheme of the named structure from the properties of the specified index */
+	public static IntegerCodingScheme fromIndex(IndexOnDisk index, String structureName)
+	{
+		final String prefix = "index." + structureName + ".compression.integer.";
+		return new IntegerCodingScheme(
+			index.getIntIndexProperty(prefix + "chunk.size", DEFAULT_CHUNK_SIZE),
+			index.getIntIndexProperty("index." + structureName + ".fields.count", 0),
+			index.getIntIndexProperty("index." + structureName + ".blocks", 0) > 0,
+			index.getIndexProperty(prefix + "ids.codec", DEFAULT_CODEC),
+			index.getIndexProperty(prefix + "tfs.codec", DEFAULT_CODEC),
+			index.getIndexProperty(prefix + "fields.codec", DEFAULT_CODEC),
+			index.getIndexProperty(prefix + "blocks.codec", DEFAULT_CODEC));
+	}
+	
+	static Constructor<? extends IntegerCodec> getConstructor(String codecName)
+	{
+		try{
+			return IntegerCodec.getCodecClass(codecName).getConstructor();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("Integer codec " + codecName + " has no default constructor", e);
+		}
+	}
+	
+	static IntegerCodec newCodec(Constructor<? extends IntegerCodec> c)
+	{
+		try{
+			return c.newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+	
+	/** Returns a new instance of the codec for the id gaps */
+	public IntegerCodec newIdsCodec() { return newCodec(idsCodec); }
+	/** Returns a new instance of the codec for the frequencies */
+	public IntegerCodec newTfsCodec() { return newCodec(tfsCodec); }
+	/** Returns a new instance of the codec for the field frequencies */
+	public IntegerCodec newFieldsCodec() { return newCodec(fieldsCodec); }
+	/** Returns a new instance of the codec for the positions */
+	public IntegerCodec newBlocksCodec() { return newCodec(blocksCodec); }
+	
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	public boolean hasBlocks() {
+		return blocks;
+	}
+	
+	/** Returns the name of each codec, in the order ids, tfs, fields, blocks */
+	public String[] getCodecNames()
+	{
+		return new String[]{
+			idsCodec.getDeclaringClass().getName(), 
+			tfsCodec.getDeclaringClass().getName(),
+			fieldsCodec.getDeclaringClass().getName(),
+			blocksCodec.getDeclaringClass().getName()};
+	}
+
+	/** Returns the IterablePosting class that reads postings of this scheme */
+	public Class<? extends IterablePosting> getPostingIteratorClass()
+	{
+		return fieldCount > 0 
+			? blocks ? BlockFieldIntegerCodingIterablePosting.class : FieldIntegerCodingIterablePosting.class 
+			: blocks ? BlockIntegerCodingIterablePosting.class : BasicIntegerCodingIterablePosting.class;
+	}
+	
+	/** Makes a posting iterator for a list of this scheme 
+	 * @param in where to read the postings from, positioned at the start of the list
+	 * @param numEntries number of postings in the list
+	 * @param doi document index for the posting iterator
+	 */
+	public IterablePosting newPostingIterator(ByteIn in, int numEntries, DocumentIndex doi) throws IOException
+	{
+		try{
+			if (fieldCount > 0)
+				return blocks
+					? new BlockFieldIntegerCodingIterablePosting(in, numEntries, doi, chunkSize, fieldCount, newIdsCodec(), newTfsCodec(), newFieldsCodec(), newBlocksCodec())
+					: new FieldIntegerCodingIterablePosting(in, numEntries, doi, chunkSize, fieldCount, newIdsCodec(), newTfsCodec(), newFieldsCodec());
+			return blocks
+				? new BlockIntegerCodingIterablePosting(in, numEntries, doi, chunkSize, newIdsCodec(), newTfsCodec(), newBlocksCodec())
+				: new BasicIntegerCodingIterablePosting(in, numEntries, doi, chunkSize, newIdsCodec(), newTfsCodec());
+		} catch (IllegalArgumentException e) {
+			throw new WrappedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,705 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PostingListCache.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.postings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.DocumentIndexEntry;
+import org.terrier.structures.FieldDocumentIndex;
+import org.terrier.structures.FieldDocumentIndexEntry;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.utility.ApplicationSetup;
+
+/** A cache of decoded posting lists for frequently accessed terms, shared by all queries 
+ * on the same inverted index, such that the posting lists of head terms are not decompressed
+ * for every query. Cached posting lists are held as arrays of ids, frequencies, and (where present)
+ * field frequencies and positions - document lengths are still obtained from the document index.
+ * Each access to the cache hands out a new IterablePosting view, which supports skipping 
+ * using <tt>next(int)</tt>. The maximum frequency of each block of {@value #BLOCK_SIZE} postings 
+ * is also kept, such that the views are {@link BlockMaxIterablePosting}s for block-max dynamic pruning.
+ * <p>
+ * Accesses are recorded by a count-min sketch, which is periodically halved. A posting list is only
+ * admitted if its term has at least <tt>postinglist.cache.min.df</tt> postings and has been 
+ * accessed at least <tt>postinglist.cache.min.accesses</tt> times. When the cache is full, cached 
+ * posting lists accessed less frequently than the candidate are evicted, least frequent first; 
+ * if these do not free enough space, the candidate is rejected. Cached posting lists are kept
+ * ordered by their access frequency when last examined, and are only reordered when they are found
+ * to have been accessed since, or when the sketch is halved.
+ * <p>
+ * The cache is used by {@link org.terrier.matching.PostingListManager} for indices on disk only, 
+ * as the posting lists of updatable indices may change.
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>postinglist.cache.max.bytes</tt> - the maximum size of the cache in bytes. Defaults to 0, i.e. disabled.</li>
+ * <li><tt>postinglist.cache.min.df</tt> - the minimum number of postings for a posting list to be cached. Defaults to 1000.</li>
+ * <li><tt>postinglist.cache.min.accesses</tt> - the minimum number of accesses of a posting list before it is cached. Defaults to 2.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class PostingListCache
+{
+	protected static final Logger logger = LoggerFactory.getLogger(PostingListCache.class);
+	
+	/** number of postings in each block for which the maximum frequency is recorded */
+	public static final int BLOCK_SIZE = 128;
+	
+	/** caches for each inverted index */
+	static final Map<PostingIndex<?>, PostingListCache> CACHES = new WeakHashMap<>();
+	
+	/** Returns the posting list cache for the inverted index of the specified index, 
+	 * or null if posting list caching is disabled, or not supported for this index. */
+	public static PostingListCache get(Index index)
+	{
+		if (! (index instanceof IndexOnDisk))
+			return null;
+		final long maxBytes = Long.parseLong(ApplicationSetup.getProperty("postinglist.cache.max.bytes", "0"));
+		if (maxBytes <= 0)
+			return null;
+		final PostingIndex<?> inv = index.getInvertedIndex();
+		if (inv == null)
+			return null;
+		synchronized (CACHES) {
+			PostingListCache cache = CACHES.get(inv);
+			if (cache == null)
+			{
+				cache = new PostingListCache(index.getDocumentIndex(), maxBytes, 
+					Integer.parseInt(ApplicationSetup.getProperty("postinglist.cache.min.df", "1000")),
+					Integer.parseInt(ApplicationSetup.getProperty("postinglist.cache.min.accesses", "2")));
+				CACHES.put(inv, cache);
+				logger.info("Caching posting lists of " + index + " in at most " + maxBytes + " bytes");
+			}
+			return cache;
+		}
+	}
+	
+	/** Returns the inverted index of the specified index, which is backed by the posting
+	 * list cache if this is enabled. */
+	@SuppressWarnings("unchecked")
+	public static PostingIndex<Pointer> getPostingIndex(Index index)
+	{
+		final PostingIndex<Pointer> inv = (PostingIndex<Pointer>) index.getInvertedIndex();
+		final PostingListCache cache = get(index);
+		if (cache == null)
+			return inv;
+		return new CachingPostingIndex(inv, cache);
+	}
+	
+	/** A view of an inverted index, that obtains posting lists from the cache where possible */
+	static class CachingPostingIndex implements PostingIndex<Pointer>
+	{
+		final PostingIndex<Pointer> parent;
+		final PostingListCache cache;
+		
+		CachingPostingIndex(PostingIndex<Pointer> _parent, PostingListCache _cache)
+		{
+			parent = _parent;
+			cache = _cache;
+		}
+		
+		@Override
+		public IterablePosting getPostings(Pointer pointer) throws IOException {
+			return cache.getPostings(parent, pointer);
+		}
+		
+		/** Does nothing - the underlying inverted index belongs to its index */
+		@Override
+		public void close() {}
+	}
+	
+	/** A count-min sketch of access frequencies, which is halved every 10 x width additions */
+	static final class FrequencySketch
+	{
+		static final long[] SEEDS = new long[]{0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+		final int[] counters;
+		final int mask;
+		final int sampleSize;
+		int additions = 0;
+		/** number of times the sketch has been halved */
+		volatile int resets = 0;
+		
+		FrequencySketch(int width)
+		{
+			counters = new int[width * SEEDS.length];
+			mask = width - 1;
+			sampleSize = 10 * width;
+		}
+		
+		int index(long key, int row)
+		{
+			long h = (key + row) * SEEDS[row];
+			h ^= h >>> 32;
+			return row * (mask+1) + ((int)h & mask);
+		}
+		
+		/** records an access, and returns the new estimated frequency */
+		synchronized int increment(long key)
+		{
+			int min = Integer.MAX_VALUE;
+			for(int row=0;row<SEEDS.length;row++)
+				min = Math.min(min, ++counters[index(key, row)]);
+			if (++additions == sampleSize)
+			{
+				for(int i=0;i<counters.length;i++)
+					counters[i] >>>= 1;
+				additions /= 2;
+				resets++;
+			}
+			return min;
+		}
+		
+		synchronized int frequency(long key)
+		{
+			int min = Integer.MAX_VALUE;
+			for(int row=0;row<SEEDS.length;row++)
+				min = Math.min(min, counters[index(key, row)]);
+			return min;
+		}
+	}
+	
+	/** A decoded posting list */
+	static final class Entry
+	{
+		final int[] ids;
+		final int[] tfs;
+		/** field frequencies of each posting, or null if the index has no fields */
+		final int[] fieldTfs;
+		final int fieldCount;
+		/** offsets of the positions of each posting, or null if the index has no blocks */
+		final int[] posOffsets;
+		final int[] positions;
+		/** last id and maximum frequency of each block of postings */
+		final int[] blockLastIds;
+		final int[] blockMaxTfs;
+		final long bytes;
+		/** key of this posting list and order of admission to the cache, set when it is admitted */
+		long key;
+		long seq;
+		/** access frequency of the most recent access */
+		volatile int frequency;
+		/** access frequency by which the entry is ordered for eviction */
+		int orderedFrequency;
+		
+		Entry(int[] _ids, int[] _tfs, int[] _fieldTfs, int _fieldCount, int[] _posOffsets, int[] _positions)
+		{
+			ids = _ids;
+			tfs = _tfs;
+			fieldTfs = _fieldTfs;
+			fieldCount = _fieldCount;
+			posOffsets = _posOffsets;
+			positions = _positions;
+			final int numBlocks = (ids.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			blockLastIds = new int[numBlocks];
+			blockMaxTfs = new int[numBlocks];
+			for(int i=0;i<ids.length;i++)
+			{
+				final int block = i / BLOCK_SIZE;
+				blockLastIds[block] = ids[i];
+				blockMaxTfs[block] = Math.max(blockMaxTfs[block], tfs[i]);
+			}
+			long b = 64 + 4l * (ids.length + tfs.length);
+			b += 32 + 4l * (blockLastIds.length + blockMaxTfs.length);
+			if (fieldTfs != null)
+				b += 16 + 4l * fieldTfs.length;
+			if (posOffsets != null)
+				b += 32 + 4l * (posOffsets.length + positions.length);
+			bytes = b;
+		}
+		
+		int[] getFieldFrequencies(int indice)
+		{
+			return Arrays.copyOfRange(fieldTfs, indice * fieldCount, (indice + 1) * fieldCount);
+		}
+		
+		int[] getPositions(int indice)
+		{
+			return Arrays.copyOfRange(positions, posOffsets[indice], posOffsets[indice+1]);
+		}
+		
+		IterablePosting view(DocumentIndex doi)
+		{
+			if (fieldTfs != null)
+				return posOffsets != null 
+					? new CachedBlockFieldIterablePosting(this, doi) 
+					: new CachedFieldIterablePosting(this, doi);
+			return posOffsets != null 
+				? new CachedBlockIterablePosting(this, doi) 
+				: new CachedIterablePosting(this, doi);
+		}
+		
+		/** reads all postings of the specified posting list */
+		static Entry decode(IterablePosting ip, int df) throws IOException
+		{
+			final boolean fields = ip instanceof FieldPosting;
+			final boolean blocks = ip instanceof BlockPosting;
+			int[] ids = new int[df];
+			int[] tfs = new int[df];
+			int[] fieldTfs = null;
+			int fieldCount = 0;
+			int[] posOffsets = blocks ? new int[df+1] : null;
+			int[] positions = blocks ? new int[df] : null;
+			int n = 0;
+			while(ip.next() != IterablePosting.EOL)
+			{
+				if (n == ids.length)
+				{
+					ids = Arrays.copyOf(ids, 2 * n + 1);
+					tfs = Arrays.copyOf(tfs, 2 * n + 1);
+					if (blocks)
+						posOffsets = Arrays.copyOf(posOffsets, 2 * n + 2);
+				}
+				ids[n] = ip.getId();
+				tfs[n] = ip.getFrequency();
+				if (fields)
+				{
+					final int[] ff = ((FieldPosting)ip).getFieldFrequencies();
+					if (fieldTfs == null)
+					{
+						fieldCount = ff.length;
+						fieldTfs = new int[ids.length * fieldCount];
+					}
+					else if (fieldTfs.length < ids.length * fieldCount)
+						fieldTfs = Arrays.copyOf(fieldTfs, ids.length * fieldCount);
+					System.arraycopy(ff, 0, fieldTfs, n * fieldCount, fieldCount);
+				}
+				if (blocks)
+				{
+					final int[] pos = ((BlockPosting)ip).getPositions();
+					final int offset = posOffsets[n];
+					if (offset + pos.length > positions.length)
+						positions = Arrays.copyOf(positions, Math.max(2 * positions.length, offset + pos.length));
+					System.arraycopy(pos, 0, positions, offset, pos.length);
+					posOffsets[n+1] = offset + pos.length;
+				}
+				n++;
+			}
+			ip.close();
+			if (fields && fieldTfs == null)
+				fieldTfs = new int[0];
+			return new Entry(
+				trim(ids, n), 
+				trim(tfs, n), 
+				fields ? trim(fieldTfs, n * fieldCount) : null, 
+				fieldCount, 
+				blocks ? trim(posOffsets, n+1) : null, 
+				blocks ? trim(positions, posOffsets[n]) : null);
+		}
+		
+		static int[] trim(int[] a, int length)
+		{
+			return a.length == length ? a : Arrays.copyOf(a, length);
+		}
+	}
+	
+	/** A view of a cached posting list */
+	static class CachedIterablePosting extends IterablePostingImpl implements BlockMaxIterablePosting
+	{
+		final Entry entry;
+		final DocumentIndex doi;
+		final int[] docLengths;
+		int indice = -1;
+		int id = -1;
+		/** the block at the block cursor, see {@link #nextBlock(int)} */
+		int blockCursor = 0;
+		
+		CachedIterablePosting(Entry _entry, DocumentIndex _doi)
+		{
+			entry = _entry;
+			doi = _doi;
+			docLengths = PostingUtil.getInlineDocumentLengths(_doi);
+		}
+		
+		@Override
+		public int next() {
+			if (++indice >= entry.ids.length)
+			{
+				indice = entry.ids.length;
+				return id = EOL;
+			}
+			return id = entry.ids[indice];
+		}
+		
+		/** Skips to the target using an exponential then a binary search */
+		@Override
+		public int next(int target) {
+			if (id >= target)
+				return id;
+			final int[] ids = entry.ids;
+			int lo = indice + 1;
+			int hi = lo;
+			int step = 1;
+			while(hi < ids.length && ids[hi] < target)
+			{
+				lo = hi + 1;
+				hi = lo + step;
+				step <<= 1;
+			}
+			if (hi > ids.length)
+				hi = ids.length;
+			while(lo < hi)
+			{
+				final int mid = (lo + hi) >>> 1;
+				if (ids[mid] < target)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			indice = lo;
+			if (indice >= ids.length)
+				return id = EOL;
+			return id = ids[indice];
+		}
+		
+		@Override
+		public boolean endOfPostings() {
+			return indice >= entry.ids.length - 1;
+		}
+		
+		@Override
+		public int nextBlock(int targetId) {
+			final int[] lastIds = entry.blockLastIds;
+			int b = blockCursor;
+			while(b < lastIds.length && lastIds[b] < targetId)
+				b++;
+			blockCursor = b;
+			return b < lastIds.length ? lastIds[b] : EOL;
+		}
+		
+		@Override
+		public int getBlockMaxFrequency() {
+			return blockCursor < entry.blockMaxTfs.length ? entry.blockMaxTfs[blockCursor] : 0;
+		}
+		
+		@Override
+		public int getId() {
+			return id;
+		}
+		
+		@Override
+		public int getFrequency() {
+			return entry.tfs[indice];
+		}
+		
+		@Override
+		public int getDocumentLength() {
+			try {
+				return docLengths != null ? docLengths[id] : doi.getDocumentLength(id);
+			} catch (Exception e) {
+				throw new RuntimeException("Unknown problem looking for doclength for document "+ id +" "+ e, e);
+			}
+		}
+		
+		@Override
+		public WritablePosting asWritablePosting() {
+			return new BasicPostingImpl(id, getFrequency());
+		}
+		
+		@Override
+		public void close() {}
+		
+		@Override
+		public String toString() {
+			return "(" + id + "," + getFrequency() + ")";
+		}
+	}
+	
+	static class CachedFieldIterablePosting extends CachedIterablePosting implements FieldPosting
+	{
+		CachedFieldIterablePosting(Entry _entry, DocumentIndex _doi) {
+			super(_entry, _doi);
+		}
+		
+		@Override
+		public int[] getFieldFrequencies() {
+			return entry.getFieldFrequencies(indice);
+		}
+		
+		@Override
+		public int[] getFieldLengths() {
+			try{
+				return doi instanceof FieldDocumentIndex
+					? ((FieldDocumentIndex)doi).getFieldLengths(id)
+					: ((FieldDocumentIndexEntry)doi.getDocumentEntry(id)).getFieldLengths();
+			} catch (IOException ioe) {
+				throw new RuntimeException("Problem looking for field lengths for document "+ id, ioe);
+			}
+		}
+		
+		@Override
+		public void setFieldLengths(int[] newLengths) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public WritablePosting asWritablePosting() {
+			return new FieldPostingImpl(id, getFrequency(), getFieldFrequencies());
+		}
+	}
+	
+	static class CachedBlockIterablePosting extends CachedIterablePosting implements BlockPosting
+	{
+		CachedBlockIterablePosting(Entry _entry, DocumentIndex _doi) {
+			super(_entry, _doi);
+		}
+		
+		@Override
+		public int[] getPositions() {
+			return entry.getPositions(indice);
+		}
+		
+		@Override
+		public WritablePosting asWritablePosting() {
+			return new BlockPostingImpl(id, getFrequency(), getPositions());
+		}
+	}
+	
+	static class CachedBlockFieldIterablePosting extends CachedFieldIterablePosting implements BlockPosting
+	{
+		CachedBlockFieldIterablePosting(Entry _entry, DocumentIndex _doi) {
+			super(_entry, _doi);
+		}
+		
+		@Override
+		public int[] getPositions() {
+			return entry.getPositions(indice);
+		}
+		
+		@Override
+		public WritablePosting asWritablePosting() {
+			return new BlockFieldPostingImpl(id, getFrequency(), getPositions(), getFieldFrequencies());
+		}
+	}
+	
+	final DocumentIndex doi;
+	final long maxBytes;
+	final int minDf;
+	final int minAccesses;
+	final Map<Long,Entry> entries = new ConcurrentHashMap<>();
+	/** cached posting lists, least frequently accessed first */
+	final TreeSet<Entry> order = new TreeSet<>(ORDER);
+	/** number of halvings of the sketch when the order was last rebuilt */
+	int orderResets = 0;
+	long admitted = 0;
+	final FrequencySketch sketch = new FrequencySketch(1 << 14);
+	final AtomicLong hits = new AtomicLong();
+	final AtomicLong misses = new AtomicLong();
+	final AtomicLong admissions = new AtomicLong();
+	final AtomicLong rejections = new AtomicLong();
+	final AtomicLong evictions = new AtomicLong();
+	long bytes = 0;
+	
+	static final Comparator<Entry> ORDER = (a, b) -> a.orderedFrequency != b.orderedFrequency 
+		? Integer.compare(a.orderedFrequency, b.orderedFrequency) 
+		: Long.compare(a.seq, b.seq);
+	
+	/** Creates a new posting list cache.
+	 * @param _doi document index to obtain document lengths from
+	 * @param _maxBytes maximum size of the cache in bytes
+	 * @param _minDf minimum number of postings for a posting list to be cached
+	 * @param _minAccesses minimum number of accesses of a posting list before it is cached
+	 */
+	public PostingListCache(DocumentIndex _doi, long _maxBytes, int _minDf, int _minAccesses)
+	{
+		doi = _doi;
+		maxBytes = _maxBytes;
+		minDf = _minDf;
+		minAccesses = _minAccesses;
+	}
+	
+	static long key(BitIndexPointer pointer)
+	{
+		return ((long)pointer.getFileNumber() << 59) | (pointer.getOffset() << 3) | pointer.getOffsetBits();
+	}
+	
+	/** Returns the postings for the specified pointer, from the cache if possible, 
+	 * or otherwise from the specified posting index. */
+	public IterablePosting getPostings(PostingIndex<Pointer> parent, Pointer pointer) throws IOException
+	{
+		//only inverted index pointers are supported - the direct index uses DocumentIndexEntry pointers
+		if (! (pointer instanceof BitIndexPointer) || pointer instanceof DocumentIndexEntry)
+			return parent.getPostings(pointer);
+		final int df = pointer.getNumberOfEntries();
+		if (df < minDf)
+			return parent.getPostings(pointer);
+		
+		final long key = key((BitIndexPointer)pointer);
+		final int frequency = sketch.increment(key);
+		Entry e = entries.get(key);
+		if (e != null)
+		{
+			hits.incrementAndGet();
+			e.frequency = frequency;
+			return e.view(doi);
+		}
+		misses.incrementAndGet();
+		//the estimate assumes at least an id and a frequency for each posting
+		if (frequency < minAccesses || getVictims(frequency, 64 + 8l * df) == null)
+			return parent.getPostings(pointer);
+		e = Entry.decode(parent.getPostings(pointer), df);
+		admit(key, e, frequency);
+		return e.view(doi);
+	}
+	
+	/** Returns the cached posting lists that should be evicted to make space for an entry of the 
+	 * specified size and access frequency, or null if it cannot be admitted */
+	synchronized List<Entry> getVictims(int frequency, long size)
+	{
+		final List<Entry> victims = new ArrayList<>();
+		if (size > maxBytes)
+			return null;
+		long needed = bytes + size - maxBytes;
+		if (needed <= 0)
+			return victims;
+		if (orderResets != sketch.resets)
+			reorder();
+		Entry e = order.isEmpty() ? null : order.first();
+		while(e != null && e.orderedFrequency < frequency)
+		{
+			Entry next = order.higher(e);
+			final int f = e.frequency;
+			if (f > e.orderedFrequency)
+			{
+				//accessed since it was ordered, so move it towards the end
+				order.remove(e);
+				e.orderedFrequency = f;
+				order.add(e);
+				if (next == null || ORDER.compare(e, next) < 0)
+					next = e;
+			}
+			else
+			{
+				victims.add(e);
+				needed -= e.bytes;
+				if (needed <= 0)
+					return victims;
+			}
+			e = next;
+		}
+		return null;
+	}
+	
+	/** orders the cached posting lists by their access frequencies after the sketch is halved */
+	void reorder()
+	{
+		orderResets = sketch.resets;
+		order.clear();
+		for(Entry e : entries.values())
+		{
+			e.frequency = e.orderedFrequency = sketch.frequency(e.key);
+			order.add(e);
+		}
+	}
+	
+	synchronized void admit(long key, Entry e, int frequency)
+	{
+		if (entries.containsKey(key))
+			return;
+		final List<Entry> victims = getVictims(frequency, e.bytes);
+		if (victims == null)
+		{
+			rejections.incrementAndGet();
+			return;
+		}
+		for(Entry victim : victims)
+		{
+			order.remove(victim);
+			entries.remove(victim.key);
+			bytes -= victim.bytes;
+			evictions.incrementAndGet();
+		}
+		e.key = key;
+		e.seq = admitted++;
+		e.frequency = e.orderedFrequency = frequency;
+		order.add(e);
+		entries.put(key, e);
+		bytes += e.bytes;
+		admissions.incrementAndGet();
+	}
+	
+	/** Removes all cached posting lists */
+	public synchronized void clear()
+	{
+		entries.clear();
+		order.clear();
+		bytes = 0;
+	}
+	
+	/** Returns the number of posting lists obtained from the cache */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/** Returns the number of cacheable posting lists that were not in the cache */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/** Returns the number of posting lists added to the cache */
+	public long getAdmissions() {
+		return admissions.get();
+	}
+	
+	/** Returns the number of decoded posting lists that could not be added to the cache */
+	public long getRejections() {
+		return rejections.get();
+	}
+	
+	/** Returns the number of posting lists evicted from the cache */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	/** Returns the number of cached posting lists */
+	public int size() {
+		return entries.size();
+	}
+	
+	/** Returns the estimated size of the cached posting lists, in bytes */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+	
+	@Override
+	public String toString() {
+		return "PostingListCache: " + size() + " posting lists in " + getBytes() + "/" + maxBytes + " bytes, "
+			+ getHits() + " hits, " + getMisses() + " misses, " + getAdmissions() + " admissions, " 
+			+ getRejections() + " rejections, " + getEvictions() + " evictions";
+	}
+}
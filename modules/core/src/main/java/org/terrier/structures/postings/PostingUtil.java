@@ -26,6 +26,7 @@
 package org.terrier.structures.postings;
 
 import org.terrier.structures.*;
+import org.terrier.utility.ApplicationSetup;
 
 import gnu.trove.TIntArrayList;
 
@@ -37,6 +38,25 @@ import java.io.IOException;
  */
 public class PostingUtil {
 
+	/** Whether posting iterators read document lengths directly from the array of a 
+	 * {@link DocumentLengthArray} document index, rather than calling 
+	 * {@link DocumentIndex#getDocumentLength(int)} for each posting. Set by the 
+	 * <tt>postings.inline.doclengths</tt> property, default true.
+	 * @since 5.8
+	 */
+	public static boolean INLINE_DOCUMENT_LENGTHS = Boolean.parseBoolean(ApplicationSetup.getProperty("postings.inline.doclengths", "true"));
+	
+	/** Returns the document lengths array that a posting iterator should read document lengths
+	 * from, or null if lengths should be obtained from the document index.
+	 * @since 5.8
+	 */
+	public static int[] getInlineDocumentLengths(DocumentIndex doi)
+	{
+		if (INLINE_DOCUMENT_LENGTHS && doi instanceof DocumentLengthArray)
+			return ((DocumentLengthArray)doi).getDocumentLengths();
+		return null;
+	}
+
 	public static class DocidSpecificDocumentIndex implements FieldDocumentIndex {
 		DocumentIndexEntry die;
 		DocumentIndex di;
@@ -39,6 +39,7 @@ import org.terrier.compression.bit.BitIn;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.postings.BasicPostingImpl;
 import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.PostingUtil;
 import org.terrier.structures.postings.WritablePosting;
 
 @SuppressWarnings("serial")
@@ -48,6 +49,8 @@ public class BasicIterablePosting extends BasicPostingImpl implements IterablePo
 	
 	protected BitIn bitFileReader;
 	protected DocumentIndex doi;
+	/** document lengths read directly when available, see {@link PostingUtil#getInlineDocumentLengths(DocumentIndex)} */
+	protected int[] docLengths;
 	
 	/**
 	 * Empty constructor used ONLY for reflection
@@ -69,6 +72,7 @@ public class BasicIterablePosting extends BasicPostingImpl implements IterablePo
 	{
 		bitFileReader = _bitFileReader;
 		doi = _doi;
+		docLengths = PostingUtil.getInlineDocumentLengths(_doi);
 		numEntries = _numEntries;
 	}
 
@@ -82,7 +86,7 @@ public class BasicIterablePosting extends BasicPostingImpl implements IterablePo
 	public int getDocumentLength()
 	{
 		try {
-			return doi.getDocumentLength(id);
+			return docLengths != null ? docLengths[id] : doi.getDocumentLength(id);
 		} catch (ArrayIndexOutOfBoundsException aioobe) {
 			throw new RuntimeException("Problem looking for doclength for document "+ id + " -- docid out of bounds, possible (concurrent?) decompression error when reading from " + bitFileReader, aioobe);
 		} catch (Exception e) {
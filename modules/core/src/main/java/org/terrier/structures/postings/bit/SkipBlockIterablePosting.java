@@ -0,0 +1,90 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is SkipBlockIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.postings.bit;
+
+import java.io.IOException;
+
+import org.terrier.compression.bit.BitIn;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.postings.BlockMaxIterablePosting;
+
+/** 
+ * A posting iterator for block (positions) postings written in the skip format described in {@link SkipTable}.
+ * next(int) uses the skip table to jump over blocks of postings that cannot contain the target.
+ * @since 5.8
+ */
+public class SkipBlockIterablePosting extends BlockIterablePosting implements BlockMaxIterablePosting
+{
+	private static final long serialVersionUID = 1L;
+	/** the skip table of this posting list */
+	protected final SkipTable skips;
+	
+	/**
+	 * Empty constructor used ONLY for reflection
+	 */
+	public SkipBlockIterablePosting()
+	{
+		super();
+		skips = SkipTable.single(0);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param _bitFileReader			The bit file where we read the postings from
+	 * @param _numEntries				Total number of postings to read before returning EOL
+	 * @param _doi						The document index to get the doc length of the current docid
+	 * @throws IOException
+	 */
+	public SkipBlockIterablePosting(BitIn _bitFileReader, int _numEntries, DocumentIndex _doi) throws IOException
+	{
+		super(_bitFileReader, _numEntries, _doi);
+		skips = SkipTable.read(_bitFileReader, _numEntries);
+	}
+	
+	@Override
+	public int next(int target) throws IOException
+	{
+		final int block = skips.skip(bitFileReader, target, numEntries);
+		if (block >= 0)
+		{
+			id = skips.getPreviousId(block);
+			numEntries = skips.getRemainingEntries(block);
+		}
+		return super.next(target);
+	}
+	
+	@Override
+	public int nextBlock(int targetId)
+	{
+		return skips.nextBlock(targetId);
+	}
+
+	@Override
+	public int getBlockMaxFrequency()
+	{
+		return skips.getBlockMaxFrequency();
+	}
+}
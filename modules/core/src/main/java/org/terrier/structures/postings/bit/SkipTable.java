@@ -0,0 +1,205 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is SkipTable.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.postings.bit;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terrier.compression.bit.BitIn;
+import org.terrier.structures.postings.IterablePosting;
+
+/** 
+ * The skip table found at the start of each posting list written in the skip format,
+ * as written by <tt>org.terrier.structures.bit.SkipDirectInvertedOutputStream</tt>. 
+ * In this format, the postings of each list are divided into blocks of a fixed number of 
+ * postings, and the skip table records for each block the last id, the number of bits 
+ * occupied by the block, and optionally the maximum frequency in the block. This allows 
+ * next(int) to jump over whole blocks of postings without decoding them.
+ * <p>
+ * The format of a posting list is as follows:
+ * <pre>
+ * binary(1)            1 if a skip table follows, 0 otherwise
+ * gamma(numBlocks)     } 
+ * gamma(blockSize)     } 
+ * binary(1)            } 1 if block maximum frequencies are recorded
+ * for each block b:    }
+ *   gamma(lastId[b] - lastId[b-1])  (lastId[-1] = -1)
+ *   gamma(maxTf[b])                 (if recorded)
+ *   gamma(bits[b])                  (except for the last block)
+ * postings, as written by the underlying posting format
+ * </pre>
+ * The docids of the postings remain gap-encoded across block boundaries, such that the
+ * first posting of a block is relative to the last id of the previous block.
+ * Lists without a skip table form a single block with unknown last id.
+ * 
+ * @since 5.8
+ */
+public final class SkipTable {
+
+	/** number of postings in the list */
+	final int numEntries;
+	/** number of blocks in the list */
+	final int numBlocks;
+	/** number of postings in each block, except the last */
+	final int blockSize;
+	/** last id of each block */
+	final int[] lastIds;
+	/** maximum frequency in each block, or null if not recorded */
+	final int[] maxFrequencies;
+	/** absolute bit offset of the start of each block */
+	final long[] blockOffsets;
+	/** the block cursor used by {@link #nextBlock(int)} */
+	int blockCursor = 0;
+	
+	SkipTable(int _numEntries, int _numBlocks, int _blockSize, int[] _lastIds, int[] _maxFrequencies, long[] _blockOffsets)
+	{
+		this.numEntries = _numEntries;
+		this.numBlocks = _numBlocks;
+		this.blockSize = _blockSize;
+		this.lastIds = _lastIds;
+		this.maxFrequencies = _maxFrequencies;
+		this.blockOffsets = _blockOffsets;
+	}
+	
+	/** Returns a table for a posting list without skip information. */
+	static SkipTable single(int numEntries)
+	{
+		return new SkipTable(numEntries, 1, Math.max(1, numEntries), 
+			new int[]{IterablePosting.EOL - 1}, null, new long[]{0});
+	}
+	
+	/** 
+	 * Reads the skip table at the current position of the specified BitIn, which
+	 * is left positioned at the first posting. 
+	 * @param in where to read the posting list from
+	 * @param numEntries number of postings in the list
+	 */
+	public static SkipTable read(BitIn in, int numEntries) throws IOException
+	{
+		if (numEntries == 0 || in.readBinary(1) == 0)
+			return single(numEntries);
+		final int numBlocks = in.readGamma();
+		final int blockSize = in.readGamma();
+		final boolean hasMaxFrequencies = in.readBinary(1) == 1;
+		final int[] lastIds = new int[numBlocks];
+		final int[] maxFrequencies = hasMaxFrequencies ? new int[numBlocks] : null;
+		final long[] blockOffsets = new long[numBlocks];
+		int lastId = -1;
+		for(int b=0;b<numBlocks;b++)
+		{
+			lastIds[b] = lastId += in.readGamma();
+			if (hasMaxFrequencies)
+				maxFrequencies[b] = in.readGamma();
+			if (b < numBlocks -1)
+				blockOffsets[b+1] = blockOffsets[b] + in.readGamma();
+		}
+		final long start = getBitPosition(in);
+		for(int b=0;b<numBlocks;b++)
+			blockOffsets[b] += start;
+		return new SkipTable(numEntries, numBlocks, blockSize, lastIds, maxFrequencies, blockOffsets);
+	}
+	
+	static long getBitPosition(BitIn in)
+	{
+		return in.getByteOffset() * 8l + in.getBitOffset();
+	}
+	
+	/** 
+	 * Moves the specified BitIn to the start of the block which may contain the target id,
+	 * if this block is after the block of the next posting to be decoded.
+	 * @param in BitIn positioned at the next posting to be decoded
+	 * @param target id being sought
+	 * @param remainingEntries number of postings not yet decoded
+	 * @return the block now positioned at, -1 if no skip was made, or the number of
+	 * blocks if the target is after the last block.
+	 */
+	public int skip(BitIn in, int target, int remainingEntries) throws IOException
+	{
+		if (remainingEntries <= 0)
+			return -1;
+		final int current = (numEntries - remainingEntries) / blockSize;
+		if (lastIds[current] >= target)
+			return -1;
+		final int block = findBlock(target, current+1);
+		if (block < numBlocks)
+		{
+			long bits = blockOffsets[block] - getBitPosition(in);
+			while (bits > Integer.MAX_VALUE)
+			{
+				in.skipBits(Integer.MAX_VALUE);
+				bits -= Integer.MAX_VALUE;
+			}
+			in.skipBits((int)bits);
+		}
+		return block;
+	}
+	
+	/** Returns the first block at or after from whose last id is not less than target. */
+	int findBlock(int target, int from)
+	{
+		if (from >= numBlocks)
+			return numBlocks;
+		final int pos = Arrays.binarySearch(lastIds, from, numBlocks, target);
+		return pos >= 0 ? pos : -pos -1;
+	}
+	
+	/** Returns the id preceding the first posting of the specified block. */
+	public int getPreviousId(int block)
+	{
+		return block == 0 ? -1 : lastIds[block-1];
+	}
+	
+	/** Returns the number of postings from the start of the specified block to the end of the list. */
+	public int getRemainingEntries(int block)
+	{
+		return Math.max(0, numEntries - block * blockSize);
+	}
+	
+	/** 
+	 * Moves the block cursor to the block which would contain the specified id.
+	 * See {@link org.terrier.structures.postings.BlockMaxIterablePosting#nextBlock(int)}. 
+	 */
+	public int nextBlock(int target)
+	{
+		if (blockCursor < numBlocks && lastIds[blockCursor] < target)
+			blockCursor = findBlock(target, blockCursor+1);
+		return blockCursor < numBlocks ? lastIds[blockCursor] : IterablePosting.EOL;
+	}
+	
+	/** Returns the maximum frequency in the block at the block cursor, or 
+	 * Integer.MAX_VALUE if block maximum frequencies are not recorded. */
+	public int getBlockMaxFrequency()
+	{
+		return maxFrequencies != null && blockCursor < numBlocks 
+			? maxFrequencies[blockCursor] 
+			: Integer.MAX_VALUE;
+	}
+	
+	/** Returns the number of blocks in this posting list */
+	public int getNumberOfBlocks()
+	{
+		return numBlocks;
+	}
+}
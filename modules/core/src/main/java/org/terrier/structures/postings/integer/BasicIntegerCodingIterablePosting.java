@@ -0,0 +1,351 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BasicIntegerCodingIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.postings.integer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.FieldDocumentIndex;
+import org.terrier.structures.FieldDocumentIndexEntry;
+import org.terrier.structures.postings.BasicPostingImpl;
+import org.terrier.structures.postings.BlockMaxIterablePosting;
+import org.terrier.structures.postings.PostingUtil;
+import org.terrier.structures.postings.WritablePosting;
+
+/**
+ * A posting iterator for basic postings (id and frequency) compressed by the integer
+ * compression layer, as written by <tt>org.terrier.structures.integer.IntegerCodingPostingOutputStream</tt>.
+ * The postings of a list are stored in chunks of a fixed number of postings. The list starts with a
+ * header for every chunk - the gap between its last id and that of the previous chunk, its maximum 
+ * frequency and its compressed length in bytes - followed by the compressed chunks. Each 
+ * chunk contains the id gaps, the frequencies, then optionally the frequencies in each field, 
+ * then optionally the number of positions of each posting and the position gaps, each compressed
+ * by an {@link IntegerCodec}.
+ * <p>
+ * A whole chunk is decompressed at a time. next(int) uses the headers to skip over chunks that
+ * cannot contain the target without decompressing them. The headers also provide the maximum 
+ * frequency of each chunk for block-max dynamic pruning.
+ * <p>
+ * This class also implements the decoding of fields and positions for its subclasses.
+ * 
+ * @since 5.8
+ */
+public class BasicIntegerCodingIterablePosting extends BasicPostingImpl implements BlockMaxIterablePosting
+{
+	private static final long serialVersionUID = 1L;
+	
+	protected final ByteIn input;
+	protected final DocumentIndex doi;
+	/** document lengths read directly when available, see {@link PostingUtil#getInlineDocumentLengths(DocumentIndex)} */
+	protected final int[] docLengths;
+	/** total number of postings in this list */
+	protected final int numEntries;
+	/** maximum number of postings in each chunk */
+	protected final int chunkSize;
+	protected final IntegerCodec idsCodec;
+	protected final IntegerCodec tfsCodec;
+	protected final IntegerCodec fieldsCodec;
+	protected final IntegerCodec blocksCodec;
+	protected final int fieldCount;
+	
+	/** number of chunks in this list */
+	protected final int numChunks;
+	/** last id of each chunk */
+	protected final int[] chunkLastIds;
+	/** maximum frequency in each chunk */
+	protected final int[] chunkMaxFrequencies;
+	/** compressed length of each chunk */
+	protected final int[] chunkBytes;
+	
+	/** the chunk currently decompressed, -1 before the first */
+	protected int chunk = -1;
+	/** the number of postings in the current chunk */
+	protected int chunkEntries = 0;
+	/** the position of the current posting in the current chunk */
+	protected int chunkPosition = -1;
+	/** the chunk at the block cursor, see {@link #nextBlock(int)} */
+	protected int blockCursor = 0;
+	
+	protected final int[] ids;
+	protected final int[] tfs;
+	/** frequency in each field of each posting of the current chunk, indexed by field */
+	protected final int[][] fieldTfs;
+	/** number of positions of each posting of the current chunk, then the offset of its positions */
+	protected final int[] positionCounts;
+	protected final int[] positionOffsets;
+	protected int[] positions;
+	
+	protected final boolean doiIsFieldDocumentIndex;
+	protected final FieldDocumentIndex fdoi;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param _input		Where to read the postings from
+	 * @param _numEntries	Total number of postings to read before returning EOL
+	 * @param _doi			The document index to get the doc length of the current docid
+	 * @param _chunkSize	The number of postings in each chunk
+	 * @param _idsCodec		The codec used for the id gaps
+	 * @param _tfsCodec		The codec used for the frequencies
+	 * @throws IOException
+	 */
+	public BasicIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, 
+			int _chunkSize, IntegerCodec _idsCodec, IntegerCodec _tfsCodec) throws IOException
+	{
+		this(_input, _numEntries, _doi, _chunkSize, 0, _idsCodec, _tfsCodec, null, null);
+	}
+	
+	protected BasicIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, 
+			int _chunkSize, int _fieldCount,
+			IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec, IntegerCodec _blocksCodec) throws IOException
+	{
+		input = _input;
+		numEntries = _numEntries;
+		doi = _doi;
+		docLengths = PostingUtil.getInlineDocumentLengths(_doi);
+		chunkSize = _chunkSize;
+		fieldCount = _fieldCount;
+		idsCodec = _idsCodec;
+		tfsCodec = _tfsCodec;
+		fieldsCodec = _fieldsCodec;
+		blocksCodec = _blocksCodec;
+		if (doiIsFieldDocumentIndex = doi instanceof FieldDocumentIndex)
+		{
+			fdoi = (FieldDocumentIndex)doi;
+		} else {
+			fdoi = null;
+		}
+		
+		numChunks = (int) (((long)numEntries + chunkSize - 1) / chunkSize);
+		chunkLastIds = new int[numChunks];
+		chunkMaxFrequencies = new int[numChunks];
+		chunkBytes = new int[numChunks];
+		int lastId = -1;
+		for(int c=0;c<numChunks;c++)
+		{
+			chunkLastIds[c] = lastId += input.readVInt();
+			chunkMaxFrequencies[c] = input.readVInt();
+			chunkBytes[c] = input.readVInt();
+		}
+		
+		final int maxChunkEntries = Math.min(chunkSize, numEntries);
+		ids = new int[maxChunkEntries];
+		tfs = new int[maxChunkEntries];
+		fieldTfs = fieldsCodec != null ? new int[fieldCount][maxChunkEntries] : null;
+		if (blocksCodec != null)
+		{
+			positionCounts = new int[maxChunkEntries];
+			positionOffsets = new int[maxChunkEntries+1];
+			positions = new int[maxChunkEntries];
+		} else {
+			positionCounts = positionOffsets = positions = null;
+		}
+	}
+	
+	/** Skips to and decompresses the specified chunk, which must be after the current chunk */
+	protected void decompressChunk(final int c) throws IOException
+	{
+		long skip = 0;
+		for(int i=chunk+1;i<c;i++)
+			skip += chunkBytes[i];
+		if (skip > 0)
+			input.skipBytes(skip);
+		final int n = Math.min(chunkSize, numEntries - c * chunkSize);
+		
+		idsCodec.decompress(input, ids, n);
+		int lastId = c == 0 ? -1 : chunkLastIds[c-1];
+		for(int i=0;i<n;i++)
+			ids[i] = lastId += ids[i];
+		tfsCodec.decompress(input, tfs, n);
+		
+		if (fieldsCodec != null)
+			for(int f=0;f<fieldCount;f++)
+				fieldsCodec.decompress(input, fieldTfs[f], n);
+		
+		if (blocksCodec != null)
+		{
+			blocksCodec.decompress(input, positionCounts, n);
+			int total = 0;
+			for(int i=0;i<n;i++)
+			{
+				positionOffsets[i] = total;
+				total += positionCounts[i];
+			}
+			positionOffsets[n] = total;
+			if (positions.length < total)
+				positions = new int[Math.max(total, 2 * positions.length)];
+			blocksCodec.decompress(input, positions, total);
+			for(int i=0;i<n;i++)
+			{
+				final int end = positionOffsets[i+1];
+				for(int p=positionOffsets[i]+1;p<end;p++)
+					positions[p] += positions[p-1];
+			}
+		}
+		chunk = c;
+		chunkEntries = n;
+	}
+	
+	/** Marks this posting list as exhausted */
+	protected final int endOfList()
+	{
+		chunk = numChunks;
+		chunkEntries = 0;
+		chunkPosition = -1;
+		return id = EOL;
+	}
+
+	@Override
+	public int next() throws IOException 
+	{
+		if (chunkPosition + 1 < chunkEntries)
+		{
+			chunkPosition++;
+		}
+		else
+		{
+			if (chunk + 1 >= numChunks)
+				return endOfList();
+			decompressChunk(chunk + 1);
+			chunkPosition = 0;
+		}
+		tf = tfs[chunkPosition];
+		return id = ids[chunkPosition];
+	}
+	
+	@Override
+	public int next(int target) throws IOException
+	{
+		if (id >= target)
+			return id;
+		if (chunk < 0 || chunk >= numChunks || chunkLastIds[chunk] < target)
+		{
+			if (chunk >= numChunks)
+				return id;
+			//find the first following chunk that may contain the target
+			int c = Arrays.binarySearch(chunkLastIds, chunk + 1, numChunks, target);
+			if (c < 0)
+				c = -(c + 1);
+			if (c == numChunks)
+				return endOfList();
+			decompressChunk(c);
+			chunkPosition = 0;
+		}
+		else
+		{
+			chunkPosition++;
+		}
+		final int[] _ids = ids;
+		int p = chunkPosition;
+		while(_ids[p] < target)
+			p++;
+		chunkPosition = p;
+		tf = tfs[p];
+		return id = _ids[p];
+	}
+	
+	@Override
+	public int nextBlock(int targetId)
+	{
+		int c = blockCursor;
+		while(c < numChunks && chunkLastIds[c] < targetId)
+			c++;
+		blockCursor = c;
+		return c == numChunks ? EOL : chunkLastIds[c];
+	}
+
+	@Override
+	public int getBlockMaxFrequency()
+	{
+		return blockCursor < numChunks ? chunkMaxFrequencies[blockCursor] : 0;
+	}
+	
+	@Override
+	public boolean endOfPostings()
+	{
+		if (id == EOL)
+			return true;
+		final int consumed = chunk < 0 ? 0 : chunk * chunkSize + chunkPosition + 1;
+		return consumed >= numEntries;
+	}
+	
+	@Override
+	public int getDocumentLength()
+	{
+		try {
+			return docLengths != null ? docLengths[id] : doi.getDocumentLength(id);
+		} catch (Exception e) {
+			throw new RuntimeException("Problem looking for doclength for document "+ id +" "+ e, e);
+		}
+	}
+	
+	/** Copies the frequencies in each field of the current posting into the specified array */
+	protected void copyFieldFrequencies(int[] dest)
+	{
+		for(int f=0;f<fieldCount;f++)
+			dest[f] = fieldTfs[f][chunkPosition];
+	}
+	
+	/** Returns the positions of the current posting in a new array */
+	protected int[] getCurrentPositions()
+	{
+		return Arrays.copyOfRange(positions, positionOffsets[chunkPosition], positionOffsets[chunkPosition+1]);
+	}
+	
+	/** Returns the length of each field of the current document */
+	protected int[] getCurrentFieldLengths()
+	{
+		try{
+			return doiIsFieldDocumentIndex
+				? fdoi.getFieldLengths(id)
+				: ((FieldDocumentIndexEntry)doi.getDocumentEntry(id)).getFieldLengths();
+		} catch (IOException ioe) {
+			throw new RuntimeException("Problem looking for field lengths for document "+ id, ioe);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException 
+	{
+		//// does not close the underlying file, just the read buffer
+		input.close();
+	}
+	
+	@Override
+	public WritablePosting asWritablePosting() 
+	{
+		return new BasicPostingImpl(id, tf);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "ID(" + id + ") TF(" + tf + ")";
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BlockIntegerCodingIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.postings.integer;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.BlockPostingImpl;
+import org.terrier.structures.postings.WritablePosting;
+import org.terrier.utility.ArrayUtils;
+
+/** A posting iterator for block postings compressed by the integer compression layer.
+ * @see BasicIntegerCodingIterablePosting
+ * @since 5.8
+ */
+public class BlockIntegerCodingIterablePosting extends BasicIntegerCodingIterablePosting implements BlockPosting 
+{
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param _input		Where to read the postings from
+	 * @param _numEntries	Total number of postings to read before returning EOL
+	 * @param _doi			The document index to get the doc length of the current docid
+	 * @param _chunkSize	The number of postings in each chunk
+	 * @param _idsCodec		The codec used for the id gaps
+	 * @param _tfsCodec		The codec used for the frequencies
+	 * @param _blocksCodec	The codec used for the positions
+	 * @throws IOException
+	 */
+	public BlockIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, 
+			int _chunkSize, IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _blocksCodec) throws IOException
+	{
+		super(_input, _numEntries, _doi, _chunkSize, 0, _idsCodec, _tfsCodec, null, _blocksCodec);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int[] getPositions() {
+		return getCurrentPositions();
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public WritablePosting asWritablePosting()
+	{	
+		return new BlockPostingImpl(id, tf, getCurrentPositions());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + id + "," + tf + ",B[" + ArrayUtils.join(getPositions(), ",") + "])";
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is FieldIntegerCodingIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.structures.postings.integer;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.FieldPostingImpl;
+import org.terrier.structures.postings.WritablePosting;
+import org.terrier.utility.ArrayUtils;
+
+/** A posting iterator for field postings compressed by the integer compression layer.
+ * @see BasicIntegerCodingIterablePosting
+ * @since 5.8
+ */
+public class FieldIntegerCodingIterablePosting extends BasicIntegerCodingIterablePosting implements FieldPosting 
+{
+	private static final long serialVersionUID = 1L;
+	/** frequency in each field of the current posting */
+	protected final int[] fieldFrequencies;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param _input		Where to read the postings from
+	 * @param _numEntries	Total number of postings to read before returning EOL
+	 * @param _doi			The document index to get the doc and field lengths of the current docid
+	 * @param _chunkSize	The number of postings in each chunk
+	 * @param _fieldCount	The number of fields
+	 * @param _idsCodec		The codec used for the id gaps
+	 * @param _tfsCodec		The codec used for the frequencies
+	 * @param _fieldsCodec	The codec used for the field frequencies
+	 * @throws IOException
+	 */
+	public FieldIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, 
+			int _chunkSize, int _fieldCount, IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec) throws IOException
+	{
+		super(_input, _numEntries, _doi, _chunkSize, _fieldCount, _idsCodec, _tfsCodec, _fieldsCodec, null);
+		fieldFrequencies = new int[_fieldCount];
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int[] getFieldFrequencies() {
+		copyFieldFrequencies(fieldFrequencies);
+		return fieldFrequencies;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int[] getFieldLengths() {
+		return getCurrentFieldLengths();
+	}
+
+	/** {@inheritDoc}.
+	 * This operation is unsupported. */
+	@Override
+	public void setFieldLengths(int[] newLengths) {
+		throw new UnsupportedOperationException();
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public WritablePosting asWritablePosting()
+	{	
+		FieldPostingImpl fbp = new FieldPostingImpl(id, tf, fieldCount);
+		copyFieldFrequencies(fbp.getFieldFrequencies());
+		return fbp;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + id + "," + tf + ",F[" + ArrayUtils.join(getFieldFrequencies(), ",") + "])";
+	}
+}
@@ -24,6 +24,7 @@
  *   Craig Macdonald (craigm{at}dcs.gla.ac.uk)
  */
 package org.terrier.utility.io;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -65,14 +66,22 @@ public class LocalFileSystem implements FileSystem, FSCapability
 		}
 
 		public void readFullyDirect(byte[] dst, long offset, int length) throws IOException {
-			ByteBuffer buf = ByteBuffer.wrap(dst);
+			ByteBuffer buf = ByteBuffer.wrap(dst, 0, length);
 			int read = 0;
 			while (read < length) {
 				int bytes = channel.read(buf, offset);
+				if (bytes < 0)
+					throw new EOFException();
 				read += bytes;
 				offset += bytes;				
 			}
 		}
+
+		/** {@inheritDoc} Always true, as positional reads on the channel do not use the file pointer. */
+		@Override
+		public boolean isReadFullyDirectConcurrent() {
+			return true;
+		}
 	}
 
 	protected String normalise(String filename)
@@ -44,5 +44,13 @@ public interface RandomDataInput extends DataInput, java.io.Closeable
 		seek(offset);
 		readFully(dst, 0, length);
 	}
+	
+	/** Returns true if {@link #readFullyDirect(byte[], long, int)} does not use the file
+	 * pointer, and hence can be called by several threads at once. Defaults to false.
+	 * @since 5.8
+	 */
+	default boolean isReadFullyDirectConcurrent() {
+		return false;
+	}
 }
 
@@ -0,0 +1,294 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is RandomDataInputMapped.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.utility.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.terrier.utility.Files;
+
+/** Implements a RandomDataInput backed by memory mapped segments of a file,
+ * such that files larger than 2GB can be accessed. The segments are shared 
+ * by all clones of an instance. The positional methods {@link #get(long)} and 
+ * {@link #readFullyDirect(byte[], long, int)} do not alter any state, and hence 
+ * can be used by many threads concurrently without locking. The sequential 
+ * DataInput methods use a file pointer that is specific to each instance, 
+ * so each thread should {@link #clone()} its own instance to use them.
+ * <p>Only files on the local file system can be mapped. The mapping is released 
+ * by the garbage collector once no instances remain, so close() has no effect.
+ * @since 5.8
+ */
+public class RandomDataInputMapped implements RandomDataInput, Cloneable {
+	
+	/** default size of each mapped segment, as a power of two: 1GB */
+	public static final int DEFAULT_SEGMENT_BITS = 30;
+	
+	/** the mapped segments of the file */
+	protected final MappedByteBuffer[] segments;
+	/** the size of each segment, as a power of two */
+	protected final int segmentBits;
+	/** mask to obtain the offset within a segment */
+	protected final long segmentMask;
+	/** the length of the file */
+	protected final long length;
+	/** the file pointer of this instance */
+	protected long pos = 0;
+	
+	/** Maps the specified file, using segments of 1GB */
+	public RandomDataInputMapped(String filename) throws IOException
+	{
+		this(filename, DEFAULT_SEGMENT_BITS);
+	}
+	
+	/** Maps the specified file, using segments of 2^segmentBits bytes */
+	public RandomDataInputMapped(String filename, int _segmentBits) throws IOException
+	{
+		if (_segmentBits < 1 || _segmentBits > 30)
+			throw new IllegalArgumentException("segmentBits must be between 1 and 30, was " + _segmentBits);
+		this.segmentBits = _segmentBits;
+		this.segmentMask = (1L << segmentBits) -1L;
+		RandomDataInput rdi = Files.openFileRandom(filename);
+		if (! (rdi instanceof RandomAccessFile))
+		{
+			rdi.close();
+			throw new IOException("Cannot memory map " + filename + " as it is not on the local file system");
+		}
+		try(FileChannel channel = ((RandomAccessFile)rdi).getChannel())
+		{
+			this.length = channel.size();
+			final int numSegments = (int) ((length + segmentMask) >>> segmentBits);
+			segments = new MappedByteBuffer[numSegments];
+			for(int i=0;i<numSegments;i++)
+			{
+				final long start = (long)i << segmentBits;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentMask+1L, length - start));
+			}
+		} finally {
+			rdi.close();
+		}
+	}
+	
+	/** Returns the byte at the specified position of the file. This method is thread-safe. */
+	public final byte get(long position)
+	{
+		return segments[(int)(position >>> segmentBits)].get((int)(position & segmentMask));
+	}
+	
+	/** Returns the segment containing the specified position. The 
+	 * returned buffer must not have its position or limit changed. */
+	public final ByteBuffer getSegment(long position)
+	{
+		return segments[(int)(position >>> segmentBits)];
+	}
+	
+	/** Returns the file offset at which the segment containing the specified position starts */
+	public final long getSegmentStart(long position)
+	{
+		return position & ~segmentMask;
+	}
+	
+	/** Reads length bytes at offset into dst. This method is thread-safe. */
+	@Override
+	public void readFullyDirect(byte[] dst, long offset, int len) throws IOException
+	{
+		readFullyDirect(dst, 0, offset, len);
+	}
+	
+	/** {@inheritDoc} Always true. */
+	@Override
+	public boolean isReadFullyDirectConcurrent()
+	{
+		return true;
+	}
+	
+	/** Reads length bytes at offset into dst, starting at dstOffset. This method is thread-safe. */
+	public void readFullyDirect(byte[] dst, int dstOffset, long offset, int len) throws IOException
+	{
+		if (offset + len > length)
+			throw new EOFException("Cannot read " + len + " bytes at offset " + offset + " of file of length " + length);
+		while(len > 0)
+		{
+			//duplicate to obtain a position that is not shared with other threads
+			final ByteBuffer segment = segments[(int)(offset >>> segmentBits)].duplicate();
+			final int segmentOffset = (int)(offset & segmentMask);
+			final int read = Math.min(len, segment.limit() - segmentOffset);
+			segment.position(segmentOffset);
+			segment.get(dst, dstOffset, read);
+			dstOffset += read;
+			offset += read;
+			len -= read;
+		}
+	}
+
+	@Override
+	public long getFilePointer() {
+		return pos;
+	}
+
+	@Override
+	public void seek(long _pos) {
+		this.pos = _pos;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+	
+	/** Does nothing, as the mapping is released by garbage collection */
+	@Override
+	public void close() {}
+	
+	/** Returns a new instance sharing the mapped segments, with its own file pointer */
+	@Override
+	public Object clone()
+	{
+		try{
+			return super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		readFullyDirect(b, off, pos, len);
+		pos += len;
+	}
+
+	@Override
+	public int skipBytes(int n) {
+		final int skip = (int) Math.max(0, Math.min(n, length - pos));
+		pos += skip;
+		return skip;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		if (pos >= length)
+			throw new EOFException();
+		return get(pos++);
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return (short)readUnsignedShort();
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		final int b1 = readUnsignedByte();
+		return (b1 << 8) | readUnsignedByte();
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return (char)readUnsignedShort();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		final int segmentOffset = (int)(pos & segmentMask);
+		if (pos + 4 <= length && segmentOffset + 4 <= segmentMask + 1L)
+		{
+			final ByteBuffer segment = segments[(int)(pos >>> segmentBits)];
+			pos += 4;
+			return segment.getInt(segmentOffset);
+		}
+		//crosses a segment boundary
+		final int s1 = readUnsignedShort();
+		return (s1 << 16) | readUnsignedShort();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		final int segmentOffset = (int)(pos & segmentMask);
+		if (pos + 8 <= length && segmentOffset + 8 <= segmentMask + 1L)
+		{
+			final ByteBuffer segment = segments[(int)(pos >>> segmentBits)];
+			pos += 8;
+			return segment.getLong(segmentOffset);
+		}
+		//crosses a segment boundary
+		final long i1 = readInt();
+		return (i1 << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		if (pos >= length)
+			return null;
+		StringBuilder s = new StringBuilder();
+		while(pos < length)
+		{
+			final char c = (char)readUnsignedByte();
+			if (c == '\n')
+				break;
+			if (c == '\r')
+			{
+				if (pos < length && get(pos) == '\n')
+					pos++;
+				break;
+			}
+			s.append(c);
+		}
+		return s.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+}
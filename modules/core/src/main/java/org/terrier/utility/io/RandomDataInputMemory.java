@@ -308,6 +308,12 @@ public class RandomDataInputMemory extends DataInputStream implements RandomData
     //     return buf.read(dst, offset, length);
     // }
 
+    /** {@inheritDoc} Always true, as the underlying arrays are read at the specified offset. */
+    @Override
+    public boolean isReadFullyDirectConcurrent() {
+        return true;
+    }
+    
     public void readFullyDirect(byte[] dst, long offset, int length) throws IOException {
         int remaining = length;
         int arrayOffset = 0;
@@ -0,0 +1,41 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is DocumentLengthArray.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+/** 
+ * A document index that holds the length of every document in an int array, 
+ * indexed by docid. The array is not modified once the index has been loaded, 
+ * so lengths can be read by many threads without locking, and posting iterators 
+ * can read it directly rather than calling {@link #getDocumentLength(int)} 
+ * for every posting.
+ * @since 5.8
+ */
+public interface DocumentLengthArray extends DocumentIndex {
+	/** 
+	 * Returns the lengths of all documents, indexed by docid. The returned
+	 * array must not be modified.
+	 */
+	int[] getDocumentLengths();
+}
@@ -80,6 +80,23 @@ public abstract class Index implements Closeable
     public void close() throws IOException 
     {}
 
+    /** Called by a Manager before it searches this index on the current thread.
+     * Indices whose structures can change while they are searched, such as an index
+     * whose shards are replaced in the background, use this to present the same 
+     * structures to the whole search, until {@link #endSearch()} is called by the 
+     * same thread. Calls may be nested. Does nothing by default.
+     * @since 5.8
+     */
+    public void beginSearch() 
+    {}
+
+    /** Called by a Manager once a search started by {@link #beginSearch()} has 
+     * finished. Does nothing by default.
+     * @since 5.8
+     */
+    public void endSearch() 
+    {}
+
     protected static IndexRef makeDirectIndexRef(Index index) 
     {
         return new DirectIndexRef(index);
@@ -0,0 +1,59 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BlockMaxIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures.postings;
+
+import java.io.IOException;
+
+/** 
+ * An IterablePosting where the postings are stored in blocks, and the maximum
+ * frequency of the term within each block is known without decoding the block.
+ * This allows block-max dynamic pruning, such as that implemented by 
+ * <tt>org.terrier.matching.daat.BlockMaxWAND</tt>, to skip over blocks of 
+ * postings that cannot contain any competitive document.
+ * <p>
+ * The block cursor is independent of the posting cursor: moving the block cursor
+ * using {@link #nextBlock(int)} does not alter the current posting. 
+ * 
+ * @since 5.8
+ */
+public interface BlockMaxIterablePosting extends IterablePosting
+{
+    /** 
+     * Moves the block cursor to the block which would contain the specified id, 
+     * without decoding any postings. The block cursor never moves backwards.
+     * 
+     * @param targetId id of the posting to find the block of
+     * @return the last id in that block, or EOL if there are no more blocks.
+     * @throws IOException
+     */
+    int nextBlock(int targetId) throws IOException;
+
+    /** 
+     * Returns the maximum frequency of any posting in the block at the block cursor.
+     * 
+     * @return maximum frequency in the current block
+     */
+    int getBlockMaxFrequency();
+}
@@ -33,6 +33,8 @@
 
 package org.terrier.matching.daat;
 
+import java.util.Arrays;
+
 import org.terrier.structures.postings.WritablePosting;
 /** A version of {@link CandidateResult} suitable for use within the Fat framework
  * by {@link FatCandidateResultSet}.
@@ -49,6 +51,13 @@ public class FatCandidateResult extends CandidateResult {
 		postings = new WritablePosting[postingCount];
 	}
 	
+	/** {@inheritDoc}. Also forgets any postings. */
+	@Override
+	public void reset(int id) {
+		super.reset(id);
+		Arrays.fill(postings, null);
+	}
+	
 	public void setPosting(int term, WritablePosting p) {
 		postings[term] = p;
 	}
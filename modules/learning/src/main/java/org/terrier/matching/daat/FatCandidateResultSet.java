@@ -82,6 +82,25 @@ public class FatCandidateResultSet extends CandidateResultSet implements Writabl
 		}
 	}
 
+	/** Make a result set from the candidates of the specified heap, which must have retained 
+	 * its FatCandidateResult objects. The heap is emptied.
+	 * @since 5.8
+	 */
+	public FatCandidateResultSet(CandidateResultHeap heap, CollectionStatistics cs, String[] queryTerms, EntryStatistics[] entryStats, double[] keyFrequency, Set<String>[] tags) {
+		super(heap);
+		postings = new WritablePosting[resultSize][];
+		this.queryTerms = queryTerms;
+		this.entryStats = entryStats;
+		this.keyFrequency = keyFrequency;
+		this.collStats = cs;
+		this.tags = tags;
+		final CandidateResult[] candidates = heap.getCandidates();
+		for(int i=0;i<resultSize;i++)
+		{
+			postings[i] = ((FatCandidateResult) candidates[i]).getPostings();
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Deprecated
 	public FatCandidateResultSet(List<CandidateResult> q, CollectionStatistics cs, String[] queryTerms, EntryStatistics[] entryStats, double[] keyFrequency) {
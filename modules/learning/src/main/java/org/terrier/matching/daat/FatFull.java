@@ -28,7 +28,6 @@
 package org.terrier.matching.daat;
 
 import java.io.IOException;
-import java.util.Queue;
 import java.util.Set;
 
 import org.terrier.matching.FatResultSet;
@@ -85,10 +84,16 @@ public class FatFull extends Full {
 		return new FatCandidateResult(currentDocId, state.plm.getNumTerms());
 	}	
 	
+	/** The FatCandidateResult objects hold the postings of each candidate, so must be retained */
+	@Override
+	protected CandidateResultHeap makeCandidateResultHeap(DAATFullMatchingState state) {
+		return new CandidateResultHeap(state.numberOfRequestedDocuments, true);
+	}
+	
 	@Override
 	protected CandidateResultSet makeResultSet(
 			DAATFullMatchingState state,
-			Queue<CandidateResult> candidateResultList) 
+			CandidateResultHeap candidateResultList) 
 	{
 		PostingListManager plm = state.plm;
 		int terms = plm.getNumTerms();
@@ -28,6 +28,7 @@
 package org.terrier.realtime.incremental;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -51,16 +52,10 @@ public class IncrementalFlushPolicy implements Runnable {
 		this.index = index;
 	}
 
-	/*
-	 * List of indices to flush. (Reference to list in MultiIndex).
-	 */
-	private static List<Index> indices;
-	
 	/**
 	 * Create a new flush thread.
 	 */
 	public static IncrementalFlushPolicy get(String policy, List<Index> indices, IncrementalIndex index) {
-		IncrementalFlushPolicy.indices = indices;
 		if (policy.equals("flushdocs"))
 			return new IncrementalFlushDocs(index);
 		if (policy.equals("flushmem"))
@@ -85,31 +80,35 @@ public class IncrementalFlushPolicy implements Runnable {
 	}
 
 	/**
-	 * Flush contents of in-memory index to disk.
+	 * Flush contents of the most recently filled in-memory index to disk.
 	 */
 	public void run() {
+		List<Index> shards = index.getShards();
+		flush((MemoryIndex) shards.get(shards.size() - 2));
+	}
+
+	/**
+	 * Flush contents of the specified in-memory index to disk, and replace
+	 * it in the incremental index by the resulting on-disk index.
+	 */
+	public void flush(MemoryIndex memory) {
 
 		// Index prefix and prefix ID.
 		String partition = index.prefix + "-"
-				+ index.prefixID;
+				+ index.nextPrefixID();
 
 		// Write in-memory index to disk.
-		// List position indices.size()-2.
 		try {
-			((MemoryIndex) indices.get(indices.size() - 2)).write(
-					index.path, partition);
+			memory.write(index.path, partition);
 		} catch (IOException e) {
-			e.printStackTrace();
+			logger.error("***REALTIME*** IncrementalIndex could not flush: " + partition, e);
+			return;
 		}
-
-		// Increment prefix ID.
-		index.prefixID++;
 		
 		// Update list of indices (replace memory with the disk index).
 		IndexOnDisk indexOnDisk = IndexOnDisk.createIndex(index.path, partition);
-		synchronized (indices) {
-			indices.set(indices.size() - 2, indexOnDisk);
-		}
+		index.addLexiconFilter(indexOnDisk);
+		index.replaceShards(Collections.singletonList(memory), indexOnDisk);
 
 		logger.info("***REALTIME*** IncrementalIndex flushed: " + partition);
 	}
@@ -29,11 +29,21 @@ package org.terrier.realtime.incremental;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,6 +56,8 @@ import org.terrier.realtime.memory.MemoryIndex;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.IndexFactory;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.LexiconBloomFilter;
 import org.terrier.structures.indexing.DocumentPostingList;
 import org.terrier.utility.ApplicationSetup;
 
@@ -56,10 +68,22 @@ import org.terrier.utility.ApplicationSetup;
  * been flushed to disk, optionally the on-disk portion of the incremental index can then be merged
  * together (based upon a MergePolicy) and/or deleted (based upon a DeletePolicy).</p>
  * 
+ * <p>By default, flushes and merges are run by a background thread, one at a time: the full memory
+ * index remains searchable until its on-disk copy replaces it, and merged shards are replaced only
+ * once the merge is complete, so that neither indexing nor retrieval wait for disk writes. If flushes
+ * are slower than indexing, indexing waits once <tt>incremental.background.pending</tt> full memory
+ * indices are waiting to be flushed. Shards that have been merged are deleted once all 
+ * {@link org.terrier.realtime.multi.MultiIndex.ShardSnapshot}s taken before the merge have been closed.</p>
+ * 
  * <p><b>Properties</b></p>
  * <ul><li>incremental.flush: the flush policy to use. Four possible values are supported: noflush (default), flushdocs, flushmem, flushtime</li></ul>
- * <ul><li>incremental.merge: the merge policy to use. Three possible values are supported: nomerge (default), single, geometric</li></ul>
+ * <ul><li>incremental.merge: the merge policy to use. Four possible values are supported: nomerge (default), single, geometric, tiered</li></ul>
  * <ul><li>incremental.delete: the delete policy to use. Two possible values are supported: nodelete (default), deleteFixedSize</li></ul>
+ * <ul><li>incremental.background: whether flushes and merges are run in a background thread. Defaults to true.</li></ul>
+ * <ul><li>incremental.background.pending: the maximum number of full memory indices waiting to be flushed by the 
+ * background thread, after which indexing waits for a flush to complete. Defaults to 2.</li></ul>
+ * <ul><li>incremental.lexicon.bloom: whether a {@link LexiconBloomFilter} is written for each on-disk shard, 
+ * such that lookups of terms skip shards that do not contain them. Defaults to true.</li></ul>
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
@@ -123,6 +147,23 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 	
 	/** A lock that stops multiple indexing operations from happening at once **/
     Object indexingLock = new Object();
+    
+    /** Listeners notified whenever the documents of this index change **/
+    protected final List<Runnable> updateListeners = new CopyOnWriteArrayList<>();
+    
+    /** Runs the flushes and merges one at a time, in the background, or null if these are run by the indexing thread **/
+    protected ExecutorService maintenance;
+    
+    /** Permits for the full memory indices waiting to be flushed by the background thread **/
+    protected final Semaphore pendingFlushes = new Semaphore(
+    		Math.max(1, Integer.parseInt(ApplicationSetup.getProperty("incremental.background.pending", "2"))));
+    
+    /** Whether a Bloom filter of the lexicon is written for each on-disk shard **/
+    protected final boolean lexiconFilters = Boolean.parseBoolean(ApplicationSetup.getProperty("incremental.lexicon.bloom", "true"));
+    
+    /** Shards that have been replaced, and the generation of the shards that replaced them. Each is 
+     * deleted once no snapshot of an older generation of the shards remains open **/
+    protected final Map<IndexOnDisk,Long> retired = new LinkedHashMap<>();
 	
 	
 	/**
@@ -259,10 +300,40 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 		// Delete Policy
 		policy = ApplicationSetup.getProperty("incremental.delete", "nodelete");
 		deletePolicy = IncrementalDeletePolicy.get(policy);
+		
+		if (Boolean.parseBoolean(ApplicationSetup.getProperty("incremental.background", "true")))
+			maintenance = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "IncrementalIndex-maintenance");
+				t.setDaemon(true);
+				return t;
+			});
 
 		logger.info("***REALTIME*** IncrementalIndex (NEW)");
 	}
 
+	/** Adds a listener that is run whenever documents are added to or removed from this index, 
+	 * for instance to invalidate cached results, 
+	 * e.g. <tt>index.addUpdateListener(cache::invalidateAll)</tt>.
+	 * @since 5.8
+	 */
+	public void addUpdateListener(Runnable listener) {
+		updateListeners.add(listener);
+	}
+	
+	/** Removes a listener added by {@link #addUpdateListener(Runnable)}.
+	 * @since 5.8
+	 */
+	public void removeUpdateListener(Runnable listener) {
+		updateListeners.remove(listener);
+	}
+	
+	/** Records that the documents of this index have changed, and notifies the listeners */
+	protected void updated() {
+		lastUpdateTime = System.currentTimeMillis();
+		for (Runnable listener : updateListeners)
+			listener.run();
+	}
+
 	/**
 	 * Update the index with a new document.
 	 */
@@ -276,6 +347,7 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 
 		// Index document.
 		memory.indexDocument(doc);
+		updated();
 
 		// Check flush.
 		if (flush && flushPolicy.flushCheck() == true)
@@ -299,6 +371,7 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 
 		// Index document.
 		memory.indexDocument(docProperties, docContents);
+		updated();
 
 		// Check flush.
 		if (flush && flushPolicy.flushCheck() == true)
@@ -310,30 +383,157 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 	/** {@inheritDoc} */
 	public void flush() throws IOException {
 
-		// Create new (empty) in-memory index.
-		synchronized (super.indices) {
-			super.indices.add(memory = new MemoryIndex());
+		// Wait if too many full in-memory indices are already waiting to be flushed.
+		if (maintenance != null) {
+			try {
+				pendingFlushes.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a flush to complete");
+			}
+		}
+		
+		// Create new (empty) in-memory index. The full in-memory index 
+		// remains searchable until it has been written to disk.
+		final MemoryIndex full;
+		synchronized(indexingLock) {
+			full = memory;
+			addShard(memory = new MemoryIndex());
+		}
+
+		if (maintenance == null) {
+			maintain(full);
+			return;
 		}
+		maintenance.submit(() -> {
+			try {
+				maintain(full);
+			} catch (Exception e) {
+				logger.error("***REALTIME*** IncrementalIndex could not flush or merge", e);
+			} finally {
+				pendingFlushes.release();
+			}
+			return null;
+		});
+	}
+
+	/** Writes the full in-memory index to disk, and runs the delete and merge policies */
+	protected void maintain(MemoryIndex full) throws IOException {
+
+		// Delete the replaced shards that are no longer used by any snapshot.
+		purgeRetired(false);
 
 		// Flush old (full) in-memory index to disk.
-		flushPolicy.run();
+		flushPolicy.flush(full);
 
 		// Run delete policy to remove old indices if any
 		if (delete && deletePolicy.deletePolicy() == true) {
-			deletePolicy.runPolicy(indices);
+			synchronized (indices) {
+				deletePolicy.runPolicy(indices);
+				shardsChanged();
+			}
+			updated();
 		}
 		
 		// Check merge.
 		if (merge && mergePolicy.mergeCheck() == true)
 			((Runnable) mergePolicy).run();
-		
-
+	}
+	
+	/** Waits for all flushes and merges submitted to the background thread to complete.
+	 * @since 5.8
+	 */
+	public void awaitMaintenance() throws IOException {
+		if (maintenance == null)
+			return;
+		try {
+			maintenance.submit(() -> {}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	/** Returns the next unused prefix ID for an on-disk shard */
+	synchronized int nextPrefixID() {
+		return prefixID++;
+	}
+	
+	/** Adds a Bloom filter of its lexicon to a newly written on-disk shard, if configured */
+	void addLexiconFilter(IndexOnDisk shard) {
+		if (! lexiconFilters)
+			return;
+		try {
+			LexiconBloomFilter.create(shard, "lexicon");
+		} catch (IOException e) {
+			logger.warn("***REALTIME*** IncrementalIndex could not write lexicon Bloom filter for " + shard.getPrefix(), e);
+		}
+	}
+	
+	/** Marks the specified shards, which have just been replaced, for deletion */
+	void retire(List<IndexOnDisk> shards) {
+		final long replacedGeneration = getShardsGeneration();
+		synchronized (retired) {
+			for (IndexOnDisk shard : shards)
+				retired.put(shard, replacedGeneration);
+		}
+	}
+	
+	/** Closes and deletes the shards that have been replaced, and are not used by any open snapshot
+	 * taken before they were replaced.
+	 * @param all whether to delete all replaced shards, regardless of open snapshots 
+	 */
+	protected void purgeRetired(boolean all) {
+		synchronized (retired) {
+			Iterator<Map.Entry<IndexOnDisk,Long>> iter = retired.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry<IndexOnDisk,Long> e = iter.next();
+				if (! all && hasSnapshotsBefore(e.getValue()))
+					continue;
+				IndexOnDisk shard = e.getKey();
+				try {
+					shard.close();
+					IndexUtil.deleteIndex(shard.getPath(), shard.getPrefix());
+				} catch (IOException ioe) {
+					logger.warn("***REALTIME*** IncrementalIndex could not delete " + shard.getPrefix(), ioe);
+				}
+				iter.remove();
+			}
+		}
+	}
+	
+	/** Deletes the replaced shards that the closed snapshot was the last to use */
+	@Override
+	protected void snapshotReleased() {
+		synchronized (retired) {
+			if (retired.isEmpty())
+				return;
+		}
+		if (maintenance == null || maintenance.isShutdown()) {
+			purgeRetired(false);
+			return;
+		}
+		try {
+			maintenance.submit(() -> purgeRetired(false));
+		} catch (RejectedExecutionException e) {
+			purgeRetired(false);
+		}
 	}
 
 	/** {@inheritDoc} */
 	public void close() throws IOException {
 		if (flush && flushPolicy.flushCheck() == true)
 			flush();
+		if (maintenance != null) {
+			maintenance.shutdown();
+			try {
+				maintenance.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		purgeRetired(true);
 	}
 	
 	/** This method prints out the last time this index was updated as a String in GMT format **/
@@ -28,14 +28,15 @@
 package org.terrier.realtime.incremental;
 
 
-import gnu.trove.TIntIntHashMap;
-import gnu.trove.TIntIntIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
-import org.terrier.structures.merging.StructureMerger;
 import org.terrier.utility.ApplicationSetup;
 
 /**
@@ -58,12 +59,18 @@ public class IncrementalMergeGeometric extends IncrementalMergePolicy implements
 	 */
 	private final int g = Integer.parseInt(ApplicationSetup.getProperty(
 			"incremental.geometric", "3"));
+	
+	/*
+	 * The number of columns.
+	 */
+	private static final int COLUMNS = 3;
 
 	/*
-	 * Maintain state about merged partitions.
+	 * Maintain state about merged partitions: the shard of each column, 
+	 * and the number of flushed partitions merged into it.
 	 */
-	private TIntIntHashMap parts = new TIntIntHashMap(0);
-	private TIntIntHashMap sizes = new TIntIntHashMap(0);
+	private List<IndexOnDisk> parts = new ArrayList<IndexOnDisk>();
+	private List<Integer> sizes = new ArrayList<Integer>();
 
 	/**
 	 * Is merging configured?
@@ -83,92 +90,37 @@ public class IncrementalMergeGeometric extends IncrementalMergePolicy implements
 	 * Merge flushed index partitions.
 	 */
 	public void run() {
-
-		// 1
-		if (parts.size() == 0) {
-			parts.put(1, index.prefixID - 1);
-			sizes.put(1, 1);
-			state();
+		IndexOnDisk flushed = getFlushed();
+		if (flushed == null)
 			return;
-		} else {
-			if (sizes.get(1) < Math.pow(g, 1)) {
-				parts.put(1, merge(parts.get(1), index.prefixID - 1));
-				sizes.put(1, sizes.get(1) + 1);
-				state();
-				return;
+		try {
+			for (int c = 0; c < COLUMNS; c++) {
+				if (parts.size() == c) {
+					parts.add(flushed);
+					sizes.add(1);
+					break;
+				}
+				if (sizes.get(c) < Math.pow(g, c + 1)) {
+					parts.set(c, merge(Arrays.asList(parts.get(c), flushed)));
+					sizes.set(c, sizes.get(c) + 1);
+					break;
+				}
 			}
+		} catch (IOException e) {
+			logger.error("***REALTIME*** IncrementalIndex could not merge", e);
 		}
-
-		// 2
-		if (parts.size() == 1) {
-			parts.put(2, index.prefixID - 1);
-			sizes.put(2, 1);
-			state();
-			return;
-		} else {
-			if (sizes.get(2) < Math.pow(g, 2)) {
-				parts.put(2, merge(parts.get(2), index.prefixID - 1));
-				sizes.put(2, sizes.get(2) + 1);
-				state();
-				return;
-			}
-		}
-
-		// 3
-		if (parts.size() == 2) {
-			parts.put(3, index.prefixID - 1);
-			sizes.put(3, 1);
-			state();
-			return;
-		} else {
-			if (sizes.get(3) < Math.pow(g, 3)) {
-				parts.put(3, merge(parts.get(3), index.prefixID - 1));
-				sizes.put(3, sizes.get(3) + 1);
-				state();
-				return;
-			}
-		}
-
 		state();
 	}
-
-	/*
-	 * Merge.
-	 */
-	private int merge(int partition1, int partition2) {
-
-		// Source index 1.
-		IndexOnDisk src1 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition1);
-
-		// Source index 2.
-		IndexOnDisk src2 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition2);
-
-		// Destination index.
-		IndexOnDisk indexD = IndexOnDisk.createNewIndex(index.path,
-				index.prefix + "-" + index.prefixID);
-
-		// Merge the index structures.
-		StructureMerger merger = new StructureMerger(src1, src2, indexD);
-		merger.mergeStructures();
-
-		logger.info("***REALTIME*** IncrementalIndex merged: " + partition1
-				+ " and " + partition2 + " into " + index.prefixID);
-
-		// Increment prefix ID.
-		index.prefixID++;
-
-		// Update list of indices.
-		merged.add(partition1);
-		merged.add(partition2);
-		purgeMerged();
-		synchronized (indices) {
-			// FIXME
+	
+	/** Returns the most recently flushed on-disk partition, if it is not yet in any column */
+	private IndexOnDisk getFlushed() {
+		List<Index> shards = index.getShards();
+		for (int i = shards.size() - 1; i >= 0; i--) {
+			if (! isMergeable(shards.get(i)))
+				continue;
+			return parts.contains(shards.get(i)) ? null : (IndexOnDisk) shards.get(i);
 		}
-
-		// Return prefixID of new partition.
-		return index.prefixID - 1;
+		return null;
 	}
 
 	/*
@@ -177,13 +129,11 @@ public class IncrementalMergeGeometric extends IncrementalMergePolicy implements
 	private void state() {
 		logger.debug("***REALTIME*** Geometric merge state");
 		logger.debug("Number of columns: " + parts.size());
-		TIntIntIterator it = parts.iterator();
-		while (it.hasNext()) {
-			it.advance();
-			logger.debug("Column: " + it.key());
-			logger.debug("Column prefixID: " + it.value());
-			logger.debug("Column merges: " + sizes.get(it.key()));
-			logger.debug("Column merges (max): " + Math.pow(g, it.key()));
+		for (int c = 0; c < parts.size(); c++) {
+			logger.debug("Column: " + (c + 1));
+			logger.debug("Column partition: " + parts.get(c).getPrefix());
+			logger.debug("Column merges: " + sizes.get(c));
+			logger.debug("Column merges (max): " + Math.pow(g, c + 1));
 		}
 	}
 }
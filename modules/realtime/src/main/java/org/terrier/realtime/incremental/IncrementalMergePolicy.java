@@ -27,15 +27,26 @@
 
 package org.terrier.realtime.incremental;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.merging.MultiStructureMerger;
+import org.terrier.utility.ApplicationSetup;
 
 /**
  * A policy for merging different indices together on disk
+ * 
+ * <p><b>Properties</b></p>
+ * <ul><li>incremental.merge.rate: the maximum average rate at which merges write to disk,
+ * in megabytes per second. Defaults to 0, which does not limit merges.</li></ul>
+ * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
  */
@@ -45,6 +56,9 @@ public class IncrementalMergePolicy {
 
 	IncrementalIndex index;
 	
+	/** maximum rate at which merges write to disk, in MB per second, 0 for unlimited */
+	protected final double maxRate = Double.parseDouble(ApplicationSetup.getProperty("incremental.merge.rate", "0"));
+	
 	public IncrementalMergePolicy(IncrementalIndex index) {
 		this.index = index;
 	}
@@ -68,6 +82,8 @@ public class IncrementalMergePolicy {
 			return new IncrementalMergeSingle(index);
 		if (policy.equals("geometric"))
 			return new IncrementalMergeGeometric(index);
+		if (policy.equals("tiered"))
+			return new IncrementalMergeTiered(index);
 		return new IncrementalMergePolicy(index);
 	}
 
@@ -94,4 +110,73 @@ public class IncrementalMergePolicy {
 	public boolean mergeCheck() {
 		return false;
 	}
+
+	/**
+	 * Can this shard be merged? Only on-disk shards written by the incremental index 
+	 * can be merged, i.e. not an in-memory shard, nor the original index it was opened on.
+	 */
+	protected boolean isMergeable(Index shard) {
+		return shard instanceof IndexOnDisk 
+			&& ((IndexOnDisk)shard).getPrefix().matches(Pattern.quote(index.prefix) + "-\\d+");
+	}
+
+	/**
+	 * Merges the specified contiguous on-disk shards into a new shard, which then 
+	 * atomically replaces them in the index. All shards are merged in a single pass by a 
+	 * {@link MultiStructureMerger}, so that each posting is written once, however many 
+	 * shards are merged. The merger reads from its own instances of the shards, as it 
+	 * replaces and closes their structures, while searches may still be using the shards.
+	 * The merged shards are deleted once all snapshots of the shards taken before the 
+	 * merge have been closed.
+	 * @return the new shard
+	 */
+	protected IndexOnDisk merge(List<IndexOnDisk> sources) throws IOException {
+		final long startTime = System.currentTimeMillis();
+		final String partition = index.prefix + "-" + index.nextPrefixID();
+		final IndexOnDisk[] readers = new IndexOnDisk[sources.size()];
+		IndexOnDisk indexD = IndexOnDisk.createNewIndex(index.path, partition);
+		try {
+			for (int i = 0; i < readers.length; i++)
+				readers[i] = IndexOnDisk.createIndex(sources.get(i).getPath(), sources.get(i).getPrefix());
+			new MultiStructureMerger(readers, indexD).mergeStructures();
+		} finally {
+			for (IndexOnDisk reader : readers)
+				if (reader != null)
+					reader.close();
+		}
+		indexD.close();
+		IndexOnDisk merged = IndexOnDisk.createIndex(index.path, partition);
+		throttle(partition, startTime);
+		
+		index.addLexiconFilter(merged);
+		logger.info("***REALTIME*** IncrementalIndex merged " + sources.size() + " shards into " + merged.getPrefix());
+		
+		index.replaceShards(sources, merged);
+		index.retire(sources);
+		return merged;
+	}
+
+	/**
+	 * Pauses the merging thread such that the shard just written since <tt>startTime</tt>
+	 * is not written faster than the configured maximum rate.
+	 */
+	protected void throttle(String partition, long startTime) {
+		if (maxRate <= 0)
+			return;
+		long bytes = 0;
+		File[] files = new File(index.path).listFiles();
+		if (files != null)
+			for (File f : files)
+				if (f.getName().startsWith(partition + "."))
+					bytes += f.length();
+		final long minDuration = (long) (bytes / (maxRate * 1024d * 1024d) * 1000d);
+		final long elapsed = System.currentTimeMillis() - startTime;
+		if (elapsed < minDuration) {
+			try {
+				Thread.sleep(minDuration - elapsed);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
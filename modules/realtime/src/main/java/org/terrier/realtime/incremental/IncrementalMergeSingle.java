@@ -27,11 +27,14 @@
 
 package org.terrier.realtime.incremental;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
-import org.terrier.structures.merging.StructureMerger;
 
 /**
  * Merge flushed index partitions into a single partition.
@@ -58,46 +61,27 @@ public class IncrementalMergeSingle extends IncrementalMergePolicy implements
 	 * Is merging required?
 	 */
 	public boolean mergeCheck() {
-		return indices.size() > 2;
+		return getPartitions() != null;
 	}
 
 	/** Merge flushed index partitions into a single partition. */
 	public void run() {
-
-		// Partitions to merge.
-		int partition1 = index.prefixID - 2;
-		int partition2 = index.prefixID - 1;
-
-		// Source index 1.
-		IndexOnDisk src1 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition1);
-
-		// Source index 2.
-		IndexOnDisk src2 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition2);
-
-		// Destination index.
-		IndexOnDisk indexD = IndexOnDisk.createNewIndex(index.path,
-				index.prefix + "-" + index.prefixID);
-
-		// Merge the index structures.
-		StructureMerger merger = new StructureMerger(src1, src2, indexD);
-		merger.mergeStructures();
-
-		logger.info("***REALTIME*** IncrementalIndex merged: " + partition1
-				+ " and " + partition2 + " into " + index.prefixID);
-
-		// Increment prefix ID.
-		index.prefixID++;
-
-		// Update list of indices.
-		merged.add(partition1);
-		merged.add(partition2);
-		purgeMerged();
-		synchronized (indices) {
-			indices.remove(0);
-			indices.remove(0);
-			indices.add(0, indexD);
+		List<IndexOnDisk> partitions = getPartitions();
+		if (partitions == null)
+			return;
+		try {
+			merge(partitions);
+		} catch (IOException e) {
+			logger.error("***REALTIME*** IncrementalIndex could not merge", e);
 		}
 	}
+	
+	/** Returns the two oldest adjacent on-disk partitions, or null if there are none */
+	private List<IndexOnDisk> getPartitions() {
+		List<Index> shards = index.getShards();
+		for (int i = 1; i < shards.size(); i++)
+			if (isMergeable(shards.get(i-1)) && isMergeable(shards.get(i)))
+				return Arrays.asList((IndexOnDisk) shards.get(i-1), (IndexOnDisk) shards.get(i));
+		return null;
+	}
 }
@@ -0,0 +1,130 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IncrementalMergeTiered.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+
+package org.terrier.realtime.incremental;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.utility.ApplicationSetup;
+
+/**
+ * Tiered merge implementation. Each on-disk partition is assigned a tier based on its 
+ * number of documents, where each tier holds partitions <tt>incremental.tiered.ratio</tt> 
+ * times larger than the previous tier. When <tt>incremental.tiered.factor</tt> adjacent
+ * partitions are in the same tier, they are merged into a single partition, which typically
+ * moves to the next tier. Hence each document is rewritten only a logarithmic number of times.
+ * 
+ * <p><b>Properties</b></p>
+ * <ul>
+ * <li>incremental.tiered.ratio: size ratio between consecutive tiers. Defaults to 4.</li>
+ * <li>incremental.tiered.factor: number of partitions of the same tier that are merged together. Defaults to 4.</li>
+ * <li>incremental.tiered.min.docs: partitions with fewer documents than this are all in the lowest tier. 
+ * Defaults to the value of <tt>incremental.flushdocs</tt>, or 1000.</li>
+ * </ul>
+ * @since 5.8
+ */
+public class IncrementalMergeTiered extends IncrementalMergePolicy implements
+		Runnable {
+	private static final Logger logger = LoggerFactory
+			.getLogger(IncrementalMergeTiered.class);
+	
+	private final double ratio = Double.parseDouble(ApplicationSetup.getProperty(
+			"incremental.tiered.ratio", "4"));
+	
+	private final int factor = Integer.parseInt(ApplicationSetup.getProperty(
+			"incremental.tiered.factor", "4"));
+	
+	private final int minDocs = Integer.parseInt(ApplicationSetup.getProperty(
+			"incremental.tiered.min.docs", ApplicationSetup.getProperty("incremental.flushdocs", "1000")));
+
+	public IncrementalMergeTiered(IncrementalIndex index) {
+		super(index);
+		if (ratio <= 1)
+			throw new IllegalArgumentException("incremental.tiered.ratio must be greater than 1");
+		if (factor < 2)
+			throw new IllegalArgumentException("incremental.tiered.factor must be at least 2");
+	}
+
+	/**
+	 * Is merging configured?
+	 */
+	public boolean mergePolicy() {
+		return true;
+	}
+
+	/**
+	 * Is merging required?
+	 */
+	public boolean mergeCheck() {
+		return getPartitions() != null;
+	}
+
+	/** Merge partitions until no tier has enough adjacent partitions. */
+	public void run() {
+		List<IndexOnDisk> partitions;
+		while ((partitions = getPartitions()) != null) {
+			try {
+				merge(partitions);
+			} catch (IOException e) {
+				logger.error("***REALTIME*** IncrementalIndex could not merge", e);
+				return;
+			}
+		}
+	}
+
+	/** Returns the tier of an on-disk partition */
+	protected int getTier(Index shard) {
+		final int numDocs = shard.getCollectionStatistics().getNumberOfDocuments();
+		if (numDocs <= minDocs)
+			return 0;
+		return (int) (Math.log((double) numDocs / minDocs) / Math.log(ratio) + 1e-9);
+	}
+	
+	/** Returns the oldest <tt>factor</tt> adjacent partitions of the same tier, or null if there are none */
+	protected List<IndexOnDisk> getPartitions() {
+		List<IndexOnDisk> run = new ArrayList<>();
+		int runTier = -1;
+		for (Index shard : index.getShards()) {
+			if (! isMergeable(shard)) {
+				run.clear();
+				continue;
+			}
+			final int tier = getTier(shard);
+			if (tier != runTier)
+				run.clear();
+			runTier = tier;
+			run.add((IndexOnDisk) shard);
+			if (run.size() == factor)
+				return run;
+		}
+		return null;
+	}
+}
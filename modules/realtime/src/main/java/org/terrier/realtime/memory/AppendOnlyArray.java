@@ -0,0 +1,79 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is AppendOnlyArray.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.realtime.memory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An array of objects that a single writer appends to while other threads read it,
+ * in the same manner as {@link AppendOnlyIntArray}. Readers may only read the indices 
+ * that were published to them through a volatile watermark written after the objects.
+ * @param <T> the type of the objects
+ * @since 5.8
+ */
+public class AppendOnlyArray<T> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	protected volatile Object[][] chunks = new Object[1][];
+	/** number of objects written, only used by the writer */
+	protected int size = 0;
+	
+	/** Appends an object */
+	public void add(T value) {
+		final int chunk = size >>> AppendOnlyIntArray.CHUNK_BITS;
+		Object[][] c = chunks;
+		if (chunk == c.length)
+		{
+			c = Arrays.copyOf(c, chunk * 2);
+			chunks = c;
+		}
+		if (c[chunk] == null)
+			c[chunk] = new Object[AppendOnlyIntArray.CHUNK_SIZE];
+		c[chunk][size & AppendOnlyIntArray.CHUNK_MASK] = value;
+		size++;
+	}
+	
+	/** Returns the object at the specified index */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if (index >= size)
+			throw new ArrayIndexOutOfBoundsException(index);
+		return (T) chunks[index >>> AppendOnlyIntArray.CHUNK_BITS][index & AppendOnlyIntArray.CHUNK_MASK];
+	}
+	
+	/** Returns the number of objects written. Readers should instead use the 
+	 * watermark that the objects were published with. */
+	public int size() {
+		return size;
+	}
+	
+	/** Removes all objects */
+	public void clear() {
+		chunks = new Object[1][];
+		size = 0;
+	}
+}
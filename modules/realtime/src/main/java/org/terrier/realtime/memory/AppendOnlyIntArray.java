@@ -0,0 +1,89 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is AppendOnlyIntArray.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.realtime.memory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An array of ints that a single writer appends to while other threads read it.
+ * Values are held in fixed-size chunks that are never reallocated; only the table 
+ * of chunks is replaced when it must grow. Hence, a reader never sees a value being 
+ * copied. Writers do not publish the values: readers may only read the indices that 
+ * were published to them through a volatile watermark written after the values, such 
+ * as that of {@link MemoryIndex#publishDocuments()}.
+ * @since 5.8
+ */
+public class AppendOnlyIntArray implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	/** log2 of the number of values in each chunk */
+	static final int CHUNK_BITS = 12;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	
+	protected volatile int[][] chunks = new int[1][];
+	/** number of values written, only used by the writer */
+	protected int size = 0;
+	
+	/** Appends a value */
+	public void add(int value) {
+		final int chunk = size >>> CHUNK_BITS;
+		int[][] c = chunks;
+		if (chunk == c.length)
+		{
+			c = Arrays.copyOf(c, chunk * 2);
+			chunks = c;
+		}
+		if (c[chunk] == null)
+			c[chunk] = new int[CHUNK_SIZE];
+		c[chunk][size & CHUNK_MASK] = value;
+		size++;
+	}
+	
+	/** Replaces the value at the specified index, which must have been added */
+	public void set(int index, int value) {
+		chunks[index >>> CHUNK_BITS][index & CHUNK_MASK] = value;
+	}
+	
+	/** Returns the value at the specified index */
+	public int get(int index) {
+		if (index >= size)
+			throw new ArrayIndexOutOfBoundsException(index);
+		return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+	}
+	
+	/** Returns the number of values written. Readers should instead use the 
+	 * watermark that the values were published with. */
+	public int size() {
+		return size;
+	}
+	
+	/** Removes all values */
+	public void clear() {
+		chunks = new int[1][];
+		size = 0;
+	}
+}
@@ -27,8 +27,6 @@
 
 package org.terrier.realtime.memory;
 
-import gnu.trove.TIntArrayList;
-
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Iterator;
@@ -42,6 +40,11 @@ import org.terrier.structures.collections.MapEntry;
 /**
  * An in-memory version of the Document index. Stores the length
  * of each document.
+ * <p>
+ * Since 5.8, the lengths are held in an {@link AppendOnlyIntArray}, so that they can 
+ * be read by any number of threads while a single writer adds documents. As for 
+ * {@link MemoryInvertedIndex}, documents at or above the visible documents watermark
+ * (see {@link #setVisibleDocuments(int)}) are not counted by getNumberOfDocuments().
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
@@ -50,7 +53,9 @@ public class MemoryDocumentIndex implements DocumentIndex,Serializable {
 
 	private static final long serialVersionUID = -7639008149037297229L;
 	/* Document lengths. */
-	public TIntArrayList docLengths = new TIntArrayList();
+	public AppendOnlyIntArray docLengths = new AppendOnlyIntArray();
+	/** documents with docids at or above this are not yet visible to readers */
+	protected volatile int visibleDocuments = Integer.MAX_VALUE;
 
 	/**
 	 * Constructor.
@@ -84,7 +89,16 @@ public class MemoryDocumentIndex implements DocumentIndex,Serializable {
 
 	/** {@inheritDoc} */
 	public int getNumberOfDocuments() {
-		return docLengths.size();
+		//read the watermark first: documents below it are complete
+		final int visible = visibleDocuments;
+		return Math.min(visible, docLengths.size());
+	}
+	
+	/** Sets the number of documents that are visible to readers. Writers call this
+	 * once the documents are complete, after writing their lengths.
+	 * @since 5.8 */
+	public void setVisibleDocuments(int numberOfDocuments) {
+		this.visibleDocuments = numberOfDocuments;
 	}
 
 	/**
@@ -110,7 +124,7 @@ public class MemoryDocumentIndex implements DocumentIndex,Serializable {
 
 		// private Iterator<DocumentIndexEntry> iter = null;
 		public boolean hasNext() {
-			return index < docLengths.size();
+			return index < getNumberOfDocuments();
 		}
 
 		public Entry<Integer, DocumentIndexEntry> next() {
@@ -133,7 +147,7 @@ public class MemoryDocumentIndex implements DocumentIndex,Serializable {
 
 		// private Iterator<DocumentIndexEntry> iter = null;
 		public boolean hasNext() {
-			return index < docLengths.size();
+			return index < getNumberOfDocuments();
 		}
 
 		public DocumentIndexEntry next() {
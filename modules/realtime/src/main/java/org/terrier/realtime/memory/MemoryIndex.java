@@ -107,7 +107,9 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
     public TObjectIntHashMap<String> fieldIDs;
 	
     
-    /** A lock that stops multiple indexing operations from happening at once **/
+    /** A lock that stops multiple indexing operations from happening at once. Readers 
+     * never take this lock: postings become visible to them once each document is 
+     * published by {@link #publishDocuments()} **/
     protected Object indexingLock = new Object();
     
     // Compression code for writing
@@ -168,6 +170,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		load_pipeline(); // For term processing (stemming, stop-words).
 
 		direct = new MemoryDirectIndex(document);
+		publishDocuments();
 		
 		logger.info("***REALTIME*** MemoryIndex (NEW)");
 	}
@@ -313,6 +316,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		stats.update(1, docContents.getDocumentLength(),
 				docContents.termSet().length);
 		stats.updateUniqueTerms(lexicon.numberOfEntries());
+		publishDocuments();
 
 		logger.debug("***REALTIME*** MemoryIndex indexDocument ("
 				+ stats.getNumberOfDocuments() + ")");
@@ -387,6 +391,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		stats.update(1, docContents.getDocumentLength(),
 				docContents.termSet().length);
 		stats.updateUniqueTerms(lexicon.numberOfEntries());
+		publishDocuments();
 
 		logger.debug("***REALTIME*** MemoryIndex indexDocument ("
 				+ stats.getNumberOfDocuments() + ")");
@@ -484,6 +489,17 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		}
 	}
 
+	/** Makes all documents indexed so far visible to readers of the inverted index,
+	 * document index and meta index. Writers call this once a document is complete.
+	 * @since 5.8
+	 */
+	protected void publishDocuments() {
+		final int numberOfDocuments = stats.getNumberOfDocuments();
+		document.setVisibleDocuments(numberOfDocuments);
+		metadata.setVisibleDocuments(numberOfDocuments);
+		inverted.setVisibleDocuments(numberOfDocuments);
+	}
+
 	protected DiskIndexWriter makeDiskIndexWriter(String path, String prefix) {
 		return new DiskIndexWriter(path, prefix).withDirect();
 	}
@@ -28,10 +28,10 @@
 package org.terrier.realtime.memory;
 
 import gnu.trove.TIntArrayList;
-import gnu.trove.TIntObjectHashMap;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map.Entry;
 
@@ -48,6 +48,12 @@ import org.terrier.structures.postings.IterablePosting;
  * A basic inverted file implementation for use with MemoryIndex structures.
  * This version does not support fields or blocks. Since it is a memory-based
  * structure, access is via a MemoryPointer rather than BitIndexPointer.
+ * <p>
+ * Since 5.8, this structure can be read by any number of threads while a single
+ * writer adds postings. Posting lists are held in append-only compressed blocks,
+ * and only postings for documents below the visible documents watermark (see
+ * {@link #setVisibleDocuments(int)}) are returned by getPostings(). Writers 
+ * must be serialised by the caller, as MemoryIndex does using its indexing lock.
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
@@ -60,7 +66,10 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 	 */
 	protected DocumentIndex doi;
 	protected Lexicon<String> lex;
-	protected TIntObjectHashMap<MemoryPostingList> postings;
+	/** posting lists, indexed by termid. Replaced, never resized, when it must grow. */
+	protected volatile MemoryPostingList[] postings;
+	/** postings of documents with docids at or above this are not yet visible to readers */
+	protected volatile int visibleDocuments = Integer.MAX_VALUE;
 
 	/**
 	 * Constructor.
@@ -68,82 +77,231 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 	public MemoryInvertedIndex(Lexicon<String> lex, DocumentIndex doi) {
 		this.lex = lex;
 		this.doi = doi;
-		postings = new TIntObjectHashMap<MemoryPostingList>();
+		postings = new MemoryPostingList[16];
 	}
 
-	/*
-	 * Postings list.
+	/**
+	 * Postings list. Since 5.8, postings are compressed: each is written as the gap from
+	 * the previous docid followed by the frequency, both variable-byte encoded, into byte 
+	 * blocks that double in size up to a maximum and are never reallocated. Every
+	 * SKIP_INTERVAL postings, a skip entry records the previous docid and the position of
+	 * the next posting, for {@link MemoryIterablePosting#next(int)}. A posting becomes
+	 * visible to readers once the number of postings is published, so a single writer can 
+	 * append while other threads iterate.
+	 * @since 5.8 this class is static
 	 */
-	public class BasicMemoryPostingList implements MemoryPostingList {
-		private TIntArrayList pl_doc;
-		private TIntArrayList pl_freq;
-
-		public BasicMemoryPostingList() {
-			pl_doc = new TIntArrayList();
-			pl_freq = new TIntArrayList();
+	public static class BasicMemoryPostingList implements MemoryPostingList, Serializable {
+		private static final long serialVersionUID = 1L;
+		/** log2 of the size in bytes of the first block */
+		static final int FIRST_BLOCK_BITS = 4;
+		/** log2 of the maximum size in bytes of a block */
+		static final int MAX_BLOCK_BITS = 10;
+		/** number of postings between skip entries */
+		public static final int SKIP_INTERVAL = 128;
+		
+		/** The tables of a posting list. The contents of the tables are appended to in 
+		 * place, but a new instance is published whenever one of them must grow. */
+		static final class Blocks implements Serializable {
+			private static final long serialVersionUID = 1L;
+			final byte[][] data;
+			/** docid of the posting before the skip */
+			final int[] skipDocids;
+			/** position of the posting after the skip, as block &lt;&lt; MAX_BLOCK_BITS | offset */
+			final int[] skipPointers;
+			
+			Blocks(byte[][] data, int[] skipDocids, int[] skipPointers) {
+				this.data = data;
+				this.skipDocids = skipDocids;
+				this.skipPointers = skipPointers;
+			}
 		}
 		
+		protected volatile Blocks blocks = new Blocks(new byte[1][], new int[0], new int[0]);
+		/** number of postings published to readers */
+		protected volatile int size = 0;
+		/* write state, only used by the writer */
+		int block = 0;
+		int pos = 0;
+		int lastDocid = 0;
+		int skips = 0;
+
+		public BasicMemoryPostingList() {}
+		
 		public BasicMemoryPostingList(int[] docids, int[] docfreqs) {
-			pl_doc = new TIntArrayList();
-			pl_freq = new TIntArrayList();
-			pl_doc.add(docids);
-			pl_freq.add(docfreqs);
+			for(int i=0;i<docids.length;i++)
+				add(docids[i], docfreqs[i]);
 		}
 
 		public BasicMemoryPostingList(int docid, int docfreq) {
-			pl_doc = new TIntArrayList();
-			pl_freq = new TIntArrayList();
-			pl_doc.add(docid);
-			pl_freq.add(docfreq);
+			add(docid, docfreq);
 		}
-
+		
+		/** Returns the size in bytes of the specified block */
+		public static int blockLength(int block) {
+			return 1 << Math.min(FIRST_BLOCK_BITS + block, MAX_BLOCK_BITS);
+		}
+		
+		/** Appends a posting. Docids must be added in ascending order. */
 		public void add(int docid, int docfreq) {
-			pl_doc.add(docid);
-			pl_freq.add(docfreq);
+			startPosting(docid);
+			write(docfreq);
+			publish();
 		}
 		
-		public int getFreq(int docid) {
-			int index = pl_doc.binarySearch(docid);
-			if (index >= 0)
+		/** Writes the docid gap of a new posting, after a skip entry if one is due */
+		protected void startPosting(int docid) {
+			final int n = size;
+			if (n > 0 && n % SKIP_INTERVAL == 0)
+				addSkip();
+			write(docid - lastDocid);
+			lastDocid = docid;
+		}
+		
+		/** Makes the posting being written visible to readers */
+		protected void publish() {
+			size = size + 1;
+		}
+		
+		/** Variable-byte encodes value: 7 bits per byte, the high bit set if more bytes follow */
+		protected void write(int value) {
+			while ((value & ~0x7F) != 0)
 			{
-				return pl_freq.get(index);
+				writeByte((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
 			}
+			writeByte((byte) value);
+		}
+		
+		private void writeByte(byte b) {
+			if (pos == blockLength(block))
+			{
+				block++;
+				pos = 0;
+			}
+			Blocks current = blocks;
+			if (block == current.data.length)
+			{
+				current = new Blocks(Arrays.copyOf(current.data, block * 2), current.skipDocids, current.skipPointers);
+				blocks = current;
+			}
+			if (current.data[block] == null)
+				current.data[block] = new byte[blockLength(block)];
+			current.data[block][pos++] = b;
+		}
+		
+		private void addSkip() {
+			Blocks current = blocks;
+			if (skips == current.skipDocids.length)
+			{
+				final int length = Math.max(4, skips * 2);
+				current = new Blocks(current.data, Arrays.copyOf(current.skipDocids, length), Arrays.copyOf(current.skipPointers, length));
+				blocks = current;
+			}
+			current.skipDocids[skips] = lastDocid;
+			current.skipPointers[skips] = pos == blockLength(block)
+				? (block+1) << MAX_BLOCK_BITS
+				: block << MAX_BLOCK_BITS | pos;
+			skips++;
+		}
+		
+		/** Returns the number of postings visible to readers */
+		public int size() {
+			return size;
+		}
+		
+		/** Returns the number of bytes used by the compressed postings */
+		public long getCompressedSize() {
+			long bytes = pos;
+			for(int i=0;i<block;i++)
+				bytes += blockLength(i);
+			return bytes;
+		}
+		
+		public int getFreq(int docid) {
+			MemoryIterablePosting ip = new MemoryIterablePosting(null, this, Integer.MAX_VALUE);
+			if (ip.next(docid) == docid)
+				return ip.getFrequency();
 			return -1;
 		}
 		
-		/** Returns true iff we did not already have a posting for this document */
+		/** Returns true iff we did not already have a posting for this document. 
+		 * Appending a posting for a new last document is done in place; otherwise the 
+		 * postings are re-encoded into new blocks, so that readers already iterating 
+		 * keep their previous blocks. */
 		public boolean addOrUpdateFreq(int docid, int freq) {
-			int index = pl_doc.binarySearch(docid);
-			if (index >= 0)
+			final int n = size;
+			if (n == 0 || docid > lastDocid)
 			{
-				pl_freq.setQuick(index, freq + pl_freq.get(index));	
-				return false;
-			} else {
-				pl_doc.insert( -(index +1), docid);
-				pl_freq.insert( -(index +1), freq);	
+				add(docid, freq);
 				return true;
 			}
-			
+			final TIntArrayList docids = getPl_doc();
+			final TIntArrayList freqs = getPl_freq();
+			final int index = docids.binarySearch(docid);
+			final boolean added = index < 0;
+			if (added)
+			{
+				docids.insert(-(index +1), docid);
+				freqs.insert(-(index +1), freq);
+			}
+			else
+			{
+				freqs.setQuick(index, freq + freqs.get(index));
+			}
+			final BasicMemoryPostingList rebuilt = new BasicMemoryPostingList(docids.toNativeArray(), freqs.toNativeArray());
+			block = rebuilt.block;
+			pos = rebuilt.pos;
+			lastDocid = rebuilt.lastDocid;
+			skips = rebuilt.skips;
+			//readers check size before blocks
+			blocks = rebuilt.blocks;
+			size = rebuilt.size;
+			return added;
 		}
 		
-
+		/** Returns a copy of the docids of this posting list */
 		public TIntArrayList getPl_doc() {
-			return pl_doc;
+			return copy(true);
 		}
 
+		/** Returns a copy of the frequencies of this posting list */
 		public TIntArrayList getPl_freq() {
-			return pl_freq;
+			return copy(false);
+		}
+		
+		private TIntArrayList copy(boolean docids) {
+			final MemoryIterablePosting ip = new MemoryIterablePosting(null, this, Integer.MAX_VALUE);
+			final TIntArrayList rtr = new TIntArrayList(ip.size);
+			while(ip.next() != IterablePosting.EOL)
+				rtr.add(docids ? ip.getId() : ip.getFrequency());
+			return rtr;
 		}
 	}
+	
+	/** Returns the posting list for the specified termid, or null if there is none */
+	protected MemoryPostingList getPostingList(int termid) {
+		final MemoryPostingList[] p = postings;
+		return termid < p.length ? p[termid] : null;
+	}
+	
+	/** Publishes the posting list for the specified termid */
+	protected void setPostingList(int termid, MemoryPostingList pl) {
+		MemoryPostingList[] p = postings;
+		if (termid >= p.length)
+			p = Arrays.copyOf(p, Math.max(termid+1, p.length * 2));
+		p[termid] = pl;
+		postings = p;
+	}
 
 	/**
 	 * Add posting to inverted file.
 	 */
 	public void add(int ptr, int docid, int freq) {
-		if (postings.containsKey(ptr))
-			((BasicMemoryPostingList)postings.get(ptr)).add(docid, freq);
+		BasicMemoryPostingList pl = (BasicMemoryPostingList) getPostingList(ptr);
+		if (pl != null)
+			pl.add(docid, freq);
 		else
-			postings.put(ptr, new BasicMemoryPostingList(docid, freq));
+			setPostingList(ptr, new BasicMemoryPostingList(docid, freq));
 	}
 	
 	/** Adds or updates the frequency of the term denoted by ptr by freq.
@@ -151,15 +309,14 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 	 * already contained the term */
 	public boolean addOrUpdate(int ptr, int docid, int freq) {
 		assert freq > 0;
-		
-		if (postings.containsKey(ptr))
+		BasicMemoryPostingList bmpl = (BasicMemoryPostingList) getPostingList(ptr);
+		if (bmpl != null)
 		{
-			BasicMemoryPostingList bmpl = (BasicMemoryPostingList) postings.get(ptr);
 			return bmpl.addOrUpdateFreq(docid, freq);			
 		}
 		else
 		{				
-			postings.put(ptr, new BasicMemoryPostingList(docid, freq));
+			setPostingList(ptr, new BasicMemoryPostingList(docid, freq));
 			return true;
 		}
 	}
@@ -169,17 +326,32 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 	 * @param ptr
 	 */
 	public void remove(int ptr) {
-		if (postings.containsKey(ptr)) postings.remove(ptr);
+		if (getPostingList(ptr) != null) setPostingList(ptr, null);
+	}
+	
+	/** Sets the number of documents whose postings are visible to readers. 
+	 * Writers should call this once all postings of a document have been added.
+	 * @since 5.8 */
+	public void setVisibleDocuments(int numberOfDocuments) {
+		this.visibleDocuments = numberOfDocuments;
+	}
+	
+	/** Returns the number of documents whose postings are visible to readers
+	 * @since 5.8 */
+	public int getVisibleDocuments() {
+		return visibleDocuments;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public IterablePosting getPostings(Pointer pointer) throws IOException {
-		BasicMemoryPostingList pl = ((BasicMemoryPostingList)postings.get(((MemoryPointer)pointer).getPointer()));
+		//read the watermark first: postings below it are complete
+		final int visible = visibleDocuments;
+		BasicMemoryPostingList pl = (BasicMemoryPostingList) getPostingList(((MemoryPointer)pointer).getPointer());
 		if (pl==null) {
 			pl = new BasicMemoryPostingList();
 		}
-		return new MemoryIterablePosting(doi, pl.getPl_doc(), pl.getPl_freq());
+		return new MemoryIterablePosting(doi, pl, visible);
 	}
 
 	/** {@inheritDoc} */
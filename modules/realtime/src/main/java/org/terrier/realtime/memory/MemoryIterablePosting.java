@@ -31,13 +31,18 @@ import gnu.trove.TIntArrayList;
 
 import java.io.IOException;
 
+import org.terrier.realtime.memory.MemoryInvertedIndex.BasicMemoryPostingList;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.postings.BasicPostingImpl;
 import org.terrier.structures.postings.IterablePostingImpl;
 import org.terrier.structures.postings.WritablePosting;
 
 /**
- * A postings list implementation held fully in memory.
+ * A postings list implementation held fully in memory. Since 5.8, this decodes
+ * the compressed blocks of a BasicMemoryPostingList, using a snapshot of its tables taken 
+ * when it is created, and does not return postings for documents beyond the visible
+ * documents watermark. Hence it can be used while the posting list is being appended to.
+ * next(int) uses the skip entries of the posting list.
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
@@ -49,29 +54,78 @@ public class MemoryIterablePosting extends IterablePostingImpl {
 	 */
 	protected int index = -1;
 	protected int id = -1;
+	protected int freq;
 	protected DocumentIndex doi;
-	protected TIntArrayList pl_doc = new TIntArrayList();
-	private TIntArrayList pl_freq = new TIntArrayList();
+	/** number of postings visible to this iterator */
+	protected int size;
+	/** docids at or above this are not returned */
+	protected int visibleDocuments;
+	protected byte[][] data;
+	protected int[] skipDocids;
+	protected int[] skipPointers;
+	protected int skips;
+	/** read position */
+	protected int block = 0;
+	protected int pos = 0;
+	protected int blockEnd = BasicMemoryPostingList.blockLength(0);
 
 	/**
 	 * Constructor.
 	 */
 	public MemoryIterablePosting(DocumentIndex doi, TIntArrayList pl_doc,
 			TIntArrayList pl_freq) {
+		this(doi, new BasicMemoryPostingList(pl_doc.toNativeArray(), pl_freq.toNativeArray()), Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Constructor, iterating over the postings of pl for documents with 
+	 * docids less than visibleDocuments.
+	 * @since 5.8
+	 */
+	public MemoryIterablePosting(DocumentIndex doi, BasicMemoryPostingList pl, int visibleDocuments) {
 		this.doi = doi;
-		this.pl_doc = pl_doc;
-		this.pl_freq = pl_freq;
+		//read the published size before the tables
+		this.size = pl.size;
+		BasicMemoryPostingList.Blocks blocks = pl.blocks;
+		this.data = blocks.data;
+		this.skipDocids = blocks.skipDocids;
+		this.skipPointers = blocks.skipPointers;
+		this.skips = size > 0 ? (size-1) / BasicMemoryPostingList.SKIP_INTERVAL : 0;
+		this.visibleDocuments = visibleDocuments;
+	}
+	
+	/** Decodes a variable-byte encoded integer */
+	protected final int readVInt() {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if (pos == blockEnd)
+			{
+				blockEnd = BasicMemoryPostingList.blockLength(++block);
+				pos = 0;
+			}
+			b = data[block][pos++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+	
+	/** Decodes the remainder of the current posting, after its docid gap */
+	protected void readPosting() {
+		freq = readVInt();
 	}
 
 	/** {@inheritDoc} */
 	public int getFrequency() {
-		return pl_freq.get(index);
+		return freq;
 	}
 
 	/** {@inheritDoc} */
 	public int getDocumentLength() {
 		try {
-			return doi.getDocumentLength(pl_doc.get(index));
+			return doi.getDocumentLength(id);
 		} catch (IOException e) {
 			e.printStackTrace();
 			return -1;
@@ -80,38 +134,79 @@ public class MemoryIterablePosting extends IterablePostingImpl {
 
 	/** {@inheritDoc} */
 	public int getId() {
-		if (pl_doc.size()==0) {
+		if (size==0) {
 			// special case: the posting list is empty, but some retrieval code (i.e. DAAT retrieval) assumes 
 			//               that each posting list must have at least one document in it. So we add a new document
 			//               with no terms in it
-			pl_doc.add(0);
-			pl_freq.add(0);
+			data = new byte[][]{new byte[BasicMemoryPostingList.blockLength(0)]};
+			size = 1;
+			visibleDocuments = Integer.MAX_VALUE;
 		}
 		return id;
 	}
 
 	/** {@inheritDoc} */
-	public int next() throws IOException {
-		if ((pl_doc == null) || (++index >= pl_doc.size()))
+	public int next() {
+		if ((data == null) || (++index >= size))
+			return id = EOL;
+		final int docid = (index == 0 ? 0 : id) + readVInt();
+		if (docid >= visibleDocuments)
+		{
+			//this document is still being indexed
+			size = index;
 			return id = EOL;
-		else
-			return id = pl_doc.get(index);
+		}
+		readPosting();
+		return id = docid;
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public int next(int target) {
+		if (index >= 0 && id >= target)
+			return id;
+		//find the last skip entry before target that is ahead of the current posting
+		int skip = -1;
+		for(int j = index / BasicMemoryPostingList.SKIP_INTERVAL; j < skips && skipDocids[j] < target; j++)
+			skip = j;
+		if (skip >= 0)
+		{
+			index = (skip+1) * BasicMemoryPostingList.SKIP_INTERVAL - 1;
+			id = skipDocids[skip];
+			block = skipPointers[skip] >>> BasicMemoryPostingList.MAX_BLOCK_BITS;
+			pos = skipPointers[skip] & ((1 << BasicMemoryPostingList.MAX_BLOCK_BITS) -1);
+			blockEnd = BasicMemoryPostingList.blockLength(block);
+		}
+		do {
+			if (next() == EOL)
+				return EOL;
+		} while (id < target);
+		return id;
 	}
 
 	/** {@inheritDoc} */
 	public boolean endOfPostings() {
-		if ((pl_doc == null) || (index >= pl_doc.size()-1) || pl_doc.size()==0)
+		if ((data == null) || (index >= size-1) || size==0)
 			return true;
-		else
+		if (visibleDocuments == Integer.MAX_VALUE)
 			return false;
+		//peek at the docid of the next posting, which may not be visible yet
+		final int b = block, p = pos, e = blockEnd;
+		final int nextDocid = (index == -1 ? 0 : id) + readVInt();
+		block = b; pos = p; blockEnd = e;
+		if (nextDocid >= visibleDocuments)
+		{
+			size = index + 1;
+			return true;
+		}
+		return false;
 	}
 
 	/** {@inheritDoc} */
 	public void close() throws IOException {
 		index = -1;
 		doi = null;
-		pl_doc = null;
-		pl_freq = null;
+		data = null;
 	}
 
 	/** {@inheritDoc} */
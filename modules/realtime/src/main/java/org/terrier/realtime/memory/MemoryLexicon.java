@@ -57,12 +57,14 @@ public class MemoryLexicon extends MapLexicon<String,Text> implements Serializab
 	private static final long serialVersionUID = 6642638617614776293L;
 
 	/**
-	 * Constructor.
+	 * Constructor. Lookups do not lock, as WTreeMap can be read while a 
+	 * term is being added.
 	 */
 	public MemoryLexicon() {
 		super(new WTreeMap<Text, LexiconEntry>());
 		super.keyFactory = new FixedSizeTextFactory(
 				ApplicationSetup.MAX_TERM_LENGTH);
+		super.lockFreeReads = true;
 	}
 
 	/**
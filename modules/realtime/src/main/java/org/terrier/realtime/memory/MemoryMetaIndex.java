@@ -31,12 +31,11 @@ import gnu.trove.TObjectIntHashMap;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.terrier.structures.MetaIndex;
 import org.terrier.structures.indexing.MetaIndexBuilder;
@@ -54,6 +53,11 @@ import org.terrier.utility.ArrayUtils;
  * <li>indexer.meta.forward.keylens</tt> - max key lengths for keys to store (this is ignored unless metaindex.crop is set)</li>
  * <li>metaindex.compressed.crop.long</tt> - should the content to store be cropped down to the length specified in indexer.meta.forward.keylens?</li>
  * </ul>
+ * <p>
+ * Since 5.8, the metadata is held in an {@link AppendOnlyArray}, so that it can be read by 
+ * any number of threads while a single writer adds documents. As for {@link MemoryInvertedIndex},
+ * documents at or above the visible documents watermark (see {@link #setVisibleDocuments(int)}) 
+ * are not counted by size(), nor found by reverse lookups.
  * @author Richard McCreadie, Stuart Mackie, Craig Macdonald
  * @since 4.0
  */
@@ -64,13 +68,15 @@ public class MemoryMetaIndex extends MetaIndexBuilder implements MetaIndex,Seria
 	/*
 	 * Meta-data index structures.
 	 */
-	private List<String[]> metadata;
+	private AppendOnlyArray<String[]> metadata;
+	/** documents with docids at or above this are not yet visible to readers */
+	protected volatile int visibleDocuments = Integer.MAX_VALUE;
 	private TObjectIntHashMap<String> key2meta;
 	private int[] keylengths;
 	private boolean[] isReverse;
 	private boolean[] isSorted;
 
-	private Map<String,TObjectIntHashMap<String>> key2value2id;
+	private Map<String,Map<String,Integer>> key2value2id;
 	/*
 	 * Keys and key lengths.
 	 */
@@ -104,15 +110,15 @@ public class MemoryMetaIndex extends MetaIndexBuilder implements MetaIndex,Seria
 		this.isSorted = new boolean[metaKeys.length];
 		Arrays.fill(isSorted, true);
 		
-		metadata = new ArrayList<String[]>();
+		metadata = new AppendOnlyArray<String[]>();
 		key2meta = new TObjectIntHashMap<String>();
 		int i = 0;
 		for (String key : keys)
 			key2meta.put(key, i++);
 		
-		key2value2id = new HashMap<String,TObjectIntHashMap<String>>(revKeys.length);
+		key2value2id = new HashMap<String,Map<String,Integer>>(revKeys.length);
 		for (String revkey : this.revkeys)
-			key2value2id.put(revkey, new TObjectIntHashMap<String>());
+			key2value2id.put(revkey, new ConcurrentHashMap<String,Integer>());
 		isReverse = new boolean[keys.length];
 		for(i=0;i<keys.length;i++){
 			isReverse[i] = key2value2id.containsKey(keys[i]);
@@ -122,7 +128,16 @@ public class MemoryMetaIndex extends MetaIndexBuilder implements MetaIndex,Seria
 	/** {@inheritDoc} */
 	@Override
 	public int size() {
-		return metadata.size();
+		//read the watermark first: documents below it are complete
+		final int visible = visibleDocuments;
+		return Math.min(visible, metadata.size());
+	}
+	
+	/** Sets the number of documents that are visible to readers. Writers call this
+	 * once the documents are complete, after writing their metadata.
+	 * @since 5.8 */
+	public void setVisibleDocuments(int numberOfDocuments) {
+		this.visibleDocuments = numberOfDocuments;
 	}
 
 
@@ -229,7 +244,7 @@ public class MemoryMetaIndex extends MetaIndexBuilder implements MetaIndex,Seria
 			if (! isReverse[i])
 				continue;
 			int docid = metadata.size() -1;
-			key2value2id.get(this.keys[i]).put(data[i], docid+1);
+			key2value2id.get(this.keys[i]).put(data[i], docid);
 		}
 	}
 
@@ -260,9 +275,12 @@ public class MemoryMetaIndex extends MetaIndexBuilder implements MetaIndex,Seria
 	
 	@Override
 	public int getDocument(String key, String value) throws IOException {
-		TObjectIntHashMap<String> map = key2value2id.get(key);
+		Map<String,Integer> map = key2value2id.get(key);
 		if (map != null)
-			return map.get(value) -1;
+		{
+			final Integer docid = map.get(value);
+			return docid != null && docid < size() ? docid : -1;
+		}
 		for(int i=0;i<this.keys.length;i++)
 		{
 			if (key.equals(keys[i]))
@@ -290,7 +308,7 @@ public class MemoryMetaIndex extends MetaIndexBuilder implements MetaIndex,Seria
 	public void close() throws IOException {
 		metadata.clear();
 		if (key2meta!=null) key2meta.clear();
-		for (TObjectIntHashMap<String> map : key2value2id.values())
+		for (Map<String,Integer> map : key2value2id.values())
 			map.clear();
 	}
 
@@ -305,14 +323,14 @@ public class MemoryMetaIndex extends MetaIndexBuilder implements MetaIndex,Seria
 	 * Meta-data index iterator.
 	 */
 	private class MetaIterator implements Iterator<String[]> {
-		Iterator<String[]> iter = metadata.iterator();
+		int index = 0;
 
 		public boolean hasNext() {
-			return iter.hasNext();
+			return index < size();
 		}
 
 		public String[] next() {
-			return iter.next();
+			return metadata.get(index++);
 		}
 
 		public void remove() {
@@ -27,35 +27,71 @@
 
 package org.terrier.realtime.memory;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.terrier.structures.collections.MapEntry;
 import org.terrier.structures.collections.OrderedMap;
 
 /**
- * Wrapper around TreeMap implementing OrderedMap.
+ * Sorted map implementing OrderedMap, where the ith entry is the ith key inserted.
+ * Since 5.8, this is backed by a ConcurrentSkipListMap and an append-only ordering 
+ * array, so that lookups by key or by index do not need to lock while a single writer 
+ * adds new keys. size() is maintained by put(), remove() and clear().
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
  */
 @SuppressWarnings("serial")
-public class WTreeMap<K, V> extends TreeMap<K, V> implements OrderedMap<K, V> {
+public class WTreeMap<K, V> extends ConcurrentSkipListMap<K, V> implements OrderedMap<K, V> {
 
-	private List<K> ordering = new ArrayList<K>();
+	private volatile Object[] ordering = new Object[16];
+	private volatile int ordered = 0;
+	private volatile int entries = 0;
 
 	@Override
-	public V put(K key, V value) {
+	public synchronized V put(K key, V value) {
 		V val = super.put(key,value);
-		if (!ordering.contains(key)) ordering.add(key);
+		if (val == null) {
+			entries++;
+			Object[] o = ordering;
+			final int n = ordered;
+			if (n == o.length)
+				o = Arrays.copyOf(o, n * 2);
+			o[n] = key;
+			//readers check ordered before reading ordering
+			ordering = o;
+			ordered = n+1;
+		}
 		return val;
 	}
 	
+	@Override
+	public synchronized V remove(Object key) {
+		V val = super.remove(key);
+		if (val != null)
+			entries--;
+		return val;
+	}
+	
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		ordering = new Object[16];
+		ordered = 0;
+		entries = 0;
+	}
+	
+	@Override
+	public int size() {
+		return entries;
+	}
+	
 	/** {@inheritDoc} */
+	@SuppressWarnings("unchecked")
 	public java.util.Map.Entry<K, V> get(int index) {
-		//from the JDK documentation of keySet() The set's iterator returns the keys in ascending order.
-		//final K _key = (K) super.keySet().toArray()[index];
-		K key = ordering.get(index);
+		if (index >= ordered)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + ordered);
+		K key = (K) ordering[index];
 		return new MapEntry<K, V>(key, super.get(key));
 	}
-}
\ No newline at end of file
+}
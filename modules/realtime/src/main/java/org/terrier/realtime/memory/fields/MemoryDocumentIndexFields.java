@@ -26,14 +26,11 @@
 
 package org.terrier.realtime.memory.fields;
 
-import gnu.trove.TIntArrayList;
-
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map.Entry;
 
+import org.terrier.realtime.memory.AppendOnlyArray;
 import org.terrier.realtime.memory.MemoryDocumentIndex;
 import org.terrier.structures.DocumentIndexEntry;
 import org.terrier.structures.FieldDocumentIndex;
@@ -48,23 +45,23 @@ public class MemoryDocumentIndexFields extends MemoryDocumentIndex implements Fi
 
 	private static final long serialVersionUID = -3154305694924339094L;
 	// Per-field lengths (tokens).
-    private List<TIntArrayList> fieldLengths;
+    private AppendOnlyArray<int[]> fieldLengths;
 
     /** Constructor. */
     public MemoryDocumentIndexFields() {
         super();
-        fieldLengths = new ArrayList<TIntArrayList>();
+        fieldLengths = new AppendOnlyArray<int[]>();
     }
 
     /** Add document length and field lengths to document index. */
     public void addDocument(int length, int[] flengths) {
         docLengths.add(length);
-        fieldLengths.add(new TIntArrayList(flengths));
+        fieldLengths.add(flengths.clone());
     }
 
     /** {@inheritDoc} */
     public int[] getFieldLengths(int docid) {
-        return fieldLengths.get(docid).toNativeArray();
+        return fieldLengths.get(docid).clone();
     }
 
     /** {@inheritDoc} */
@@ -98,13 +95,13 @@ public class MemoryDocumentIndexFields extends MemoryDocumentIndex implements Fi
 
 		// private Iterator<DocumentIndexEntry> iter = null;
 		public boolean hasNext() {
-			return index < docLengths.size();
+			return index < getNumberOfDocuments();
 		}
 
 		public Entry<Integer, DocumentIndexEntry> next() {
 			FieldDocumentIndexEntry die = new FieldDocumentIndexEntry();
 			die.setDocumentLength(docLengths.get(index));
-			die.setFieldLengths(fieldLengths.get(index++).toNativeArray());
+			die.setFieldLengths(fieldLengths.get(index++).clone());
 			Entry<Integer, DocumentIndexEntry> e = new MapEntry<Integer, DocumentIndexEntry>(index, die);
 			return e;
 		}
@@ -118,13 +115,13 @@ public class MemoryDocumentIndexFields extends MemoryDocumentIndex implements Fi
 
 		// private Iterator<DocumentIndexEntry> iter = null;
 		public boolean hasNext() {
-			return index < docLengths.size();
+			return index < getNumberOfDocuments();
 		}
 
 		public DocumentIndexEntry next() {
 			FieldDocumentIndexEntry die = new FieldDocumentIndexEntry();
 			die.setDocumentLength(docLengths.get(index));
-			die.setFieldLengths(fieldLengths.get(index++).toNativeArray());
+			die.setFieldLengths(fieldLengths.get(index++).clone());
 			return die;
 		}
 
@@ -86,6 +86,7 @@ public class MemoryFieldsIndex extends MemoryFields {
         logger.info("** Fields **");
         inverted = new MemoryFieldsInvertedIndex(lexicon, document);
         direct = new MemoryFieldsDirectIndex(this.getDocumentIndex());
+        publishDocuments();
     }
 
     /** {@inheritDoc} */
@@ -136,6 +137,7 @@ public class MemoryFieldsIndex extends MemoryFields {
         stats.updateUniqueTerms(lexicon.numberOfEntries());
         stats.updateFields(fieldcounts);
         stats.relcaluate();
+        publishDocuments();
 		}
 	}
     
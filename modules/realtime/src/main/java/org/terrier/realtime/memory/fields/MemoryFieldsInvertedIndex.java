@@ -28,15 +28,10 @@ package org.terrier.realtime.memory.fields;
 
 
 
-import gnu.trove.TIntArrayList;
-import gnu.trove.TIntObjectHashMap;
-
 import java.io.IOException;
-import java.util.Arrays;
 
 import org.terrier.realtime.memory.MemoryInvertedIndex;
 import org.terrier.realtime.memory.MemoryPointer;
-import org.terrier.realtime.memory.MemoryPostingList;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.Lexicon;
 import org.terrier.structures.Pointer;
@@ -68,68 +63,53 @@ public class MemoryFieldsInvertedIndex extends MemoryInvertedIndex {
 
     /** Insert/update posting (docid,freq,(fields)). */
     public void add(int termid, int docid, int freq, int[] fields) {
-        if (postings.containsKey(termid))
-            ((FieldsMemoryPostingList)postings.get(termid)).add(docid, freq, fields);
+        FieldsMemoryPostingList pl = (FieldsMemoryPostingList) getPostingList(termid);
+        if (pl != null)
+            pl.add(docid, freq, fields);
         else
-            postings.put(termid, new FieldsMemoryPostingList(docid, freq, fields));
+            setPostingList(termid, new FieldsMemoryPostingList(docid, freq, fields));
     }
 
     /** {@inheritDoc} */
     @Override
     public IterablePosting getPostings(Pointer _termid) throws IOException {
-    	MemoryPointer termid = (MemoryPointer)_termid;
-        FieldsMemoryPostingList pl;
-        if (postings.containsKey(termid.getPointer()))
-            pl = (FieldsMemoryPostingList) postings.get(termid.getPointer());
-        else
+        final int visible = visibleDocuments;
+        MemoryPointer termid = (MemoryPointer)_termid;
+        FieldsMemoryPostingList pl = (FieldsMemoryPostingList) getPostingList(termid.getPointer());
+        if (pl == null)
             pl = new FieldsMemoryPostingList();
-        return new MemoryFieldsIterablePosting(doi, pl.docids(), pl.freqs(), pl.fields());
+        return new MemoryFieldsIterablePosting(doi, pl, visible);
     }
 
-    /* Postings list. */
-    private class FieldsMemoryPostingList implements MemoryPostingList{
+    /* Postings list, with the field frequencies of each posting encoded after its frequency. */
+    static class FieldsMemoryPostingList extends BasicMemoryPostingList {
 
-        // (docid,freq,(fields))
-        TIntArrayList            docids;
-        TIntArrayList            freqs;
-        TIntObjectHashMap<int[]> fields;
+        private static final long serialVersionUID = 1L;
+        int fieldCount = 0;
 
         /* Constructor. */
-        FieldsMemoryPostingList() {
-            docids = new TIntArrayList();
-            freqs = new TIntArrayList();
-            fields = new TIntObjectHashMap<int[]>();
-        }
+        FieldsMemoryPostingList() {}
 
         /* Constructor. */
         FieldsMemoryPostingList(int docid, int freq, int[] fields) {
-            this();
             add(docid, freq, fields);
         }
 
         /* Add posting. */
         void add(int docid, int freq, int[] fields) {
-            docids.add(docid);
-            freqs.add(freq);
-            this.fields.put(docid, Arrays.copyOf(fields, fields.length));
-        }
-
-        /* Get docids. */
-        TIntArrayList docids() {
-            return new TIntArrayList(docids.toNativeArray());
-        }
-
-        /* Get freqs. */
-        TIntArrayList freqs() {
-            return new TIntArrayList(freqs.toNativeArray());
+            if (size == 0)
+                fieldCount = fields.length;
+            startPosting(docid);
+            write(freq);
+            for (int i = 0; i < fieldCount; i++)
+                write(fields[i]);
+            publish();
         }
 
-        /* Get fields. */
-        TIntObjectHashMap<int[]> fields() {
-            TIntObjectHashMap<int[]> tmp = new TIntObjectHashMap<int[]>(fields.size());
-            for (int docid : fields.keys())
-                tmp.put(docid, Arrays.copyOf(fields.get(docid), fields.get(docid).length));
-            return tmp;
+        /* Re-encoding would lose the field frequencies. */
+        @Override
+        public boolean addOrUpdateFreq(int docid, int freq) {
+            throw new UnsupportedOperationException();
         }
     }
 }
@@ -32,6 +32,7 @@ import gnu.trove.TIntObjectHashMap;
 import java.io.IOException;
 
 import org.terrier.realtime.memory.MemoryIterablePosting;
+import org.terrier.realtime.memory.fields.MemoryFieldsInvertedIndex.FieldsMemoryPostingList;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.postings.FieldPosting;
 import org.terrier.structures.postings.FieldPostingImpl;
@@ -45,21 +46,39 @@ import org.terrier.structures.postings.WritablePosting;
 public class MemoryFieldsIterablePosting extends MemoryIterablePosting implements FieldPosting {
 
     // Iterate over (docid,freq,(fields)).
-    private TIntObjectHashMap<int[]> fields;
+    private int[] fields;
 
     /** Constructor (docid,freq,(fields)). */
     public MemoryFieldsIterablePosting(DocumentIndex docindex, TIntArrayList docids, TIntArrayList freqs, TIntObjectHashMap<int[]> fields) {
-        super(docindex, docids, freqs);
-        this.fields = fields;
+        this(docindex, copy(docids, freqs, fields), Integer.MAX_VALUE);
+    }
+    
+    /** Constructor, iterating over the postings of pl for documents with docids less than visibleDocuments.
+     * @since 5.8 */
+    MemoryFieldsIterablePosting(DocumentIndex docindex, FieldsMemoryPostingList pl, int visibleDocuments) {
+        super(docindex, pl, visibleDocuments);
+        //fieldCount is set before the first posting is published
+        this.fields = new int[pl.fieldCount];
+    }
+    
+    private static FieldsMemoryPostingList copy(TIntArrayList docids, TIntArrayList freqs, TIntObjectHashMap<int[]> fields) {
+        FieldsMemoryPostingList pl = new FieldsMemoryPostingList();
+        for(int i=0;i<docids.size();i++)
+            pl.add(docids.get(i), freqs.get(i), fields.get(docids.get(i)));
+        return pl;
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void readPosting() {
+        super.readPosting();
+        for (int i = 0; i < fields.length; i++)
+            fields[i] = readVInt();
     }
 
     /** {@inheritDoc} */
     public int[] getFieldFrequencies() {
-    	if (pl_doc.size()==0) {
-    		int[] f = {};
-    		fields.put(index, f);
-    	}
-        return fields.get(getId());
+        return fields;
     }
 
     /** {@inheritDoc}*/
@@ -81,6 +100,6 @@ public class MemoryFieldsIterablePosting extends MemoryIterablePosting implement
 	/** {@inheritDoc} */
 	@Override
 	public WritablePosting asWritablePosting() {
-		return new FieldPostingImpl(getId(), getFrequency(), getFieldFrequencies());
+		return new FieldPostingImpl(getId(), getFrequency(), getFieldFrequencies().clone());
 	}
 }
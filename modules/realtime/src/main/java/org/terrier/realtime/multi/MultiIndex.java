@@ -30,7 +30,9 @@ package org.terrier.realtime.multi;
 import java.io.IOException;
 import java.io.Flushable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +43,7 @@ import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexFactory;
 import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconBloomFilter;
 import org.terrier.structures.MetaIndex;
 import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
@@ -51,7 +54,14 @@ import org.terrier.utility.ApplicationSetup;
  * multiple indices such that they appear as one single index. Matching
  * over a MultiIndex can either be performed by a normal matching across
  * all index shards or using a special selective matching class that only
- * uses a subset of the shards this contains.
+ * uses a subset of the shards this contains. The shards can be replaced
+ * while the index is being searched: each structure obtained from a MultiIndex
+ * reflects a consistent snapshot of the shards. A search run by a Manager pins
+ * a snapshot of the shards for the searching thread, between {@link #beginSearch()} 
+ * and {@link #endSearch()}, so that all structures obtained by the search come from 
+ * the same shards, and none of these shards are closed by a later change, e.g. when 
+ * merged shards are deleted. Other code can run searches on a {@link ShardSnapshot} 
+ * obtained from {@link #acquireShards()}, which is closed once the search is finished.
  * 
  * <p><b>Properties</b></p>
  * <ul><li>multiindex.selectivematching</tt> - What policy should be used to perform matching. Two options are supported: all (default), mostrecent</li></ul>
@@ -64,10 +74,42 @@ public class MultiIndex extends Index {
 	private static final Logger logger = LoggerFactory.getLogger(MultiIndex.class);
 
 	/*
-	 * List of the underlying indices.
+	 * List of the underlying indices. Changes must be made while holding the lock on 
+	 * this list, followed by a call to shardsChanged().
 	 */
 	protected List<Index> indices;
 	
+	/*
+	 * Immutable copy of the underlying indices, replaced after every change, 
+	 * such that readers never observe a partially updated list.
+	 */
+	private volatile List<Index> shards;
+	
+	/*
+	 * Generation of the shards, incremented after every change.
+	 */
+	private long generation;
+	
+	/*
+	 * Number of open snapshots of each generation of the shards.
+	 */
+	private final TreeMap<Long,Integer> snapshots = new TreeMap<>();
+	
+	/*
+	 * Snapshot of the shards pinned by each thread that is running a search.
+	 */
+	private final ThreadLocal<PinnedShards> pinned = new ThreadLocal<>();
+	
+	/** A snapshot pinned by a thread, with the number of nested searches using it */
+	static final class PinnedShards {
+		final ShardSnapshot snapshot;
+		int depth = 1;
+		
+		PinnedShards(ShardSnapshot _snapshot) {
+			this.snapshot = _snapshot;
+		}
+	}
+	
 	/**
 	 * Selective Matching policy, a policy for accessing only subsets of the indices within this multi-index.
 	 */
@@ -84,6 +126,7 @@ public class MultiIndex extends Index {
 		for (Index i : indices)
 			in.add(i);
 		this.indices = in;
+		this.shards = Collections.unmodifiableList(new ArrayList<Index>(in));
 		this.blocks = blocks;
 		this.fields = fields;
 		
@@ -93,6 +136,15 @@ public class MultiIndex extends Index {
 
 		logger.info("***REALTIME*** MultiIndex (NEW)");
 	}
+	
+	/** Constructs a snapshot of the current shards of the specified MultiIndex */
+	MultiIndex(MultiIndex parent) {
+		this.indices = parent.shards;
+		this.shards = parent.shards;
+		this.blocks = parent.blocks;
+		this.fields = parent.fields;
+		this.selectiveMatchingPolicy = parent.selectiveMatchingPolicy;
+	}
 
 	/** {@inheritDoc} */
 	public String toString() {
@@ -106,31 +158,36 @@ public class MultiIndex extends Index {
 	/** {@inheritDoc} */
 	@SuppressWarnings("unchecked")
 	public Lexicon<String> getLexicon() {
-		int indexCount = indices.size();
+		List<Index> selected = selectiveMatchingPolicy.getSelectedIndices(currentShards());
+		int indexCount = selected.size();
 		int[] offsets = new int[indexCount];
 		Lexicon<String>[] lexicons = new Lexicon[indexCount];
+		LexiconBloomFilter[] filters = new LexiconBloomFilter[indexCount];
 
 		int i = 0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : selected) {
 			lexicons[i] = index.getLexicon();
+			if (index.hasIndexStructure(LexiconBloomFilter.STRUCTURE_NAME))
+				filters[i] = (LexiconBloomFilter) index.getIndexStructure(LexiconBloomFilter.STRUCTURE_NAME);
 			offsets[i] = index.getCollectionStatistics()
 					.getNumberOfUniqueTerms();
 			i++;
 		}
 
-		return new MultiLexicon(lexicons, offsets);
+		return new MultiLexicon(lexicons, offsets, filters);
 	}
 
 	/** {@inheritDoc} */
 	@SuppressWarnings("unchecked")
 	public PostingIndex<?> getInvertedIndex() {
-		int ondisk = indices.size();
+		List<Index> selected = selectiveMatchingPolicy.getSelectedIndices(currentShards());
+		int ondisk = selected.size();
 		int[] offsets = new int[ondisk];
 		PostingIndex<?>[] postings = new PostingIndex[ondisk];
 
 		int currentoffset = 0;
 		int i = 0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : selected) {
 			postings[i] = index.getInvertedIndex();
 			offsets[i] = currentoffset;
 			currentoffset += index.getCollectionStatistics()
@@ -143,12 +200,13 @@ public class MultiIndex extends Index {
 
 	/** {@inheritDoc} */
 	public MetaIndex getMetaIndex() {
-		int ondisk = indices.size();
+		List<Index> selected = selectiveMatchingPolicy.getSelectedIndices(currentShards());
+		int ondisk = selected.size();
 		int[] offsets = new int[ondisk];
 		MetaIndex[] metas = new MetaIndex[ondisk];
 
 		int i =0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : selected) {
 			metas[i] = index.getMetaIndex();
 			offsets[i] = index.getCollectionStatistics()
 					.getNumberOfDocuments();
@@ -160,12 +218,13 @@ public class MultiIndex extends Index {
 
 	/** {@inheritDoc} */
 	public DocumentIndex getDocumentIndex() {
-		int ondisk = indices.size();
+		List<Index> selected = selectiveMatchingPolicy.getSelectedIndices(currentShards());
+		int ondisk = selected.size();
 		int[] offsets = new int[ondisk];
 		DocumentIndex[] docs = new DocumentIndex[ondisk];
 
 		int i =0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : selected) {
 			docs[i] = index.getDocumentIndex();
 			offsets[i] = index.getCollectionStatistics()
 					.getNumberOfDocuments();
@@ -177,11 +236,12 @@ public class MultiIndex extends Index {
 
 	/** {@inheritDoc} */
 	public CollectionStatistics getCollectionStatistics() {
-		int ondisk = indices.size();
+		List<Index> selected = selectiveMatchingPolicy.getSelectedIndices(currentShards());
+		int ondisk = selected.size();
 		CollectionStatistics[] stats = new CollectionStatistics[ondisk];
 
 		int i =0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : selected) {
 			stats[i] = index.getCollectionStatistics();
 			i++;
 		}
@@ -191,11 +251,12 @@ public class MultiIndex extends Index {
 	
 	@SuppressWarnings("unchecked")
 	public PostingIndex<?> getDirectIndex() {
-		int ondisk = indices.size();
+		List<Index> selected = selectiveMatchingPolicy.getSelectedIndices(currentShards());
+		int ondisk = selected.size();
 		PostingIndex<?>[] postings = new PostingIndex[ondisk];
 
 		int i = 0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : selected) {
 			postings[i] = index.getDirectIndex();
 			i++;
 		}
@@ -222,18 +283,18 @@ public class MultiIndex extends Index {
 
 	/** {@inheritDoc} */
 	public void close() throws IOException {
-		for (Index i : this.indices)
+		for (Index i : shards)
 			i.close();
 	}
 
 	public void flush() throws IOException {
-		for (Index i : this.indices)
+		for (Index i : shards)
 			if (i instanceof Flushable)
 				((Flushable)i).flush();
 	}
 	
 	public Index getIthShard(int i) {
-		return indices.get(i);
+		return shards.get(i);
 	}
 	
 	/**
@@ -241,7 +302,181 @@ public class MultiIndex extends Index {
 	 * @return integer number of shards
 	 */
 	public int getNumberOfShards() {
-		return indices.size();
+		return shards.size();
+	}
+	
+	/**
+	 * Returns the index shards that this index currently contains. The returned
+	 * list is an immutable snapshot, which is not affected by later changes to the shards.
+	 * @since 5.8
+	 */
+	public List<Index> getShards() {
+		return shards;
+	}
+	
+	/** Returns the shards pinned by the search running on the current thread, if any, 
+	 * or else the current shards */
+	protected List<Index> currentShards() {
+		final PinnedShards p = pinned.get();
+		return p != null ? ((MultiIndex) p.snapshot).shards : shards;
+	}
+	
+	/** {@inheritDoc} Pins a snapshot of the current shards for the current thread, 
+	 * such that all structures obtained by this thread come from the same shards, 
+	 * and these shards are not closed until {@link #endSearch()}.
+	 * @since 5.8 */
+	@Override
+	public void beginSearch() {
+		final PinnedShards p = pinned.get();
+		if (p != null)
+			p.depth++;
+		else
+			pinned.set(new PinnedShards(acquireShards()));
+	}
+	
+	/** {@inheritDoc} Releases the snapshot pinned by {@link #beginSearch()}.
+	 * @since 5.8 */
+	@Override
+	public void endSearch() {
+		final PinnedShards p = pinned.get();
+		if (p == null)
+			throw new IllegalStateException("endSearch() called without beginSearch()");
+		if (--p.depth > 0)
+			return;
+		pinned.remove();
+		p.snapshot.close();
+	}
+	
+	/**
+	 * Appends a new shard, e.g. a new in-memory index.
+	 * @since 5.8
+	 */
+	public void addShard(Index shard) {
+		synchronized (indices) {
+			indices.add(shard);
+			shardsChanged();
+		}
+	}
+	
+	/**
+	 * Atomically replaces the contiguous shards <tt>old</tt> by a single shard
+	 * containing the same documents in the same order, e.g. when an in-memory shard
+	 * has been written to disk, or when shards have been merged. As docids are assigned
+	 * in shard order, the docids of all documents are unchanged. 
+	 * @since 5.8
+	 */
+	public void replaceShards(List<? extends Index> old, Index replacement) {
+		synchronized (indices) {
+			int first = indices.indexOf(old.get(0));
+			if (first == -1 || first + old.size() > indices.size() 
+				|| ! indices.subList(first, first + old.size()).equals(old))
+				throw new IllegalStateException("Shards to replace are not contiguous shards of this index");
+			indices.subList(first, first + old.size()).clear();
+			indices.add(first, replacement);
+			shardsChanged();
+		}
+	}
+	
+	/** Republishes the shards seen by readers, after the indices list has been changed */
+	protected void shardsChanged() {
+		synchronized (indices) {
+			shards = Collections.unmodifiableList(new ArrayList<Index>(indices));
+			generation++;
+		}
+	}
+	
+	/**
+	 * Returns a snapshot of the current shards, which can be searched as an index. 
+	 * Shards replaced after the snapshot was taken are not closed until the snapshot is 
+	 * closed, so it must be closed once the search is finished, e.g.
+	 * <pre>
+	 * try(MultiIndex.ShardSnapshot snapshot = index.acquireShards()) {
+	 *   Manager manager = ManagerFactory.from(snapshot.getIndexRef());
+	 *   ...
+	 * }
+	 * </pre>
+	 * @since 5.8
+	 */
+	public ShardSnapshot acquireShards() {
+		synchronized (indices) {
+			snapshots.merge(generation, 1, Integer::sum);
+			return new ShardSnapshot(this, generation);
+		}
+	}
+	
+	/** Records that a snapshot of the specified generation of the shards has been closed */
+	void releaseShards(long snapshotGeneration) {
+		synchronized (indices) {
+			final int count = snapshots.get(snapshotGeneration) - 1;
+			if (count == 0)
+				snapshots.remove(snapshotGeneration);
+			else
+				snapshots.put(snapshotGeneration, count);
+		}
+		snapshotReleased();
+	}
+	
+	/** Called after a snapshot of the shards has been closed. Does nothing by default. */
+	protected void snapshotReleased() {}
+	
+	/** Returns the generation of the current shards, which is incremented whenever they change */
+	protected long getShardsGeneration() {
+		synchronized (indices) {
+			return generation;
+		}
+	}
+	
+	/** Returns true if any snapshot of a generation of the shards older than that specified is still open */
+	protected boolean hasSnapshotsBefore(long shardsGeneration) {
+		synchronized (indices) {
+			return ! snapshots.isEmpty() && snapshots.firstKey() < shardsGeneration;
+		}
+	}
+	
+	/**
+	 * A snapshot of the shards of a MultiIndex, obtained from {@link MultiIndex#acquireShards()}, 
+	 * which can be searched as an index. Its shards cannot be changed, and closing it does not close 
+	 * its shards, but allows the shards that have since been replaced to be closed.
+	 * @since 5.8
+	 */
+	public static class ShardSnapshot extends MultiIndex {
+		final MultiIndex parent;
+		final long snapshotGeneration;
+		boolean closed = false;
+		
+		ShardSnapshot(MultiIndex _parent, long _snapshotGeneration) {
+			super(_parent);
+			this.parent = _parent;
+			this.snapshotGeneration = _snapshotGeneration;
+		}
+		
+		@Override
+		public void addShard(Index shard) {
+			throw new UnsupportedOperationException("The shards of a snapshot cannot be changed");
+		}
+		
+		@Override
+		public void replaceShards(List<? extends Index> old, Index replacement) {
+			throw new UnsupportedOperationException("The shards of a snapshot cannot be changed");
+		}
+		
+		/** The shards of a snapshot never change, so nothing needs to be pinned */
+		@Override
+		public void beginSearch() {}
+		
+		@Override
+		public void endSearch() {}
+		
+		/** Releases this snapshot. Its shards are not closed. */
+		@Override
+		public void close() {
+			synchronized (this) {
+				if (closed)
+					return;
+				closed = true;
+			}
+			parent.releaseShards(snapshotGeneration);
+		}
 	}
 
 }
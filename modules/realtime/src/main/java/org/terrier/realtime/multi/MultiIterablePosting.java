@@ -69,6 +69,23 @@ public class MultiIterablePosting extends IterablePostingImpl implements
 		return next();
 	}
 
+	/** {@inheritDoc} Children whose documents all precede the target are skipped
+	 * without being read, and the target is then sought within the child containing it. */
+	@Override
+	public int next(int target) throws IOException {
+		while (currentChild + 1 < children.length && offsets[currentChild + 1] <= target)
+			currentChild++;
+		while (currentChild < children.length) {
+			if (children[currentChild] != null) {
+				int id = children[currentChild].next(Math.max(0, target - offsets[currentChild]));
+				if (id != IterablePosting.EOL)
+					return id + offsets[currentChild];
+			}
+			currentChild++;
+		}
+		return IterablePosting.EOL;
+	}
+
 	/** {@inheritDoc} */
 	public boolean endOfPostings() {
 		return currentChild >= children.length;
@@ -39,6 +39,7 @@ import java.util.Set;
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.tuple.Pair;
 import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconBloomFilter;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.StaTools;
@@ -56,6 +57,9 @@ import org.terrier.utility.StaTools;
  * <li>The unique number of terms is not stored and needs to be calculated on-the-fly. </li>
  * </ul>
  * 
+ * <p>Where a shard has a {@link LexiconBloomFilter}, its lexicon is only consulted for terms that 
+ * the filter reports it might contain.</p>
+ * 
  * <p><b>Properties</b></p>
  * <ul>
  * <li><tt>MultiLexicon.approxNumEntries</tt> - do we try and approximate the number of lexicon entries (saves a lot of time but is inaccurate), default is true.</li>
@@ -69,6 +73,7 @@ public class MultiLexicon extends Lexicon<String> {
 
 	LRUMap<Integer, String> hash2term = new LRUMap<>(1000);
 	private Lexicon<String>[] lexicons;
+	private LexiconBloomFilter[] filters;
 	private int[] numTerms;
 	private ArrayList<String> uniqueTerms;
 
@@ -84,7 +89,17 @@ public class MultiLexicon extends Lexicon<String> {
 	 * constructor.
 	 */
 	public MultiLexicon(Lexicon<String>[] lexicons, int[] numTerms) {
+		this(lexicons, numTerms, new LexiconBloomFilter[lexicons.length]);
+	}
+	
+	/**
+	 * constructor, where <tt>filters</tt> contains the Bloom filter of each
+	 * shard's lexicon, or null for shards without one.
+	 * @since 5.8
+	 */
+	public MultiLexicon(Lexicon<String>[] lexicons, int[] numTerms, LexiconBloomFilter[] filters) {
 		this.lexicons = lexicons;
+		this.filters = filters;
 		this.numTerms = numTerms;
 		Set<String> unorderedTerms = new HashSet<String>();
 		if (!approximateNumberofEntries)
@@ -135,6 +150,10 @@ public class MultiLexicon extends Lexicon<String> {
 		int i = 0;
 		boolean found = false;
 		for (Lexicon<String> lexicon : lexicons) {
+			if (filters[i] != null && ! filters[i].mightContain(term)) {
+				i++;
+				continue;
+			}
 			le = lexicon.getLexiconEntry(term);
 			if (le != null) {
 				les[i] = le;
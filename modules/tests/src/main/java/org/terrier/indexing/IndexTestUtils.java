@@ -32,16 +32,21 @@ import static org.junit.Assert.assertNotNull;
 
 import java.io.ByteArrayInputStream;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.terrier.indexing.tokenisation.EnglishTokeniser;
 import org.terrier.indexing.tokenisation.Tokeniser;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.indexing.Indexer;
 import org.terrier.structures.indexing.classical.BasicIndexer;
 import org.terrier.structures.indexing.classical.BlockIndexer;
 import org.terrier.structures.indexing.singlepass.BasicSinglePassIndexer;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.IterablePosting;
 import org.terrier.utility.ApplicationSetup;
 
 public class IndexTestUtils {
@@ -150,4 +155,36 @@ public class IndexTestUtils {
 		return index;
 	}
 	
+	/** Returns a description of the inverted index posting list of each term, including any 
+	 * positions and field frequencies, such that the postings of two indices can be compared. 
+	 * Also checks that the number of postings of each term matches its document frequency. */
+	public static Map<String,String> getPostings(Index index) throws Exception
+	{
+		Map<String,String> rtr = new HashMap<>();
+		Iterator<Map.Entry<String,LexiconEntry>> iter = index.getLexicon().iterator();
+		while(iter.hasNext())
+		{
+			Map.Entry<String,LexiconEntry> e = iter.next();
+			IterablePosting ip = index.getInvertedIndex().getPostings(e.getValue());
+			StringBuilder s = new StringBuilder();
+			int count = 0;
+			while(ip.next() != IterablePosting.EOL)
+			{
+				s.append(ip.getId()).append(':').append(ip.getFrequency()).append(':').append(ip.getDocumentLength());
+				if (ip instanceof BlockPosting)
+					for(int pos : ((BlockPosting)ip).getPositions())
+						s.append(',').append(pos);
+				if (ip instanceof FieldPosting)
+					for(int tf : ((FieldPosting)ip).getFieldFrequencies())
+						s.append(';').append(tf);
+				s.append(' ');
+				count++;
+			}
+			ip.close();
+			assertEquals(e.getKey(), e.getValue().getDocumentFrequency(), count);
+			rtr.put(e.getKey(), s.toString());
+		}
+		return rtr;
+	}
+	
 }
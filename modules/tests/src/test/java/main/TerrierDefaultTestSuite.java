@@ -34,6 +34,7 @@ import org.terrier.applications.TestShowDocumentCommand;
 import org.terrier.compression.bit.TestCompressedBitFiles;
 import org.terrier.compression.bit.TestCompressedBitFilesDelta;
 import org.terrier.compression.bit.TestCompressedBitFilesGolomb;
+import org.terrier.compression.integer.TestIntegerCodecs;
 import org.terrier.evaluation.TestAdhocEvaluation;
 import org.terrier.evaluation.TestTRECQrelsInMemory;
 import org.terrier.fat.TestFatCandidateResultSet;
@@ -45,6 +46,8 @@ import org.terrier.fat.TestScoringMatchingWithFat;
 import org.terrier.indexing.TestCollectionFactory;
 import org.terrier.indexing.TestCollections;
 import org.terrier.indexing.TestCompressionConfig;
+import org.terrier.indexing.TestIntegerCodecCompressionConfig;
+import org.terrier.indexing.TestSkipCompressionConfig;
 import org.terrier.indexing.TestCrawlDate;
 import org.terrier.indexing.TestIndexers;
 import org.terrier.indexing.TestSimpleFileCollection;
@@ -58,7 +61,11 @@ import org.terrier.indexing.TestFilteringCollection;
 import org.terrier.indexing.tokenisation.TestEnglishTokeniser;
 import org.terrier.indexing.tokenisation.TestUTFTokeniser;
 import org.terrier.matching.TestDAATFullMatching;
+import org.terrier.matching.TestDAATWANDMatching;
+import org.terrier.matching.TestDAATBlockMaxWANDMatching;
+import org.terrier.matching.TestDAATMaxScoreMatching;
 import org.terrier.matching.TestTAATFullMatching;
+import org.terrier.matching.TestSAATAnytimeMatching;
 import org.terrier.matching.TestMatchingQueryTerms;
 import org.terrier.matching.TestResultSets;
 import org.terrier.matching.TestTRECResultsMatching;
@@ -74,25 +81,38 @@ import org.terrier.rest.TestClientAndServer;
 import org.terrier.statistics.TestGammaFunction.TestWikipediaLanczosGammaFunction;
 import org.terrier.structures.TestBasicLexiconEntry;
 import org.terrier.structures.TestBitIndexPointer;
+import org.terrier.structures.TestColumnarMetaIndex;
 import org.terrier.structures.TestCompressingMetaIndex;
+import org.terrier.structures.TestDocumentPositionIndex;
+import org.terrier.structures.TestFSADocumentIndex;
 import org.terrier.structures.TestLZ4MetaIndex;
 import org.terrier.structures.TestZstdMetaIndex;
 import org.terrier.structures.TestIndexOnDisk;
+import org.terrier.structures.TestTermScoreUpperBounds;
+import org.terrier.structures.TestTermDictionaryFST;
 import org.terrier.structures.TestIndexUtil;
 import org.terrier.structures.TestTRECQuery;
 import org.terrier.structures.bit.TestBitPostingIndex;
+import org.terrier.structures.cache.TestBoundedQueryResultCache;
+import org.terrier.structures.bit.TestSkipPostingIndex;
+import org.terrier.structures.integer.TestIntegerCodingPostingIndex;
 import org.terrier.structures.bit.TestBitPostingIndexInputStream;
 import org.terrier.structures.bit.TestPostingStructures;
 import org.terrier.structures.collections.TestFSArrayFile;
 import org.terrier.structures.collections.TestFSOrderedMapFile;
 import org.terrier.structures.indexing.TestIndexing;
+import org.terrier.structures.indexing.TestInvertedIndexRecompresser;
 import org.terrier.structures.indexing.TestIndexingFatalErrors;
 import org.terrier.structures.indexing.singlepass.TestInverted2DirectIndexBuilder;
+import org.terrier.structures.indexing.singlepass.TestPipelinedSinglePassIndexing;
+import org.terrier.structures.indexing.singlepass.TestOffHeapMemoryPostings;
 import org.terrier.structures.merging.TestMerger;
+import org.terrier.structures.merging.TestMultiStructureMerger;
 import org.terrier.structures.postings.TestFieldORIterablePosting;
 import org.terrier.structures.postings.TestFieldOnlyIterablePosting;
 import org.terrier.structures.postings.TestORIterablePosting;
 import org.terrier.structures.postings.TestPhraseIterablePosting;
+import org.terrier.structures.postings.TestPostingListCache;
 import org.terrier.structures.postings.TestProximityIterablePosting;
 import org.terrier.structures.serialization.TestFixedSizeTextFactory;
 import org.terrier.terms.TestPorterStemmer;
@@ -114,6 +134,7 @@ import org.terrier.utility.TestTermCodes;
 import org.terrier.utility.TestUnitUtils;
 import org.terrier.utility.TestVersion;
 import org.terrier.utility.io.TestCountingInputStream;
+import org.terrier.utility.io.TestRandomDataInputMapped;
 import org.terrier.utility.io.TestRandomDataInputMemory;
 
 
@@ -142,6 +163,7 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	TestCompressedBitFiles.class,
 	TestCompressedBitFilesDelta.class,
 	TestCompressedBitFilesGolomb.class,
+	TestIntegerCodecs.class,
 	
 	
 	//.evaluation
@@ -160,6 +182,8 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	TestCollections.class,
 	TestCollectionFactory.class,
 	TestCompressionConfig.class,
+	TestSkipCompressionConfig.class,
+	TestIntegerCodecCompressionConfig.class,
 	TestCrawlDate.class,
 	TestIndexers.class,
 	TestSimpleFileCollection.class,
@@ -180,7 +204,11 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	//.matching
 	TestMatchingQueryTerms.class,
 	TestDAATFullMatching.class,
+	TestDAATWANDMatching.class,
+	TestDAATBlockMaxWANDMatching.class,
+	TestDAATMaxScoreMatching.class,
 	TestTAATFullMatching.class,
+	TestSAATAnytimeMatching.class,
 	TestTRECResultsMatching.class,
 	TestResultSets.class,
 	
@@ -212,12 +240,22 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	TestBasicLexiconEntry.class,
 	TestBitIndexPointer.class,
 	TestBitPostingIndex.class,
+	TestSkipPostingIndex.class,
+	TestIntegerCodingPostingIndex.class,
 	TestBitPostingIndexInputStream.class,
 	TestCompressingMetaIndex.class,
+	TestColumnarMetaIndex.class,
+	TestFSADocumentIndex.class,
+	TestDocumentPositionIndex.class,
 	TestPostingStructures.class,
 	TestIndexUtil.class,
 	TestTRECQuery.class,
 	TestIndexOnDisk.class,
+	TestTermScoreUpperBounds.class,
+	TestTermDictionaryFST.class,
+	
+	//.structures.cache
+	TestBoundedQueryResultCache.class,
 	
 	//.structures.collections
 	TestFSOrderedMapFile.class,
@@ -225,13 +263,17 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	
 	//.structures.indexing
 	TestIndexing.class,
+	TestInvertedIndexRecompresser.class,
 	TestIndexingFatalErrors.class,
 	
 	//structures.indexing.merging
 	TestMerger.class,
+	TestMultiStructureMerger.class,
 	
 	//.structures.indexing.sp.hadoop
 	TestInverted2DirectIndexBuilder.class,
+	TestPipelinedSinglePassIndexing.class,
+	TestOffHeapMemoryPostings.class,
 	
 	//.structures.indexing.sp.hadoop
 //	TestBitPostingIndexInputFormat.class,
@@ -244,6 +286,7 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	TestFieldORIterablePosting.class,
 	TestPhraseIterablePosting.class,
 	TestProximityIterablePosting.class,
+	TestPostingListCache.class,
 	
 	//.structures.serialization
 	TestFixedSizeTextFactory.class,
@@ -272,6 +315,7 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	
 	//utility.io
 	TestRandomDataInputMemory.class,
+	TestRandomDataInputMapped.class,
 	TestCountingInputStream.class,
 	
 	
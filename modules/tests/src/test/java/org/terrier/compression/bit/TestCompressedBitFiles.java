@@ -54,6 +54,7 @@ import org.terrier.structures.postings.ArrayOfIdsIterablePosting;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.Posting;
 import org.terrier.utility.Files;
+import org.terrier.utility.io.RandomDataInputMapped;
 import org.terrier.utility.io.RandomDataInputMemory;
 
 
@@ -69,6 +70,8 @@ import org.terrier.utility.io.RandomDataInputMemory;
 	TestCompressedBitFiles.TestCompressedBitFiles_BitFileBufferedSmallBuffer.class,
 	TestCompressedBitFiles.TestCompressedBitFiles_BitFileInMemory.class,
 	TestCompressedBitFiles.TestCompressedBitFiles_BitFileInMemoryLarge.class,
+	TestCompressedBitFiles.TestCompressedBitFiles_BitFileMapped.class,
+	TestCompressedBitFiles.TestCompressedBitFiles_BitFileMappedSmallSegments.class,
 	//TestCompressedBitFiles.TestCompressedBitFiles_BitFile_RandomDataInputMemory.class,
 	TestCompressedBitFiles.TestCompressedBitFiles_BitFileBuffered_RandomDataInputMemory.class
 })
@@ -416,6 +419,26 @@ public class TestCompressedBitFiles  {
 		}
 	}
 	
+	public static class TestCompressedBitFiles_BitFileMapped extends TestCompressedBitFiles_OnFile
+	{
+		public TestCompressedBitFiles_BitFileMapped(){}
+				
+		protected BitIn getBitIn() throws Exception
+		{
+			return new BitFileMapped(filename).readReset((long)0, (byte)0, new File(filename).length()-1, (byte)7);
+		}
+	}
+	
+	public static class TestCompressedBitFiles_BitFileMappedSmallSegments extends TestCompressedBitFiles_OnFile
+	{
+		public TestCompressedBitFiles_BitFileMappedSmallSegments(){}
+				
+		protected BitIn getBitIn() throws Exception
+		{
+			return new BitFileMapped(new RandomDataInputMapped(filename, 3)).readReset((long)0, (byte)0, new File(filename).length()-1, (byte)7);
+		}
+	}
+	
 	public static class TestCompressedBitFiles_BitFileBuffered_RandomDataInputMemory extends TestCompressedBitFiles_OnFile
 	{
 		public TestCompressedBitFiles_BitFileBuffered_RandomDataInputMemory(){}
@@ -0,0 +1,174 @@
+package org.terrier.compression.integer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.compression.integer.codec.FORCodec;
+import org.terrier.compression.integer.codec.PForDeltaCodec;
+import org.terrier.compression.integer.codec.StreamVByteCodec;
+import org.terrier.compression.integer.codec.VIntCodec;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.io.RandomDataInputMapped;
+
+public class TestIntegerCodecs extends ApplicationSetupBasedTest {
+	
+	static final int[] LENGTHS = new int[]{0, 1, 2, 3, 4, 5, 7, 8, 31, 127, 128, 129, 1000};
+	
+	/** makes arrays of various lengths and distributions, including outliers and extremes */
+	static List<int[]> makeArrays()
+	{
+		Random r = new Random(42);
+		List<int[]> arrays = new ArrayList<int[]>();
+		for(int len : LENGTHS)
+		{
+			int[] small = new int[len];
+			int[] outliers = new int[len];
+			int[] wide = new int[len];
+			int[] zeros = new int[len];
+			int[] max = new int[len];
+			for(int i=0;i<len;i++)
+			{
+				small[i] = 1 + r.nextInt(10);
+				outliers[i] = r.nextInt(20) == 0 ? r.nextInt(Integer.MAX_VALUE) : r.nextInt(4);
+				wide[i] = r.nextInt(Integer.MAX_VALUE) >>> r.nextInt(31);
+				max[i] = Integer.MAX_VALUE - r.nextInt(2);
+			}
+			arrays.addAll(Arrays.asList(small, outliers, wide, zeros, max));
+		}
+		return arrays;
+	}
+	
+	static void checkCodec(IntegerCodec codec) throws Exception
+	{
+		List<int[]> arrays = makeArrays();
+		
+		//all arrays are written one after the other, to check that each is exactly consumed
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ByteOut out = new ByteOutputStream(baos);
+		for(int[] a : arrays)
+		{
+			codec.compress(a, a.length, out);
+			out.writeVInt(12345);
+		}
+		out.close();
+		byte[] bytes = baos.toByteArray();
+		assertEquals(bytes.length, out.getByteOffset());
+		
+		File tmp = File.createTempFile("tmp", ".if");
+		tmp.deleteOnExit();
+		try(FileOutputStream fos = new FileOutputStream(tmp))
+		{
+			fos.write(bytes);
+		}
+		
+		ByteInSeekable[] sources = new ByteInSeekable[]{
+			new ByteFileInMemory(bytes), 
+			new ByteFileBuffered(tmp.toString(), 7), 
+			new ByteFileBuffered(tmp.toString()),
+			new ByteFileMapped(new RandomDataInputMapped(tmp.toString(), 3)),
+			new ByteFileMapped(tmp.toString())};
+		for(ByteInSeekable source : sources)
+		{
+			ByteIn in = source.readReset(0);
+			for(int[] a : arrays)
+			{
+				//the output array may be larger than necessary
+				int[] decoded = new int[a.length + 3];
+				codec.decompress(in, decoded, a.length);
+				assertArrayEquals(codec.toString(), a, Arrays.copyOf(decoded, a.length));
+				assertEquals(12345, in.readVInt());
+			}
+			assertEquals(bytes.length, in.getByteOffset());
+			source.close();
+		}
+		
+		ByteIn in = new ByteInputStream(tmp.toString());
+		for(int[] a : arrays)
+		{
+			int[] decoded = new int[a.length];
+			codec.decompress(in, decoded, a.length);
+			assertArrayEquals(codec.toString(), a, decoded);
+			assertEquals(12345, in.readVInt());
+		}
+		in.close();
+	}
+	
+	@Test public void testVInt() throws Exception
+	{
+		checkCodec(new VIntCodec());
+	}
+	
+	@Test public void testFOR() throws Exception
+	{
+		checkCodec(new FORCodec());
+	}
+	
+	@Test public void testPForDelta() throws Exception
+	{
+		checkCodec(new PForDeltaCodec());
+	}
+	
+	@Test public void testStreamVByte() throws Exception
+	{
+		checkCodec(new StreamVByteCodec());
+	}
+	
+	@Test public void testGetCodec() throws Exception
+	{
+		assertEquals(PForDeltaCodec.class, IntegerCodec.getCodec("PForDeltaCodec").getClass());
+		assertEquals(FORCodec.class, IntegerCodec.getCodec(FORCodec.class.getName()).getClass());
+	}
+	
+	/** PFor should be smaller than FOR when there are a few large values */
+	@Test public void testPForExceptions() throws Exception
+	{
+		int[] a = new int[128];
+		Arrays.fill(a, 3);
+		a[17] = 1 << 20;
+		a[100] = 1 << 25;
+		ByteOutputStream pfor = new ByteOutputStream(new ByteArrayOutputStream());
+		new PForDeltaCodec().compress(a, a.length, pfor);
+		ByteOutputStream ffor = new ByteOutputStream(new ByteArrayOutputStream());
+		new FORCodec().compress(a, a.length, ffor);
+		assertTrue(pfor.getByteOffset() < 64);
+		assertTrue(ffor.getByteOffset() > 256);
+	}
+	
+	@Test public void testSkipBytes() throws Exception
+	{
+		byte[] bytes = new byte[100];
+		for(int i=0;i<bytes.length;i++)
+			bytes[i] = (byte)i;
+		File tmp = File.createTempFile("tmp", ".if");
+		tmp.deleteOnExit();
+		try(FileOutputStream fos = new FileOutputStream(tmp))
+		{
+			fos.write(bytes);
+		}
+		for(ByteInSeekable source : new ByteInSeekable[]{new ByteFileInMemory(bytes), new ByteFileBuffered(tmp.toString(), 8), new ByteFileMapped(new RandomDataInputMapped(tmp.toString(), 2))})
+		{
+			ByteIn in = source.readReset(5);
+			assertEquals(5, in.readByte());
+			in.skipBytes(3);
+			assertEquals(9, in.readByte());
+			in.skipBytes(40);
+			assertEquals(50, in.readByte());
+			byte[] b = new byte[20];
+			in.readFully(b, 0, 20);
+			assertEquals(51, b[0]);
+			assertEquals(70, b[19]);
+			assertEquals(71, in.getByteOffset());
+			source.close();
+		}
+	}
+}
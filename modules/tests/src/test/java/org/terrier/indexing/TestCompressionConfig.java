@@ -75,4 +75,40 @@ public class TestCompressionConfig extends ApplicationSetupBasedTest {
 		index.close();
 		IndexUtil.deleteIndex(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX);
 	}
+	
+	/** checks that formats which report that posting lists can be appended to can be read as a single list */
+	@SuppressWarnings("unchecked")
+	@Test public void testAppendPostings() throws IOException
+	{
+		IndexOnDisk index = IndexOnDisk.createNewIndex(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX);
+		CompressionConfiguration cc =  getConfig("inverted", new String[0], 0,0);
+		
+		AbstractPostingOutputStream pos = cc.getPostingOutputStream(((IndexOnDisk)index).getPath() + "/" + ((IndexOnDisk)index).getPrefix() + ".inverted" + cc.getStructureFileExtension());
+		if (! pos.canAppendPostings())
+		{
+			pos.close();
+			index.close();
+			IndexUtil.deleteIndex(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX);
+			return;
+		}
+		Pointer p = pos.writePostings(new ArrayOfBasicIterablePosting(new int[]{0, 1}, new int[]{1,2}));
+		//the second postings have their ids increased by 5
+		Pointer p2 = pos.writePostings(new ArrayOfBasicIterablePosting(new int[]{0, 3}, new int[]{3,4}), pos.getLastDocidWritten() - 5);
+		p.setNumberOfEntries(p.getNumberOfEntries() + p2.getNumberOfEntries());
+		pos.close();
+		cc.writeIndexProperties(index, "lexicon-entry-inputstream");
+		index.flush();
+		
+		PostingIndex<Pointer> inv = (PostingIndex<Pointer>) index.getIndexStructure("inverted");
+		IterablePosting ip  = inv.getPostings(p);
+		assertEquals(0, ip.next());
+		assertEquals(1, ip.next());
+		assertEquals(5, ip.next());
+		assertEquals(3, ip.getFrequency());
+		assertEquals(8, ip.next());
+		assertEquals(4, ip.getFrequency());
+		assertEquals(IterablePosting.EOL, ip.next());
+		index.close();
+		IndexUtil.deleteIndex(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX);
+	}
 }
@@ -0,0 +1,130 @@
+package org.terrier.indexing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.PostingIndexInputStream;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.integer.IntegerCodecCompressionConfiguration;
+import org.terrier.structures.integer.IntegerCodingPostingIndex;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestIntegerCodecCompressionConfig extends TestCompressionConfig {
+	
+	static final String[] TERMS = new String[]{"dog", "cat", "mouse", "house", "horse", "cow"};
+	
+	@Override
+	protected CompressionConfiguration getConfig(String structure, String[] fieldNames,int hasBlocks, int maxBlocks)
+	{
+		return new IntegerCodecCompressionConfiguration(structure, fieldNames, hasBlocks, maxBlocks);
+	}
+	
+	static List<int[]> readPostings(IterablePosting ip, boolean blocks) throws Exception
+	{
+		List<int[]> postings = new ArrayList<int[]>();
+		while(ip.next() != IterablePosting.EOL)
+		{
+			postings.add(new int[]{ip.getId(), ip.getFrequency()});
+			if (blocks)
+				postings.add(((BlockPosting)ip).getPositions().clone());
+		}
+		return postings;
+	}
+	
+	static void assertSamePostings(List<int[]> expected, List<int[]> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for(int i=0;i<expected.size();i++)
+			assertArrayEquals(expected.get(i), actual.get(i));
+	}
+	
+	@SuppressWarnings("unchecked")
+	void checkSameAsBit(boolean blocks) throws Exception
+	{
+		Random r = new Random(42);
+		String[] docnos = new String[300];
+		String[] docs = new String[docnos.length];
+		for(int i=0;i<docnos.length;i++)
+		{
+			docnos[i] = "doc" + i;
+			StringBuilder s = new StringBuilder();
+			int length = 1 + r.nextInt(10);
+			for(int j=0;j<length;j++)
+				s.append(TERMS[r.nextInt(TERMS.length)]).append(' ');
+			docs[i] = s.toString();
+		}
+		Index bitIndex = blocks ? IndexTestUtils.makeIndexBlocks(docnos, docs) : IndexTestUtils.makeIndex(docnos, docs);
+		
+		for(String structure : new String[]{"direct", "inverted"})
+		{
+			ApplicationSetup.setProperty("indexing."+structure+".compression.configuration", IntegerCodecCompressionConfiguration.class.getName());
+			ApplicationSetup.setProperty("index."+structure+".compression.integer.chunk.size", "16");
+		}
+		ApplicationSetup.setProperty("index.inverted.compression.integer.ids.codec", "FORCodec");
+		ApplicationSetup.setProperty("index.inverted.compression.integer.blocks.codec", "StreamVByteCodec");
+		Index intIndex = blocks ? IndexTestUtils.makeIndexBlocks(docnos, docs) : IndexTestUtils.makeIndex(docnos, docs);
+		assertTrue(intIndex.getInvertedIndex() instanceof IntegerCodingPostingIndex);
+		assertTrue(intIndex.getDirectIndex() instanceof IntegerCodingPostingIndex);
+		assertEquals("16", ((IndexOnDisk)intIndex).getIndexProperty("index.inverted.compression.integer.chunk.size", null));
+		
+		//inverted index, by random access
+		for(Map.Entry<String,LexiconEntry> bitLe : bitIndex.getLexicon())
+		{
+			LexiconEntry intLe = intIndex.getLexicon().getLexiconEntry(bitLe.getKey());
+			assertNotNull(intLe);
+			assertSamePostings(
+				readPostings(bitIndex.getInvertedIndex().getPostings(bitLe.getValue()), blocks), 
+				readPostings(intIndex.getInvertedIndex().getPostings(intLe), blocks));
+		}
+		
+		//direct index, by random access
+		PostingIndex<Pointer> bitDirect = (PostingIndex<Pointer>) bitIndex.getDirectIndex();
+		PostingIndex<Pointer> intDirect = (PostingIndex<Pointer>) intIndex.getDirectIndex();
+		for(int d=0;d<docnos.length;d++)
+		{
+			assertSamePostings(
+				readPostings(bitDirect.getPostings(bitIndex.getDocumentIndex().getDocumentEntry(d)), blocks), 
+				readPostings(intDirect.getPostings(intIndex.getDocumentIndex().getDocumentEntry(d)), blocks));
+		}
+		
+		//inverted index, as a stream
+		PostingIndexInputStream bitStream = (PostingIndexInputStream) ((IndexOnDisk)bitIndex).getIndexStructureInputStream("inverted");
+		PostingIndexInputStream intStream = (PostingIndexInputStream) ((IndexOnDisk)intIndex).getIndexStructureInputStream("inverted");
+		while(bitStream.hasNext())
+		{
+			assertTrue(intStream.hasNext());
+			assertSamePostings(readPostings(bitStream.next(), blocks), readPostings(intStream.next(), blocks));
+		}
+		IndexUtil.close((Iterator<?>)bitStream);
+		IndexUtil.close((Iterator<?>)intStream);
+		bitIndex.close();
+		intIndex.close();
+	}
+	
+	@Test public void testSameAsBit() throws Exception
+	{
+		checkSameAsBit(false);
+	}
+	
+	@Test public void testSameAsBitBlocks() throws Exception
+	{
+		checkSameAsBit(true);
+	}
+}
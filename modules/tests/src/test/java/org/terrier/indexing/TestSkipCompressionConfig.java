@@ -0,0 +1,13 @@
+package org.terrier.indexing;
+
+import org.terrier.structures.indexing.CompressionFactory;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+
+public class TestSkipCompressionConfig extends TestCompressionConfig {
+	
+	@Override
+	protected CompressionConfiguration getConfig(String structure, String[] fieldNames,int hasBlocks, int maxBlocks)
+	{
+		return new CompressionFactory.SkipCompressionConfiguration(structure, fieldNames, hasBlocks, maxBlocks);
+	}
+}
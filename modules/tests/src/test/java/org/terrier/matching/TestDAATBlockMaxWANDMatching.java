@@ -0,0 +1,15 @@
+package org.terrier.matching;
+import org.terrier.structures.Index;
+public class TestDAATBlockMaxWANDMatching extends TestDAATWANDMatching
+{
+    @Override
+    protected Matching makeMatching(Index i)
+    {
+        return new org.terrier.matching.daat.BlockMaxWAND(i);
+    }
+
+    @Override
+    protected Class<? extends Matching> getMatchingClass() {
+        return org.terrier.matching.daat.BlockMaxWAND.class;
+    }
+}
@@ -0,0 +1,15 @@
+package org.terrier.matching;
+import org.terrier.structures.Index;
+public class TestDAATMaxScoreMatching extends TestDAATWANDMatching
+{
+    @Override
+    protected Matching makeMatching(Index i)
+    {
+        return new org.terrier.matching.daat.MaxScore(i);
+    }
+
+    @Override
+    protected Class<? extends Matching> getMatchingClass() {
+        return org.terrier.matching.daat.MaxScore.class;
+    }
+}
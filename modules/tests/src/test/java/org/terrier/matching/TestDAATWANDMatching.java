@@ -0,0 +1,87 @@
+package org.terrier.matching;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.models.WeightingModelFactory;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.TermScoreUpperBounds;
+import org.terrier.structures.indexing.CompressionFactory;
+import org.terrier.utility.ApplicationSetup;
+public class TestDAATWANDMatching extends TestMatching
+{
+    @Override
+    protected Matching makeMatching(Index i)
+    {
+        return new org.terrier.matching.daat.WAND(i);
+    }
+
+    @Override
+    protected Class<? extends Matching> getMatchingClass() {
+        return org.terrier.matching.daat.WAND.class;
+    }
+
+    /** checks that the pruned top-k is identical to that of exhaustive DAAT matching */
+    @Test public void testSameAsFull() throws Exception
+    {
+        checkSameAsFull(makeSameAsFullIndex());
+    }
+
+    /** checks that the pruned top-k is identical when using upper bounds recorded at indexing time */
+    @Test public void testSameAsFullUpperBounds() throws Exception
+    {
+        Index index = makeSameAsFullIndex();
+        TermScoreUpperBounds.create((IndexOnDisk) index, TermScoreUpperBounds.STRUCTURE_NAME, new String[]{"BM25", "DPH"});
+        checkSameAsFull(index);
+    }
+
+    /** checks that the pruned top-k is identical when the inverted index has skips and block maximum frequencies */
+    @Test public void testSameAsFullSkips() throws Exception
+    {
+        ApplicationSetup.setProperty("indexing.inverted.compression.configuration", 
+            CompressionFactory.SkipCompressionConfiguration.class.getName());
+        ApplicationSetup.setProperty("indexing.inverted.compression.skip.size", "2");
+        checkSameAsFull(makeSameAsFullIndex());
+    }
+
+    static Index makeSameAsFullIndex() throws Exception
+    {
+        return IndexTestUtils.makeIndex(
+                new String[]{"doc1", "doc2", "doc3", "doc4", "doc5", "doc6"},
+                new String[]{
+                    "dog cat cat",
+                    "dog",
+                    "mouse dog dog dog",
+                    "cat mouse mouse house",
+                    "house house dog cat",
+                    "mouse"});
+    }
+
+    void checkSameAsFull(Index index) throws Exception
+    {
+        for (String model : new String[]{"BM25", "PL2", "DPH", "DirichletLM"})
+        {
+            for (int k = 1; k <= 6; k++)
+            {
+                ResultSet full = new org.terrier.matching.daat.Full(index).match("query1", makeQuery(model, k));
+                ResultSet pruned = makeMatching(index).match("query1", makeQuery(model, k));
+                assertEquals(full.getResultSize(), pruned.getResultSize());
+                assertArrayEquals(model + " " + k, full.getDocids(), pruned.getDocids());
+                assertArrayEquals(full.getScores(), pruned.getScores(), 0d);
+            }
+        }
+    }
+
+    static MatchingQueryTerms makeQuery(String model, int k)
+    {
+        MatchingQueryTerms mqt = new MatchingQueryTerms();
+        mqt.setTermProperty("dog", 1);
+        mqt.setTermProperty("cat", 1);
+        mqt.setTermProperty("mouse", 2);
+        mqt.setDefaultTermWeightingModel(WeightingModelFactory.newInstance(model));
+        mqt.setMatchingRequestSize(k);
+        return mqt;
+    }
+}
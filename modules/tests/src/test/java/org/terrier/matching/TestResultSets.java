@@ -28,10 +28,14 @@ package org.terrier.matching;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
 
 import org.junit.Test;
 import org.terrier.matching.daat.CandidateResult;
+import org.terrier.matching.daat.CandidateResultHeap;
 import org.terrier.matching.daat.CandidateResultSet;
 
 public class TestResultSets {
@@ -168,6 +172,57 @@ public class TestResultSets {
 		}
 	}
 	
+	@Test public void testCandidateResultHeap()
+	{
+		Random r = new Random(5);
+		for(int capacity : new int[]{0, 1, 5, 50})
+		for(boolean retain : new boolean[]{false, true})
+		{
+			//reference implementation using a PriorityQueue, as daat.Full used to
+			PriorityQueue<CandidateResult> q = new PriorityQueue<>();
+			CandidateResultHeap heap = new CandidateResultHeap(capacity, retain);
+			CandidateResult spare = null;
+			int allocated = 0;
+			for(int docid=0;docid<500;docid++)
+			{
+				final double score = r.nextInt(10) == 0 ? Double.NEGATIVE_INFINITY : r.nextInt(20);
+				CandidateResult ref = new CandidateResult(docid);
+				ref.updateScore(score);
+				ref.updateOccurrence((short) (docid % 7));
+				q.add(ref);
+				if (capacity != 0 && q.size() > capacity)
+					q.poll();
+				
+				CandidateResult c = spare;
+				if (c == null)
+				{
+					c = new CandidateResult(docid);
+					allocated++;
+				}
+				else
+					c.reset(docid);
+				c.updateScore(score);
+				c.updateOccurrence((short) (docid % 7));
+				spare = heap.add(c);
+				assertEquals(q.size(), heap.size());
+				assertEquals(q.peek().getScore(), heap.minScore(), 0.0d);
+				assertEquals(capacity != 0 && q.size() == capacity, heap.isFull());
+			}
+			if (capacity != 0)
+				assertTrue(allocated <= capacity + 1);
+			
+			CandidateResultSet expected = new CandidateResultSet(new ArrayList<>(q));
+			int[] docids = heap.getDocids();
+			CandidateResultSet actual = new CandidateResultSet(heap);
+			assertArrayEquals(expected.getDocids(), actual.getDocids());
+			assertArrayEquals(expected.getScores(), actual.getScores(), 0.0d);
+			assertArrayEquals(expected.getOccurrences(), actual.getOccurrences());
+			if (retain)
+				for(int i=0;i<actual.getResultSize();i++)
+					assertEquals(docids[i], heap.getCandidates()[i].getDocId());
+		}
+	}
+	
 	@Test public void testKeys() 
 	{
 		ResultSet r = new QueryResultSet(2);
@@ -0,0 +1,116 @@
+package org.terrier.matching;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+import org.terrier.matching.saat.Anytime;
+import org.terrier.structures.ImpactOrderedIndex;
+import org.terrier.structures.ImpactOrderedIndex.ImpactSegment;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestSAATAnytimeMatching extends ApplicationSetupBasedTest
+{
+    static Index makeImpactIndex(int bits) throws Exception
+    {
+        Index index = TestDAATWANDMatching.makeSameAsFullIndex();
+        ImpactOrderedIndex.create((IndexOnDisk) index, ImpactOrderedIndex.STRUCTURE_NAME, "TF_IDF", bits);
+        return index;
+    }
+
+    @Test public void testSegments() throws Exception
+    {
+        Index index = makeImpactIndex(4);
+        ImpactOrderedIndex impacts = (ImpactOrderedIndex) index.getIndexStructure(ImpactOrderedIndex.STRUCTURE_NAME);
+        assertEquals(index.getCollectionStatistics().getNumberOfUniqueTerms(), impacts.size());
+        assertEquals(4, impacts.getBits());
+        assertTrue(impacts.getWeightingModel().startsWith("TF_IDF"));
+        Iterator<Map.Entry<String,LexiconEntry>> iter = index.getLexicon().iterator();
+        while(iter.hasNext())
+        {
+            LexiconEntry le = iter.next().getValue();
+            ImpactSegment[] segments = impacts.getSegments(le.getTermId());
+            assertTrue(segments.length > 0);
+            int count = 0;
+            int lastImpact = Integer.MAX_VALUE;
+            for(ImpactSegment s : segments)
+            {
+                assertTrue(s.getImpact() < lastImpact);
+                assertTrue(s.getImpact() >= 1 && s.getImpact() <= 15);
+                lastImpact = s.getImpact();
+                int[] docids = s.getDocids();
+                assertEquals(s.getCount(), docids.length);
+                for(int i=1;i<docids.length;i++)
+                    assertTrue(docids[i] > docids[i-1]);
+                count += docids.length;
+            }
+            assertEquals(le.getDocumentFrequency(), count);
+        }
+    }
+
+    @Test public void testSameRankingAsFull() throws Exception
+    {
+        Index index = makeImpactIndex(16);
+        for (int k = 1; k <= 6; k++)
+        {
+            ResultSet full = new org.terrier.matching.daat.Full(index).match("query1", TestDAATWANDMatching.makeQuery("TF_IDF", k));
+            ResultSet saat = new Anytime(index).match("query1", TestDAATWANDMatching.makeQuery("TF_IDF", k));
+            assertEquals(full.getResultSize(), saat.getResultSize());
+            assertArrayEquals(full.getDocids(), saat.getDocids());
+            assertArrayEquals(full.getScores(), saat.getScores(), 0.001d);
+            for(String exact : saat.getMetaItems(Anytime.EXACT_META_KEY))
+                assertEquals("true", exact);
+        }
+    }
+
+    @Test public void testPostingsBudget() throws Exception
+    {
+        Index index = makeImpactIndex(8);
+        ApplicationSetup.setProperty("matching.saat.postings.budget", "3");
+        ResultSet rs = new Anytime(index).match("query1", TestDAATWANDMatching.makeQuery("TF_IDF", 10));
+        assertTrue(rs.getResultSize() > 0);
+        assertTrue(rs.getResultSize() <= 3);
+        String[] exact = rs.getMetaItems(Anytime.EXACT_META_KEY);
+        assertEquals(rs.getResultSize(), exact.length);
+        boolean anyApproximate = false;
+        for(String e : exact)
+            if (e.equals("false"))
+                anyApproximate = true;
+        assertTrue(anyApproximate);
+
+        //a budget larger than the number of postings gives the same result as no budget
+        ApplicationSetup.setProperty("matching.saat.postings.budget", "1000");
+        ResultSet budgeted = new Anytime(index).match("query1", TestDAATWANDMatching.makeQuery("TF_IDF", 10));
+        ApplicationSetup.setProperty("matching.saat.postings.budget", "0");
+        ResultSet unlimited = new Anytime(index).match("query1", TestDAATWANDMatching.makeQuery("TF_IDF", 10));
+        assertArrayEquals(unlimited.getDocids(), budgeted.getDocids());
+        assertArrayEquals(unlimited.getScores(), budgeted.getScores(), 0d);
+    }
+
+    @Test public void testFallback() throws Exception
+    {
+        Index index = TestDAATWANDMatching.makeSameAsFullIndex();
+        ResultSet full = new org.terrier.matching.daat.Full(index).match("query1", TestDAATWANDMatching.makeQuery("TF_IDF", 6));
+        //no impact-ordered index
+        ResultSet rs = new Anytime(index).match("query1", TestDAATWANDMatching.makeQuery("TF_IDF", 6));
+        assertArrayEquals(full.getDocids(), rs.getDocids());
+        assertFalse(rs.hasMetaItems(Anytime.EXACT_META_KEY));
+
+        //a required term
+        ImpactOrderedIndex.create((IndexOnDisk) index, ImpactOrderedIndex.STRUCTURE_NAME, "TF_IDF", 8);
+        MatchingQueryTerms mqt = TestDAATWANDMatching.makeQuery("TF_IDF", 6);
+        mqt.get("mouse").getValue().setRequired(true);
+        full = new org.terrier.matching.daat.Full(index).match("query1", mqt);
+        rs = new Anytime(index).match("query1", mqt);
+        assertArrayEquals(full.getDocids(), rs.getDocids());
+        assertArrayEquals(full.getScores(), rs.getScores(), 0d);
+    }
+}
@@ -27,9 +27,18 @@
 
 package org.terrier.realtime.incremental;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
 import org.terrier.indexing.Collection;
@@ -37,8 +46,20 @@ import org.terrier.indexing.CollectionDocumentList;
 import org.terrier.indexing.Document;
 import org.terrier.indexing.FileDocument;
 import org.terrier.indexing.tokenisation.EnglishTokeniser;
+import org.terrier.matching.ResultSet;
+import org.terrier.querying.LocalManager;
+import org.terrier.querying.Manager;
+import org.terrier.querying.Request;
+import org.terrier.querying.SearchRequest;
+import org.terrier.realtime.memory.MemoryIndex;
+import org.terrier.realtime.multi.MultiIndex;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconBloomFilter;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.MetaIndex;
+import org.terrier.structures.Pointer;
 import org.terrier.structures.indexing.classical.BasicIndexer;
 import org.terrier.tests.ApplicationSetupBasedTest;
 import org.terrier.utility.ApplicationSetup;
@@ -73,6 +94,232 @@ public class TestIncremental extends ApplicationSetupBasedTest {
 		// assertEquals(4, index.indices.size());
 	}
 
+	/*
+	 * Index NUM_DOCS documents into an incremental index, flushing every two documents.
+	 */
+	static final int NUM_DOCS = 16;
+	
+	IncrementalIndex makeIncremental(String merge) throws Exception {
+		IncrementalIndex index = newIncremental(merge);
+		for (int i = 0; i < NUM_DOCS; i++)
+			index.indexDocument(doc(i));
+		return index;
+	}
+	
+	static Document doc(int i) {
+		return new FileDocument("doc" + i, new ByteArrayInputStream(
+			((i % 2 == 0 ? "curry church " : "turing knuth ") + "doc" + i).getBytes()),
+			new EnglishTokeniser());
+	}
+	
+	IncrementalIndex newIncremental(String merge) throws Exception {
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("incremental.flush", "flushdocs");
+		ApplicationSetup.setProperty("incremental.flushdocs", "2");
+		ApplicationSetup.setProperty("incremental.merge", merge);
+		return IncrementalIndex.get(
+				ApplicationSetup.TERRIER_INDEX_PATH,
+				ApplicationSetup.TERRIER_INDEX_PREFIX);
+	}
+	
+	static void checkContents(IncrementalIndex index) throws Exception {
+		assertEquals(NUM_DOCS, index.getCollectionStatistics().getNumberOfDocuments());
+		MetaIndex meta = index.getMetaIndex();
+		for (int i = 0; i < NUM_DOCS; i++)
+			assertEquals("doc" + i, meta.getItem("filename", i));
+		Lexicon<String> lex = index.getLexicon();
+		LexiconEntry le = lex.getLexiconEntry("church");
+		assertNotNull(le);
+		assertEquals(NUM_DOCS / 2, le.getDocumentFrequency());
+		le = lex.getLexiconEntry("doc" + (NUM_DOCS - 1));
+		assertNotNull(le);
+		assertEquals(1, le.getDocumentFrequency());
+	}
+	
+	static int countShardFiles() {
+		int count = 0;
+		for (File f : new File(ApplicationSetup.TERRIER_INDEX_PATH).listFiles())
+			if (f.getName().matches(ApplicationSetup.TERRIER_INDEX_PREFIX + "-\\d+\\.properties"))
+				count++;
+		return count;
+	}
+	
+	@Test
+	public void testBackgroundTieredMerge() throws Exception {
+		ApplicationSetup.setProperty("incremental.tiered.factor", "2");
+		ApplicationSetup.setProperty("incremental.tiered.ratio", "2");
+		IncrementalIndex index = makeIncremental("tiered");
+		// searches see all documents, whether flushes are complete or not
+		checkContents(index);
+		index.awaitMaintenance();
+		checkContents(index);
+		// 8 flushes of 2 documents, merged pairwise into a single on-disk shard
+		assertEquals(2, index.getNumberOfShards());
+		assertTrue(index.getIthShard(0) instanceof IndexOnDisk);
+		assertEquals(NUM_DOCS, index.getIthShard(0).getCollectionStatistics().getNumberOfDocuments());
+		index.close();
+		assertEquals(1, countShardFiles());
+		
+		// the shard is found when reopening the index
+		ApplicationSetup.setProperty("incremental.flush", "noflush");
+		IncrementalIndex reopened = IncrementalIndex.get(
+				ApplicationSetup.TERRIER_INDEX_PATH,
+				ApplicationSetup.TERRIER_INDEX_PREFIX);
+		checkContents(reopened);
+		reopened.close();
+	}
+	
+	@Test
+	public void testForegroundSingleMerge() throws Exception {
+		ApplicationSetup.setProperty("incremental.background", "false");
+		IncrementalIndex index = makeIncremental("single");
+		assertEquals(2, index.getNumberOfShards());
+		assertFalse(index.getIthShard(0) == index.memory);
+		checkContents(index);
+		index.close();
+		assertEquals(1, countShardFiles());
+	}
+	
+	@Test
+	public void testBackgroundGeometricMerge() throws Exception {
+		ApplicationSetup.setProperty("incremental.geometric", "2");
+		IncrementalIndex index = makeIncremental("geometric");
+		checkContents(index);
+		index.awaitMaintenance();
+		checkContents(index);
+		// 8 flushes: 2 merged in the first column, 4 in the second, 2 in the third
+		assertEquals(4, index.getNumberOfShards());
+		assertEquals(4, index.getIthShard(0).getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(8, index.getIthShard(1).getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(4, index.getIthShard(2).getCollectionStatistics().getNumberOfDocuments());
+		index.close();
+		assertEquals(3, countShardFiles());
+	}
+	
+	@Test
+	public void testSnapshotDefersDeletion() throws Exception {
+		ApplicationSetup.setProperty("incremental.background", "false");
+		IncrementalIndex index = newIncremental("single");
+		index.indexDocument(doc(0));
+		index.indexDocument(doc(1));
+		MultiIndex.ShardSnapshot snapshot = index.acquireShards();
+		for (int i = 2; i < 6; i++)
+			index.indexDocument(doc(i));
+		// the two merges replaced all shards of the snapshot, but none are deleted while it is open
+		assertEquals(2, index.getNumberOfShards());
+		assertEquals(5, countShardFiles());
+		assertEquals("doc0", snapshot.getMetaIndex().getItem("filename", 0));
+		assertEquals(1, snapshot.getLexicon().getLexiconEntry("doc1").getDocumentFrequency());
+		snapshot.close();
+		assertEquals(1, countShardFiles());
+		assertEquals(6, index.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals("doc5", index.getMetaIndex().getItem("filename", 5));
+		index.close();
+	}
+	
+	@Test
+	public void testSearchPinsShards() throws Exception {
+		ApplicationSetup.setProperty("incremental.background", "false");
+		IncrementalIndex index = newIncremental("single");
+		index.indexDocument(doc(0));
+		index.indexDocument(doc(1));
+		index.beginSearch();
+		final LexiconEntry le = index.getLexicon().getLexiconEntry("doc1");
+		for (int i = 2; i < 6; i++)
+			index.indexDocument(doc(i));
+		// the search still sees the shards it started with, which are not deleted. 
+		// These do not include the shards written since.
+		assertEquals(5, countShardFiles());
+		assertTrue(index.getCollectionStatistics().getNumberOfDocuments() < 6);
+		assertEquals(1, index.getInvertedIndex().getPostings((Pointer) le).next());
+		index.endSearch();
+		assertEquals(1, countShardFiles());
+		assertEquals(6, index.getCollectionStatistics().getNumberOfDocuments());
+		index.close();
+	}
+	
+	@Test
+	public void testSearchDuringMerges() throws Exception {
+		ApplicationSetup.setProperty("incremental.tiered.factor", "2");
+		ApplicationSetup.setProperty("incremental.tiered.ratio", "2");
+		ApplicationSetup.setProperty("ignore.low.idf.terms", "false");
+		final int numDocs = 100;
+		final IncrementalIndex index = newIncremental("tiered");
+		final Manager manager = new LocalManager(index);
+		final AtomicBoolean done = new AtomicBoolean(false);
+		//a single searcher, as on-disk shards are not opened for concurrent reading
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try{
+			Future<Integer> searcher = pool.submit(() -> {
+				int searches = 0;
+				boolean last = false;
+				while (! last) {
+					//search once more after the writer has finished
+					last = done.get();
+					SearchRequest srq = manager.newSearchRequestFromQuery("church");
+					srq.setControl(SearchRequest.CONTROL_WMODEL, "TF_IDF");
+					manager.runSearchRequest(srq);
+					ResultSet rs = ((Request) srq).getResultSet();
+					// church is only in the documents with even docids
+					for (int docid : rs.getDocids())
+						assertEquals(0, docid % 2);
+					if (last)
+						assertEquals(numDocs / 2, rs.getResultSize());
+					searches++;
+				}
+				return searches;
+			});
+			for (int i = 0; i < numDocs; i++)
+				index.indexDocument(doc(i));
+			index.awaitMaintenance();
+			done.set(true);
+			assertTrue(searcher.get() > 0);
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(numDocs, index.getCollectionStatistics().getNumberOfDocuments());
+		index.close();
+	}
+	
+	@Test
+	public void testPendingFlushesBounded() throws Exception {
+		ApplicationSetup.setProperty("incremental.background.pending", "1");
+		IncrementalIndex index = newIncremental("single");
+		for (int i = 0; i < NUM_DOCS; i++) {
+			index.indexDocument(doc(i));
+			// the current memory index, and at most one waiting to be flushed
+			int memoryShards = 0;
+			for (Index shard : index.getShards())
+				if (shard instanceof MemoryIndex)
+					memoryShards++;
+			assertTrue(memoryShards <= 2);
+		}
+		index.awaitMaintenance();
+		checkContents(index);
+		assertEquals(1, index.pendingFlushes.availablePermits());
+		index.close();
+	}
+	
+	@Test
+	public void testNoMerge() throws Exception {
+		IncrementalIndex index = makeIncremental("nomerge");
+		index.awaitMaintenance();
+		assertEquals(NUM_DOCS / 2 + 1, index.getNumberOfShards());
+		checkContents(index);
+		// each flushed shard records the terms of its lexicon
+		for (int i = 0; i < NUM_DOCS / 2; i++) {
+			LexiconBloomFilter filter = (LexiconBloomFilter) index.getIthShard(i).getIndexStructure(LexiconBloomFilter.STRUCTURE_NAME);
+			assertNotNull(filter);
+			assertTrue(filter.mightContain("doc" + (2 * i)));
+			assertTrue(filter.mightContain("doc" + (2 * i + 1)));
+		}
+		assertNull(index.getLexicon().getLexiconEntry("missing"));
+		index.close();
+		assertEquals(NUM_DOCS / 2, countShardFiles());
+	}
+
 	/*
 	 * make index disk1 with m document make increcmenta index populate
 	 * incremental index with same m documents compare indices make index disk2
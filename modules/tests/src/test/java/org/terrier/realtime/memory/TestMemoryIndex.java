@@ -34,9 +34,17 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.After;
 import org.junit.Before;
@@ -150,6 +158,124 @@ public class TestMemoryIndex extends ApplicationSetupBasedTest {
 	}
 		
 		
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		ApplicationSetup.setProperty("termpipelines", "");
+		final int numDocs = 2000;
+		final MemoryIndex index = new MemoryIndex();
+		final Lexicon<String> lex = index.getLexicon();
+		final PostingIndex<?> inv = index.getInvertedIndex();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try{
+			List<Future<Integer>> readers = new ArrayList<>();
+			for(int t=0;t<3;t++)
+			{
+				readers.add(pool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						int reads = 0;
+						boolean last = false;
+						while(! last)
+						{
+							//read once more after the writer has finished
+							last = done.get();
+							for(String term : new String[]{"common", "term" + (reads % 10)})
+							{
+								LexiconEntry le = lex.getLexiconEntry(term);
+								if (le == null)
+									continue;
+								IterablePosting ip = inv.getPostings(le);
+								int prev = -1;
+								int count = 0;
+								while(ip.next() != IterablePosting.EOL)
+								{
+									assertTrue(ip.getId() > prev);
+									assertEquals(1, ip.getFrequency());
+									assertEquals(2, ip.getDocumentLength());
+									prev = ip.getId();
+									count++;
+								}
+								if (last)
+									assertEquals(term.equals("common") ? numDocs : numDocs / 10, count);
+							}
+							reads++;
+						}
+						return reads;
+					}
+				}));
+			}
+			for(int i=0;i<numDocs;i++)
+				index.indexDocument(IndexTestUtils.makeDocumentFromText("common term" + (i % 10), new HashMap<String,String>()));
+			done.set(true);
+			for(Future<Integer> f : readers)
+				assertTrue(f.get() > 0);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testConcurrentDocumentAndMetaReaders() throws Exception {
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "docno");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "10");
+		//enough documents to need several chunks
+		final int numDocs = 3 * AppendOnlyIntArray.CHUNK_SIZE;
+		final MemoryIndex index = new MemoryIndex();
+		final DocumentIndex doi = index.getDocumentIndex();
+		final MetaIndex meta = index.getMetaIndex();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try{
+			List<Future<Integer>> readers = new ArrayList<>();
+			for(int t=0;t<3;t++)
+			{
+				readers.add(pool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						int reads = 0;
+						boolean last = false;
+						while(! last)
+						{
+							//read once more after the writer has finished
+							last = done.get();
+							final int n = doi.getNumberOfDocuments();
+							assertTrue(meta.size() >= n);
+							if (n > 0)
+							{
+								final int docid = reads % n;
+								assertEquals(docid % 5 + 1, doi.getDocumentLength(docid));
+								assertEquals("d" + docid, meta.getItem("docno", docid));
+								assertEquals((n - 1) % 5 + 1, doi.getDocumentLength(n - 1));
+								assertEquals("d" + (n-1), meta.getItem("docno", n - 1));
+							}
+							if (last)
+								assertEquals(numDocs, n);
+							reads++;
+						}
+						return reads;
+					}
+				}));
+			}
+			for(int i=0;i<numDocs;i++)
+			{
+				Map<String,String> props = new HashMap<String,String>();
+				props.put("docno", "d" + i);
+				StringBuilder text = new StringBuilder();
+				for(int j=0;j<=i % 5;j++)
+					text.append("term").append(j).append(' ');
+				index.indexDocument(IndexTestUtils.makeDocumentFromText(text.toString(), props));
+			}
+			done.set(true);
+			for(Future<Integer> f : readers)
+				assertTrue(f.get() > 0);
+		} finally {
+			pool.shutdown();
+		}
+		index.close();
+	}
+	
 	/*
 	 * Test IndexInMemory.
 	 */
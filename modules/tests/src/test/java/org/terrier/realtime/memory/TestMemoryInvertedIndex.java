@@ -30,8 +30,10 @@ package org.terrier.realtime.memory;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import gnu.trove.TIntArrayList;
 
 import org.apache.hadoop.io.Text;
@@ -156,6 +158,105 @@ public class TestMemoryInvertedIndex {
 		}
 	}
 
+	/*
+	 * BasicMemoryPostingList spanning several blocks, with out-of-order inserts
+	 */
+	@Test
+	public void test_blocks() throws Exception {
+		MemoryDocumentIndex docindex = new MemoryDocumentIndex();
+		for (int i = 0; i < 1000; i++)
+			docindex.addDocument(i);
+		MemoryInvertedIndex inverted = new MemoryInvertedIndex(new MemoryLexicon(),docindex);
+		for (int i = 0; i < 1000; i+=2)
+			inverted.add(3, i, i+1);
+		IterablePosting before = inverted.getPostings(new MemoryLexiconEntry(3,1,1));
+		for (int i = 1; i < 1000; i+=4)
+			assertTrue(inverted.addOrUpdate(3, i, i+1));
+		assertFalse(inverted.addOrUpdate(3, 998, 1));
+		
+		//an iterator opened before the inserts sees the postings as they were
+		for (int i = 0; i < 1000; i+=2) {
+			assertEquals(i, before.next());
+			assertEquals(i+1, before.getFrequency());
+		}
+		assertEquals(IterablePosting.EOL, before.next());
+		
+		IterablePosting after = inverted.getPostings(new MemoryLexiconEntry(3,1,1));
+		for (int i = 0; i < 1000; i++) {
+			if (i % 4 == 3)
+				continue;
+			assertEquals(i, after.next());
+			assertEquals(i == 998 ? i+2 : i+1, after.getFrequency());
+			assertEquals(i, after.getDocumentLength());
+		}
+		assertEquals(IterablePosting.EOL, after.next());
+	}
+	
+	/*
+	 * next(int target) using the skip entries, and the size of the compressed postings
+	 */
+	@Test
+	public void test_nextTarget() throws Exception {
+		final int n = 1000;
+		MemoryInvertedIndex.BasicMemoryPostingList pl = new MemoryInvertedIndex.BasicMemoryPostingList();
+		for (int i = 0; i < n; i++)
+			pl.add(i*3, 1 + i % 100);
+		assertEquals(n, pl.size());
+		//one byte for each gap, one for each frequency
+		assertEquals(2 * n, pl.getCompressedSize());
+		assertEquals(51, pl.getFreq(150));
+		assertEquals(-1, pl.getFreq(151));
+		
+		for (int target : new int[]{0, 1, 2, 3, 383, 384, 385, 386, 1500, 2997})
+		{
+			MemoryIterablePosting ip = new MemoryIterablePosting(null, pl, Integer.MAX_VALUE);
+			int expected = ((target + 2) / 3) * 3;
+			assertEquals(expected, ip.next(target));
+			assertEquals(1 + (expected/3) % 100, ip.getFrequency());
+			assertEquals(expected, ip.next(target));
+			if (expected + 3 < 3 * n)
+				assertEquals(expected + 3, ip.next());
+		}
+		
+		MemoryIterablePosting ip = new MemoryIterablePosting(null, pl, Integer.MAX_VALUE);
+		assertEquals(IterablePosting.EOL, ip.next(2998));
+		assertEquals(IterablePosting.EOL, ip.next());
+		
+		//successive targets, as used by DAAT matching
+		ip = new MemoryIterablePosting(null, pl, Integer.MAX_VALUE);
+		for (int target = 5; target < 3 * n; target += 401)
+		{
+			assertEquals(((target + 2) / 3) * 3, ip.next(target));
+		}
+		
+		//skip entries beyond the watermark are not followed
+		ip = new MemoryIterablePosting(null, pl, 1200);
+		assertEquals(1197, ip.next(1196));
+		assertEquals(IterablePosting.EOL, ip.next(1198));
+	}
+	
+	/*
+	 * setVisibleDocuments(int)
+	 */
+	@Test
+	public void test_visibleDocuments() throws Exception {
+		MemoryInvertedIndex inverted = new MemoryInvertedIndex(new MemoryLexicon(),new MemoryDocumentIndex());
+		for (int j = 0; j < 10; j++)
+			inverted.add(0, docids[j], docfreqs[j]);
+		inverted.setVisibleDocuments(5);
+		IterablePosting post = inverted.getPostings(new MemoryLexiconEntry(0,1,1));
+		for (int j = 0; j < 5; j++) {
+			assertEquals(docids[j], post.next());
+			assertEquals(j == 4, post.endOfPostings());
+		}
+		assertEquals(IterablePosting.EOL, post.next());
+		inverted.setVisibleDocuments(10);
+		post = inverted.getPostings(new MemoryLexiconEntry(0,1,1));
+		for (int j = 0; j < 10; j++)
+			assertEquals(docids[j], post.next());
+		assertEquals(IterablePosting.EOL, post.next());
+	}
+
 	/*
 	 * Test data.
 	 */
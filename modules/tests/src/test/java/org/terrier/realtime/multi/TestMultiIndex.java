@@ -43,6 +43,7 @@ import org.terrier.structures.Index;
 import org.terrier.structures.Lexicon;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.MetaIndex;
+import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
 import org.terrier.structures.postings.BlockPosting;
 import org.terrier.structures.postings.IterablePosting;
@@ -116,6 +117,46 @@ public class TestMultiIndex extends ApplicationSetupBasedTest {
 		assertEquals(0, terms.size());
 	}
 	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void test_MultiIndexNextTarget() throws Exception {
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		Index i1 = IndexTestUtils.makeIndex(new String[]{"0", "1", "2"},new String[]{"one two", "one", "two"});
+		Index i2 = IndexTestUtils.makeIndex(new String[]{"3", "4"},new String[]{"two", "three"});
+		Index i3 = IndexTestUtils.makeIndex(new String[]{"5", "6", "7"},new String[]{"one", "two", "one two"});
+		MultiIndex mindex = new MultiIndex(new Index[]{i1,i2,i3}, false, false);
+		Lexicon<String> lexicon = mindex.getLexicon();
+		PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) mindex.getInvertedIndex();
+		
+		//one: 0 1 5 7; the second shard has no postings for one
+		IterablePosting ip = inverted.getPostings(lexicon.getLexiconEntry("one"));
+		assertEquals(5, ip.next(2));
+		assertEquals(5, ip.getId());
+		assertEquals(5, ip.next(4));
+		assertEquals(7, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next(8));
+		
+		//two: 0 2 3 6 7
+		ip = inverted.getPostings(lexicon.getLexiconEntry("two"));
+		assertEquals(2, ip.next(1));
+		assertEquals(3, ip.next(3));
+		assertEquals(6, ip.next(6));
+		assertEquals(7, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next());
+		
+		//skipping directly into the last shard
+		ip = inverted.getPostings(lexicon.getLexiconEntry("two"));
+		assertEquals(7, ip.next(7));
+		assertEquals(1, ip.getFrequency());
+		assertEquals(IterablePosting.EOL, ip.next());
+		
+		ip = inverted.getPostings(lexicon.getLexiconEntry("three"));
+		assertEquals(4, ip.next(0));
+		assertEquals(IterablePosting.EOL, ip.next(5));
+	}
+	
 	@Test
 	public void test_MultiIndexBlocks() throws Exception {
 		ApplicationSetup.setProperty("termpipelines", "");
@@ -185,6 +185,56 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 		IndexUtil.deleteIndex(index.getPath(), index.getPrefix());		
 	}
 	
+	@Test public void testRecordCacheAndBatchedReads() throws Exception
+	{
+		final int numDocs = 300;
+		String[][] data = new String[numDocs][];
+		for(int i=0;i<numDocs;i++)
+			data[i] = new String[]{"doc" + i, "http://example.org/" + (i * 7919) + "/page"};
+		IndexOnDisk index = createMetaIndex("meta", new String[]{"docno", "url"}, new int[]{10, 40}, new String[0], data);
+		index.setIndexProperty("index.meta.cache.bytes", "4096");
+		index.setIndexProperty("index.meta.batch-read.max-gap", "64");
+		index.setIndexProperty("index.meta.batch-read.max-bytes", "512");
+		
+		//an unordered result list, with a popular document appearing twice
+		final int[] docids = new int[100];
+		for(int i=0;i<docids.length;i++)
+			docids[i] = (i * 37 + (i % 3) * 101) % numDocs;
+		docids[50] = docids[3];
+		
+		for(String batchRead : new String[]{"true", "false"})
+		{
+			index.setIndexProperty("index.meta.batch-read", batchRead);
+			IndexUtil.forceReloadStructure(index, "meta");
+			BaseCompressingMetaIndex meta = (BaseCompressingMetaIndex) index.getMetaIndex();
+			BaseCompressingMetaIndex.RecordCache cache = meta.getRecordCache();
+			assertNotNull(cache);
+			for(int round=0;round<2;round++)
+			{
+				String[] docnos = meta.getItems("docno", docids);
+				String[][] both = meta.getItems(new String[]{"url", "docno"}, docids);
+				for(int i=0;i<docids.length;i++)
+				{
+					assertEquals(data[docids[i]][0], docnos[i]);
+					assertEquals(data[docids[i]][1], both[i][0]);
+					assertEquals(data[docids[i]][0], both[i][1]);
+					assertEquals(data[docids[i]][1], meta.getItem("url", docids[i]));
+					assertEquals(data[docids[i]][0], meta.getAllItems(docids[i])[0]);
+				}
+			}
+			assertTrue(cache.getHits() > 0);
+			assertTrue(cache.getEvictions() > 0);
+			assertTrue(cache.size() > 0);
+			assertTrue(cache.getBytes() <= 4096);
+		}
+		
+		index.setIndexProperty("index.meta.cache.bytes", "0");
+		IndexUtil.forceReloadStructure(index, "meta");
+		assertEquals(null, ((BaseCompressingMetaIndex) index.getMetaIndex()).getRecordCache());
+		index.close();
+		IndexUtil.deleteIndex(index.getPath(), index.getPrefix());
+	}
+	
 	@Test public void testDifferentName() throws Exception
 	{
 		testBase("differentName", new String[]{"docno"}, new int[]{1}, new String[0], new String[][]{
@@ -233,6 +283,15 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 			src.MEM,
 			src.MEM
 		);
+		testBase("differentName", new String[]{"docno"}, new int[]{1}, new String[0], new String[][]{
+				new String[]{"a"},
+				new String[]{"b"},
+				new String[]{"c"},
+				new String[]{"d"}
+			},
+			src.MEM,
+			src.MMAP
+		);
 	}
 		
 	@Test
@@ -322,7 +381,8 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 	enum src { 
 		DEFAULT,
 		DISK,
-		MEM
+		MEM,
+		MMAP
 	}
 
 	protected void testBase(String name, String[] keyNames, int[] keyLengths, String[] revKeys, String[][] data) throws Exception {
@@ -337,6 +397,8 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 			index.setIndexProperty("index."+name + ".data-source", "file"); 
 		} else if (datasrc == src.MEM) {
 			index.setIndexProperty("index."+name + ".data-source", "fileinmem"); 
+		} else if (datasrc == src.MMAP) {
+			index.setIndexProperty("index."+name + ".data-source", "mmap"); 
 		}
 
 		if (indexsrc == src.DISK) {
@@ -0,0 +1,152 @@
+package org.terrier.structures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.terrier.structures.indexing.ColumnarMetaIndexBuilder;
+import org.terrier.structures.indexing.MetaIndexBuilder;
+import org.terrier.structures.indexing.ZstdMetaIndexBuilder;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+public class TestColumnarMetaIndex extends ApplicationSetupBasedTest {
+
+	static final String[] KEYS = new String[]{"docno", "url", "title"};
+	static final int[] LENGTHS = new int[]{20, 100, 80};
+	static final int NUM_DOCS = 300;
+
+	static String[][] data()
+	{
+		String[][] data = new String[NUM_DOCS][];
+		for(int i=0;i<NUM_DOCS;i++)
+			data[i] = new String[]{
+				String.format("doc%04d", i), 
+				"http://www.example.com/articles/" + (i * 7919 % 10007) + ".html", 
+				i % 10 == 0 ? "" : "The title of döcument " + i};
+		return data;
+	}
+
+	static IndexOnDisk createMetaIndex(Class<? extends MetaIndexBuilder> clz, String[] reverseKeys, String[][] data) throws Exception
+	{
+		IndexOnDisk index = IndexOnDisk.createNewIndex(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX);
+		MetaIndexBuilder b = MetaIndexBuilder.create(clz.getName(), index, KEYS, LENGTHS, reverseKeys);
+		for(String[] values : data)
+			b.writeDocumentEntry(values);
+		b.close();
+		return index;
+	}
+
+	@SuppressWarnings("unchecked")
+	static void checkMeta(IndexOnDisk index, String[][] data) throws Exception
+	{
+		MetaIndex meta = index.getMetaIndex();
+		assertTrue(meta instanceof ColumnarMetaIndex);
+		assertEquals(NUM_DOCS, meta.size());
+		assertArrayEquals(KEYS, meta.getKeys());
+		for(int i=0;i<NUM_DOCS;i++)
+		{
+			assertArrayEquals(data[i], meta.getAllItems(i));
+			assertEquals(data[i][1], meta.getItem("url", i));
+			assertArrayEquals(new String[]{data[i][2], data[i][0]}, meta.getItems(new String[]{"title", "docno"}, i));
+			//docnos are sorted, and hence can be found using a binary search
+			assertEquals(i, meta.getDocument("docno", data[i][0]));
+			assertEquals(i, meta.getDocument("url", data[i][1]));
+		}
+		assertEquals(-1, meta.getDocument("docno", "doc"));
+		assertEquals(-1, meta.getDocument("url", "http://www.example.com/"));
+		
+		final int[] docids = new int[100];
+		for(int i=0;i<docids.length;i++)
+			docids[i] = (i * 37 + (i % 3) * 101) % NUM_DOCS;
+		final int[] copy = docids.clone();
+		String[] urls = meta.getItems("url", docids);
+		String[][] both = meta.getItems(new String[]{"docno", "title"}, docids);
+		assertArrayEquals(copy, docids);
+		for(int i=0;i<docids.length;i++)
+		{
+			assertEquals(data[docids[i]][1], urls[i]);
+			assertEquals(data[docids[i]][0], both[i][0]);
+			assertEquals(data[docids[i]][2], both[i][1]);
+		}
+		
+		Iterator<String[]> iter = (Iterator<String[]>) index.getIndexStructureInputStream("meta");
+		int i = 0;
+		while(iter.hasNext())
+			assertArrayEquals(data[i++], iter.next());
+		assertEquals(NUM_DOCS, i);
+		IndexUtil.close(iter);
+	}
+
+	@Test public void testColumns() throws Exception
+	{
+		ApplicationSetup.setProperty("metaindex.columnar.block.size", "16");
+		String[][] data = data();
+		IndexOnDisk index = createMetaIndex(ColumnarMetaIndexBuilder.class, new String[]{"url"}, data);
+		assertEquals("fixed,blocked,blocked", index.getIndexProperty("index.meta.column-types", ""));
+		assertEquals("true,false,false", index.getIndexProperty("index.meta.value-sorted", ""));
+		final String prefix = index.getPath() + "/" + index.getPrefix() + ".meta";
+		//fixed-width values are padded to the longest docno actually written, e.g. doc0299
+		assertEquals("7,0,0", index.getIndexProperty("index.meta.column-widths", ""));
+		assertEquals((long)NUM_DOCS * 7, Files.length(prefix + ".col0"));
+		assertFalse(Files.exists(prefix + ".col0.blocks"));
+		assertFalse(Files.exists(prefix + ".col0.spool"));
+		assertEquals((NUM_DOCS + 15) / 16 * 12, Files.length(prefix + ".col1.blocks"));
+		for(String source : new String[]{"fileinmem", "file", "mmap"})
+		{
+			index.setIndexProperty("index.meta.data-source", source);
+			IndexUtil.forceReloadStructure(index, "meta");
+			checkMeta(index, data);
+		}
+		index.close();
+		IndexUtil.deleteIndex(index.getPath(), index.getPrefix());
+	}
+
+	@Test public void testFixedWidthEncodedLength() throws Exception
+	{
+		//all keys are fixed-width, including titles with multi-byte characters, and empty titles
+		ApplicationSetup.setProperty("metaindex.columnar.fixed.max.length", "100");
+		String[][] data = data();
+		IndexOnDisk index = createMetaIndex(ColumnarMetaIndexBuilder.class, new String[]{"url"}, data);
+		assertEquals("fixed,fixed,fixed", index.getIndexProperty("index.meta.column-types", ""));
+		final int[] widths = new int[KEYS.length];
+		for(String[] values : data)
+			for(int k=0;k<KEYS.length;k++)
+				widths[k] = Math.max(widths[k], values[k].getBytes(StandardCharsets.UTF_8).length);
+		final String prefix = index.getPath() + "/" + index.getPrefix() + ".meta";
+		for(int k=0;k<KEYS.length;k++)
+			assertEquals((long)NUM_DOCS * widths[k], Files.length(prefix + ".col" + k));
+		checkMeta(index, data);
+		index.close();
+		IndexUtil.deleteIndex(index.getPath(), index.getPrefix());
+	}
+
+	@Test public void testConvert() throws Exception
+	{
+		String[][] data = data();
+		IndexOnDisk index = createMetaIndex(ZstdMetaIndexBuilder.class, new String[]{"url"}, data);
+		assertTrue(index.getMetaIndex() instanceof ZstdCompressedMetaIndex);
+		final String prefix = index.getPath() + "/" + index.getPrefix() + ".meta";
+		assertTrue(Files.exists(prefix + "-0.fsomapfile"));
+		
+		IndexUtil.convertToColumnarMetaIndex(index, "meta");
+		assertFalse(Files.exists(prefix + ".zdata"));
+		assertFalse(Files.exists(prefix + "-0.fsomapfile"));
+		assertTrue(Files.exists(prefix + ".reverse-0.fsomapfile"));
+		assertFalse(index.hasIndexStructure("meta-columnar"));
+		checkMeta(index, data);
+		index.close();
+		
+		//the conversion persists once the index is reopened
+		index = IndexOnDisk.createIndex(index.getPath(), index.getPrefix());
+		checkMeta(index, data);
+		index.close();
+		IndexUtil.deleteIndex(index.getPath(), index.getPrefix());
+	}
+}
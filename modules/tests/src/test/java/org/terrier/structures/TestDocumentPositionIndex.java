@@ -0,0 +1,183 @@
+package org.terrier.structures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.CollectionResultSet;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.dsms.DFRDependenceScoreModifier;
+import org.terrier.matching.dsms.DependenceScoreModifier;
+import org.terrier.matching.dsms.MRFDependenceScoreModifier;
+import org.terrier.matching.matchops.SingleTermOp;
+import org.terrier.matching.models.InL2;
+import org.terrier.querying.parser.Query.QTPBuilder;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestDocumentPositionIndex extends ApplicationSetupBasedTest
+{
+	static final String[] WORDS = new String[]{"quick", "brown", "fox", "jump", "cat", "dog", "bird", "tree"};
+	static final int NUM_DOCS = 60;
+
+	IndexOnDisk makeIndex() throws Exception
+	{
+		String[] docnos = new String[NUM_DOCS];
+		String[] docs = new String[NUM_DOCS];
+		for(int i=0;i<NUM_DOCS;i++)
+		{
+			docnos[i] = "doc" + i;
+			StringBuilder s = new StringBuilder();
+			for(int j=0;j<=i % 17;j++)
+				s.append(WORDS[(i * 5 + j * 3 + j / 4) % WORDS.length]).append(' ');
+			//empty documents must have empty records
+			if (i % 23 == 0)
+				s.setLength(0);
+			docs[i] = s.toString();
+		}
+		return (IndexOnDisk) IndexTestUtils.makeIndexBlocks(docnos, docs);
+	}
+
+	@Test public void testPositions() throws Exception
+	{
+		//the positions are read from the direct index
+		IndexOnDisk index = makeIndex();
+		assertTrue(index.hasIndexStructure("direct"));
+		checkCreate(index);
+	}
+	
+	@Test public void testPositionsFromInverted() throws Exception
+	{
+		//force several sorted runs of the inverted index
+		ApplicationSetup.setProperty("positions.build.run.tokens", "40");
+		IndexOnDisk index = makeIndex();
+		IndexUtil.deleteStructure(index, "direct");
+		assertFalse(index.hasIndexStructure("direct"));
+		checkCreate(index);
+		//the runs are deleted
+		for(String f : new File(index.getPath()).list())
+			assertFalse(f, f.contains(".run"));
+	}
+	
+	void checkCreate(IndexOnDisk index) throws Exception
+	{
+		DocumentPositionIndex.create(index, DocumentPositionIndex.STRUCTURE_NAME);
+		assertTrue(index.hasIndexStructure(DocumentPositionIndex.STRUCTURE_NAME));
+		for(String source : new String[]{"file", "fileinmem", "mmap"})
+		{
+			index.setIndexProperty("index."+DocumentPositionIndex.STRUCTURE_NAME+".data-source", source);
+			IndexUtil.forceReloadStructure(index, DocumentPositionIndex.STRUCTURE_NAME);
+			DocumentPositionIndex positions = (DocumentPositionIndex) index.getIndexStructure(DocumentPositionIndex.STRUCTURE_NAME);
+			assertEquals(NUM_DOCS, positions.size());
+			checkPositions(index, positions);
+		}
+	}
+
+	static void checkPositions(Index index, DocumentPositionIndex positions) throws Exception
+	{
+		final int numTerms = index.getCollectionStatistics().getNumberOfUniqueTerms();
+		final int[] allTermids = new int[numTerms];
+		for(int t=0;t<numTerms;t++)
+			allTermids[t] = t;
+		final int[][][] expected = new int[NUM_DOCS][numTerms][];
+		Iterator<Map.Entry<String,LexiconEntry>> iter = index.getLexicon().iterator();
+		int numPostings = 0;
+		while(iter.hasNext())
+		{
+			LexiconEntry le = iter.next().getValue();
+			IterablePosting ip = index.getInvertedIndex().getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+			{
+				expected[ip.getId()][le.getTermId()] = ((BlockPosting)ip).getPositions().clone();
+				numPostings++;
+			}
+			ip.close();
+		}
+		assertTrue(numPostings > 0);
+		for(int docid=0;docid<NUM_DOCS;docid++)
+		{
+			final int[][] actual = positions.getPositions(docid, allTermids);
+			for(int t=0;t<numTerms;t++)
+				assertArrayEquals("docid="+docid+" termid="+t, expected[docid][t], actual[t]);
+			//subsets of terms in any order, including repeated terms
+			for(int t=0;t<numTerms;t++)
+			{
+				final int other = (t * 3 + 1) % numTerms;
+				final int[][] some = positions.getPositions(docid, new int[]{other, t, other});
+				assertArrayEquals(expected[docid][other], some[0]);
+				assertArrayEquals(expected[docid][t], some[1]);
+				assertArrayEquals(expected[docid][other], some[2]);
+			}
+		}
+		assertNull(positions.getPositions(0, new int[]{0})[0]);
+	}
+
+	@Test(expected=IOException.class) public void testNoBlocks() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(new String[]{"doc1"}, new String[]{"the quick brown fox"});
+		DocumentPositionIndex.create(index, DocumentPositionIndex.STRUCTURE_NAME);
+	}
+
+	@Test public void testDependenceScores() throws Exception
+	{
+		IndexOnDisk index = makeIndex();
+		final String[] types = new String[]{"SD", "FD"};
+		final String[][] queries = new String[][]{{"quick", "jump"}, {"fox", "dog", "quick"}, {"brown", "zebra", "cat"}};
+		//scores obtained from the block posting lists
+		final double[][][] expected = new double[types.length * queries.length][][];
+		for(int i=0;i<expected.length;i++)
+		{
+			ApplicationSetup.setProperty("proximity.dependency.type", types[i / queries.length]);
+			final String[] query = queries[i % queries.length];
+			expected[i] = new double[][]{
+				score(index, new MRFDependenceScoreModifier(), query),
+				score(index, new DFRDependenceScoreModifier(), query)};
+			boolean altered = false;
+			for(double s : expected[i][1])
+				altered |= s != 1.0d;
+			assertTrue(altered);
+		}
+		//scores obtained from the document position structure must be identical
+		DocumentPositionIndex.create(index, DocumentPositionIndex.STRUCTURE_NAME);
+		for(int i=0;i<expected.length;i++)
+		{
+			ApplicationSetup.setProperty("proximity.dependency.type", types[i / queries.length]);
+			final String[] query = queries[i % queries.length];
+			final String msg = types[i / queries.length] + " " + String.join(" ", query);
+			assertArrayEquals(msg, expected[i][0], score(index, new MRFDependenceScoreModifier(), query), 1e-9);
+			assertArrayEquals(msg, expected[i][1], score(index, new DFRDependenceScoreModifier(), query), 1e-9);
+		}
+	}
+
+	static double[] score(Index index, DependenceScoreModifier dsm, String[] query) throws Exception
+	{
+		MatchingQueryTerms mqt = new MatchingQueryTerms();
+		mqt.setDefaultTermWeightingModel(new InL2());
+		for(String t : query)
+			mqt.add(QTPBuilder.of(new SingleTermOp(t)).build());
+		ResultSet r = new CollectionResultSet(NUM_DOCS);
+		for(int i=0;i<NUM_DOCS;i++)
+		{
+			r.getDocids()[i] = NUM_DOCS - 1 - i;
+			r.getScores()[i] = 1.0d;
+		}
+		assertTrue(dsm.modifyScores(index, mqt, r));
+		//order the scores by docid
+		final double[] scores = new double[NUM_DOCS];
+		for(int i=0;i<NUM_DOCS;i++)
+			scores[r.getDocids()[i]] = r.getScores()[i];
+		return scores;
+	}
+}
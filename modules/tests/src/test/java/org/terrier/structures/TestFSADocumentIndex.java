@@ -0,0 +1,151 @@
+package org.terrier.structures;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.PostingUtil;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestFSADocumentIndex extends ApplicationSetupBasedTest
+{
+	static final int NUM_DOCS = 50;
+
+	IndexOnDisk makeIndex() throws Exception
+	{
+		String[] docnos = new String[NUM_DOCS];
+		String[] docs = new String[NUM_DOCS];
+		for(int i=0;i<NUM_DOCS;i++)
+		{
+			docnos[i] = "doc" + i;
+			StringBuilder s = new StringBuilder();
+			for(int j=0;j<=i;j++)
+				s.append(j % 2 == 0 ? "alpha " : "beta ");
+			docs[i] = s.toString();
+		}
+		return (IndexOnDisk) IndexTestUtils.makeIndex(docnos, docs);
+	}
+
+	static DocumentIndex reload(IndexOnDisk index, Class<?> clz, String source) throws Exception
+	{
+		index.setIndexProperty("index.document.class", clz.getName());
+		index.setIndexProperty("index.document.data-source", source);
+		IndexUtil.forceReloadStructure(index, "document");
+		DocumentIndex doi = index.getDocumentIndex();
+		assertEquals(clz, doi.getClass());
+		return doi;
+	}
+
+	static void checkLengths(DocumentIndex doi) throws Exception
+	{
+		assertEquals(NUM_DOCS, doi.getNumberOfDocuments());
+		int[] lengths = ((DocumentLengthArray)doi).getDocumentLengths();
+		assertEquals(NUM_DOCS, lengths.length);
+		for(int i=0;i<NUM_DOCS;i++)
+		{
+			assertEquals(i+1, doi.getDocumentLength(i));
+			assertEquals(i+1, lengths[i]);
+			assertEquals(i+1, doi.getDocumentEntry(i).getDocumentLength());
+		}
+		assertNull(doi.getDocumentEntry(NUM_DOCS));
+	}
+
+	@Test public void testDocumentLengths() throws Exception
+	{
+		IndexOnDisk index = makeIndex();
+		for(String source : new String[]{"file", "fileinmem", "mmap"})
+		{
+			DocumentIndex doi = reload(index, FSADocumentIndex.class, source);
+			assertTrue(source, ((FSADocumentIndex)doi).isConcurrentReadable());
+			checkLengths(doi);
+		}
+		DocumentIndex doi = reload(index, FSADocumentIndexInMem.class, "file");
+		assertTrue(doi.getClass().isAnnotationPresent(ConcurrentReadable.class));
+		checkLengths(doi);
+	}
+
+	@Test public void testConcurrentEntries() throws Exception
+	{
+		IndexOnDisk index = makeIndex();
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try{
+			for(Class<?> clz : new Class<?>[]{FSADocumentIndex.class, FSADocumentIndexInMem.class})
+			{
+				final DocumentIndex doi = reload(index, clz, "file");
+				List<Future<Boolean>> results = new ArrayList<>();
+				for(int t=0;t<8;t++)
+				{
+					final int offset = t;
+					results.add(pool.submit(new Callable<Boolean>() {
+						@Override
+						public Boolean call() throws Exception {
+							for(int round=0;round<200;round++)
+								for(int i=0;i<NUM_DOCS;i++)
+								{
+									int docid = (i + offset * 7) % NUM_DOCS;
+									assertEquals(docid+1, doi.getDocumentEntry(docid).getDocumentLength());
+									assertEquals(docid+1, doi.getDocumentLength(docid));
+								}
+							return true;
+						}
+					}));
+				}
+				for(Future<Boolean> f : results)
+					assertTrue(f.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test public void testInlinedPostingDocumentLengths() throws Exception
+	{
+		IndexOnDisk index = makeIndex();
+		reload(index, FSADocumentIndex.class, "file");
+		final boolean inline = PostingUtil.INLINE_DOCUMENT_LENGTHS;
+		try{
+			for(boolean b : new boolean[]{true, false})
+			{
+				PostingUtil.INLINE_DOCUMENT_LENGTHS = b;
+				for(String term : new String[]{"alpha", "beta"})
+				{
+					IterablePosting ip = index.getInvertedIndex().getPostings(index.getLexicon().getLexiconEntry(term));
+					int count = 0;
+					while(ip.next() != IterablePosting.EOL)
+					{
+						assertEquals(ip.getId()+1, ip.getDocumentLength());
+						count++;
+					}
+					assertEquals(term.equals("alpha") ? NUM_DOCS : NUM_DOCS -1, count);
+					ip.close();
+				}
+			}
+		} finally {
+			PostingUtil.INLINE_DOCUMENT_LENGTHS = inline;
+		}
+	}
+
+	@Test public void testInMemFields() throws Exception
+	{
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE,BODY");
+		ApplicationSetup.setProperty("TrecDocTags.process", "DOCNO,TITLE,BODY");
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndexFields(
+				new String[]{"doc1", "doc2"},
+				new String[]{
+						"<DOCNO>1</DOCNO> <TITLE> simple fox </TITLE> <BODY> the quick brown fox </BODY>",
+						"<DOCNO>2</DOCNO> <TITLE> dog </TITLE> <BODY> how much is that dog in the window </BODY>"});
+		FieldDocumentIndex doi = (FieldDocumentIndex) reload(index, FSADocumentIndexInMemFields.class, "file");
+		assertTrue(doi.getClass().isAnnotationPresent(ConcurrentReadable.class));
+		assertArrayEquals(new int[]{2,3}, doi.getFieldLengths(0));
+		assertArrayEquals(new int[]{1,2}, doi.getFieldLengths(1));
+	}
+}
@@ -28,8 +28,15 @@ package org.terrier.structures;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.terrier.structures.indexing.LexiconBuilder;
@@ -122,4 +129,53 @@ public class TestFSOMapFileLexicon extends ApplicationSetupBasedTest
 		assertEquals("f", iter.next().getKey());
 		assertFalse(iter.hasNext());
 	}
+	
+	@Test public void testConcurrentLookups() throws Exception
+	{
+		final int numTerms = 2000;
+		final String[] terms = new String[numTerms];
+		for(int i=0;i<numTerms;i++)
+			terms[i] = "term" + i;
+		final String[] sorted = terms.clone();
+		Arrays.sort(sorted);
+		IndexOnDisk index = (IndexOnDisk) createLexiconIndex(terms);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try{
+			for(String source : new String[]{"file", "fileinmem", "mmap"})
+			{
+				index.setIndexProperty("index.lexicon.data-source", source);
+				index.getLexicon().close();
+				IndexUtil.forceReloadStructure(index, "lexicon");
+				final Lexicon<String> lexicon = index.getLexicon();
+				assertTrue(source, ((MapLexicon<?,?>)lexicon).lockFreeReads);
+				
+				List<Future<Boolean>> results = new ArrayList<>();
+				for(int t=0;t<8;t++)
+				{
+					final int offset = t;
+					results.add(pool.submit(new Callable<Boolean>() {
+						@Override
+						public Boolean call() throws Exception {
+							for(int round=0;round<5;round++)
+								for(int i=0;i<numTerms;i++)
+								{
+									String term = terms[(i + offset * 97) % numTerms];
+									LexiconEntry le = lexicon.getLexiconEntry(term);
+									assertNotNull(term, le);
+									assertEquals(1, le.getFrequency());
+									assertEquals(term, lexicon.getLexiconEntry(le.getTermId()).getKey());
+									assertNull(lexicon.getLexiconEntry(term + "x"));
+									assertEquals(sorted[i], lexicon.getIthLexiconEntry(i).getKey());
+								}
+							return true;
+						}
+					}));
+				}
+				for(Future<Boolean> f : results)
+					assertTrue(f.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
 }
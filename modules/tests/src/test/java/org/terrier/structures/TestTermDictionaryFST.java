@@ -0,0 +1,255 @@
+package org.terrier.structures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.matchops.FuzzyTermOp;
+import org.terrier.matching.matchops.PrefixTermOp;
+import org.terrier.matching.matchops.WildcardTermOp;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestTermDictionaryFST extends ApplicationSetupBasedTest {
+
+	static final String ALPHABET = "abcdeé中";
+	
+	/** random terms, sorted in lexicon (code point) order */
+	static List<String> makeTerms(int count, long seed)
+	{
+		Random r = new Random(seed);
+		TreeSet<String> terms = new TreeSet<>((a,b) -> compareCodePoints(a,b));
+		while(terms.size() < count)
+		{
+			StringBuilder s = new StringBuilder();
+			int len = 1 + r.nextInt(8);
+			for(int i=0;i<len;i++)
+				s.append(ALPHABET.charAt(r.nextInt(ALPHABET.length())));
+			if (r.nextInt(50) == 0)
+				s.appendCodePoint(0x1F600);
+			terms.add(s.toString());
+		}
+		return new ArrayList<>(terms);
+	}
+	
+	static int compareCodePoints(String a, String b)
+	{
+		return java.util.Arrays.compare(a.codePoints().toArray(), b.codePoints().toArray());
+	}
+	
+	/** edit distance over code points, as used by the Levenshtein automaton */
+	static int distance(String a, String b)
+	{
+		int[] x = a.codePoints().toArray();
+		int[] y = b.codePoints().toArray();
+		int[] row = new int[y.length+1];
+		for(int j=0;j<=y.length;j++)
+			row[j] = j;
+		for(int i=1;i<=x.length;i++)
+		{
+			int diag = row[0];
+			row[0] = i;
+			for(int j=1;j<=y.length;j++)
+			{
+				int tmp = row[j];
+				row[j] = Math.min(Math.min(row[j] + 1, row[j-1] + 1), diag + (x[i-1] == y[j-1] ? 0 : 1));
+				diag = tmp;
+			}
+		}
+		return row[y.length];
+	}
+	
+	static TermDictionaryFST build(List<String> terms)
+	{
+		TermDictionaryFST.Builder builder = new TermDictionaryFST.Builder();
+		for(String t : terms)
+			builder.add(t);
+		return builder.build();
+	}
+	
+	static <S> List<String> matches(TermDictionaryFST fst, TermDictionaryFST.Automaton<S> a, List<String> terms) throws Exception
+	{
+		List<String> rtr = new ArrayList<>();
+		fst.intersect(a, (term, ordinal) -> {
+			assertEquals(terms.get(ordinal), term);
+			return rtr.add(term);
+		});
+		return rtr;
+	}
+	
+	@Test public void testLookups() throws Exception
+	{
+		List<String> terms = makeTerms(3000, 1);
+		TermDictionaryFST fst = build(terms);
+		assertEquals(terms.size(), fst.size());
+		int chars = 0;
+		for(int i=0;i<terms.size();i++)
+		{
+			assertEquals(i, fst.getOrdinal(terms.get(i)));
+			assertEquals(terms.get(i), fst.getTerm(i));
+			chars += terms.get(i).length();
+		}
+		//suffixes are shared
+		assertTrue(fst.getNumberOfStates() < chars / 2);
+		assertEquals(-1, fst.getOrdinal("zzz"));
+		assertEquals(-1, fst.getOrdinal(""));
+		
+		String filename = ApplicationSetup.TERRIER_INDEX_PATH + "/test.fst";
+		fst.write(filename);
+		TermDictionaryFST loaded = new TermDictionaryFST(filename);
+		assertEquals(fst.size(), loaded.size());
+		for(int i=0;i<terms.size();i++)
+			assertEquals(i, loaded.getOrdinal(terms.get(i)));
+	}
+	
+	@Test public void testEmptyAndOrder() throws Exception
+	{
+		TermDictionaryFST fst = build(new ArrayList<>());
+		assertEquals(0, fst.size());
+		assertEquals(-1, fst.getOrdinal("a"));
+		assertEquals(0, matches(fst, TermDictionaryFST.wildcardAutomaton("*"), new ArrayList<>()).size());
+		
+		TermDictionaryFST.Builder builder = new TermDictionaryFST.Builder();
+		builder.add("b");
+		try{
+			builder.add("a");
+			fail("out of order term should be rejected");
+		} catch (IllegalArgumentException iae) {}
+		try{
+			builder.add("b");
+			fail("duplicate term should be rejected");
+		} catch (IllegalArgumentException iae) {}
+	}
+	
+	@Test public void testAutomata() throws Exception
+	{
+		List<String> terms = makeTerms(2000, 2);
+		TermDictionaryFST fst = build(terms);
+		for(String query : new String[]{"abc", "abé", "中d", "eeeee", "a", "abcdeab"})
+		{
+			for(int k=0;k<=2;k++)
+				for(int prefix=0;prefix<=2;prefix++)
+				{
+					List<String> expected = new ArrayList<>();
+					for(String t : terms)
+						if (t.length() >= Math.min(prefix, query.length()) && t.startsWith(query.substring(0, Math.min(prefix, query.length()))) && distance(query, t) <= k)
+							expected.add(t);
+					assertEquals(query + " k=" + k, expected, matches(fst, TermDictionaryFST.levenshteinAutomaton(query, k, prefix), terms));
+				}
+			List<String> expected = new ArrayList<>();
+			for(String t : terms)
+				if (t.startsWith(query))
+					expected.add(t);
+			assertEquals(expected, matches(fst, TermDictionaryFST.prefixAutomaton(query), terms));
+		}
+		for(String pattern : new String[]{"a*", "*e", "a?c*", "*中*d", "?", "*", "abc", "a**b?"})
+		{
+			java.util.regex.Pattern regex = java.util.regex.Pattern.compile(pattern.replace("?", ".").replace("*", ".*"));
+			List<String> expected = new ArrayList<>();
+			for(String t : terms)
+				if (regex.matcher(t).matches())
+					expected.add(t);
+			assertEquals(pattern, expected, matches(fst, TermDictionaryFST.wildcardAutomaton(pattern), terms));
+		}
+	}
+	
+	static String describe(Pair<EntryStatistics, IterablePosting> pair) throws Exception
+	{
+		if (pair == null)
+			return null;
+		StringBuilder s = new StringBuilder(pair.getLeft().getFrequency() + "/" + pair.getLeft().getDocumentFrequency() + ":");
+		IterablePosting ip = pair.getRight();
+		while(ip.next() != IterablePosting.EOL)
+			s.append(' ').append(ip.getId()).append('=').append(ip.getFrequency());
+		return s.toString();
+	}
+	
+	@Test public void testLazyExpansion() throws Exception
+	{
+		List<String> terms = makeTerms(3000, 4);
+		TermDictionaryFST fst = build(terms);
+		final int[] steps = new int[1];
+		final TermDictionaryFST.Automaton<Integer> prefix = TermDictionaryFST.prefixAutomaton("a");
+		TermDictionaryFST.Automaton<Integer> counting = new TermDictionaryFST.Automaton<Integer>() {
+			@Override public Integer start() { return prefix.start(); }
+			@Override public Integer step(Integer state, int codePoint) { steps[0]++; return prefix.step(state, codePoint); }
+			@Override public boolean isAccept(Integer state) { return prefix.isAccept(state); }
+		};
+		List<String> expected = matches(fst, counting, terms);
+		final int allSteps = steps[0];
+		assertTrue(expected.size() > 10);
+		
+		steps[0] = 0;
+		TermDictionaryFST.OrdinalIterator<Integer> iter = fst.new OrdinalIterator<>(counting);
+		for(int i=0;i<10;i++)
+			assertEquals(expected.get(i), terms.get(iter.nextInt()));
+		//only the part of the transducer leading to the first terms is explored
+		assertTrue(steps[0] + " of " + allSteps, steps[0] < allSteps / 10);
+		for(int i=10;i<expected.size();i++)
+			assertEquals(expected.get(i), terms.get(iter.nextInt()));
+		assertTrue(! iter.hasNext());
+		assertEquals(allSteps, steps[0]);
+		
+		//terms not accepted by the automaton, and the empty term
+		assertTrue(! fst.new OrdinalIterator<>(TermDictionaryFST.prefixAutomaton("x")).hasNext());
+		TermDictionaryFST withEmpty = build(java.util.Arrays.asList("", "a", "b"));
+		TermDictionaryFST.OrdinalIterator<Integer> all = withEmpty.new OrdinalIterator<>(TermDictionaryFST.prefixAutomaton(""));
+		assertEquals(0, all.nextInt());
+		assertEquals(1, all.nextInt());
+		assertEquals(2, all.nextInt());
+		assertTrue(! all.hasNext());
+	}
+	
+	@Test public void testMatchOps() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("lexicon.fst", "true");
+		Index index = IndexTestUtils.makeIndex(
+			new String[]{"doc1", "doc2", "doc3"}, 
+			new String[]{"aaa aba cc richie", "ritchie rich riches abba", "aaaa aba zebra"});
+		assertTrue(index.hasIndexStructure(TermDictionaryFST.STRUCTURE_NAME));
+		TermDictionaryFST fst = (TermDictionaryFST) index.getIndexStructure(TermDictionaryFST.STRUCTURE_NAME);
+		assertEquals(index.getLexicon().numberOfEntries(), fst.size());
+		Iterator<Map.Entry<String,LexiconEntry>> iter = fst.getLexiconEntries(TermDictionaryFST.prefixAutomaton("ric"), index.getLexicon());
+		assertEquals("rich", iter.next().getKey());
+		assertEquals("riches", iter.next().getKey());
+		assertEquals("richie", iter.next().getKey());
+		assertTrue(! iter.hasNext());
+		
+		List<String> withFST = new ArrayList<>();
+		List<String> withoutFST = new ArrayList<>();
+		for(List<String> results : new List[]{withFST, withoutFST})
+		{
+			results.add(describe(new FuzzyTermOp("aaa").getPostingIterator(index)));
+			results.add(describe(new FuzzyTermOp("ritchie").getPostingIterator(index)));
+			results.add(describe(new FuzzyTermOp("aaa", 1, null, 3, null, null).getPostingIterator(index)));
+			results.add(describe(new FuzzyTermOp("aaa", null, 1, null, null, null).getPostingIterator(index)));
+			results.add(describe(new PrefixTermOp("ri").getPostingIterator(index)));
+			results.add(describe(new WildcardTermOp("a?a").getPostingIterator(index)));
+			results.add(describe(new WildcardTermOp("*b*").getPostingIterator(index)));
+			results.add(describe(new WildcardTermOp("x*").getPostingIterator(index)));
+			((IndexOnDisk)index).getProperties().remove("index." + TermDictionaryFST.STRUCTURE_NAME + ".class");
+			IndexUtil.forceReloadStructure((IndexOnDisk)index, TermDictionaryFST.STRUCTURE_NAME);
+		}
+		assertTrue(! index.hasIndexStructure(TermDictionaryFST.STRUCTURE_NAME));
+		assertEquals(withoutFST, withFST);
+		//aaaa is removed by the tokeniser, so both match aaa and aba
+		assertEquals("3/3: 0=2 2=1", withFST.get(0));
+		assertEquals("3/3: 0=2 2=1", withFST.get(5));
+		assertNull(withFST.get(7));
+		assertNotNull(withFST.get(6));
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestTermScoreUpperBounds.java.
+ *
+ * The Original Code is Copyright (C) 2004-2022 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ */
+package org.terrier.structures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListManager;
+import org.terrier.matching.matchops.SingleTermOp;
+import org.terrier.matching.models.BM25;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.matching.models.WeightingModelFactory;
+import org.terrier.querying.parser.Query.QTPBuilder;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestTermScoreUpperBounds extends ApplicationSetupBasedTest {
+
+	static final String[] MODELS = {"BM25", "PL2", "DPH", "DirichletLM"};
+	
+	@Test public void testBounds() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(
+				new String[]{"doc1", "doc2", "doc3", "doc4"}, 
+				new String[]{
+					"dog cat cat", 
+					"dog dog dog dog mouse house garden tree", 
+					"cat mouse mouse", 
+					"house house house"});
+		TermScoreUpperBounds.create(index, TermScoreUpperBounds.STRUCTURE_NAME, new String[]{"BM25", "DPH"});
+		assertTrue(index.hasIndexStructure(TermScoreUpperBounds.STRUCTURE_NAME));
+		TermScoreUpperBounds bounds = (TermScoreUpperBounds) index.getIndexStructure(TermScoreUpperBounds.STRUCTURE_NAME);
+		assertNotNull(bounds);
+		assertEquals(index.getCollectionStatistics().getNumberOfUniqueTerms(), bounds.size());
+		assertEquals(2, bounds.getModelNames().length);
+		
+		LexiconEntry le = index.getLexicon().getLexiconEntry("dog");
+		assertEquals(4, bounds.getMaxFrequency(le.getTermId()));
+		assertEquals(3, bounds.getMinDocumentLength(le.getTermId()));
+		
+		for(String model : MODELS)
+		{
+			for(double keyFrequency : new double[]{1d, 2.5d})
+			{
+				WeightingModel wm = WeightingModelFactory.newInstance(model, index);
+				wm.setCollectionStatistics(index.getCollectionStatistics());
+				wm.setKeyFrequency(keyFrequency);
+				@SuppressWarnings("unchecked")
+				Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+				while(lexIn.hasNext())
+				{
+					Map.Entry<String,LexiconEntry> lee = lexIn.next();
+					wm.setEntryStatistics(lee.getValue());
+					wm.prepare();
+					double max = Double.NEGATIVE_INFINITY;
+					IterablePosting ip = index.getInvertedIndex().getPostings(lee.getValue());
+					while(ip.next() != IterablePosting.EOL)
+						max = Math.max(max, wm.score(ip));
+					ip.close();
+					final int termid = lee.getValue().getTermId();
+					final double bound = bounds.getMaxScore(wm, termid);
+					if (bounds.hasModel(wm))
+						assertEquals(model + " " + lee.getKey(), max, bound, 1e-9);
+					else
+						assertTrue(model + " " + lee.getKey() + " " + bound + " < " + max, bound >= max);
+					//bounds from the lexicon's maxtf alone
+					final double looseBound = wm.getMaxScore(bounds.getMaxFrequency(termid), 1d);
+					assertTrue(model + " " + lee.getKey() + " " + looseBound + " < " + max, looseBound >= max);
+				}
+				IndexUtil.close(lexIn);
+			}
+		}
+		index.close();
+	}
+	
+	@Test public void testFieldBounds() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE,BODY");
+		ApplicationSetup.setProperty("TrecDocTags.process", "DOCNO,TITLE,BODY");
+		//the title of each document is shorter than any document
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndexFields(
+				new String[]{"doc1", "doc2", "doc3", "doc4", "doc5"}, 
+				new String[]{
+					"<DOCNO>1</DOCNO> <TITLE> dog </TITLE> <BODY> cat mouse house garden tree </BODY>", 
+					"<DOCNO>2</DOCNO> <TITLE> cat </TITLE> <BODY> dog mouse house garden tree </BODY>",
+					"<DOCNO>3</DOCNO> <TITLE> cat </TITLE> <BODY> mouse house garden tree </BODY>",
+					"<DOCNO>4</DOCNO> <TITLE> tree </TITLE> <BODY> mouse house garden </BODY>",
+					"<DOCNO>5</DOCNO> <TITLE> mouse </TITLE> <BODY> house garden tree </BODY>"});
+		TermScoreUpperBounds.create(index, TermScoreUpperBounds.STRUCTURE_NAME, new String[]{"BM25"});
+		MatchingQueryTerms mqt = new MatchingQueryTerms();
+		mqt.add(QTPBuilder.of(new SingleTermOp("dog", "TITLE")).build());
+		mqt.setDefaultTermWeightingModel(new BM25());
+		PostingListManager plm = new PostingListManager(index, index.getCollectionStatistics(), mqt);
+		plm.prepare(true);
+		double max = Double.NEGATIVE_INFINITY;
+		int count = 0;
+		do {
+			max = Math.max(max, plm.score(0));
+			count++;
+		} while(plm.getPosting(0).next() != IterablePosting.EOL);
+		assertEquals(1, count);
+		assertTrue(plm.getMaxScore(0) + " < " + max, plm.getMaxScore(0) >= max);
+		plm.close();
+		index.close();
+	}
+	
+	@Test public void testParameterSettings() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(
+				new String[]{"doc1", "doc2", "doc3"}, 
+				new String[]{"dog cat cat", "dog dog dog dog mouse house garden tree", "cat mouse mouse"});
+		TermScoreUpperBounds.create(index, TermScoreUpperBounds.STRUCTURE_NAME, new String[]{"BM25"});
+		TermScoreUpperBounds bounds = (TermScoreUpperBounds) index.getIndexStructure(TermScoreUpperBounds.STRUCTURE_NAME);
+		assertTrue(bounds.hasModel(new BM25()));
+		//BM25.getInfo() does not include k_1, but the bounds depend on it
+		ApplicationSetup.setProperty("bm25.k_1", "5");
+		WeightingModel wm = new BM25();
+		assertEquals(new BM25().getInfo(), wm.getInfo());
+		assertFalse(bounds.hasModel(wm));
+		wm.setCollectionStatistics(index.getCollectionStatistics());
+		wm.setKeyFrequency(1d);
+		LexiconEntry le = index.getLexicon().getLexiconEntry("dog");
+		wm.setEntryStatistics(le);
+		wm.prepare();
+		double max = Double.NEGATIVE_INFINITY;
+		IterablePosting ip = index.getInvertedIndex().getPostings(le);
+		while(ip.next() != IterablePosting.EOL)
+			max = Math.max(max, wm.score(ip));
+		ip.close();
+		assertTrue(bounds.getMaxScore(wm, le.getTermId()) >= max);
+		index.close();
+	}
+}
@@ -1,5 +1,14 @@
 package org.terrier.structures;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.Test;
 import org.terrier.structures.indexing.*;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
 
 public class TestZstdMetaIndex extends BaseTestCompressedMetaIndex {
 
@@ -7,4 +16,54 @@ public class TestZstdMetaIndex extends BaseTestCompressedMetaIndex {
         metaBuilderClass = ZstdMetaIndexBuilder.class;
     }
 
-}
\ No newline at end of file
+    @SuppressWarnings("unchecked")
+    @Test public void testDictionary() throws Exception
+    {
+        final int numDocs = 2000;
+        String[][] data = new String[numDocs][];
+        for(int i=0;i<numDocs;i++)
+            data[i] = new String[]{"clueweb12-" + (i / 100) + "-" + (i % 100), "http://www.example.com/articles/" + (i * 7919 % 10007) + ".html"};
+        long[] sizes = new long[2];
+        int j = 0;
+        for(String dictionary : new String[]{"false", "true"})
+        {
+            ApplicationSetup.setProperty("metaindex.zstd.dictionary", dictionary);
+            ApplicationSetup.setProperty("metaindex.zstd.dictionary.size", "4096");
+            IndexOnDisk index = createMetaIndex("meta", new String[]{"docno", "url"}, new int[]{20, 60}, new String[0], data);
+            final String prefix = index.getPath() + "/" + index.getPrefix() + ".meta";
+            assertEquals(Boolean.parseBoolean(dictionary), Files.exists(prefix + ZstdCompressedMetaIndex.DICTIONARY_EXTENSION));
+            assertEquals(dictionary.equals("true"), index.getIndexProperty("index.meta.zstd.dictionary", "false").equals("true"));
+            sizes[j++] = Files.length(prefix + ".zdata");
+            
+            MetaIndex meta = index.getMetaIndex();
+            int[] docids = new int[numDocs];
+            for(int i=0;i<numDocs;i++)
+            {
+                docids[i] = numDocs - i - 1;
+                assertEquals(data[i][1], meta.getItem("url", i));
+            }
+            String[][] values = meta.getItems(new String[]{"docno", "url"}, docids);
+            for(int i=0;i<numDocs;i++)
+            {
+                assertEquals(data[docids[i]][0], values[i][0]);
+                assertEquals(data[docids[i]][1], values[i][1]);
+            }
+            Iterator<String[]> iter = (Iterator<String[]>) index.getIndexStructureInputStream("meta");
+            int i = 0;
+            while(iter.hasNext())
+            {
+                String[] record = iter.next();
+                assertEquals(data[i][0], record[0]);
+                assertEquals(data[i][1], record[1]);
+                i++;
+            }
+            assertEquals(numDocs, i);
+            IndexUtil.close(iter);
+            index.close();
+            IndexUtil.deleteIndex(index.getPath(), index.getPrefix());
+            assertFalse(Files.exists(prefix + ZstdCompressedMetaIndex.DICTIONARY_EXTENSION));
+        }
+        assertTrue("dictionary " + sizes[1] + " vs none " + sizes[0], sizes[1] < sizes[0]);
+    }
+
+}
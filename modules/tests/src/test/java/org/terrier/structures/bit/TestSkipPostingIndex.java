@@ -0,0 +1,192 @@
+package org.terrier.structures.bit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.compression.bit.BitFileBuffered;
+import org.terrier.compression.bit.BitIn;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.postings.BasicPostingImpl;
+import org.terrier.structures.postings.BlockMaxIterablePosting;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.BlockPostingImpl;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.Posting;
+import org.terrier.structures.postings.PostingTestUtils;
+import org.terrier.structures.postings.bit.SkipBasicIterablePosting;
+import org.terrier.structures.postings.bit.SkipBlockIterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+
+public class TestSkipPostingIndex extends ApplicationSetupBasedTest {
+	
+	static final int[] SIZES = new int[]{1, 3, 4, 5, 8, 9, 100, 1000};
+	
+	static List<Posting> makePostings(Random r, int size, boolean blocks)
+	{
+		List<Posting> postings = new ArrayList<Posting>();
+		int id = -1;
+		for(int i=0;i<size;i++)
+		{
+			id += 1 + r.nextInt(20);
+			int tf = 1 + r.nextInt(10);
+			if (blocks)
+			{
+				int[] positions = new int[tf];
+				int pos = -1;
+				for(int j=0;j<tf;j++)
+					positions[j] = pos += 1 + r.nextInt(5);
+				postings.add(new BlockPostingImpl(id, tf, positions));
+			}
+			else
+			{
+				postings.add(new BasicPostingImpl(id, tf));
+			}
+		}
+		return postings;
+	}
+	
+	String write(List<List<Posting>> lists, List<BitIndexPointer> pointers, boolean blocks, int blockSize, boolean maxTf) throws Exception
+	{
+		File tmpFile = File.createTempFile("tmp", BitIn.USUAL_EXTENSION);
+		tmpFile.deleteOnExit();
+		SkipDirectInvertedOutputStream out = new SkipDirectInvertedOutputStream(tmpFile.toString(), 
+			blocks ? BlockDirectInvertedOutputStream.class : DirectInvertedOutputStream.class,
+			blocks ? SkipBlockIterablePosting.class : SkipBasicIterablePosting.class,
+			blockSize, maxTf);
+		for(List<Posting> list : lists)
+			pointers.add(out.writePostings(list.iterator()));
+		out.close();
+		return tmpFile.toString();
+	}
+	
+	static IterablePosting open(BitFileBuffered file, BitIndexPointer p, boolean blocks) throws Exception
+	{
+		BitIn in = file.readReset(p.getOffset(), p.getOffsetBits());
+		return blocks 
+			? new SkipBlockIterablePosting(in, p.getNumberOfEntries(), null)
+			: new SkipBasicIterablePosting(in, p.getNumberOfEntries(), null);
+	}
+	
+	void checkRoundTrip(boolean blocks, int blockSize, boolean maxTf) throws Exception
+	{
+		Random r = new Random(42);
+		List<List<Posting>> lists = new ArrayList<List<Posting>>();
+		for(int size : SIZES)
+			lists.add(makePostings(r, size, blocks));
+		List<BitIndexPointer> pointers = new ArrayList<BitIndexPointer>();
+		BitFileBuffered file = new BitFileBuffered(write(lists, pointers, blocks, blockSize, maxTf));
+		for(int l=0;l<lists.size();l++)
+		{
+			List<Posting> list = lists.get(l);
+			assertEquals(list.size(), pointers.get(l).getNumberOfEntries());
+			
+			//full decoding
+			IterablePosting ip = open(file, pointers.get(l), blocks);
+			if (blocks)
+				PostingTestUtils.compareBlockPostings(list, ip);
+			else
+				PostingTestUtils.comparePostings(list, ip);
+			
+			//skipping to increasing targets
+			for(int trial=0;trial<20;trial++)
+			{
+				ip = open(file, pointers.get(l), blocks);
+				int target = 0;
+				int index = 0;
+				while(true)
+				{
+					target += r.nextInt(60);
+					while(index < list.size() && list.get(index).getId() < target)
+						index++;
+					int found = ip.next(target);
+					if (index == list.size())
+					{
+						assertEquals(IterablePosting.EOL, found);
+						break;
+					}
+					Posting expected = list.get(index);
+					assertEquals(expected.getId(), found);
+					assertEquals(expected.getFrequency(), ip.getFrequency());
+					if (blocks)
+						assertArrayEquals(((BlockPosting)expected).getPositions(), ((BlockPosting)ip).getPositions());
+				}
+			}
+			
+			//block upper bounds
+			BlockMaxIterablePosting bip = (BlockMaxIterablePosting) open(file, pointers.get(l), blocks);
+			for(int i=0;i<list.size();i++)
+			{
+				int lastId = bip.nextBlock(list.get(i).getId());
+				assertTrue(lastId >= list.get(i).getId());
+				assertTrue(bip.getBlockMaxFrequency() >= list.get(i).getFrequency());
+				if (maxTf)
+				{
+					int blockStart = (i / blockSize) * blockSize;
+					int blockEnd = Math.min(list.size(), blockStart + blockSize);
+					int max = 0;
+					for(int j=blockStart;j<blockEnd;j++)
+						max = Math.max(max, list.get(j).getFrequency());
+					assertEquals(max, bip.getBlockMaxFrequency());
+					assertEquals(list.get(blockEnd-1).getId(), lastId);
+				}
+			}
+			if (maxTf)
+				assertEquals(IterablePosting.EOL, bip.nextBlock(list.get(list.size()-1).getId()+1));
+		}
+		file.close();
+	}
+	
+	@Test public void testBasicMaxTf() throws Exception
+	{
+		checkRoundTrip(false, 4, true);
+	}
+	
+	@Test public void testBasicNoMaxTf() throws Exception
+	{
+		checkRoundTrip(false, 4, false);
+	}
+	
+	@Test public void testBasicLargeBlocks() throws Exception
+	{
+		checkRoundTrip(false, 128, true);
+	}
+	
+	@Test public void testBlocks() throws Exception
+	{
+		checkRoundTrip(true, 4, true);
+	}
+	
+	@Test public void testBlocksNoMaxTf() throws Exception
+	{
+		checkRoundTrip(true, 3, false);
+	}
+	
+	/** checks that a posting list can be read after skipping over the previous one in an input stream */
+	@Test public void testInputStream() throws Exception
+	{
+		Random r = new Random(7);
+		List<List<Posting>> lists = new ArrayList<List<Posting>>();
+		for(int size : SIZES)
+			lists.add(makePostings(r, size, false));
+		List<BitIndexPointer> pointers = new ArrayList<BitIndexPointer>();
+		String filename = write(lists, pointers, false, 4, true);
+		BitPostingIndexInputStream bpiis = new BitPostingIndexInputStream(filename, (byte)1, pointers.iterator(), SkipBasicIterablePosting.class, 0);
+		for(int l=0;l<lists.size();l++)
+		{
+			IterablePosting ip = bpiis.next();
+			//only partially read every other list
+			if (l % 2 == 0)
+				ip.next(lists.get(l).get(lists.get(l).size() / 2).getId());
+			else
+				PostingTestUtils.comparePostings(lists.get(l), ip);
+		}
+		bpiis.close();
+	}
+}
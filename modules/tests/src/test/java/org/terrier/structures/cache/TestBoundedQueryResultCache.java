@@ -0,0 +1,215 @@
+package org.terrier.structures.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.terrier.matching.QueryResultSet;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.daat.CandidateResult;
+import org.terrier.matching.daat.CandidateResultSet;
+import org.terrier.querying.Request;
+
+public class TestBoundedQueryResultCache {
+
+	static Request request(String query, String wmodel)
+	{
+		Request rq = new Request();
+		rq.setOriginalQuery(query);
+		rq.setControl("wmodel", wmodel);
+		return rq;
+	}
+	
+	/** looks up the query, and caches new results if it misses */
+	static ResultSet lookup(BoundedQueryResultCache cache, String query, String wmodel, int numResults)
+	{
+		Request rq = request(query, wmodel);
+		ResultSet rs = cache.checkCache(rq);
+		if (rs != null)
+			return rs;
+		rq.setResultSet(new QueryResultSet(numResults));
+		cache.add(rq);
+		return null;
+	}
+	
+	/** a cache where time does not pass, such that all results have the same cost */
+	static BoundedQueryResultCache cache(int entries, long bytes, String eviction)
+	{
+		return new BoundedQueryResultCache(entries, bytes, 0, TimeUnit.SECONDS, eviction, new String[]{"qid"}, () -> 0l);
+	}
+	
+	@Test public void testKeys()
+	{
+		BoundedQueryResultCache cache = cache(10, 0, "tinylfu");
+		assertNull(lookup(cache, "hello world", "BM25", 10));
+		assertNotNull(lookup(cache, " hello   world ", "BM25", 10));
+		assertNull(lookup(cache, "hello world", "PL2", 10));
+		Request rq = request("hello world", "BM25");
+		rq.setControl("qid", "5");
+		assertNotNull(cache.checkCache(rq));
+		rq.setControl("end", "99");
+		assertNull(cache.checkCache(rq));
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		
+		//results of requests without an original query are not cached
+		Request noQuery = new Request();
+		assertNull(cache.checkCache(noQuery));
+		noQuery.setResultSet(new QueryResultSet(1));
+		cache.add(noQuery);
+		assertEquals(2, cache.size());
+	}
+	
+	@Test public void testLRU()
+	{
+		BoundedQueryResultCache cache = cache(3, 0, "lru");
+		for(String q : new String[]{"a", "b", "c"})
+			lookup(cache, q, "BM25", 10);
+		assertNotNull(lookup(cache, "a", "BM25", 10));
+		lookup(cache, "d", "BM25", 10);
+		assertEquals(3, cache.size());
+		assertEquals(1, cache.getEvictions());
+		//b was least recently used
+		assertNotNull(lookup(cache, "a", "BM25", 10));
+		assertNotNull(lookup(cache, "c", "BM25", 10));
+		assertNotNull(lookup(cache, "d", "BM25", 10));
+		assertNull(lookup(cache, "b", "BM25", 10));
+	}
+	
+	@Test public void testTinyLFUResistsScans()
+	{
+		BoundedQueryResultCache cache = cache(100, 0, "tinylfu");
+		for(int round=0;round<5;round++)
+			for(int i=0;i<50;i++)
+				lookup(cache, "popular" + i, "BM25", 10);
+		for(int i=0;i<1000;i++)
+			lookup(cache, "scan" + i, "BM25", 10);
+		assertTrue(cache.size() <= 100);
+		int hits = 0;
+		for(int i=0;i<50;i++)
+			if (lookup(cache, "popular" + i, "BM25", 10) != null)
+				hits++;
+		assertTrue("only " + hits + " popular queries retained", hits >= 45);
+	}
+	
+	@Test public void testBytes()
+	{
+		final long maxBytes = 20000;
+		for(String eviction : new String[]{"lru", "tinylfu"})
+		{
+			BoundedQueryResultCache cache = cache(1000, maxBytes, eviction);
+			for(int i=0;i<200;i++)
+			{
+				lookup(cache, "q" + i, "BM25", 100);
+				assertTrue(eviction + " " + cache.getBytes(), cache.getBytes() <= maxBytes);
+			}
+			assertTrue(cache.size() > 1);
+			assertTrue(cache.size() < 200);
+			//too large to ever cache
+			lookup(cache, "huge", "BM25", 10000);
+			assertNull(lookup(cache, "huge", "BM25", 10000));
+		}
+	}
+	
+	@Test public void testTTL()
+	{
+		final AtomicLong nanos = new AtomicLong();
+		BoundedQueryResultCache cache = new BoundedQueryResultCache(10, 0, 100, TimeUnit.MILLISECONDS, "lru", new String[0], nanos::get);
+		lookup(cache, "a", "BM25", 10);
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+		assertNotNull(lookup(cache, "a", "BM25", 10));
+		assertEquals(0, cache.getExpirations());
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+		assertNull(lookup(cache, "a", "BM25", 10));
+		assertEquals(1, cache.getExpirations());
+		assertNotNull(lookup(cache, "a", "BM25", 10));
+	}
+	
+	@Test public void testResultsWithoutMetaKeys()
+	{
+		BoundedQueryResultCache cache = cache(10, 1000, "lru");
+		Request rq = request("a", "BM25");
+		assertNull(cache.checkCache(rq));
+		//CandidateResultSet has no meta keys
+		ResultSet rs = new CandidateResultSet(new ArrayList<CandidateResult>());
+		assertNull(rs.getMetaKeys());
+		rq.setResultSet(rs);
+		cache.add(rq);
+		assertSame(rs, cache.checkCache(request("a", "BM25")));
+		assertTrue(cache.getBytes() > 0);
+	}
+	
+	@Test public void testInvalidation()
+	{
+		BoundedQueryResultCache cache = cache(10, 0, "tinylfu");
+		lookup(cache, "a", "BM25", 10);
+		Request rq = request("b", "BM25");
+		assertNull(cache.checkCache(rq));
+		//the index changes while the results of b are being computed
+		cache.invalidateAll();
+		rq.setResultSet(new QueryResultSet(10));
+		cache.add(rq);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+		assertNull(lookup(cache, "b", "BM25", 10));
+		assertNotNull(lookup(cache, "b", "BM25", 10));
+		cache.invalidate(request("b", "BM25"));
+		assertNull(lookup(cache, "b", "BM25", 10));
+	}
+	
+	@Test public void testConcurrent() throws Exception
+	{
+		final BoundedQueryResultCache cache = cache(50, 0, "tinylfu");
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try{
+			List<Future<Integer>> futures = new ArrayList<>();
+			for(int t=0;t<4;t++)
+			{
+				final int seed = t;
+				futures.add(pool.submit(() -> {
+					int hits = 0;
+					for(int i=0;i<5000;i++)
+					{
+						String q = "q" + ((i * (seed+1)) % 80);
+						Request rq = request(q, "BM25");
+						ResultSet rs = cache.checkCache(rq);
+						if (rs != null)
+						{
+							hits++;
+							continue;
+						}
+						rq.setResultSet(new QueryResultSet(5));
+						cache.add(rq);
+					}
+					return hits;
+				}));
+			}
+			long hits = 0;
+			for(Future<Integer> f : futures)
+				hits += f.get();
+			assertEquals(hits, cache.getHits());
+			assertEquals(20000, cache.getHits() + cache.getMisses());
+			assertTrue(cache.size() <= 50);
+		} finally {
+			pool.shutdown();
+		}
+		//the same results object is returned on a hit
+		Request rq = request("x", "BM25");
+		cache.checkCache(rq);
+		ResultSet rs = new QueryResultSet(1);
+		rq.setResultSet(rs);
+		cache.add(rq);
+		assertSame(rs, cache.checkCache(request("x", "BM25")));
+	}
+}
@@ -26,9 +26,14 @@
 package org.terrier.structures.collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.io.IntWritable;
 import org.junit.Before;
@@ -89,6 +94,41 @@ public class TestFSArrayFile {
 		testRandom(list);
 	}
 	
+	/** Test that random access on one memory mapped works as expected */
+	@Test public void testRandomMapped() throws Exception
+	{
+		List<IntWritable> list = new FSArrayFile<IntWritable>(arrayFile, false, new FixedSizeIntWritableFactory(), "mmap");
+		testRandom(list);
+	}
+	
+	/** Test that random access from several threads at once works as expected */
+	@Test public void testConcurrentRandom() throws Exception
+	{
+		for (String dataSource : new String[]{"file", "fileinmem", "mmap"})
+		{
+			final List<IntWritable> list = new FSArrayFile<IntWritable>(arrayFile, false, new FixedSizeIntWritableFactory(), dataSource);
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			List<Future<Boolean>> results = new ArrayList<>();
+			for(int t=0;t<4;t++)
+			{
+				final int offset = t;
+				results.add(pool.submit(() -> {
+					for(int j=0;j<10000;j++)
+					{
+						int i = (j + offset) % TEST_INTEGERS.length;
+						if (TEST_INTEGERS[i] != list.get(i).get())
+							return false;
+					}
+					return true;
+				}));
+			}
+			for(Future<Boolean> result : results)
+				assertTrue(dataSource, result.get());
+			pool.shutdown();
+			IndexUtil.close(list);
+		}
+	}
+	
 	/** Test that the stream works as expected */
 	@Test public void testStream() throws Exception
 	{
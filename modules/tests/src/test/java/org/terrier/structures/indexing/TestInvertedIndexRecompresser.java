@@ -0,0 +1,122 @@
+package org.terrier.structures.indexing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.bit.SkipBasicIterablePosting;
+import org.terrier.structures.postings.bit.SkipBlockIterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestInvertedIndexRecompresser extends ApplicationSetupBasedTest {
+
+	static final String[] TERMS = new String[]{"dog", "cat", "mouse", "house", "horse", "cow"};
+	
+	static String[][] makeDocuments(int numDocs)
+	{
+		Random r = new Random(42);
+		String[] docnos = new String[numDocs];
+		String[] docs = new String[numDocs];
+		for(int i=0;i<numDocs;i++)
+		{
+			docnos[i] = "doc" + i;
+			StringBuilder s = new StringBuilder();
+			int length = 1 + r.nextInt(10);
+			for(int j=0;j<length;j++)
+				s.append(TERMS[r.nextInt(TERMS.length)]).append(' ');
+			docs[i] = s.toString();
+		}
+		return new String[][]{docnos, docs};
+	}
+	
+	@SuppressWarnings("unchecked")
+	static Map<String,List<int[]>> readPostings(Index index, boolean blocks) throws Exception
+	{
+		Map<String,List<int[]>> rtr = new HashMap<String,List<int[]>>();
+		Lexicon<String> lex = index.getLexicon();
+		PostingIndex<?> inv = index.getInvertedIndex();
+		for(String t : TERMS)
+		{
+			LexiconEntry le = lex.getLexiconEntry(t);
+			if (le == null)
+				continue;
+			List<int[]> postings = new ArrayList<int[]>();
+			IterablePosting ip = inv.getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+			{
+				postings.add(new int[]{ip.getId(), ip.getFrequency()});
+				if (blocks)
+					postings.add(((BlockPosting)ip).getPositions().clone());
+			}
+			rtr.put(t, postings);
+		}
+		return rtr;
+	}
+	
+	void checkRecompress(boolean blocks) throws Exception
+	{
+		ApplicationSetup.setProperty("indexing.inverted.compression.skip.size", "4");
+		String[][] docs = makeDocuments(200);
+		IndexOnDisk index = (IndexOnDisk) (blocks 
+			? IndexTestUtils.makeIndexBlocks(docs[0], docs[1])
+			: IndexTestUtils.makeIndex(docs[0], docs[1]));
+		String path = index.getPath();
+		String prefix = index.getPrefix();
+		Map<String,List<int[]>> before = readPostings(index, blocks);
+		index.close();
+		
+		InvertedIndexRecompresser.recompress(path, prefix, CompressionFactory.SkipCompressionConfiguration.class.getName());
+		
+		index = IndexOnDisk.createIndex(path, prefix);
+		Map<String,List<int[]>> after = readPostings(index, blocks);
+		assertEquals(before.keySet(), after.keySet());
+		for(String t : before.keySet())
+		{
+			assertEquals(before.get(t).size(), after.get(t).size());
+			for(int i=0;i<before.get(t).size();i++)
+				assertArrayEquals(before.get(t).get(i), after.get(t).get(i));
+		}
+		
+		LexiconEntry le = index.getLexicon().getLexiconEntry("dog");
+		IterablePosting ip = index.getInvertedIndex().getPostings(le);
+		assertTrue(ip instanceof SkipBasicIterablePosting || ip instanceof SkipBlockIterablePosting);
+		int lastDog = before.get("dog").get(before.get("dog").size() - (blocks ? 2 : 1))[0];
+		assertEquals(lastDog, ip.next(lastDog));
+		assertEquals(IterablePosting.EOL, ip.next());
+		
+		//the inverted index can still be streamed
+		Iterator<?> stream = (Iterator<?>) index.getIndexStructureInputStream("inverted");
+		assertTrue(stream.hasNext());
+		assertTrue(stream.next() instanceof IterablePosting);
+		IndexUtil.close(stream);
+		index.close();
+	}
+	
+	@Test public void testBasic() throws Exception
+	{
+		checkRecompress(false);
+	}
+	
+	@Test public void testBlocks() throws Exception
+	{
+		checkRecompress(true);
+	}
+}
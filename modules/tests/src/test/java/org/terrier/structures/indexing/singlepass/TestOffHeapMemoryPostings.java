@@ -0,0 +1,139 @@
+package org.terrier.structures.indexing.singlepass;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.Index;
+import org.terrier.structures.indexing.Indexer;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestOffHeapMemoryPostings extends ApplicationSetupBasedTest {
+
+	/** writes both sets of postings as runs, and checks the runs are identical */
+	void checkRuns(MemoryPostings expected, OffHeapMemoryPostings actual) throws Exception
+	{
+		assertEquals(expected.getSize(), actual.getSize());
+		assertEquals(expected.getPointers(), actual.getPointers());
+		String[] files = new String[]{
+			ApplicationSetup.TERRIER_INDEX_PATH + "/expected.run", ApplicationSetup.TERRIER_INDEX_PATH + "/expected.terms", 
+			ApplicationSetup.TERRIER_INDEX_PATH + "/actual.run", ApplicationSetup.TERRIER_INDEX_PATH + "/actual.terms"};
+		expected.finish(new String[]{files[0], files[1]});
+		actual.finish(new String[]{files[2], files[3]});
+		assertArrayEquals(Files.readAllBytes(Paths.get(files[0])), Files.readAllBytes(Paths.get(files[2])));
+		assertArrayEquals(Files.readAllBytes(Paths.get(files[1])), Files.readAllBytes(Paths.get(files[3])));
+	}
+	
+	@Test public void testBasicRun() throws Exception
+	{
+		OffHeapMemoryPostings.Slabs slabs = new OffHeapMemoryPostings.Slabs(8192);
+		MemoryPostings expected = new MemoryPostings();
+		OffHeapMemoryPostings actual = new OffHeapMemoryPostings(slabs, false, false);
+		Random r = new Random(42);
+		int docid = 0;
+		for(int i=0;i<2000;i++)
+		{
+			//include large gaps and frequencies
+			docid += 1 + (i % 100 == 0 ? 1 << 20 : r.nextInt(3));
+			int freq = i % 77 == 0 ? 100000 : 1 + r.nextInt(5);
+			for(int t=0;t<300;t+= 1 + r.nextInt(40))
+			{
+				expected.add("term" + t, docid, freq);
+				actual.add("term" + t, docid, freq);
+			}
+		}
+		assertTrue(actual.used.size() > 1);
+		assertEquals(actual.used.size() * 8192l, slabs.getAllocatedBytes());
+		assertTrue(actual.getMemoryConsumption() > slabs.getAllocatedBytes());
+		checkRuns(expected, actual);
+		//the slabs are reused by the next run
+		actual = new OffHeapMemoryPostings(slabs, false, false);
+		expected = new MemoryPostings();
+		expected.add("a", 0, 1);
+		actual.add("a", 0, 1);
+		checkRuns(expected, actual);
+		assertEquals(0, actual.used.size());
+		assertTrue(slabs.free.size() > 1);
+	}
+	
+	@Test public void testBlockFieldRun() throws Exception
+	{
+		OffHeapMemoryPostings.Slabs slabs = new OffHeapMemoryPostings.Slabs(8192);
+		BlockFieldMemoryPostings expected = new BlockFieldMemoryPostings();
+		OffHeapMemoryPostings actual = new OffHeapMemoryPostings(slabs, true, true);
+		Random r = new Random(42);
+		for(int docid=0;docid<500;docid++)
+		{
+			for(int t=0;t<50;t+= 1 + r.nextInt(10))
+			{
+				int[] fields = new int[]{r.nextInt(3), i(r, 200)};
+				int[] blocks = new int[r.nextInt(4)];
+				int pos = 0;
+				for(int b=0;b<blocks.length;b++)
+					blocks[b] = pos += 1 + r.nextInt(1000);
+				expected.add("term" + t, docid, 1 + fields[0] + fields[1], fields, blocks);
+				actual.add("term" + t, docid, 1 + fields[0] + fields[1], fields, blocks);
+			}
+		}
+		checkRuns(expected, actual);
+	}
+	
+	static int i(Random r, int max)
+	{
+		return r.nextInt(10) == 0 ? r.nextInt(max) : r.nextInt(3);
+	}
+	
+	void checkIndexing(Class<? extends Indexer> clz, boolean fields) throws Exception
+	{
+		//the fixed overheads of off-heap postings exceed this budget, so every memory check causes a run to be written
+		ApplicationSetup.setProperty("indexing.singlepass.max.postings.memory", "20K");
+		Index reference = makeIndex(clz, fields, "onheap");
+		ApplicationSetup.setProperty("indexing.singlepass.offheap.postings", "true");
+		ApplicationSetup.setProperty("indexing.singlepass.offheap.slab.size", "8K");
+		Index offheap = makeIndex(clz, fields, "offheap");
+		assertEquals(reference.getCollectionStatistics().toString(), offheap.getCollectionStatistics().toString());
+		Map<String,String> expected = IndexTestUtils.getPostings(reference);
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, IndexTestUtils.getPostings(offheap));
+	}
+	
+	Index makeIndex(Class<? extends Indexer> clz, boolean fields, String prefix) throws Exception
+	{
+		if (fields)
+			ApplicationSetup.setProperty("FieldTags.process", "TITLE,BODY");
+		Indexer indexer = clz.getConstructor(String.class, String.class).newInstance(ApplicationSetup.TERRIER_INDEX_PATH, prefix);
+		if (fields)
+			return IndexTestUtils.makeIndexFields(TestPipelinedSinglePassIndexing.docnos(), 
+				TestPipelinedSinglePassIndexing.docs(true), indexer, ApplicationSetup.TERRIER_INDEX_PATH, prefix);
+		return IndexTestUtils.makeIndex(TestPipelinedSinglePassIndexing.docnos(), 
+			TestPipelinedSinglePassIndexing.docs(false), indexer, ApplicationSetup.TERRIER_INDEX_PATH, prefix);
+	}
+	
+	@Test public void testBasic() throws Exception
+	{
+		checkIndexing(BasicSinglePassIndexer.class, false);
+	}
+	
+	@Test public void testBlocks() throws Exception
+	{
+		checkIndexing(BlockSinglePassIndexer.class, false);
+	}
+	
+	@Test public void testFields() throws Exception
+	{
+		checkIndexing(BasicSinglePassIndexer.class, true);
+	}
+	
+	@Test public void testBlockFields() throws Exception
+	{
+		checkIndexing(BlockSinglePassIndexer.class, true);
+	}
+}
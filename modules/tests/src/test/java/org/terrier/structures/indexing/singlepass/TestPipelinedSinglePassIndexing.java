@@ -0,0 +1,96 @@
+package org.terrier.structures.indexing.singlepass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.Index;
+import org.terrier.structures.indexing.Indexer;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestPipelinedSinglePassIndexing extends ApplicationSetupBasedTest {
+
+	static final String[] WORDS = new String[]{"running", "cats", "dogs", "the", "indexing", "pipelines", "connected", "queues", "zebra", "crossing"};
+	static final int NUM_DOCS = 157;
+	
+	static String[] docnos()
+	{
+		String[] docnos = new String[NUM_DOCS];
+		for(int i=0;i<NUM_DOCS;i++)
+			docnos[i] = "doc" + i;
+		return docnos;
+	}
+	
+	static String[] docs(boolean fields)
+	{
+		String[] docs = new String[NUM_DOCS];
+		for(int i=0;i<NUM_DOCS;i++)
+		{
+			StringBuilder s = new StringBuilder();
+			if (fields)
+				s.append("<TITLE>").append(WORDS[i % WORDS.length]).append(" </TITLE> <BODY>");
+			for(int j=0;j<=i % 13;j++)
+				s.append(WORDS[(i * 7 + j * 3) % WORDS.length]).append(' ');
+			//empty documents must keep their docids
+			if (i % 29 == 0 && ! fields)
+				s.setLength(0);
+			if (fields)
+				s.append("</BODY>");
+			docs[i] = s.toString();
+		}
+		return docs;
+	}
+	
+	Index makeIndex(Class<? extends Indexer> clz, boolean fields, int threads) throws Exception
+	{
+		ApplicationSetup.setProperty("indexing.pipeline.threads", String.valueOf(threads));
+		ApplicationSetup.setProperty("indexing.pipeline.batch.size", "5");
+		if (fields)
+		{
+			ApplicationSetup.setProperty("FieldTags.process", "TITLE,BODY");
+			return IndexTestUtils.makeIndexFields(docnos(), docs(true), 
+				clz.getConstructor(String.class, String.class).newInstance(ApplicationSetup.TERRIER_INDEX_PATH, "fields" + threads), 
+				ApplicationSetup.TERRIER_INDEX_PATH, "fields" + threads);
+		}
+		return IndexTestUtils.makeIndex(docnos(), docs(false), clz);
+	}
+	
+	void checkPipelined(Class<? extends Indexer> clz, boolean fields) throws Exception
+	{
+		Index reference = makeIndex(clz, fields, 0);
+		Index pipelined = makeIndex(clz, fields, 3);
+		assertEquals(reference.getCollectionStatistics().toString(), pipelined.getCollectionStatistics().toString());
+		Map<String,String> expected = IndexTestUtils.getPostings(reference);
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, IndexTestUtils.getPostings(pipelined));
+		for(int docid=0;docid<NUM_DOCS;docid++)
+		{
+			assertEquals(reference.getMetaIndex().getItem("filename", docid), pipelined.getMetaIndex().getItem("filename", docid));
+			assertEquals(reference.getDocumentIndex().getDocumentLength(docid), pipelined.getDocumentIndex().getDocumentLength(docid));
+		}
+	}
+	
+	@Test public void testBasic() throws Exception
+	{
+		checkPipelined(BasicSinglePassIndexer.class, false);
+	}
+	
+	@Test public void testBlocks() throws Exception
+	{
+		checkPipelined(BlockSinglePassIndexer.class, false);
+	}
+	
+	@Test public void testFields() throws Exception
+	{
+		checkPipelined(BasicSinglePassIndexer.class, true);
+	}
+	
+	@Test public void testBlockFields() throws Exception
+	{
+		checkPipelined(BlockSinglePassIndexer.class, true);
+	}
+}
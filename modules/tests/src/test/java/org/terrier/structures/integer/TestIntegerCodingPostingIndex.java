@@ -0,0 +1,233 @@
+package org.terrier.structures.integer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.postings.BlockFieldPostingImpl;
+import org.terrier.structures.postings.BlockMaxIterablePosting;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.Posting;
+import org.terrier.structures.postings.WritablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+
+public class TestIntegerCodingPostingIndex extends ApplicationSetupBasedTest {
+	
+	static final int[] SIZES = new int[]{1, 3, 4, 5, 8, 9, 100, 1000};
+	static final String[] CODECS = new String[]{"VIntCodec", "FORCodec", "PForDeltaCodec", "StreamVByteCodec"};
+	static final int FIELDS = 2;
+	
+	/** makes postings with fields and positions, which are ignored by schemes without them */
+	static List<Posting> makePostings(Random r, int size)
+	{
+		List<Posting> postings = new ArrayList<Posting>();
+		int id = -1;
+		for(int i=0;i<size;i++)
+		{
+			id += 1 + (r.nextInt(50) == 0 ? r.nextInt(100000) : r.nextInt(20));
+			int tf = 1 + r.nextInt(10);
+			int[] positions = new int[tf];
+			int pos = -1;
+			for(int j=0;j<tf;j++)
+				positions[j] = pos += 1 + r.nextInt(5);
+			int[] fields = new int[FIELDS];
+			fields[r.nextInt(FIELDS)] = tf;
+			postings.add(new BlockFieldPostingImpl(id, tf, positions, fields));
+		}
+		return postings;
+	}
+	
+	static void checkPosting(Posting expected, IterablePosting ip, IntegerCodingScheme scheme)
+	{
+		assertEquals(expected.getId(), ip.getId());
+		assertEquals(expected.getFrequency(), ip.getFrequency());
+		if (scheme.getFieldCount() > 0)
+			assertArrayEquals(((FieldPosting)expected).getFieldFrequencies(), ((FieldPosting)ip).getFieldFrequencies());
+		if (scheme.hasBlocks())
+			assertArrayEquals(((BlockPosting)expected).getPositions(), ((BlockPosting)ip).getPositions());
+	}
+	
+	static String write(List<List<Posting>> lists, List<BitIndexPointer> pointers, IntegerCodingScheme scheme) throws Exception
+	{
+		File tmpFile = File.createTempFile("tmp", IntegerCodingPostingIndex.USUAL_EXTENSION);
+		tmpFile.deleteOnExit();
+		IntegerCodingPostingOutputStream out = new IntegerCodingPostingOutputStream(tmpFile.toString(), scheme);
+		for(List<Posting> list : lists)
+		{
+			BitIndexPointer p = out.writePostings(list.iterator());
+			assertEquals(0, p.getOffsetBits());
+			assertEquals(list.get(list.size()-1).getId(), out.getLastDocidWritten());
+			pointers.add(p);
+		}
+		out.close();
+		return tmpFile.toString();
+	}
+	
+	void checkRoundTrip(IntegerCodingScheme scheme, String dataSource) throws Exception
+	{
+		Random r = new Random(42);
+		List<List<Posting>> lists = new ArrayList<List<Posting>>();
+		for(int size : SIZES)
+			lists.add(makePostings(r, size));
+		List<BitIndexPointer> pointers = new ArrayList<BitIndexPointer>();
+		String filename = write(lists, pointers, scheme);
+		IntegerCodingPostingIndex index = new IntegerCodingPostingIndex(filename, (byte)1, null, scheme, dataSource);
+		for(int l=0;l<lists.size();l++)
+		{
+			List<Posting> list = lists.get(l);
+			assertEquals(list.size(), pointers.get(l).getNumberOfEntries());
+			
+			//full decoding
+			IterablePosting ip = index.getPostings(pointers.get(l));
+			assertTrue(scheme.getPostingIteratorClass().isInstance(ip));
+			for(int i=0;i<list.size();i++)
+			{
+				assertFalse(ip.endOfPostings());
+				assertEquals(list.get(i).getId(), ip.next());
+				checkPosting(list.get(i), ip, scheme);
+				WritablePosting wp = ip.asWritablePosting();
+				assertEquals(list.get(i).getId(), wp.getId());
+			}
+			assertTrue(ip.endOfPostings());
+			assertEquals(IterablePosting.EOL, ip.next());
+			assertEquals(IterablePosting.EOL, ip.getId());
+			assertEquals(IterablePosting.EOL, ip.next());
+			
+			//skipping to increasing targets, mixed with next()
+			for(int trial=0;trial<20;trial++)
+			{
+				ip = index.getPostings(pointers.get(l));
+				//index of the current posting
+				int i = -1;
+				int target = 0;
+				while(true)
+				{
+					int found;
+					if (trial % 2 == 1 && r.nextBoolean())
+					{
+						found = ip.next();
+						i++;
+					}
+					else
+					{
+						target += r.nextInt(trial < 10 ? 60 : 3000);
+						if (i < 0 || list.get(i).getId() < target)
+						{
+							i = Math.max(i, 0);
+							while(i < list.size() && list.get(i).getId() < target)
+								i++;
+						}
+						found = ip.next(target);
+					}
+					if (i >= list.size())
+					{
+						assertEquals(IterablePosting.EOL, found);
+						break;
+					}
+					assertEquals(list.get(i).getId(), found);
+					checkPosting(list.get(i), ip, scheme);
+				}
+			}
+			
+			//chunk upper bounds
+			BlockMaxIterablePosting bip = (BlockMaxIterablePosting) index.getPostings(pointers.get(l));
+			final int chunkSize = scheme.getChunkSize();
+			for(int i=0;i<list.size();i++)
+			{
+				int lastId = bip.nextBlock(list.get(i).getId());
+				int chunkStart = (i / chunkSize) * chunkSize;
+				int chunkEnd = Math.min(list.size(), chunkStart + chunkSize);
+				int max = 0;
+				for(int j=chunkStart;j<chunkEnd;j++)
+					max = Math.max(max, list.get(j).getFrequency());
+				assertEquals(max, bip.getBlockMaxFrequency());
+				assertEquals(list.get(chunkEnd-1).getId(), lastId);
+			}
+			assertEquals(IterablePosting.EOL, bip.nextBlock(list.get(list.size()-1).getId()+1));
+		}
+		index.close();
+		
+		//input stream, only partially reading some lists 
+		IntegerCodingPostingIndexInputStream stream = new IntegerCodingPostingIndexInputStream(filename, (byte)1, pointers.iterator(), scheme, null);
+		for(int l=0;l<lists.size();l++)
+		{
+			assertTrue(stream.hasNext());
+			IterablePosting ip = stream.next();
+			List<Posting> list = lists.get(l);
+			if (l % 2 == 0)
+			{
+				int target = list.get(list.size() / 2).getId();
+				assertEquals(target, ip.next(target));
+				continue;
+			}
+			for(Posting p : list)
+			{
+				assertEquals(p.getId(), ip.next());
+				checkPosting(p, ip, scheme);
+			}
+			assertEquals(IterablePosting.EOL, ip.next());
+		}
+		assertFalse(stream.hasNext());
+		stream.close();
+	}
+	
+	@Test public void testBasic() throws Exception
+	{
+		for(String codec : CODECS)
+			checkRoundTrip(new IntegerCodingScheme(4, 0, false, codec, codec, codec, codec), "file");
+	}
+	
+	@Test public void testFields() throws Exception
+	{
+		for(String codec : CODECS)
+			checkRoundTrip(new IntegerCodingScheme(4, FIELDS, false, codec, codec, codec, codec), "file");
+	}
+	
+	@Test public void testBlocks() throws Exception
+	{
+		for(String codec : CODECS)
+			checkRoundTrip(new IntegerCodingScheme(4, 0, true, codec, codec, codec, codec), "fileinmem");
+	}
+	
+	@Test public void testBlockFields() throws Exception
+	{
+		for(String codec : CODECS)
+			checkRoundTrip(new IntegerCodingScheme(4, FIELDS, true, codec, codec, codec, codec), "mmap");
+	}
+	
+	@Test public void testLargeChunks() throws Exception
+	{
+		checkRoundTrip(new IntegerCodingScheme(128, FIELDS, true, "PForDeltaCodec", "FORCodec", "VIntCodec", "StreamVByteCodec"), "file");
+		checkRoundTrip(new IntegerCodingScheme(1, 0, false, "PForDeltaCodec", "FORCodec", "VIntCodec", "StreamVByteCodec"), "fileinmem");
+	}
+	
+	/** the merger shifts docids by writing with a negative previous id */
+	@Test public void testPreviousId() throws Exception
+	{
+		IntegerCodingScheme scheme = new IntegerCodingScheme(4, 0, false, "PForDeltaCodec", "PForDeltaCodec", "PForDeltaCodec", "PForDeltaCodec");
+		List<Posting> list = makePostings(new Random(3), 10);
+		File tmpFile = File.createTempFile("tmp", IntegerCodingPostingIndex.USUAL_EXTENSION);
+		tmpFile.deleteOnExit();
+		IntegerCodingPostingOutputStream out = new IntegerCodingPostingOutputStream(tmpFile.toString(), scheme);
+		BitIndexPointer p = out.writePostings(list.iterator(), -(1000+1));
+		out.close();
+		IntegerCodingPostingIndex index = new IntegerCodingPostingIndex(tmpFile.toString(), (byte)1, null, scheme, "file");
+		IterablePosting ip = index.getPostings(p);
+		for(Posting posting : list)
+			assertEquals(posting.getId() + 1000, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next());
+		ip = index.getPostings(p);
+		assertEquals(list.get(7).getId() + 1000, ip.next(list.get(7).getId() + 1000));
+		index.close();
+	}
+}
@@ -0,0 +1,162 @@
+package org.terrier.structures.merging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestMultiStructureMerger extends ApplicationSetupBasedTest {
+
+	static final String[][] DOCNOS = new String[][]{
+		{"doc1", "doc2"}, 
+		{"doc3"}, 
+		{"doc4", "doc5", "doc6"}
+	};
+	static final String[][] DOCS = new String[][]{
+		{"this is a sentence", "another sentence about a zebra"}, 
+		{"apples and bananas are fruit"}, 
+		{"a third sentence", "zebra crossing", "bananas in a sentence about apples"}
+	};
+	
+	IndexOnDisk[] makeIndices(boolean blocks) throws Exception
+	{
+		IndexOnDisk[] rtr = new IndexOnDisk[DOCNOS.length];
+		for(int i=0;i<DOCNOS.length;i++)
+			rtr[i] = (IndexOnDisk) (blocks 
+				? IndexTestUtils.makeIndexBlocks(DOCNOS[i], DOCS[i]) 
+				: IndexTestUtils.makeIndex(DOCNOS[i], DOCS[i]));
+		return rtr;
+	}
+	
+	IndexOnDisk makeReference(boolean blocks) throws Exception
+	{
+		List<String> docnos = new ArrayList<>();
+		List<String> docs = new ArrayList<>();
+		for(int i=0;i<DOCNOS.length;i++)
+			for(int j=0;j<DOCNOS[i].length;j++)
+			{
+				docnos.add(DOCNOS[i][j]);
+				docs.add(DOCS[i][j]);
+			}
+		return (IndexOnDisk) (blocks 
+			? IndexTestUtils.makeIndexBlocks(docnos.toArray(new String[0]), docs.toArray(new String[0])) 
+			: IndexTestUtils.makeIndex(docnos.toArray(new String[0]), docs.toArray(new String[0])));
+	}
+	
+	IndexOnDisk merge(boolean blocks, int shards) throws Exception
+	{
+		IndexOnDisk merged = IndexOnDisk.createNewIndex(ApplicationSetup.TERRIER_INDEX_PATH, "merged"+ new Random().nextInt(1000));
+		MultiStructureMerger msm = new MultiStructureMerger(makeIndices(blocks), merged);
+		msm.setShards(shards);
+		msm.mergeStructures();
+		merged.close();
+		return IndexOnDisk.createIndex(merged.getPath(), merged.getPrefix());
+	}
+	
+	static void checkDirect(Index merged, Index reference) throws Exception
+	{
+		@SuppressWarnings("unchecked")
+		PostingIndex<?> direct = merged.getDirectIndex();
+		Lexicon<String> lex = merged.getLexicon();
+		Lexicon<String> refLex = reference.getLexicon();
+		for(int docid=0;docid<reference.getCollectionStatistics().getNumberOfDocuments();docid++)
+		{
+			Map<String,Integer> expected = new HashMap<>();
+			IterablePosting ip = reference.getDirectIndex().getPostings(reference.getDocumentIndex().getDocumentEntry(docid));
+			while(ip.next() != IterablePosting.EOL)
+				expected.put(refLex.getLexiconEntry(ip.getId()).getKey(), ip.getFrequency());
+			ip.close();
+			
+			Map<String,Integer> found = new HashMap<>();
+			ip = direct.getPostings(merged.getDocumentIndex().getDocumentEntry(docid));
+			int lastTermId = -1;
+			while(ip.next() != IterablePosting.EOL)
+			{
+				assertTrue(ip.getId() > lastTermId);
+				lastTermId = ip.getId();
+				Map.Entry<String,LexiconEntry> le = lex.getLexiconEntry(ip.getId());
+				assertNotNull(le);
+				found.put(le.getKey(), ip.getFrequency());
+			}
+			ip.close();
+			assertEquals(expected, found);
+		}
+	}
+	
+	void checkMerge(boolean blocks, int shards) throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		IndexOnDisk reference = makeReference(blocks);
+		IndexOnDisk merged = merge(blocks, shards);
+		
+		assertEquals(6, merged.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(reference.getCollectionStatistics().getNumberOfUniqueTerms(), merged.getCollectionStatistics().getNumberOfUniqueTerms());
+		assertEquals(reference.getCollectionStatistics().getNumberOfTokens(), merged.getCollectionStatistics().getNumberOfTokens());
+		assertEquals(reference.getCollectionStatistics().getNumberOfPointers(), merged.getCollectionStatistics().getNumberOfPointers());
+		assertEquals(blocks, merged.getCollectionStatistics().hasPositions());
+		assertEquals(IndexTestUtils.getPostings(reference), IndexTestUtils.getPostings(merged));
+		
+		String[] docnos = new String[6];
+		for(int docid=0;docid<6;docid++)
+			docnos[docid] = merged.getMetaIndex().getItem("docno", docid);
+		assertArrayEquals(new String[]{"doc1", "doc2", "doc3", "doc4", "doc5", "doc6"}, docnos);
+		
+		assertTrue(merged.hasIndexStructure("direct"));
+		checkDirect(merged, reference);
+		
+		//termids must be contiguous and match the lexicon order
+		Lexicon<String> lex = merged.getLexicon();
+		for(int i=0;i<lex.numberOfEntries();i++)
+			assertEquals(i, lex.getIthLexiconEntry(i).getValue().getTermId());
+	}
+	
+	@Test public void testSingleShard() throws Exception
+	{
+		checkMerge(false, 1);
+	}
+	
+	@Test public void testShards() throws Exception
+	{
+		checkMerge(false, 4);
+	}
+	
+	@Test public void testManyShards() throws Exception
+	{
+		checkMerge(false, MultiStructureMerger.MAX_SHARDS);
+	}
+	
+	@Test public void testBlocksShards() throws Exception
+	{
+		checkMerge(true, 3);
+	}
+	
+	@Test public void testNoDirect() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("merge.direct", "false");
+		IndexOnDisk reference = makeReference(false);
+		IndexOnDisk merged = merge(false, 2);
+		assertEquals(6, merged.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(IndexTestUtils.getPostings(reference), IndexTestUtils.getPostings(merged));
+		assertEquals("doc6", merged.getMetaIndex().getItem("docno", 5));
+		assertEquals(reference.getDocumentIndex().getDocumentLength(5), merged.getDocumentIndex().getDocumentLength(5));
+	}
+	
+}
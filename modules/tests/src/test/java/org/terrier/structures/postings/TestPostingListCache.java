@@ -0,0 +1,277 @@
+package org.terrier.structures.postings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.matchops.SingleTermOp;
+import org.terrier.structures.Index;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestPostingListCache extends ApplicationSetupBasedTest {
+
+	static final int NUM_DOCS = 60;
+	
+	static String[] docnos()
+	{
+		String[] docnos = new String[NUM_DOCS];
+		for(int i=0;i<NUM_DOCS;i++)
+			docnos[i] = "doc" + i;
+		return docnos;
+	}
+	
+	static String[] docs(boolean fields)
+	{
+		String[] docs = new String[NUM_DOCS];
+		for(int i=0;i<NUM_DOCS;i++)
+		{
+			StringBuilder s = new StringBuilder();
+			if (fields)
+				s.append("<DOCNO>").append(i).append("</DOCNO> <TITLE> ").append(i % 4 == 0 ? "alpha" : "delta").append(" </TITLE> <BODY> ");
+			for(int j=0;j<=i%3;j++)
+				s.append("alpha ");
+			if (i % 2 == 0)
+				s.append("beta zeta ");
+			if (i % 3 == 0)
+				s.append("gamma ");
+			if (i % 10 == 0)
+				s.append("omega ");
+			if (fields)
+				s.append("</BODY>");
+			docs[i] = s.toString();
+		}
+		return docs;
+	}
+	
+	static String toString(IterablePosting ip) throws Exception
+	{
+		StringBuilder s = new StringBuilder();
+		while(ip.next() != IterablePosting.EOL)
+		{
+			s.append(ip.getId()).append(':').append(ip.getFrequency()).append(':').append(ip.getDocumentLength());
+			if (ip instanceof BlockPosting)
+				s.append(Arrays.toString(((BlockPosting)ip).getPositions()));
+			if (ip instanceof FieldPosting)
+				s.append(Arrays.toString(((FieldPosting)ip).getFieldFrequencies()))
+					.append(Arrays.toString(((FieldPosting)ip).getFieldLengths()));
+			s.append(' ').append(ip.asWritablePosting().getFrequency()).append(' ');
+		}
+		assertEquals(IterablePosting.EOL, ip.getId());
+		ip.close();
+		return s.toString();
+	}
+	
+	@SuppressWarnings("unchecked")
+	void checkCache(Index index) throws Exception
+	{
+		ApplicationSetup.setProperty("postinglist.cache.max.bytes", "100000");
+		ApplicationSetup.setProperty("postinglist.cache.min.df", "10");
+		PostingListCache cache = PostingListCache.get(index);
+		assertNotNull(cache);
+		PostingIndex<Pointer> inv = (PostingIndex<Pointer>) index.getInvertedIndex();
+		PostingIndex<Pointer> cachingInv = PostingListCache.getPostingIndex(index);
+		for(String term : new String[]{"alpha", "beta", "gamma"})
+		{
+			LexiconEntry le = index.getLexicon().getLexiconEntry(term);
+			String expected = toString(inv.getPostings(le));
+			assertTrue(expected.length() > 0);
+			for(int i=0;i<3;i++)
+				assertEquals(term, expected, toString(cachingInv.getPostings(le)));
+			
+			//skipping
+			IterablePosting ipExpected = inv.getPostings(le);
+			IterablePosting ipCached = cachingInv.getPostings(le);
+			assertTrue(ipCached instanceof PostingListCache.CachedIterablePosting);
+			assertEquals(ipExpected instanceof FieldPosting, ipCached instanceof FieldPosting);
+			assertEquals(ipExpected instanceof BlockPosting, ipCached instanceof BlockPosting);
+			assertTrue(ipCached instanceof BlockMaxIterablePosting);
+			for(int target : new int[]{0, 1, 5, 5, 17, 18, 40, 59, 60})
+			{
+				assertEquals(ipExpected.next(target), ipCached.next(target));
+				if (ipCached.getId() != IterablePosting.EOL)
+				{
+					assertEquals(ipExpected.getFrequency(), ipCached.getFrequency());
+					assertEquals(ipExpected.getDocumentLength(), ipCached.getDocumentLength());
+					assertEquals(ipExpected.endOfPostings(), ipCached.endOfPostings());
+				}
+			}
+		}
+		//lists below the minimum df are not cached
+		PostingListCache.getPostingIndex(index).getPostings(index.getLexicon().getLexiconEntry("omega"));
+		assertEquals(3, cache.size());
+		assertEquals(3, cache.getAdmissions());
+		//the first access of each posting list is not admitted, the second is
+		assertEquals(3 * 2, cache.getHits());
+		assertEquals(3 * 2, cache.getMisses());
+		assertEquals(0, cache.getEvictions());
+		assertTrue(cache.getBytes() > 0);
+		
+		//matching operators obtain their postings from the cache
+		IterablePosting ip = new SingleTermOp("alpha").getPostingIterator(index).getRight();
+		assertTrue(ip instanceof PostingListCache.CachedIterablePosting);
+		assertSame(cache, PostingListCache.get(index));
+	}
+	
+	@Test public void testBasic() throws Exception
+	{
+		checkCache(IndexTestUtils.makeIndex(docnos(), docs(false)));
+	}
+	
+	@Test public void testBlocks() throws Exception
+	{
+		checkCache(IndexTestUtils.makeIndexBlocks(docnos(), docs(false)));
+	}
+	
+	@Test public void testFields() throws Exception
+	{
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE,BODY");
+		ApplicationSetup.setProperty("TrecDocTags.process", "DOCNO,TITLE,BODY");
+		checkCache(IndexTestUtils.makeIndexFields(docnos(), docs(true)));
+	}
+	
+	@Test public void testBlockFields() throws Exception
+	{
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE,BODY");
+		ApplicationSetup.setProperty("TrecDocTags.process", "DOCNO,TITLE,BODY");
+		checkCache(IndexTestUtils.makeIndexFieldsBlocks(docnos(), docs(true)));
+	}
+	
+	@Test public void testLeastFrequentEvictedFirst() throws Exception
+	{
+		Index index = IndexTestUtils.makeIndex(docnos(), docs(false));
+		LexiconEntry beta = index.getLexicon().getLexiconEntry("beta");
+		LexiconEntry gamma = index.getLexicon().getLexiconEntry("gamma");
+		LexiconEntry zeta = index.getLexicon().getLexiconEntry("zeta");
+		//room for beta and gamma, but not all three
+		ApplicationSetup.setProperty("postinglist.cache.max.bytes", "700");
+		ApplicationSetup.setProperty("postinglist.cache.min.df", "10");
+		ApplicationSetup.setProperty("postinglist.cache.min.accesses", "2");
+		PostingListCache cache = PostingListCache.get(index);
+		PostingIndex<Pointer> inv = PostingListCache.getPostingIndex(index);
+		
+		//beta is admitted first, but accessed more often after admission
+		for(int i=0;i<4;i++)
+			inv.getPostings(beta).close();
+		for(int i=0;i<2;i++)
+			inv.getPostings(gamma).close();
+		assertEquals(2, cache.size());
+		
+		inv.getPostings(zeta).close();
+		inv.getPostings(zeta).close();
+		assertEquals(0, cache.getEvictions());
+		assertTrue(inv.getPostings(zeta) instanceof PostingListCache.CachedIterablePosting);
+		assertEquals(1, cache.getEvictions());
+		assertTrue(inv.getPostings(beta) instanceof PostingListCache.CachedIterablePosting);
+		assertFalse(inv.getPostings(gamma) instanceof PostingListCache.CachedIterablePosting);
+	}
+	
+	@Test public void testBlockMaxFrequencies() throws Exception
+	{
+		//enough documents for several blocks of postings
+		final int numDocs = 3 * PostingListCache.BLOCK_SIZE + 10;
+		String[] docnos = new String[numDocs];
+		String[] docs = new String[numDocs];
+		for(int i=0;i<numDocs;i++)
+		{
+			docnos[i] = "doc" + i;
+			StringBuilder s = new StringBuilder();
+			for(int j=0;j<=(i * 7) % 5;j++)
+				s.append("alpha ");
+			docs[i] = s.append("beta").toString();
+		}
+		Index index = IndexTestUtils.makeIndex(docnos, docs);
+		ApplicationSetup.setProperty("postinglist.cache.max.bytes", "100000");
+		ApplicationSetup.setProperty("postinglist.cache.min.df", "10");
+		ApplicationSetup.setProperty("postinglist.cache.min.accesses", "1");
+		PostingIndex<Pointer> inv = PostingListCache.getPostingIndex(index);
+		LexiconEntry le = index.getLexicon().getLexiconEntry("alpha");
+		
+		//the expected maximum frequency of each block
+		int[] lastIds = new int[4];
+		int[] maxTfs = new int[4];
+		IterablePosting ip = index.getInvertedIndex().getPostings(le);
+		int n = 0;
+		while(ip.next() != IterablePosting.EOL)
+		{
+			final int block = n++ / PostingListCache.BLOCK_SIZE;
+			lastIds[block] = ip.getId();
+			maxTfs[block] = Math.max(maxTfs[block], ip.getFrequency());
+		}
+		ip.close();
+		assertEquals(numDocs, n);
+		
+		BlockMaxIterablePosting cached = (BlockMaxIterablePosting) inv.getPostings(le);
+		assertEquals(lastIds[0], cached.nextBlock(0));
+		assertEquals(maxTfs[0], cached.getBlockMaxFrequency());
+		assertEquals(lastIds[1], cached.nextBlock(lastIds[0] + 1));
+		assertEquals(maxTfs[1], cached.getBlockMaxFrequency());
+		//the block cursor does not move backwards, nor move the posting cursor
+		assertEquals(lastIds[1], cached.nextBlock(0));
+		assertEquals(-1, cached.getId());
+		assertEquals(lastIds[3], cached.nextBlock(lastIds[2] + 5));
+		assertEquals(maxTfs[3], cached.getBlockMaxFrequency());
+		assertEquals(IterablePosting.EOL, cached.nextBlock(numDocs));
+		assertEquals(0, cached.getBlockMaxFrequency());
+		assertEquals(0, cached.next());
+		cached.close();
+	}
+	
+	@Test public void testDisabled() throws Exception
+	{
+		Index index = IndexTestUtils.makeIndex(docnos(), docs(false));
+		assertNull(PostingListCache.get(index));
+		assertSame(index.getInvertedIndex(), PostingListCache.getPostingIndex(index));
+	}
+	
+	@Test public void testAdmissionAndEviction() throws Exception
+	{
+		Index index = IndexTestUtils.makeIndex(docnos(), docs(false));
+		LexiconEntry beta = index.getLexicon().getLexiconEntry("beta");
+		LexiconEntry gamma = index.getLexicon().getLexiconEntry("gamma");
+		assertEquals(30, beta.getDocumentFrequency());
+		assertEquals(20, gamma.getDocumentFrequency());
+		//only room for one of the posting lists
+		ApplicationSetup.setProperty("postinglist.cache.max.bytes", "360");
+		ApplicationSetup.setProperty("postinglist.cache.min.df", "10");
+		ApplicationSetup.setProperty("postinglist.cache.min.accesses", "2");
+		PostingListCache cache = PostingListCache.get(index);
+		PostingIndex<Pointer> inv = PostingListCache.getPostingIndex(index);
+		
+		inv.getPostings(beta).close();
+		assertEquals(0, cache.size());
+		inv.getPostings(beta).close();
+		inv.getPostings(beta).close();
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHits());
+		
+		//gamma is less frequently accessed, so cannot displace beta
+		inv.getPostings(gamma).close();
+		inv.getPostings(gamma).close();
+		assertEquals(0, cache.getEvictions());
+		assertFalse(inv.getPostings(gamma) instanceof PostingListCache.CachedIterablePosting);
+		assertEquals(1, cache.getHits());
+		
+		//until it is accessed more often
+		assertTrue(inv.getPostings(gamma) instanceof PostingListCache.CachedIterablePosting);
+		assertEquals(1, cache.getEvictions());
+		assertEquals(1, cache.size());
+		assertTrue(inv.getPostings(gamma) instanceof PostingListCache.CachedIterablePosting);
+		assertEquals(2, cache.getHits());
+		assertTrue(cache.getBytes() <= 360);
+		
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+	}
+}
@@ -46,6 +46,23 @@ public class MatchingShakespeareEndToEndTests {
 		}
 	}
 	
+	public static class TestDAATWANDMatchingShakespeareEndToEndTest extends BasicShakespeareEndToEndTest
+	{
+		public TestDAATWANDMatchingShakespeareEndToEndTest()
+		{
+			testHooks.add(new BatchEndToEndTestEventHooks(){
+				@Override
+				public String[] processRetrievalOptions(String[] retrievalOptions) {
+					String[] options = super.processRetrievalOptions(retrievalOptions);
+					String[] newoptions = new String[options.length+1];
+					System.arraycopy(options, 0, newoptions, 0, options.length);
+					newoptions[options.length] = "-Dtrec.matching=org.terrier.matching.daat.WAND";
+					return newoptions;
+				}			
+			});
+		}
+	}
+	
 //	public static class TestDAATFullNoPLMMatchingShakespeareEndToEndTest extends BasicShakespeareEndToEndTest
 //	{
 //		public TestDAATFullNoPLMMatchingShakespeareEndToEndTest()
@@ -37,6 +37,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	BlockMaxBlocksShakespeareEndToEndTest.class,
 	
 	MatchingShakespeareEndToEndTests.TestDAATFullMatchingShakespeareEndToEndTest.class,
+	MatchingShakespeareEndToEndTests.TestDAATWANDMatchingShakespeareEndToEndTest.class,
 	//MatchingShakespeareEndToEndTests.TestDAATFullNoPLMMatchingShakespeareEndToEndTest.class,
 	//MatchingShakespeareEndToEndTests.TestTAATFullNoPLMMatchingShakespeareEndToEndTest.class,	
 	
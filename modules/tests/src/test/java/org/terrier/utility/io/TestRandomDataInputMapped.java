@@ -0,0 +1,120 @@
+package org.terrier.utility.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/** Test that RandomDataInputMapped works as expected, including across segment boundaries */
+public class TestRandomDataInputMapped {
+	
+	static File write(byte[] data) throws Exception
+	{
+		File tmp = File.createTempFile("tmp", ".mmap");
+		tmp.deleteOnExit();
+		try(FileOutputStream fos = new FileOutputStream(tmp))
+		{
+			fos.write(data);
+		}
+		return tmp;
+	}
+	
+	@Test public void testBytes() throws Exception
+	{
+		byte[] data = new byte[]{0,1,2,3,4,5,6,127,-127};
+		File f = write(data);
+		for(int bits : new int[]{1,2,3,30})
+		{
+			RandomDataInputMapped rdi = new RandomDataInputMapped(f.toString(), bits);
+			assertEquals(data.length, rdi.length());
+			for(byte b : data)
+				assertEquals(b, rdi.readByte());
+			for(int i=data.length-1;i>=0;i--)
+			{
+				rdi.seek(i);
+				assertEquals(data[i], rdi.readByte());
+				assertEquals(data[i], rdi.get(i));
+			}
+			for(int off=0;off<data.length;off++)
+				for(int len=0;off+len<=data.length;len++)
+				{
+					byte[] got = new byte[len];
+					rdi.readFullyDirect(got, off, len);
+					assertArrayEquals(Arrays.copyOfRange(data, off, off+len), got);
+				}
+			rdi.close();
+		}
+	}
+	
+	@Test public void testPrimitives() throws Exception
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		dos.writeByte(7);
+		for(int i=0;i<10;i++)
+		{
+			dos.writeInt(i * 100003 - 5);
+			dos.writeLong(Long.MAX_VALUE - i);
+			dos.writeShort(-i);
+			dos.writeUTF("term" + i);
+			dos.writeDouble(i / 3.0d);
+		}
+		dos.close();
+		File f = write(baos.toByteArray());
+		for(int bits : new int[]{2,3,4,30})
+		{
+			RandomDataInputMapped rdi = new RandomDataInputMapped(f.toString(), bits);
+			assertEquals(7, rdi.readByte());
+			for(int i=0;i<10;i++)
+			{
+				assertEquals(i * 100003 - 5, rdi.readInt());
+				assertEquals(Long.MAX_VALUE - i, rdi.readLong());
+				assertEquals(-i, rdi.readShort());
+				assertEquals("term" + i, rdi.readUTF());
+				assertEquals(i / 3.0d, rdi.readDouble(), 0.0d);
+			}
+			assertEquals(rdi.length(), rdi.getFilePointer());
+		}
+	}
+	
+	@Test public void testConcurrent() throws Exception
+	{
+		final byte[] data = new byte[100000];
+		new Random(7).nextBytes(data);
+		final RandomDataInputMapped rdi = new RandomDataInputMapped(write(data).toString(), 10);
+		ExecutorService es = Executors.newFixedThreadPool(4);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for(int t=0;t<8;t++)
+		{
+			final int seed = t;
+			results.add(es.submit(() -> {
+				Random r = new Random(seed);
+				for(int i=0;i<2000;i++)
+				{
+					int off = r.nextInt(data.length);
+					int len = r.nextInt(Math.min(3000, data.length - off));
+					byte[] got = new byte[len];
+					rdi.readFullyDirect(got, off, len);
+					if (! Arrays.equals(Arrays.copyOfRange(data, off, off+len), got))
+						return false;
+				}
+				return true;
+			}));
+		}
+		for(Future<Boolean> f : results)
+			assertEquals(true, f.get());
+		es.shutdown();
+	}
+}